@@ -2,6 +2,7 @@ package com.organizer.platform;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Entry point for the Organizer Platform application.
@@ -10,8 +11,10 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * - Auto-configuration
  * - Component scanning
  * - External configuration processing
+ * - Scheduled tasks, such as polling the classification batches
  */
 @SpringBootApplication  // Combines @Configuration, @EnableAutoConfiguration, and @ComponentScan for simplified setup
+@EnableScheduling
 public class OrganizerPlatformApplication {
 
 	/**
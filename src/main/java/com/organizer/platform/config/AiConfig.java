@@ -0,0 +1,53 @@
+package com.organizer.platform.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Configuration class for the processing of AI answers.
+ * The few IO threads of the AnthropicClient complete the futures of the AI calls, so the work
+ * following an answer (parsing it, caching it in the database, adding tags and next steps) runs
+ * on its own executor and the IO threads stay free to read the other responses.
+ */
+@Configuration
+public class AiConfig {
+
+    /**
+     * Constants for thread pool configuration
+     */
+    private static final String THREAD_NAME_PREFIX = "ai-result-";
+
+    @Value("${ai.executor.core-pool-size:4}")
+    private int corePoolSize;
+
+    @Value("${ai.executor.max-pool-size:16}")
+    private int maxPoolSize;
+
+    @Value("${ai.executor.queue-capacity:500}")
+    private int queueCapacity;
+
+    /**
+     * Configures the thread pool executor processing the AI answers.
+     *
+     * Core pool size: Minimum number of threads kept alive
+     * Max pool size: Maximum threads that can be created
+     * Queue capacity: Number of answers that can wait when all threads are busy
+     * Rejection policy: Caller runs, so a full executor slows down the reading of answers
+     *
+     * @return configured thread pool task executor
+     */
+    @Bean
+    public ThreadPoolTaskExecutor aiResultExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(THREAD_NAME_PREFIX);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,82 @@
+package com.organizer.platform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration properties for the routing of AI requests to models, see ModelRouter.
+ * This class maps properties with the 'ai.routing' prefix from the application configuration.
+ * Every message type has a list of routes ordered by input size; a request takes the first
+ * route whose max-input covers its input. A type without routes uses the model its prompt
+ * was written for, with the largest max-tokens.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "ai.routing")
+public class AiRoutingProperties {
+    /**
+     * Plain text messages; input size is the estimated tokens of the text
+     */
+    private List<Route> text = new ArrayList<>();
+
+    /**
+     * Text messages with scraped URL content; input size is the estimated tokens of both
+     */
+    private List<Route> url = new ArrayList<>();
+
+    /**
+     * Images; input size is the size of the image in bytes
+     */
+    private List<Route> image = new ArrayList<>();
+
+    /**
+     * PDF documents; input size is the size of the document in bytes
+     */
+    private List<Route> pdf = new ArrayList<>();
+
+    /**
+     * PDF documents sent as the text of their text layer; input size is the estimated tokens of the text
+     */
+    private List<Route> pdfText = new ArrayList<>();
+
+    /**
+     * Model and output limit for one input-size bucket of a message type
+     */
+    @Data
+    public static class Route {
+        /**
+         * Name of the route in the metrics
+         */
+        private String name;
+
+        /**
+         * Largest input taking this route, in the unit of its message type
+         */
+        private long maxInput = Long.MAX_VALUE;
+
+        /**
+         * Model answering the requests of this route
+         */
+        private String model;
+
+        /**
+         * Maximum number of tokens the model may generate
+         */
+        private int maxTokens = 8192;
+
+        /**
+         * Model a request is sent to again when the answer of the route's model does not
+         * follow the organization schema, or none to keep that answer
+         */
+        private String escalationModel;
+
+        /**
+         * Maximum number of tokens the escalation model may generate
+         */
+        private int escalationMaxTokens = 8192;
+    }
+}
@@ -0,0 +1,94 @@
+package com.organizer.platform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the Anthropic API client.
+ * This class maps properties with the 'anthropic.api' prefix from the application configuration.
+ * The base URL can point to a local stub server, so load tests run without the real API.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "anthropic.api")
+public class AnthropicProperties {
+    /**
+     * API key sent with every request
+     */
+    private String key;
+
+    /**
+     * Base URL of the API, without the '/v1/messages' path
+     */
+    private String baseUrl = "https://api.anthropic.com";
+
+    /**
+     * Value of the 'anthropic-version' header
+     */
+    private String version = "2023-06-01";
+
+    /**
+     * Maximum time to establish a connection
+     */
+    private long connectTimeoutMs = 5_000;
+
+    /**
+     * Maximum time from sending a request to receiving the response headers
+     */
+    private long readTimeoutMs = 120_000;
+
+    /**
+     * Maximum time of a whole request, including reading the response body
+     */
+    private long totalTimeoutMs = 180_000;
+
+    /**
+     * Threads handling responses. Requests wait without holding a thread, so a few
+     * threads are enough for many requests in flight.
+     */
+    private int ioThreads = 4;
+
+    /**
+     * Adaptive limit of concurrent requests, see AdaptiveLimiter
+     */
+    private Limiter limiter = new Limiter();
+
+    @Data
+    public static class Limiter {
+        /**
+         * Concurrent requests allowed at startup
+         */
+        private int initialLimit = 4;
+
+        /**
+         * Lowest concurrency the limit backs off to
+         */
+        private int minLimit = 1;
+
+        /**
+         * Highest concurrency the limit grows to
+         */
+        private int maxLimit = 10;
+
+        /**
+         * Factor applied to the limit when the API is overloaded (429/529 or timeouts)
+         */
+        private double backoffRatio = 0.5;
+
+        /**
+         * Factor applied to the limit when latency rises past the tolerance
+         */
+        private double latencyBackoffRatio = 0.9;
+
+        /**
+         * How many times slower than the baseline of its class (model and kind of content) a response may be before the limit is reduced
+         */
+        private double latencyTolerance = 3.0;
+
+        /**
+         * Pause after an overload answer without a 'retry-after' header
+         */
+        private long defaultRetryAfterMs = 1_000;
+    }
+}
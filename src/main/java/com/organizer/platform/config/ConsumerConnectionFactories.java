@@ -0,0 +1,67 @@
+package com.organizer.platform.config;
+
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.springframework.jms.connection.CachingConnectionFactory;
+
+import javax.jms.ConnectionFactory;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Connection factories of the queue consumers, one per consumer window size (prefetch).
+ * Artemis configures prefetch per connection factory, so queues with their own window connect
+ * through a copy of the shared factory: its full configuration (connectors or discovery,
+ * reconnection, timeouts and client settings, as serialized by {@link ActiveMQConnectionFactory#toURI})
+ * and its credentials, with only the window changed. Other brokers keep the shared factory.
+ * <p>
+ * The copies are not Spring beans of their own, as a ConnectionFactory bean would replace the
+ * auto-configured one; this holder is, and closes them on shutdown.
+ */
+public class ConsumerConnectionFactories implements AutoCloseable {
+    private final ConnectionFactory shared;
+    private final Map<Integer, ActiveMQConnectionFactory> byWindowSize = new HashMap<>();
+
+    /**
+     * @param shared the JMS connection factory of the application
+     */
+    public ConsumerConnectionFactories(ConnectionFactory shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * @param consumerWindowSize bytes buffered per consumer, 0 to disable prefetch
+     * @return connection factory whose consumers prefetch at most the window, the same for equal windows
+     */
+    public synchronized ConnectionFactory withConsumerWindowSize(int consumerWindowSize) {
+        ConnectionFactory target = shared instanceof CachingConnectionFactory
+                ? ((CachingConnectionFactory) shared).getTargetConnectionFactory()
+                : shared;
+        if (!(target instanceof ActiveMQConnectionFactory)) {
+            return shared;
+        }
+        return byWindowSize.computeIfAbsent(consumerWindowSize,
+                size -> copy((ActiveMQConnectionFactory) target, size));
+    }
+
+    /**
+     * Closes the copies, releasing their server locators and thread pools.
+     */
+    @Override
+    public synchronized void close() {
+        byWindowSize.values().forEach(ActiveMQConnectionFactory::close);
+        byWindowSize.clear();
+    }
+
+    static ActiveMQConnectionFactory copy(ActiveMQConnectionFactory shared, int consumerWindowSize) {
+        try {
+            ActiveMQConnectionFactory copy = new ActiveMQConnectionFactory(shared.toURI().toString());
+            copy.setUser(shared.getUser());
+            copy.setPassword(shared.getPassword());
+            copy.setConsumerWindowSize(consumerWindowSize);
+            return copy;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not copy the configuration of the JMS connection factory", e);
+        }
+    }
+}
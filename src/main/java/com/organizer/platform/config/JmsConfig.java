@@ -1,6 +1,12 @@
 package com.organizer.platform.config;
 
+import com.organizer.platform.service.JMS.DeadLetterService;
+import org.apache.activemq.artemis.api.core.SimpleString;
+import org.apache.activemq.artemis.core.settings.impl.AddressSettings;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jms.artemis.ArtemisConfigurationCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
@@ -16,6 +22,14 @@ import javax.jms.ConnectionFactory;
  * - AI service integration
  * - Cloud storage operations
  * - Database transactions
+ * <p>
+ * Every AI processing queue (see MessageQueues) gets its own listener container factory,
+ * executor and consumer prefetch, sized from {@link MessageQueueProperties}. A slow message
+ * type therefore only occupies its own consumers and never blocks the other types.
+ * <p>
+ * Consumers receive in transacted sessions: a listener that throws rolls the message back,
+ * and the embedded broker redelivers it with exponential backoff and jitter. Once the attempts
+ * are exhausted the broker moves it to the dead-letter queue (see DeadLetterService).
  */
 @Configuration
 public class JmsConfig {
@@ -23,49 +37,257 @@ public class JmsConfig {
     /**
      * Constants for thread pool configuration
      */
-    private static final int CORE_POOL_SIZE = 5;
-    private static final int MAX_POOL_SIZE = 10;
-    private static final int QUEUE_CAPACITY = 25;
-    private static final String THREAD_NAME_PREFIX = "jms-processor-";
+    private static final String INGESTION_THREAD_NAME_PREFIX = "media-ingestion-";
+
+    private final MessageQueueProperties queueProperties;
+
+    /**
+     * Media ingestion pool sizing. Kept separate from the AI processing pool so a slow
+     * media host only slows down ingestion, not classification.
+     */
+    @Value("${media.ingestion.concurrency:2-8}")
+    private String ingestionConcurrency;
+
+    @Value("${media.ingestion.max-pool-size:8}")
+    private int ingestionMaxPoolSize;
 
     /**
-     * Creates and configures the JMS listener container factory.
-     * This factory is crucial for the @JmsListener annotations to function properly,
-     * particularly in the MessageReceiver class where messages from 'exampleQueue'
-     * are processed.
+     * Redelivery policy of the embedded broker, applied to every queue
+     */
+    @Value("${jms.redelivery.initial-delay-ms:1000}")
+    private long redeliveryInitialDelay;
+
+    @Value("${jms.redelivery.multiplier:2.0}")
+    private double redeliveryMultiplier;
+
+    @Value("${jms.redelivery.max-delay-ms:60000}")
+    private long redeliveryMaxDelay;
+
+    @Value("${jms.redelivery.jitter:0.5}")
+    private double redeliveryJitter;
+
+    @Value("${jms.redelivery.max-attempts:6}")
+    private int maxDeliveryAttempts;
+
+    @Autowired
+    public JmsConfig(MessageQueueProperties queueProperties) {
+        this.queueProperties = queueProperties;
+    }
+
+    /**
+     * Applies the redelivery policy to every address of the embedded broker.
+     * Each failed delivery waits the previous delay times the multiplier, capped at the
+     * maximum delay and randomly spread by the jitter factor, so messages that failed together
+     * (for example on a rate limit) do not all retry at the same moment.
+     *
+     * @return customizer of the embedded broker configuration
+     */
+    @Bean
+    public ArtemisConfigurationCustomizer redeliveryCustomizer() {
+        return configuration -> {
+            configuration.addAddressesSetting("#", new AddressSettings()
+                    .setRedeliveryDelay(redeliveryInitialDelay)
+                    .setRedeliveryMultiplier(redeliveryMultiplier)
+                    .setMaxRedeliveryDelay(redeliveryMaxDelay)
+                    .setRedeliveryCollisionAvoidanceFactor(redeliveryJitter)
+                    .setMaxDeliveryAttempts(maxDeliveryAttempts)
+                    .setDeadLetterAddress(SimpleString.toSimpleString(DeadLetterService.DLQ)));
+        };
+    }
+
+    /**
+     * Connection factories of the consumers of the processing queues, with the prefetch of
+     * each queue. Closed on shutdown.
      *
      * @param connectionFactory the JMS connection factory to be used
+     * @return the consumer connection factories
+     */
+    @Bean(destroyMethod = "close")
+    public ConsumerConnectionFactories consumerConnectionFactories(
+            @Qualifier("jmsConnectionFactory") ConnectionFactory connectionFactory) {
+        return new ConsumerConnectionFactories(connectionFactory);
+    }
+
+    /**
+     * Listener container factory of 'textQueue'.
+     *
+     * @param connectionFactories the connection factories of the queue consumers
+     * @return configured JMS listener container factory
+     */
+    @Bean
+    public DefaultJmsListenerContainerFactory textContainerFactory(
+            ConsumerConnectionFactories connectionFactories) {
+        return queueContainerFactory(connectionFactories, queueProperties.getText(), textExecutor());
+    }
+
+    /**
+     * Executor running the consumers of 'textQueue'.
+     *
+     * @return configured thread pool task executor
+     */
+    @Bean
+    public ThreadPoolTaskExecutor textExecutor() {
+        return queueExecutor(queueProperties.getText(), "jms-text-");
+    }
+
+    /**
+     * Listener container factory of 'urlTextQueue'.
+     *
+     * @param connectionFactories the connection factories of the queue consumers
+     * @return configured JMS listener container factory
+     */
+    @Bean
+    public DefaultJmsListenerContainerFactory urlTextContainerFactory(
+            ConsumerConnectionFactories connectionFactories) {
+        return queueContainerFactory(connectionFactories, queueProperties.getUrlText(), urlTextExecutor());
+    }
+
+    /**
+     * Executor running the consumers of 'urlTextQueue'.
+     *
+     * @return configured thread pool task executor
+     */
+    @Bean
+    public ThreadPoolTaskExecutor urlTextExecutor() {
+        return queueExecutor(queueProperties.getUrlText(), "jms-url-text-");
+    }
+
+    /**
+     * Listener container factory of 'imageQueue'.
+     *
+     * @param connectionFactories the connection factories of the queue consumers
+     * @return configured JMS listener container factory
+     */
+    @Bean
+    public DefaultJmsListenerContainerFactory imageContainerFactory(
+            ConsumerConnectionFactories connectionFactories) {
+        return queueContainerFactory(connectionFactories, queueProperties.getImage(), imageExecutor());
+    }
+
+    /**
+     * Executor running the consumers of 'imageQueue'.
+     *
+     * @return configured thread pool task executor
+     */
+    @Bean
+    public ThreadPoolTaskExecutor imageExecutor() {
+        return queueExecutor(queueProperties.getImage(), "jms-image-");
+    }
+
+    /**
+     * Listener container factory of 'pdfQueue'.
+     *
+     * @param connectionFactories the connection factories of the queue consumers
      * @return configured JMS listener container factory
      */
     @Bean
-    public DefaultJmsListenerContainerFactory jmsListenerContainerFactory(
+    public DefaultJmsListenerContainerFactory pdfContainerFactory(
+            ConsumerConnectionFactories connectionFactories) {
+        return queueContainerFactory(connectionFactories, queueProperties.getPdf(), pdfExecutor());
+    }
+
+    /**
+     * Executor running the consumers of 'pdfQueue'.
+     *
+     * @return configured thread pool task executor
+     */
+    @Bean
+    public ThreadPoolTaskExecutor pdfExecutor() {
+        return queueExecutor(queueProperties.getPdf(), "jms-pdf-");
+    }
+
+    /**
+     * Listener container factory of 'mediaQueue'.
+     *
+     * @param connectionFactories the connection factories of the queue consumers
+     * @return configured JMS listener container factory
+     */
+    @Bean
+    public DefaultJmsListenerContainerFactory mediaContainerFactory(
+            ConsumerConnectionFactories connectionFactories) {
+        return queueContainerFactory(connectionFactories, queueProperties.getMedia(), mediaExecutor());
+    }
+
+    /**
+     * Executor running the consumers of 'mediaQueue'.
+     *
+     * @return configured thread pool task executor
+     */
+    @Bean
+    public ThreadPoolTaskExecutor mediaExecutor() {
+        return queueExecutor(queueProperties.getMedia(), "jms-media-");
+    }
+
+    /**
+     * Creates the listener container factory for the media ingestion stage.
+     * Used by MediaIngestionReceiver to consume 'mediaIngestionQueue' with its own
+     * consumers and thread pool, independent of the AI processing pipeline.
+     *
+     * @param connectionFactory the JMS connection factory to be used
+     * @return configured JMS listener container factory for media ingestion
+     */
+    @Bean
+    public DefaultJmsListenerContainerFactory mediaIngestionContainerFactory(
             @Qualifier("jmsConnectionFactory") ConnectionFactory connectionFactory) {
         DefaultJmsListenerContainerFactory factory =
                 new DefaultJmsListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
-        factory.setTaskExecutor(messageProcessingExecutor());
+        factory.setTaskExecutor(mediaIngestionExecutor());
+        factory.setConcurrency(ingestionConcurrency);
+        factory.setSessionTransacted(true);
         return factory;
     }
 
     /**
-     * Configures the thread pool executor for message processing.
-     * This executor manages concurrent processing of messages with controlled
-     * thread allocation to prevent resource exhaustion while maintaining
-     * optimal throughput.
-     *
-     * Core pool size: Minimum number of threads kept alive
-     * Max pool size: Maximum threads that can be created
-     * Queue capacity: Number of messages that can be queued when all threads are busy
+     * Configures the thread pool executor for media ingestion workers.
+     * Each consumer of the ingestion container occupies one thread for its lifetime,
+     * so the pool is sized to the upper bound of the configured concurrency.
      *
      * @return configured thread pool task executor
      */
     @Bean
-    public ThreadPoolTaskExecutor messageProcessingExecutor() {
+    public ThreadPoolTaskExecutor mediaIngestionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(ingestionMaxPoolSize);
+        executor.setMaxPoolSize(ingestionMaxPoolSize);
+        executor.setThreadNamePrefix(INGESTION_THREAD_NAME_PREFIX);
+        return executor;
+    }
+
+    /**
+     * Creates a listener container factory consuming with the concurrency and prefetch of a queue.
+     *
+     * @param connectionFactories the connection factories of the queue consumers
+     * @param settings consumer settings of the queue
+     * @param executor executor running the consumers of the queue
+     * @return configured JMS listener container factory
+     */
+    private DefaultJmsListenerContainerFactory queueContainerFactory(ConsumerConnectionFactories connectionFactories,
+                                                                     MessageQueueProperties.QueueSettings settings,
+                                                                     ThreadPoolTaskExecutor executor) {
+        DefaultJmsListenerContainerFactory factory =
+                new DefaultJmsListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactories.withConsumerWindowSize(settings.getConsumerWindowSize()));
+        factory.setTaskExecutor(executor);
+        factory.setConcurrency(settings.getConcurrency());
+        factory.setSessionTransacted(true);
+        return factory;
+    }
+
+    /**
+     * Creates the executor of a queue. Each consumer occupies one thread for its lifetime,
+     * so the pool is sized to the upper bound of the configured concurrency.
+     *
+     * @param settings consumer settings of the queue
+     * @param threadNamePrefix prefix of the consumer thread names
+     * @return configured thread pool task executor
+     */
+    private ThreadPoolTaskExecutor queueExecutor(MessageQueueProperties.QueueSettings settings,
+                                                 String threadNamePrefix) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(CORE_POOL_SIZE);
-        executor.setMaxPoolSize(MAX_POOL_SIZE);
-        executor.setQueueCapacity(QUEUE_CAPACITY);
-        executor.setThreadNamePrefix(THREAD_NAME_PREFIX);
+        executor.setCorePoolSize(settings.getMaxConcurrency());
+        executor.setMaxPoolSize(settings.getMaxConcurrency());
+        executor.setThreadNamePrefix(threadNamePrefix);
         return executor;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,70 @@
+package com.organizer.platform.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the AI processing queues.
+ * This class maps properties with the 'jms.queues' prefix from the application configuration.
+ * Every queue is sized independently, so the throughput of each message type can be tuned
+ * without affecting the others.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "jms.queues")
+public class MessageQueueProperties {
+    /**
+     * Plain text classification: short and cheap requests
+     */
+    private QueueSettings text = new QueueSettings("2-8", 1024 * 1024);
+
+    /**
+     * Text with scraped URL content: larger prompts
+     */
+    private QueueSettings urlText = new QueueSettings("1-4", 64 * 1024);
+
+    /**
+     * Image analysis
+     */
+    private QueueSettings image = new QueueSettings("1-4", 64 * 1024);
+
+    /**
+     * PDF analysis: the slowest requests, so nothing is buffered per consumer
+     */
+    private QueueSettings pdf = new QueueSettings("1-2", 0);
+
+    /**
+     * Audio and non-PDF documents, which are only stored
+     */
+    private QueueSettings media = new QueueSettings("1-2", 1024 * 1024);
+
+    /**
+     * Consumer settings of a single queue
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class QueueSettings {
+        /**
+         * Consumer concurrency as "min-max"; the executor of the queue is sized to the maximum
+         */
+        private String concurrency;
+
+        /**
+         * Prefetch of every consumer: bytes of messages buffered ahead of processing (Artemis
+         * consumer window). 0 disables prefetch so messages go to whichever consumer is free.
+         */
+        private int consumerWindowSize;
+
+        /**
+         * @return The maximum number of concurrent consumers
+         */
+        public int getMaxConcurrency() {
+            int separator = concurrency.indexOf('-');
+            return Integer.parseInt(separator < 0 ? concurrency : concurrency.substring(separator + 1));
+        }
+    }
+}
@@ -40,6 +40,8 @@ public class SecurityConfig {
                                 new AntPathRequestMatcher("/auth-status"),
                                 // WhatsApp webhook endpoint
                                 new AntPathRequestMatcher("/webhook"),
+                                // Local media backend, authorized by the signature in the URL
+                                new AntPathRequestMatcher("/media/local"),
                                 // Swagger documentation endpoints
                                 new AntPathRequestMatcher("/swagger-ui/**"),
                                 new AntPathRequestMatcher("/v3/api-docs/**"),
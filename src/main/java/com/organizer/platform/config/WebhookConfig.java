@@ -0,0 +1,54 @@
+package com.organizer.platform.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Configuration class for the WhatsApp webhook fan-out.
+ * Meta batches several messages into a single delivery under burst load, so the messages
+ * of each sender in a webhook call are handed to their own task on a bounded executor.
+ * The executor is bounded on purpose: when it saturates, the request thread runs the
+ * task itself, which slows down the delivery instead of dropping messages.
+ */
+@Configuration
+public class WebhookConfig {
+
+    /**
+     * Constants for thread pool configuration
+     */
+    private static final String THREAD_NAME_PREFIX = "webhook-fanout-";
+
+    @Value("${webhook.executor.core-pool-size:4}")
+    private int corePoolSize;
+
+    @Value("${webhook.executor.max-pool-size:16}")
+    private int maxPoolSize;
+
+    @Value("${webhook.executor.queue-capacity:100}")
+    private int queueCapacity;
+
+    /**
+     * Configures the thread pool executor used to fan out webhook messages.
+     *
+     * Core pool size: Minimum number of threads kept alive
+     * Max pool size: Maximum threads that can be created
+     * Queue capacity: Number of messages that can wait when all threads are busy
+     * Rejection policy: Caller runs, so a full executor applies back-pressure on the webhook
+     *
+     * @return configured thread pool task executor
+     */
+    @Bean
+    public ThreadPoolTaskExecutor webhookExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(THREAD_NAME_PREFIX);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
@@ -2,13 +2,15 @@ package com.organizer.platform.controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.organizer.platform.model.AI.ContentOrganization;
 import com.organizer.platform.model.ScraperDTO.ProcessingResult;
 import com.organizer.platform.model.User.AppUser;
 import com.organizer.platform.model.organizedDTO.MessageDTO;
 import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import com.organizer.platform.service.AI.OrganizationUpdates;
 import com.organizer.platform.service.Google.CloudStorageService;
+import com.organizer.platform.service.JMS.MessageQueues;
 import com.organizer.platform.service.Scraper.ContentProcessorService;
-import com.organizer.platform.service.Scraper.WebContentScraperService;
 import com.organizer.platform.service.User.UserService;
 import com.organizer.platform.service.WhatsApp.WhatsAppMessageService;
 import com.organizer.platform.util.AccessControlResponse;
@@ -16,16 +18,19 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.persistence.EntityNotFoundException;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.organizer.platform.model.organizedDTO.WhatsAppMessage.WhatsAppMessageBuilder.aWhatsAppMessage;
 import static com.organizer.platform.util.PhoneNumberValidator.validateAndCheckAccess;
@@ -55,17 +60,22 @@ public class AppController {
     private final UserService userService;
     private final ObjectMapper objectMapper;
     private final JmsTemplate jmsTemplate;
-    private final WebContentScraperService scraperService;
+    private final ContentProcessorService contentProcessor;
+    private final OrganizationUpdates organizationUpdates;
+
+    // How long a client may wait for the organization of a message
+    private static final long ORGANIZATION_STREAM_TIMEOUT_MS = 180_000;
 
 
     @Autowired
-    public AppController(WhatsAppMessageService messageService, CloudStorageService cloudStorageService, UserService userService, ObjectMapper objectMapper, JmsTemplate jmsTemplate, WebContentScraperService scraperService) {
+    public AppController(WhatsAppMessageService messageService, CloudStorageService cloudStorageService, UserService userService, ObjectMapper objectMapper, JmsTemplate jmsTemplate, ContentProcessorService contentProcessor, OrganizationUpdates organizationUpdates) {
         this.messageService = messageService;
         this.cloudStorageService = cloudStorageService;
         this.userService = userService;
         this.objectMapper = objectMapper;
         this.jmsTemplate = jmsTemplate;
-        this.scraperService = scraperService;
+        this.contentProcessor = contentProcessor;
+        this.organizationUpdates = organizationUpdates;
     }
 
     /**
@@ -142,6 +152,90 @@ public class AppController {
         return new ResponseEntity<>(relatedMessages, HttpStatus.OK);
     }
 
+    /**
+     * Streams the organization of a message as server-sent events while the AI generates it.
+     * <p>
+     * Why this endpoint exists:
+     * - A message is only saved once its whole AI answer is in, so polling shows nothing for seconds
+     * - Streaming shows each field (category first) as soon as the AI generated it
+     * <p>
+     * Events:
+     * - 'field': a field of the organization, as {"field": "category", "value": "..."}
+     * - 'organized': the whole organization once set on the message, which ends the stream
+     * A message organized already (by the AI, the cache, a duplicate image or a batch) gets its
+     * stored organization at once. The stored organization is read after subscribing, so an
+     * organization set in between is still sent, once. Otherwise the stream ends at the timeout if
+     * no organization comes.
+     *
+     * @param messageId The ID of the message being organized
+     * @param authentication The OAuth2 authentication object containing user credentials
+     * @return The event stream, or 401/403 if the user may not access the message
+     * @throws EntityNotFoundException if the specified message is not found
+     */
+    @GetMapping(value = "/messages/{messageId}/organization/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ApiOperation(value = "Stream the organization of a message",
+            notes = "Sends each organization field of the message as server-sent events while the AI generates it")
+    public ResponseEntity<SseEmitter> streamOrganization(@PathVariable Long messageId, Authentication authentication) {
+        WhatsAppMessage message = messageService.findMessageById(messageId)
+                .orElseThrow(() -> new EntityNotFoundException("Message not found with id: " + messageId));
+
+        AccessControlResponse accessControl = checkAccessControl(authentication, message.getFromNumber());
+        if (!accessControl.isAllowed()) {
+            return ResponseEntity.status(accessControl.getStatus()).build();
+        }
+
+        SseEmitter emitter = new SseEmitter(ORGANIZATION_STREAM_TIMEOUT_MS);
+        // Set once the organization is sent, by the subscription or from the stored message
+        AtomicBoolean organized = new AtomicBoolean();
+        Runnable unsubscribe = organizationUpdates.subscribe(messageId, update -> {
+            if (update.isOrganized()) {
+                sendOrganization(emitter, organized, update.getOrganization());
+            } else if (!organized.get()) {
+                send(emitter, SseEmitter.event().name("field")
+                        .data(Map.of("field", update.getField(), "value", update.getValue())));
+            }
+        });
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+
+        // An organization set before subscribing was published to no one
+        messageService.findOrganization(messageId)
+                .ifPresent(organization -> sendOrganization(emitter, organized, organization));
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Sends the organization of a message and ends its stream, unless it was sent already.
+     */
+    private static void sendOrganization(SseEmitter emitter, AtomicBoolean organized, ContentOrganization organization) {
+        if (organized.compareAndSet(false, true)
+                && send(emitter, SseEmitter.event().name(OrganizationUpdates.ORGANIZED).data(organization))) {
+            emitter.complete();
+        }
+    }
+
+    /**
+     * Sends an event, one at a time as the subscription and the request thread may both send.
+     *
+     * @return Whether the event was sent; if not, the client went away and the stream is ended
+     */
+    private static boolean send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        synchronized (emitter) {
+            try {
+                emitter.send(event);
+                return true;
+            } catch (IOException e) {
+                // The client went away
+                emitter.completeWithError(e);
+                return false;
+            } catch (IllegalStateException e) {
+                // The stream ended already, at its timeout
+                return false;
+            }
+        }
+    }
+
     /**
      * Retrieves and organizes messages by phone number while ensuring proper access control.
      * <p>
@@ -360,6 +454,55 @@ public class AppController {
         }
     }
 
+    /**
+     * Generates pre-signed URLs for many media files of one user in a single call.
+     * <p>
+     * Why this method exists:
+     * - Gallery pages display dozens of files; one call replaces a round trip per file
+     * - URLs still valid for long enough are served from cache instead of being signed again
+     * - Access control is checked once for the whole batch, since all files share the phone number
+     * - Galleries of images can ask for their thumbnails instead of the full-size originals
+     *
+     * @param type Media type of the files: image, document or audio
+     * @param names Names of the media files
+     * @param rendition Optional rendition of the images, for example "thumbnail"; originals when absent
+     * @param phoneNumber Associated phone number for access control
+     * @param authentication Current user's authentication details
+     * @return ResponseEntity mapping every file name to its pre-signed URL, or error details
+     */
+    @GetMapping("/media/urls")
+    @ApiOperation(value = "Get pre-signed URLs for several media files",
+            notes = "Retrieves pre-signed URLs for a batch of media files of the same type and phone number")
+    public ResponseEntity<?> getMediaPreSignedUrls(
+            @RequestParam String type,
+            @RequestParam List<String> names,
+            @RequestParam(required = false) String rendition,
+            @RequestParam String phoneNumber,
+            Authentication authentication) {
+
+        ResponseEntity<?> validationResponse = validateAndCheckAccess(
+                phoneNumber,
+                authentication,
+                this::checkAccessControl
+        );
+
+        if (validationResponse != null) {
+            return validationResponse;
+        }
+
+        String internationalFormat = validatePhoneNumber(phoneNumber)
+                .getInternationalFormat();
+
+        try {
+            return ResponseEntity.ok(cloudStorageService.generateSignedUrls(type, internationalFormat, names, rendition));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Provides a traditional update mechanism for WhatsApp messages that preserves existing data structure.
      * <p>
@@ -459,8 +602,7 @@ public class AppController {
             messageService.deleteNextSteps(message);
 
             // scrape url content, if any
-            ContentProcessorService processor = new ContentProcessorService(scraperService);
-            ProcessingResult result = processor.processContent(content);
+            ProcessingResult result = contentProcessor.processContent(content);
 
             // set only the message content
             message.setMessageContent(result.getOriginalContent());
@@ -471,7 +613,7 @@ public class AppController {
             String serializedMessage = objectMapper.writeValueAsString(message);
 
             // Send the serialized JSON string to the queue for a reorganization of the message
-            jmsTemplate.convertAndSend("exampleQueue", serializedMessage);
+            MessageQueues.send(jmsTemplate, message, serializedMessage);
 
             return ResponseEntity.ok()
                     .body(Map.of("processing", "updating message: " + serializedMessage));
@@ -536,8 +678,7 @@ public class AppController {
                 .getInternationalFormat();
 
         // scrape url content, if any
-        ContentProcessorService processor = new ContentProcessorService(scraperService);
-        ProcessingResult result = processor.processContent(content);
+        ProcessingResult result = contentProcessor.processContent(content);
 
         // message creation
         WhatsAppMessage message = aWhatsAppMessage()
@@ -559,7 +700,7 @@ public class AppController {
             String serializedMessage = objectMapper.writeValueAsString(message);
 
             // Send the serialized JSON string to the queue for a reorganization of the message
-            jmsTemplate.convertAndSend("exampleQueue", serializedMessage);
+            MessageQueues.send(jmsTemplate, message, serializedMessage);
 
             return ResponseEntity.ok()
                     .body(Map.of("Processing...", "Creating message: " + serializedMessage));
@@ -741,7 +882,7 @@ public class AppController {
             String serializedMessage = objectMapper.writeValueAsString(message);
 
             // Send the serialized JSON string to the queue for a reorganization of the message
-            jmsTemplate.convertAndSend("exampleQueue", serializedMessage);
+            MessageQueues.send(jmsTemplate, message, serializedMessage);
 
             return ResponseEntity.ok()
                     .body(Map.of("Processing...", "Creating message: " + serializedMessage));
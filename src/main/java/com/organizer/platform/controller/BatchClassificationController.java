@@ -0,0 +1,102 @@
+package com.organizer.platform.controller;
+
+import com.organizer.platform.model.AI.ClassificationBatch;
+import com.organizer.platform.service.AI.BatchClassificationService;
+import com.organizer.platform.service.User.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * REST Controller for classifying backlogs of messages with the Message Batches API.
+ * Administrators can start a run after an outage left messages unorganized, or after a
+ * prompt change, and follow its batches.
+ * <p>
+ * Access to all endpoints is restricted to administrators only.
+ */
+@RestController
+@RequestMapping("/api/admin/batch")
+public class BatchClassificationController {
+    private final BatchClassificationService batchClassificationService;
+    private final UserService userService;
+
+    @Autowired
+    public BatchClassificationController(BatchClassificationService batchClassificationService,
+                                         UserService userService) {
+        this.batchClassificationService = batchClassificationService;
+        this.userService = userService;
+    }
+
+    private boolean isAdminUser(Authentication authentication) {
+        OAuth2User oauth2User = (OAuth2User) authentication.getPrincipal();
+        String email = oauth2User.getAttribute("email");
+        return userService.isAdmin(email);
+    }
+
+    /**
+     * Returns the most recent classification batches, newest first.
+     */
+    @GetMapping
+    public ResponseEntity<?> getBatches(Authentication authentication) {
+        if (!isAdminUser(authentication)) {
+            return ResponseEntity.status(403)
+                    .body("Only administrators can inspect classification batches");
+        }
+
+        List<Map<String, Object>> batches = batchClassificationService.recentBatches().stream()
+                .map(BatchClassificationController::toResponse)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(batches);
+    }
+
+    /**
+     * Starts a run classifying the text messages without a category ({@code mode=pending}) or
+     * all text messages ({@code mode=all}), and returns its first batch.
+     */
+    @PostMapping
+    public ResponseEntity<?> submit(Authentication authentication,
+                                    @RequestParam(defaultValue = "pending") String mode) {
+        if (!isAdminUser(authentication)) {
+            return ResponseEntity.status(403)
+                    .body("Only administrators can start classification batches");
+        }
+
+        ClassificationBatch.Mode batchMode;
+        try {
+            batchMode = ClassificationBatch.Mode.valueOf(mode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("mode must be 'pending' or 'all'");
+        }
+
+        Optional<ClassificationBatch> batch;
+        try {
+            batch = batchClassificationService.submit(batchMode);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("batch", batch.map(BatchClassificationController::toResponse).orElse(null));
+        return ResponseEntity.ok(response);
+    }
+
+    private static Map<String, Object> toResponse(ClassificationBatch batch) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", batch.getId());
+        response.put("mode", batch.getMode());
+        response.put("createdAt", batch.getCreatedAt());
+        response.put("endedAt", batch.getEndedAt());
+        response.put("requests", batch.getRequestCount());
+        response.put("succeeded", batch.getSucceeded());
+        response.put("failed", batch.getFailed());
+        return response;
+    }
+}
@@ -0,0 +1,76 @@
+package com.organizer.platform.controller;
+
+import com.organizer.platform.service.JMS.DeadLetterService;
+import com.organizer.platform.service.User.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * REST Controller for the dead-letter queue of the processing pipeline.
+ * Administrators can see how many messages failed for good and, once the cause is fixed
+ * (for example an expired API key), send them back to their original queues.
+ * <p>
+ * Access to all endpoints is restricted to administrators only.
+ */
+@RestController
+@RequestMapping("/api/admin/dlq")
+public class DeadLetterController {
+    private final DeadLetterService deadLetterService;
+    private final UserService userService;
+
+    @Autowired
+    public DeadLetterController(DeadLetterService deadLetterService, UserService userService) {
+        this.deadLetterService = deadLetterService;
+        this.userService = userService;
+    }
+
+    private boolean isAdminUser(Authentication authentication) {
+        OAuth2User oauth2User = (OAuth2User) authentication.getPrincipal();
+        String email = oauth2User.getAttribute("email");
+        return userService.isAdmin(email);
+    }
+
+    /**
+     * Returns the number of messages waiting in the dead-letter queue.
+     * The depth is -1 when the broker is not embedded and cannot be inspected.
+     */
+    @GetMapping
+    public ResponseEntity<?> getDepth(Authentication authentication) {
+        if (!isAdminUser(authentication)) {
+            return ResponseEntity.status(403)
+                    .body("Only administrators can inspect the dead-letter queue");
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("depth", deadLetterService.depth());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Sends up to {@code limit} dead-lettered messages back to their original queues,
+     * oldest first, and returns how many were replayed. Messages without an original queue
+     * are moved to the parking queue and count towards the limit.
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<?> replay(Authentication authentication,
+                                    @RequestParam(defaultValue = "100") int limit) {
+        if (!isAdminUser(authentication)) {
+            return ResponseEntity.status(403)
+                    .body("Only administrators can replay the dead-letter queue");
+        }
+        if (limit <= 0) {
+            return ResponseEntity.badRequest().body("limit must be positive");
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("replayed", deadLetterService.replay(limit));
+        response.put("depth", deadLetterService.depth());
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,58 @@
+package com.organizer.platform.controller;
+
+import com.organizer.platform.service.Storage.LocalMediaStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URLConnection;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * Serves media stored by the {@link LocalMediaStore} through the signed URLs it issues.
+ * Plays the role of the storage bucket when the application runs with the local backend,
+ * so the signature in the URL replaces the login and the endpoint is public.
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "media.store.type", havingValue = "local")
+public class LocalMediaController {
+    private final LocalMediaStore localMediaStore;
+
+    /**
+     * Streams a stored object to the client through a fixed-size buffer.
+     *
+     * @param path Object path from the signed URL
+     * @param expires Expiry from the signed URL, in epoch seconds
+     * @param signature Signature from the signed URL
+     * @param response Response the object is written to
+     * @throws IOException if writing the response fails
+     */
+    @GetMapping(LocalMediaStore.SERVE_PATH)
+    public void serve(@RequestParam String path,
+                      @RequestParam long expires,
+                      @RequestParam String signature,
+                      HttpServletResponse response) throws IOException {
+        if (!localMediaStore.verify(path, expires, signature)) {
+            response.sendError(HttpStatus.FORBIDDEN.value());
+            return;
+        }
+
+        try {
+            long size = localMediaStore.size(path);
+            String contentType = URLConnection.guessContentTypeFromName(path);
+            response.setContentType(contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setContentLengthLong(size);
+
+            localMediaStore.copyTo(path, response.getOutputStream());
+        } catch (NoSuchFileException e) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+        }
+    }
+}
@@ -9,8 +9,8 @@ import com.organizer.platform.model.organizedDTO.MessageDTO;
 import com.organizer.platform.model.organizedDTO.MessageTypeCount;
 import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
 import com.organizer.platform.service.Google.CloudStorageService;
+import com.organizer.platform.service.JMS.MessageQueues;
 import com.organizer.platform.service.Scraper.ContentProcessorService;
-import com.organizer.platform.service.Scraper.WebContentScraperService;
 import com.organizer.platform.service.User.ExportService;
 import com.organizer.platform.service.User.UserService;
 import com.organizer.platform.service.WhatsApp.WhatsAppMessageService;
@@ -53,7 +53,7 @@ public class UiController {
     // Core service dependencies
     private final UserService userService;
     private final WhatsAppMessageService messageService;
-    private final WebContentScraperService scraperService;
+    private final ContentProcessorService contentProcessor;
     private final ObjectMapper objectMapper;
     private final JmsTemplate jmsTemplate;
     private final CloudStorageService cloudStorageService;
@@ -61,11 +61,11 @@ public class UiController {
 
     @Autowired
     public UiController(UserService userService, WhatsAppMessageService messageService,
-                        WebContentScraperService scraperService, ObjectMapper objectMapper,
+                        ContentProcessorService contentProcessor, ObjectMapper objectMapper,
                         JmsTemplate jmsTemplate, CloudStorageService cloudStorageService, ExportService exportService) {
         this.userService = userService;
         this.messageService = messageService;
-        this.scraperService = scraperService;
+        this.contentProcessor = contentProcessor;
         this.objectMapper = objectMapper;
         this.jmsTemplate = jmsTemplate;
         this.cloudStorageService = cloudStorageService;
@@ -372,8 +372,7 @@ public class UiController {
             }
 
             // scrape url content, if any
-            ContentProcessorService processor = new ContentProcessorService(scraperService);
-            ProcessingResult result = processor.processContent(messageContent);
+            ProcessingResult result = contentProcessor.processContent(messageContent);
 
             // remove relations in the database from both sides
             messageService.deleteTags(message.get());
@@ -388,7 +387,7 @@ public class UiController {
             String serializedMessage = objectMapper.writeValueAsString(message.get());
 
             // Send the serialized JSON string to the queue for a reorganization of the message
-            jmsTemplate.convertAndSend("exampleQueue", serializedMessage);
+            MessageQueues.send(jmsTemplate, message.get(), serializedMessage);
 
 
             redirectAttributes.addFlashAttribute("successMessage", "ההודעה נמצאת בעדכון");
@@ -427,8 +426,7 @@ public class UiController {
 
         try {
             // Create and process the message
-            ContentProcessorService processor = new ContentProcessorService(scraperService);
-            ProcessingResult result = processor.processContent(content);
+            ProcessingResult result = contentProcessor.processContent(content);
 
             WhatsAppMessage message = aWhatsAppMessage()
                     .fromNumber(phoneNumber)
@@ -440,7 +438,7 @@ public class UiController {
 
             // Serialize and send to queue
             String serializedMessage = objectMapper.writeValueAsString(message);
-            jmsTemplate.convertAndSend("exampleQueue", serializedMessage);
+            MessageQueues.send(jmsTemplate, message, serializedMessage);
 
             redirectAttributes.addFlashAttribute("successMessage", "ההודעה נשלחה לעיבוד בהצלחה");
         } catch (Exception e) {
@@ -516,7 +514,7 @@ public class UiController {
 
             // Serialize and send to queue
             String serializedMessage = objectMapper.writeValueAsString(message);
-            jmsTemplate.convertAndSend("exampleQueue", serializedMessage);
+            MessageQueues.send(jmsTemplate, message, serializedMessage);
 
             redirectAttributes.addFlashAttribute("successMessage", "ההודעה נשלחה לעיבוד בהצלחה");
         } catch (Exception e) {
@@ -617,6 +615,7 @@ public class UiController {
      * @param type      Media type (document/image/audio) to determine storage bucket
      * @param content   Metadata containing file reference
      * @param phone     User phone number for scoping access
+     * @param rendition Optional image rendition, "thumbnail" for the previews of the messages page
      * @param principal OAuth user information for authentication
      * @return Redirect to signed cloud storage URL
      */
@@ -624,6 +623,7 @@ public class UiController {
     public RedirectView getMediaMessages(@RequestParam String type,
                                          @RequestParam String content,
                                          @RequestParam String phone,
+                                         @RequestParam(required = false) String rendition,
                                          @AuthenticationPrincipal OAuth2User principal) {
         if (principal == null) {
             return new RedirectView("/login");
@@ -633,7 +633,9 @@ public class UiController {
             case "document":
                 return new RedirectView(cloudStorageService.generateDocumentSignedUrl(phone, mediaName));
             case "image":
-                return new RedirectView(cloudStorageService.generateImageSignedUrl(phone, mediaName));
+                return new RedirectView(rendition == null
+                        ? cloudStorageService.generateImageSignedUrl(phone, mediaName)
+                        : cloudStorageService.generateImageSignedUrl(phone, mediaName, rendition));
             case "audio":
                 return new RedirectView(cloudStorageService.generateAudioSignedUrl(phone, mediaName));
             default:
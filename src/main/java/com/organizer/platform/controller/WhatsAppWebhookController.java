@@ -3,19 +3,29 @@ package com.organizer.platform.controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.organizer.platform.model.WhatsApp.*;
 import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import com.organizer.platform.service.JMS.MessageQueues;
 import com.organizer.platform.service.User.UserService;
-import com.organizer.platform.service.WhatsApp.WhatsAppAudioService;
-import com.organizer.platform.service.WhatsApp.WhatsAppDocumentService;
-import com.organizer.platform.service.WhatsApp.WhatsAppImageService;
+import com.organizer.platform.util.Dates;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jms.core.JmsTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
 import static com.organizer.platform.model.organizedDTO.WhatsAppMessage.WhatsAppMessageBuilder.aWhatsAppMessage;
 
 /**
@@ -23,21 +33,26 @@ import static com.organizer.platform.model.organizedDTO.WhatsAppMessage.WhatsApp
  * <p>
  * This controller:
  * 1. Receives incoming webhook requests from WhatsApp's API
- * 2. Validates and processes different types of messages (text, image, document, audio)
- * 3. Uploads media content (images, documents, audio) to Google Cloud Storage
- * 4. Creates standardized WhatsAppMessage objects for further processing
- * 5. Sends processed messages to a JMS queue for asynchronous handling
+ * 2. Fans out the messages of the batch onto a bounded executor, one task per sender
+ * 3. Validates and routes different types of messages (text, image, document, audio)
+ * 4. Creates standardized WhatsAppMessage objects for text messages
+ * 5. Enqueues a "media pending" envelope for media messages, so the webhook is acknowledged
+ *    in milliseconds and the media transfer happens on the ingestion worker pool
  * 6. Ensures user authorization before processing messages
  * <p>
+ * Meta redelivers a whole batch when any of its messages failed, so the WhatsApp ids of the
+ * enqueued messages are remembered for webhook.dedup.ttl-minutes, and a redelivered message
+ * already enqueued is skipped instead of being processed twice.
+ * <p>
  * The controller supports multiple message types:
- * - Text messages: Processes plain text content
- * - Image messages: Uploads images to GCS and creates metadata
- * - Document messages: Uploads documents to GCS and creates metadata
- * - Audio messages: Uploads audio files to GCS and creates metadata
+ * - Text messages: Sent directly to the AI processing queue
+ * - Image, document and audio messages: Sent to 'mediaIngestionQueue', where
+ *   {@link com.organizer.platform.service.JMS.MediaIngestionReceiver} uploads them to GCS
  * <p>
  * @RestController Handles REST endpoints for WhatsApp webhook
  * @RequestMapping("/webhook") Base path for webhook endpoints
  */
+@Slf4j
 @RestController
 @RequestMapping("/webhook")
 public class WhatsAppWebhookController {
@@ -45,30 +60,26 @@ public class WhatsAppWebhookController {
     private final JmsTemplate jmsTemplate;
     // Object mapper for JSON serialization/deserialization
     private final ObjectMapper objectMapper;
-    // Service for processing and storing WhatsApp images
-    private final WhatsAppImageService whatsAppImageService;
-    // Service for processing and storing WhatsApp documents
-    private final WhatsAppDocumentService whatsAppDocumentService;
-    // Service for processing and storing WhatsApp audio files
-    private final WhatsAppAudioService whatsAppAudioService;
     // Service for user management and authorization
     private final UserService userService;
-
-    // WhatsApp API authentication token
-    @Value("${whatsapp.api.token}")
-    String whatsAppToken;
+    // Bounded executor used to fan out the messages of a single webhook call
+    private final ThreadPoolTaskExecutor webhookExecutor;
+    // WhatsApp ids of the messages enqueued recently, or being enqueued
+    private final Cache<String, Boolean> enqueuedIds;
 
     @Autowired
-    public WhatsAppWebhookController(JmsTemplate jmsTemplate, ObjectMapper objectMapper,
-                                     WhatsAppImageService whatsAppImageService,
-                                     WhatsAppDocumentService whatsAppDocumentService,
-                                     WhatsAppAudioService whatsAppAudioService, UserService userService) {
+    public WhatsAppWebhookController(JmsTemplate jmsTemplate, ObjectMapper objectMapper, UserService userService,
+                                     @Qualifier("webhookExecutor") ThreadPoolTaskExecutor webhookExecutor,
+                                     @Value("${webhook.dedup.ttl-minutes:1440}") long dedupTtlMinutes,
+                                     @Value("${webhook.dedup.max-entries:100000}") long dedupMaxEntries) {
         this.jmsTemplate = jmsTemplate;
         this.objectMapper = objectMapper;
-        this.whatsAppImageService = whatsAppImageService;
-        this.whatsAppDocumentService = whatsAppDocumentService;
-        this.whatsAppAudioService = whatsAppAudioService;
         this.userService = userService;
+        this.webhookExecutor = webhookExecutor;
+        this.enqueuedIds = CacheBuilder.newBuilder()
+                .expireAfterWrite(dedupTtlMinutes, TimeUnit.MINUTES)
+                .maximumSize(dedupMaxEntries)
+                .build();
     }
 
      /**
@@ -105,34 +116,87 @@ public class WhatsAppWebhookController {
      * <p>
      * This method:
      * 1. Receives the webhook payload from WhatsApp
-     * 2. Validates user authorization for each message
-     * 3. Processes authorized messages through the message pipeline
-     * 4. Handles any errors during processing
+     * 2. Collects every message across all entries and changes of the batch
+     * 3. Hands the messages of each sender to the webhook executor as one task, which enqueues
+     *    them in delivery order, so the message group of the sender receives them in that order;
+     *    different senders are enqueued in parallel
+     * 4. Waits until every message is either enqueued or skipped as unauthorized
+     * <p>
+     * Meta batches several messages per delivery under burst load, so only looking at the
+     * first message of a change would silently drop the rest. A 500 response makes Meta
+     * redeliver the batch when any message could not be enqueued; the messages of the batch
+     * that were enqueued are then skipped. A message that fails stops the later messages of its
+     * sender, so the redelivery still enqueues them after it.
      *
      * @param webhookRequest The incoming webhook request containing WhatsApp message data
-     * @return ResponseEntity with status 200 if successful, 500 if processing fails
+     * @return ResponseEntity with status 200 if all messages were enqueued, 500 otherwise
      */
     @PostMapping
     public ResponseEntity<String> receiveMessage(@RequestBody WhatsAppWebhookRequest webhookRequest) {
+        List<CompletableFuture<Void>> pending = collectMessages(webhookRequest).stream()
+                .collect(Collectors.groupingBy(message -> String.valueOf(message.getFrom()),
+                        LinkedHashMap::new, Collectors.toList()))
+                .values().stream()
+                .map(messages -> CompletableFuture.runAsync(() -> messages.forEach(this::handleMessage), webhookExecutor))
+                .collect(Collectors.toList());
+
         try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+            return ResponseEntity.ok("Message processed");
+        } catch (CompletionException e) {
+            log.error("Failed to enqueue webhook messages", e.getCause());
+            return ResponseEntity.status(500).body("Error processing message");
+        }
+    }
 
-            webhookRequest.getEntry().forEach(entry -> entry.getChanges().forEach(change -> {
-                if (change.getValue().getMessages() != null && !change.getValue().getMessages().isEmpty()) {
-                    Message message = change.getValue().getMessages().get(0); // get the message
+    /**
+     * Flattens a webhook payload into the list of messages it carries.
+     * Changes without messages (for example delivery status updates) are skipped.
+     *
+     * @param webhookRequest The incoming webhook request
+     * @return Every message of every change of every entry, in delivery order
+     */
+    private static List<Message> collectMessages(WhatsAppWebhookRequest webhookRequest) {
+        if (webhookRequest == null || webhookRequest.getEntry() == null) {
+            return Collections.emptyList();
+        }
 
-                    try {
-                        // Only process message if user is authorized
-                        if (userService.processNewUser(message.getFrom())) {
-                            processMessage(message);
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-            }));
+        return webhookRequest.getEntry().stream()
+                .filter(Objects::nonNull)
+                .map(Entry::getChanges)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .filter(change -> change != null && change.getValue() != null)
+                .map(change -> change.getValue().getMessages())
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
 
-            return ResponseEntity.ok("Message processed");
-        } catch (Exception e) {
-            return ResponseEntity.status(500).body("Error processing message");
+    /**
+     * Runs a single webhook message through the pipeline.
+     * Only messages from authorized users are processed, and only once per WhatsApp id: the id
+     * is claimed before the message is enqueued, and released if enqueueing fails so the
+     * redelivery of the batch enqueues it.
+     *
+     * @param message The raw WhatsApp message to handle
+     */
+    private void handleMessage(Message message) {
+        String id = message.getId();
+        if (id != null && enqueuedIds.asMap().putIfAbsent(id, Boolean.TRUE) != null) {
+            log.debug("Skipping message {}, already enqueued", id);
+            return;
+        }
+        try {
+            if (userService.processNewUser(message.getFrom())) {
+                processMessage(message);
+            }
+        } catch (RuntimeException e) {
+            if (id != null) {
+                enqueuedIds.invalidate(id);
+            }
+            throw e;
         }
     }
 
@@ -141,22 +205,34 @@ public class WhatsAppWebhookController {
      * and sending them to a message queue for asynchronous processing.
      * <p>
      * This method:
-     * 1. Creates a standardized WhatsAppMessage object from the raw message
-     * 2. Serializes the message to JSON format
-     * 3. Sends the serialized message to a JMS queue for further processing
+     * 1. Wraps media messages (image, document, audio) in a lightweight pending envelope
+     *    for the media ingestion stage, so no download or upload happens on the request thread
+     * 2. Creates a standardized WhatsAppMessage object from any other raw message
+     * 3. Serializes the result to JSON format and sends it to the matching JMS queue
      *
      * @param message The raw WhatsApp message to process
      * @throws RuntimeException if message processing or serialization fails
      */
     private void processMessage(Message message) {
         try {
+            if (isMediaMessage(message)) {
+                MediaEnvelope envelope = MediaEnvelope.builder()
+                        .message(message)
+                        .receivedAt(Dates.nowUTC())
+                        .build();
+
+                // Media is transferred to storage by the ingestion workers
+                jmsTemplate.convertAndSend("mediaIngestionQueue", objectMapper.writeValueAsString(envelope));
+                return;
+            }
+
             WhatsAppMessage whatsAppMessage = createWhatsAppMessage(message);
 
             // Serialize the WhatsAppMessage to JSON string
             String serializedMessage = objectMapper.writeValueAsString(whatsAppMessage);
 
             // Send the serialized JSON string to the queue
-            jmsTemplate.convertAndSend("exampleQueue", serializedMessage);
+            MessageQueues.send(jmsTemplate, whatsAppMessage, serializedMessage);
 
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Error processing message", e);
@@ -164,9 +240,25 @@ public class WhatsAppWebhookController {
     }
 
     /**
-     * Creates a standardized WhatsAppMessage object from the incoming webhook message.
-     * This method serves as a message type router, ensuring consistent message processing
-     * regardless of the incoming message type (text, image, document, or audio).
+     * Checks whether a message carries media that has to be fetched from WhatsApp's servers.
+     *
+     * @param message The raw WhatsApp message
+     * @return true for image, document and audio messages
+     */
+    private static boolean isMediaMessage(Message message) {
+        switch (message.getType().toLowerCase()) {
+            case "image":
+            case "document":
+            case "audio":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Creates a standardized WhatsAppMessage object from an incoming non-media webhook message.
+     * Media messages never reach this method, they are completed by the media ingestion stage.
      * <p>
      * The builder pattern is used here to:
      * 1. Maintain consistent message structure across all message types
@@ -181,100 +273,16 @@ public class WhatsAppWebhookController {
         WhatsAppMessage.WhatsAppMessageBuilder builder = aWhatsAppMessage()
                 .fromNumber(message.getFrom())
                 .messageType(message.getType())
+                .whatsAppMessageId(message.getId())
                 .processed(false);
 
-        switch (message.getType().toLowerCase()) {
-            case "text":
-                processTextMessage(message, builder);
-                break;
-            case "image":
-                processImageMessage(message, builder);
-                break;
-            case "document":
-                processDocumentMessage(message, builder);
-                break;
-            case "audio":
-                processAudioMessage(message, builder);
-                break;
-            default:
+        if ("text".equalsIgnoreCase(message.getType())) {
+            processTextMessage(message, builder);
         }
 
-
         return builder.build();
     }
 
-    /**
-     * Processes audio messages by uploading them to Google Cloud Storage.
-     * This separation of audio processing allows for:
-     * - Specialized audio file handling and validation
-     * - Future audio-specific features (like transcription or duration checks)
-     * - Independent scaling of audio processing resources
-     * <p>
-     * The stored file location is then encoded in the message metadata for downstream processing.
-     */
-    private void processAudioMessage(Message message, WhatsAppMessage.WhatsAppMessageBuilder builder) {
-        if (message.getAudio() != null) {
-            // Upload audio to Google Cloud Storage
-            String storedFileName = whatsAppAudioService.processAndUploadAudio(
-                    message.getFrom(),
-                    message.getAudio(),
-                    whatsAppToken
-            );
-
-            String audioMetadata = createAudioMetadata(message.getAudio(), storedFileName);
-            builder.messageContent(audioMetadata);
-        }
-    }
-
-
-    /**
-     * Handles document messages through Google Cloud Storage upload.
-     * Separate document processing is crucial for:
-     * - Supporting various document formats (PDF, DOC, etc.)
-     * - Implementing document-specific security scanning
-     * - Managing document retention policies
-     * <p>
-     * Document metadata is preserved to maintain file context and enable proper handling
-     * by downstream processors.
-     */
-    private void processDocumentMessage(Message message, WhatsAppMessage.WhatsAppMessageBuilder builder) {
-        if (message.getDocument() != null) {
-            // Upload document to Google Cloud Storage
-            String storedFileName = whatsAppDocumentService.processAndUploadDocument(
-                    message.getFrom(),
-                    message.getDocument(),
-                    whatsAppToken
-            );
-
-            String documentMetadata = createDocumentMetadata(message.getDocument(), storedFileName);
-            builder.messageContent(documentMetadata);
-        }
-    }
-
-    /**
-     * Manages image message processing and storage.
-     * Dedicated image processing enables:
-     * - Image format validation and optimization
-     * - Potential future image analysis or manipulation
-     * - Separate image storage optimization and CDN integration
-     * <p>
-     * Images are stored with metadata to maintain context and enable features like
-     * galleries or image search.
-     */
-    private void processImageMessage(Message message, WhatsAppMessage.WhatsAppMessageBuilder builder) {
-        if (message.getImage() != null) {
-            // Upload image to Google Cloud Storage
-            String storedFileName = whatsAppImageService.processAndUploadImage(
-                    message.getFrom(),
-                    message.getImage(),
-                    whatsAppToken
-            );
-
-            String imageMetadata = createImageMetadata(message, storedFileName);
-            builder.messageContent(imageMetadata);
-        }
-    }
-
     /**
      * Processes plain text messages.
      * While simpler than media processing, separate text handling allows for:
@@ -287,69 +295,4 @@ public class WhatsAppWebhookController {
             builder.messageContent(message.getText().getBody());
         }
     }
-
-    /**
-     * Creates structured metadata for audio files.
-     * This standardized format is important for:
-     * - Maintaining consistent audio file references across the system
-     * - Enabling efficient audio file lookup and management
-     * - Supporting audio-specific features in downstream processing
-     * <p>
-     * The format strips storage-specific prefixes to maintain clean references
-     * while preserving essential audio metadata.
-     */
-    private String createAudioMetadata(Audio audio, String storedFileName) {
-        String cleanFileName = storedFileName.startsWith("audios/")
-                ? storedFileName.substring("audios/".length())
-                : storedFileName;  // get after the prefix "audios/" to get the actual file name
-        return String.format("Audio ID: %s, MIME Type: %s, GCS File: %s",
-                audio.getId(),
-                audio.getMimeType(),
-                cleanFileName);
-    }
-
-
-    /**
-     * Creates standardized metadata for image files.
-     * This structured format is essential for:
-     * - Enabling consistent image tracking across different system components
-     * - Supporting image galleries and search functionality
-     * - Facilitating image lifecycle management and cleanup
-     * <p>
-     * The clean filename approach (removing storage prefixes) maintains platform
-     * independence and simplifies integration with various frontend components
-     * while preserving the original GCS reference.
-     */
-    public static String createImageMetadata(Message message, String storedFileName) {
-        // Create image metadata and GCS filename
-        String cleanFileName = storedFileName.startsWith("images/")
-                ? storedFileName.substring("images/".length())
-                : storedFileName;  // get after the prefix "images/" to get the actual file name
-        return String.format("Image ID: %s, MIME Type: %s, GCS File: %s",
-                message.getImage().getId(),
-                message.getImage().getMimeType(),
-                cleanFileName);
-    }
-
-    /**
-     * Creates standardized metadata for document files.
-     * This structured approach is crucial for:
-     * - Maintaining document traceability throughout the system
-     * - Supporting document search and categorization features
-     * - Managing document versioning and access control
-     * <p>
-     * The metadata format aligns with other media types for consistency
-     * while capturing document-specific attributes needed for proper
-     * handling in downstream processing.
-     */
-    private String createDocumentMetadata(Document document, String storedFileName) {
-        String cleanFileName = storedFileName.startsWith("documents/")
-                ? storedFileName.substring("documents/".length())
-                : storedFileName;  // get after the prefix "documetnts/" to get the actual file name
-        return String.format("Document ID: %s, MIME Type: %s, GCS File: %s",
-                document.getId(),
-                document.getMimeType(),
-                cleanFileName);
-    }
 }
-
@@ -0,0 +1,91 @@
+package com.organizer.platform.model.AI;
+
+import com.organizer.platform.util.Dates;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Persistent tier of the AI organization cache (see OrganizationCache).
+ * Keeps the organization the AI returned for a piece of content, keyed by the hash of the
+ * content and the prompt, so forwarding the same link, image or PDF again skips the AI call.
+ */
+@Entity
+@Table(name = "ai_organization_cache")
+public class CachedOrganization implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Hex SHA-256 of the prompt fingerprint and the normalized content
+    @Id
+    @Column(length = 64)
+    private String contentHash;
+
+    // When the AI answered, stored in UTC; entries expire after the configured TTL
+    @NotNull
+    @Column(nullable = false, updatable = false)
+    private Date createdAt = Dates.nowUTC();
+
+    @Column(columnDefinition = "TEXT")
+    private String category;
+
+    @Column(columnDefinition = "TEXT")
+    private String subCategory;
+
+    @Column(columnDefinition = "TEXT")
+    private String type;
+
+    @Column(columnDefinition = "TEXT")
+    private String purpose;
+
+    @Column(columnDefinition = "TEXT")
+    private String tags;
+
+    @Column(columnDefinition = "TEXT")
+    private String nextSteps;
+
+    // Input and output tokens of the original AI call, saved again by every hit
+    @Column(nullable = false)
+    private int tokens;
+
+    protected CachedOrganization() {
+    }
+
+    public CachedOrganization(String contentHash, ContentOrganization organization, int tokens) {
+        this.contentHash = contentHash;
+        this.category = organization.getCategory();
+        this.subCategory = organization.getSubCategory();
+        this.type = organization.getType();
+        this.purpose = organization.getPurpose();
+        this.tags = organization.getTags();
+        this.nextSteps = organization.getNextSteps();
+        this.tokens = tokens;
+    }
+
+    /**
+     * @return The cached organization
+     */
+    public ContentOrganization toOrganization() {
+        return ContentOrganization.builder()
+                .category(category)
+                .subCategory(subCategory)
+                .type(type)
+                .purpose(purpose)
+                .tags(tags)
+                .nextSteps(nextSteps)
+                .build();
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getTokens() {
+        return tokens;
+    }
+}
@@ -0,0 +1,123 @@
+package com.organizer.platform.model.AI;
+
+import com.organizer.platform.util.Dates;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * A submission to the Anthropic Message Batches API classifying a backlog of messages
+ * (see BatchClassificationService).
+ * Batches take up to a day to end, so they are kept in the database and polled until their
+ * results are applied, surviving restarts on the way.
+ */
+@Entity
+@Table(name = "ai_classification_batch")
+public class ClassificationBatch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Which messages a batch classifies.
+     */
+    public enum Mode {
+        /** Messages the AI has not organized yet, for example after an outage */
+        PENDING,
+        /** All messages, for example after a prompt change */
+        ALL
+    }
+
+    // ID assigned by the Message Batches API
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @NotNull
+    @Column(nullable = false, updatable = false)
+    private Date createdAt = Dates.nowUTC();
+
+    // Null until the results are applied
+    private Date endedAt;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Mode mode;
+
+    // Highest message ID in the batch; the next batch of the same run continues after it
+    @Column(nullable = false)
+    private long lastMessageId;
+
+    @Column(nullable = false)
+    private int requestCount;
+
+    // Whether more messages follow the last one; the next batch is submitted once this one ends
+    @Column(nullable = false)
+    private boolean moreMessages;
+
+    @Column(nullable = false)
+    private int succeeded;
+
+    @Column(nullable = false)
+    private int failed;
+
+    protected ClassificationBatch() {
+    }
+
+    public ClassificationBatch(String id, Mode mode, long lastMessageId, int requestCount, boolean moreMessages) {
+        this.id = id;
+        this.mode = mode;
+        this.lastMessageId = lastMessageId;
+        this.requestCount = requestCount;
+        this.moreMessages = moreMessages;
+    }
+
+    /**
+     * Marks the batch as ended, once its results are applied.
+     *
+     * @param succeeded Number of messages organized
+     * @param failed Number of requests that failed, expired or were canceled
+     */
+    public void end(int succeeded, int failed) {
+        this.endedAt = Dates.nowUTC();
+        this.succeeded = succeeded;
+        this.failed = failed;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public Date getEndedAt() {
+        return endedAt;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    public boolean hasMoreMessages() {
+        return moreMessages;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+}
@@ -0,0 +1,19 @@
+package com.organizer.platform.model.AI;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Organization of a message as answered by the AI model in its content_organization_schema.
+ * Every field is the trimmed text of its tag, or null if the response did not contain the tag.
+ */
+@Getter
+@Builder
+public class ContentOrganization {
+    private final String category;      // Main category of the content
+    private final String subCategory;   // More specific category
+    private final String type;          // Kind of document or media
+    private final String purpose;       // Main purpose of the content
+    private final String tags;          // Comma separated tags
+    private final String nextSteps;     // Comma separated follow-up actions
+}
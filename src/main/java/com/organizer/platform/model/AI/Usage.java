@@ -6,6 +6,8 @@ import lombok.Getter;
 /**
  * Tracks token usage statistics for AI model interactions.
  * Used for monitoring resource consumption and potentially for billing purposes.
+ * With prompt caching the input tokens are split: inputTokens only counts those after the
+ * last cache breakpoint, the cached prefix is counted as created or read.
  */
 @Getter
 public class Usage {
@@ -14,4 +16,10 @@ public class Usage {
 
     @JsonProperty("output_tokens")
     private Integer outputTokens;    // Number of tokens generated in the response
+
+    @JsonProperty("cache_creation_input_tokens")
+    private Integer cacheCreationInputTokens;   // Input tokens written to the prompt cache
+
+    @JsonProperty("cache_read_input_tokens")
+    private Integer cacheReadInputTokens;       // Input tokens read from the prompt cache
 }
\ No newline at end of file
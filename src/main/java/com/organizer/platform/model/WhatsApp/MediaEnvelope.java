@@ -0,0 +1,22 @@
+package com.organizer.platform.model.WhatsApp;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Lightweight "media pending" envelope handed from the webhook to the media ingestion stage.
+ * It only carries the raw webhook message (media ID, MIME type, filename) and the time it was
+ * received, so the webhook can acknowledge Meta without downloading or uploading anything.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaEnvelope {
+    private Message message;
+    private Date receivedAt;
+}
@@ -37,4 +37,6 @@ public class MessageDTO {
     private Set<String> tags;
     private Set<String> nextSteps;
     private String mime;
+    // ID of the earlier image message this one duplicates, null for original content
+    private Long duplicateOf;
 }
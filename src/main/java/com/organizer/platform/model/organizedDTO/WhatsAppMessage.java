@@ -64,6 +64,16 @@ public class WhatsAppMessage implements Serializable {
     @Column(nullable = false)
     private boolean processed = false;
 
+    // Perceptual hash of an image message, recognizing the same image sent again recompressed or resized
+    private Long imageHash;
+
+    // ID of the earlier image message this image duplicates, whose organization it reuses
+    private Long duplicateOf;
+
+    // ID WhatsApp gave the message, the same when its webhook or queue message is delivered again
+    @Column(unique = true)
+    private String whatsAppMessageId;
+
     @ManyToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JoinTable(
             name = "message_tags",
@@ -172,6 +182,30 @@ public class WhatsAppMessage implements Serializable {
         this.processed = processed;
     }
 
+    public Long getImageHash() {
+        return imageHash;
+    }
+
+    public void setImageHash(Long imageHash) {
+        this.imageHash = imageHash;
+    }
+
+    public Long getDuplicateOf() {
+        return duplicateOf;
+    }
+
+    public void setDuplicateOf(Long duplicateOf) {
+        this.duplicateOf = duplicateOf;
+    }
+
+    public String getWhatsAppMessageId() {
+        return whatsAppMessageId;
+    }
+
+    public void setWhatsAppMessageId(String whatsAppMessageId) {
+        this.whatsAppMessageId = whatsAppMessageId;
+    }
+
     public static final class WhatsAppMessageBuilder {
         private Long id;
         private Date createdAt = Dates.nowUTC();
@@ -183,6 +217,8 @@ public class WhatsAppMessage implements Serializable {
         private String type;
         private String purpose;
         private boolean processed;
+        private Long imageHash;
+        private String whatsAppMessageId;
         private Set<Tag> tags = new HashSet<>();
         private Set<NextStep> nextSteps = new HashSet<>();
 
@@ -243,6 +279,16 @@ public class WhatsAppMessage implements Serializable {
             return this;
         }
 
+        public WhatsAppMessageBuilder imageHash(Long imageHash) {
+            this.imageHash = imageHash;
+            return this;
+        }
+
+        public WhatsAppMessageBuilder whatsAppMessageId(String whatsAppMessageId) {
+            this.whatsAppMessageId = whatsAppMessageId;
+            return this;
+        }
+
         public WhatsAppMessageBuilder tags(Set<Tag> tags) {
             this.tags = tags;
             return this;
@@ -265,6 +311,8 @@ public class WhatsAppMessage implements Serializable {
             whatsAppMessage.setType(type);
             whatsAppMessage.setPurpose(purpose);
             whatsAppMessage.setProcessed(processed);
+            whatsAppMessage.setImageHash(imageHash);
+            whatsAppMessage.setWhatsAppMessageId(whatsAppMessageId);
             whatsAppMessage.setTags(tags);
             whatsAppMessage.setNextSteps(nextSteps);
             return whatsAppMessage;
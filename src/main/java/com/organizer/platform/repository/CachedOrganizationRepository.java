@@ -0,0 +1,31 @@
+package com.organizer.platform.repository;
+
+import com.organizer.platform.model.AI.CachedOrganization;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+/**
+ * Repository interface for the persistent tier of the AI organization cache.
+ *
+ * @see CachedOrganization
+ * @see JpaRepository
+ */
+public interface CachedOrganizationRepository extends JpaRepository<CachedOrganization, String> {
+
+    /**
+     * Deletes the entries created before a given time.
+     *
+     * @param cutoff Entries created before this time are deleted
+     * @return Number of deleted entries
+     * @throws org.springframework.dao.DataAccessException if there's an error accessing the database
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CachedOrganization c WHERE c.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") Date cutoff);
+}
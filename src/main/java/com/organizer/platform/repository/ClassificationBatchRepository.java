@@ -0,0 +1,31 @@
+package com.organizer.platform.repository;
+
+import com.organizer.platform.model.AI.ClassificationBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+/**
+ * Repository interface for the batches submitted to the Message Batches API.
+ *
+ * @see ClassificationBatch
+ * @see JpaRepository
+ */
+public interface ClassificationBatchRepository extends JpaRepository<ClassificationBatch, String> {
+
+    /**
+     * Retrieves the batches whose results are not applied yet, oldest first.
+     *
+     * @return List of open batches
+     * @throws org.springframework.dao.DataAccessException if there's an error accessing the database
+     */
+    List<ClassificationBatch> findByEndedAtIsNullOrderByCreatedAt();
+
+    /**
+     * Retrieves the most recent batches.
+     *
+     * @return List of up to 20 batches, newest first
+     * @throws org.springframework.dao.DataAccessException if there's an error accessing the database
+     */
+    List<ClassificationBatch> findTop20ByOrderByCreatedAtDesc();
+}
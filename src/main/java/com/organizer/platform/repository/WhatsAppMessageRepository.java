@@ -2,6 +2,7 @@ package com.organizer.platform.repository;
 
 import com.organizer.platform.model.organizedDTO.Tag;
 import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -64,4 +65,48 @@ public interface WhatsAppMessageRepository extends JpaRepository<WhatsAppMessage
             "WHERE m.fromNumber = :phoneNumber " +
             "GROUP BY m.messageType")
     List<Object[]> findMessageTypeCountsByPhoneNumber(@Param("phoneNumber") String phoneNumber);
-}
\ No newline at end of file
+
+    /**
+     * Retrieves text messages to classify in a batch, in ID order.
+     *
+     * @param afterId Only messages with a higher ID are returned, to continue a previous page
+     * @param createdBefore Only messages created before this time are returned, leaving recent
+     *                      messages to the processing queues
+     * @param all Whether to return organized messages too, or only those without a category
+     * @param page Maximum number of messages to return
+     * @return List of WhatsAppMessage entities to classify
+     * @throws org.springframework.dao.DataAccessException if there's an error accessing the database
+     */
+    @Query("SELECT m " +
+            "FROM WhatsAppMessage m " +
+            "WHERE m.id > :afterId AND m.messageType = 'text' AND m.createdAt < :createdBefore " +
+            "AND (:all = true OR m.category IS NULL) " +
+            "ORDER BY m.id")
+    List<WhatsAppMessage> findTextMessagesToClassify(@Param("afterId") long afterId,
+                                                     @Param("createdBefore") Date createdBefore,
+                                                     @Param("all") boolean all,
+                                                     Pageable page);
+
+    /**
+     * Retrieves the perceptual hashes of the organized image messages of a phone number, in ID order.
+     *
+     * @param fromNumber The sender's phone number
+     * @return List of Object arrays containing the message ID and its image hash
+     * @throws org.springframework.dao.DataAccessException if there's an error accessing the database
+     */
+    @Query("SELECT m.id, m.imageHash " +
+            "FROM WhatsAppMessage m " +
+            "WHERE m.fromNumber = :fromNumber AND m.imageHash IS NOT NULL AND m.category IS NOT NULL " +
+            "ORDER BY m.id")
+    List<Object[]> findImageHashesByFromNumber(@Param("fromNumber") String fromNumber);
+
+    /**
+     * Retrieves the ID of the message WhatsApp identifies by an ID, saved by an earlier delivery of it.
+     *
+     * @param whatsAppMessageId The ID WhatsApp gave the message
+     * @return The ID of the message, or empty if it was not saved yet
+     * @throws org.springframework.dao.DataAccessException if there's an error accessing the database
+     */
+    @Query("SELECT m.id FROM WhatsAppMessage m WHERE m.whatsAppMessageId = :whatsAppMessageId")
+    Optional<Long> findIdByWhatsAppMessageId(@Param("whatsAppMessageId") String whatsAppMessageId);
+}
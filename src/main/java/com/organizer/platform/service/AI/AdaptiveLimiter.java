@@ -0,0 +1,339 @@
+package com.organizer.platform.service.AI;
+
+import com.organizer.platform.config.AnthropicProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive limit of the concurrent requests to the Anthropic API.
+ * The limit follows AIMD (additive increase, multiplicative decrease): every request that
+ * completes with a healthy latency while the limit is in use adds 1/limit, so the limit grows
+ * by one per round of requests, and an overloaded API cuts it by a factor. Requests over the
+ * limit wait in a FIFO queue instead of failing.
+ * <p>
+ * The limit is cut when:
+ * - the API answers 429 (rate limited) or 529 (overloaded): by backoff-ratio, and no request
+ *   is started until its 'retry-after' time has passed
+ * - a request times out: by backoff-ratio
+ * - latency rises past latency-tolerance times the baseline: by latency-backoff-ratio
+ * The baseline is the lowest recent latency of the requests of the same latency class (model and
+ * kind of content, see AnthropicRequest#getLatencyClass), as a PDF or an image takes far longer
+ * than a short text even when the API is healthy. It creeps up slowly so it follows lasting changes.
+ * Requests that started before the last cut cannot cut the limit again, so a burst of 429s
+ * from one round counts once instead of collapsing the limit to its minimum.
+ * <p>
+ * Metrics:
+ * - ai.limiter.limit: concurrent requests currently allowed
+ * - ai.limiter.in.flight: requests currently running
+ * - ai.limiter.queued: requests waiting for the limit
+ * - ai.limiter.queue.wait: time requests waited for the limit
+ * - ai.limiter.backoffs: cuts of the limit
+ */
+public class AdaptiveLimiter {
+    // Fraction of the distance to a slower sample the latency baseline moves by
+    private static final double BASELINE_DRIFT = 0.01;
+    /** Latency class of the requests that are not classified */
+    public static final String DEFAULT_LATENCY_CLASS = "default";
+
+    private final AnthropicProperties.Limiter settings;
+    private final LongSupplier nanoClock;
+    private final Timer queueWait;
+    private final Counter backoffs;
+
+    // State, guarded by this
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long pausedUntil;
+    // Number of cuts so far; a request can only cut the limit if none happened since it started
+    private long backoffEpoch;
+    // Baseline latency of each latency class
+    private final Map<String, Double> baselineLatencies = new HashMap<>();
+    private boolean wakeUpScheduled;
+
+    public AdaptiveLimiter(AnthropicProperties.Limiter settings, MeterRegistry meterRegistry) {
+        this(settings, meterRegistry, System::nanoTime);
+    }
+
+    AdaptiveLimiter(AnthropicProperties.Limiter settings, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.settings = settings;
+        this.nanoClock = nanoClock;
+        this.limit = Math.max(settings.getMinLimit(), Math.min(settings.getMaxLimit(), settings.getInitialLimit()));
+        this.pausedUntil = nanoClock.getAsLong();
+
+        this.queueWait = meterRegistry.timer("ai.limiter.queue.wait");
+        this.backoffs = meterRegistry.counter("ai.limiter.backoffs");
+        Gauge.builder("ai.limiter.limit", this, AdaptiveLimiter::getLimit).register(meterRegistry);
+        Gauge.builder("ai.limiter.in.flight", this, AdaptiveLimiter::getInFlight).register(meterRegistry);
+        Gauge.builder("ai.limiter.queued", this, AdaptiveLimiter::getQueued).register(meterRegistry);
+    }
+
+    /**
+     * Runs a request of the default latency class, see {@link #execute(String, Supplier)}.
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> request) {
+        return execute(DEFAULT_LATENCY_CLASS, request);
+    }
+
+    /**
+     * Runs a request once the limit allows it, and adapts the limit to its outcome.
+     *
+     * @param latencyClass Requests whose latency is compared with each other
+     * @param request Starts the request
+     * @param <T> Type of the request result
+     * @return Future of the request result
+     */
+    public <T> CompletableFuture<T> execute(String latencyClass, Supplier<CompletableFuture<T>> request) {
+        return acquire(latencyClass).thenCompose(permit -> {
+            CompletableFuture<T> result;
+            try {
+                result = request.get();
+            } catch (RuntimeException e) {
+                permit.ignore();
+                throw e;
+            }
+            return result.whenComplete((value, failure) -> release(permit, failure));
+        });
+    }
+
+    /**
+     * Waits for the limit to allow another request of the default latency class.
+     *
+     * @return Future of the permit, see {@link #acquire(String)}
+     */
+    public CompletableFuture<Permit> acquire() {
+        return acquire(DEFAULT_LATENCY_CLASS);
+    }
+
+    /**
+     * Waits for the limit to allow another request.
+     *
+     * @param latencyClass Requests whose latency is compared with each other
+     * @return Future of the permit to run a request. The permit must be released with the outcome
+     *         of the request.
+     */
+    public CompletableFuture<Permit> acquire(String latencyClass) {
+        Waiter waiter = new Waiter(latencyClass, nanoClock.getAsLong());
+        synchronized (this) {
+            waiters.add(waiter);
+        }
+        dispatch();
+        return waiter.permit;
+    }
+
+    /**
+     * @return Number of concurrent requests currently allowed
+     */
+    public synchronized int getLimit() {
+        return currentLimit();
+    }
+
+    /**
+     * @return Number of requests currently running
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return Number of requests waiting for the limit
+     */
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    private void release(Permit permit, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause()
+                : failure;
+        if (cause == null) {
+            permit.success();
+        } else if (cause instanceof AiServiceException && ((AiServiceException) cause).isOverload()) {
+            permit.overloaded(((AiServiceException) cause).getRetryAfterMs());
+        } else if (cause instanceof HttpTimeoutException) {
+            permit.timedOut();
+        } else {
+            permit.ignore();
+        }
+    }
+
+    /**
+     * Hands out permits to the waiting requests the limit allows, or schedules a wake-up
+     * for the end of a pause.
+     * Permits are completed outside the lock, as completing them starts the requests.
+     */
+    private void dispatch() {
+        List<Permit> ready = new ArrayList<>();
+        synchronized (this) {
+            long pause = pausedUntil - nanoClock.getAsLong();
+            if (pause > 0) {
+                if (!wakeUpScheduled && !waiters.isEmpty()) {
+                    wakeUpScheduled = true;
+                    CompletableFuture.delayedExecutor(pause, TimeUnit.NANOSECONDS).execute(this::wakeUp);
+                }
+            } else {
+                while (!waiters.isEmpty() && inFlight < currentLimit()) {
+                    inFlight++;
+                    ready.add(new Permit(waiters.poll(), backoffEpoch, inFlight >= limit / 2));
+                }
+            }
+        }
+
+        for (Permit permit : ready) {
+            queueWait.record(permit.started - permit.waiter.enqueued, TimeUnit.NANOSECONDS);
+            if (!permit.waiter.permit.complete(permit)) {
+                permit.ignore();
+            }
+        }
+    }
+
+    private void wakeUp() {
+        synchronized (this) {
+            wakeUpScheduled = false;
+        }
+        dispatch();
+    }
+
+    private int currentLimit() {
+        return Math.max(settings.getMinLimit(), (int) limit);
+    }
+
+    /**
+     * Cuts the limit, unless it was already cut after the request started.
+     * Must be called holding the lock.
+     */
+    private void backOff(long epoch, double ratio) {
+        if (epoch != backoffEpoch) {
+            return;
+        }
+        limit = Math.max(settings.getMinLimit(), limit * ratio);
+        backoffEpoch++;
+        backoffs.increment();
+    }
+
+    private static final class Waiter {
+        private final String latencyClass;
+        private final long enqueued;
+        private final CompletableFuture<Permit> permit = new CompletableFuture<>();
+
+        private Waiter(String latencyClass, long enqueued) {
+            this.latencyClass = latencyClass;
+            this.enqueued = enqueued;
+        }
+    }
+
+    /**
+     * Permission to run one request. Released exactly once, with the outcome of the request.
+     */
+    public final class Permit {
+        private final Waiter waiter;
+        private final long started = nanoClock.getAsLong();
+        private final long epoch;
+        // Whether the limit was at least half used when the request started; only then does
+        // its success show the limit can grow
+        private final boolean limitInUse;
+        private boolean released;
+
+        private Permit(Waiter waiter, long epoch, boolean limitInUse) {
+            this.waiter = waiter;
+            this.epoch = epoch;
+            this.limitInUse = limitInUse;
+        }
+
+        /**
+         * The request succeeded: grows the limit, or cuts it if the latency was too high for its class.
+         */
+        public void success() {
+            long latency = nanoClock.getAsLong() - started;
+            synchronized (AdaptiveLimiter.this) {
+                if (!markReleased()) {
+                    return;
+                }
+                inFlight--;
+                Double previous = baselineLatencies.get(waiter.latencyClass);
+                double baselineLatency = previous == null || latency < previous
+                        ? latency
+                        : previous + (latency - previous) * BASELINE_DRIFT;
+                baselineLatencies.put(waiter.latencyClass, baselineLatency);
+
+                if (latency > baselineLatency * settings.getLatencyTolerance()) {
+                    backOff(epoch, settings.getLatencyBackoffRatio());
+                } else if (limitInUse) {
+                    limit = Math.min(settings.getMaxLimit(), limit + 1 / limit);
+                }
+            }
+            dispatch();
+        }
+
+        /**
+         * The API refused the request as rate limited or overloaded: cuts the limit and pauses.
+         *
+         * @param retryAfterMs Wait the API asked for, or -1 to use the default
+         */
+        public void overloaded(long retryAfterMs) {
+            long pause = TimeUnit.MILLISECONDS.toNanos(retryAfterMs >= 0 ? retryAfterMs : settings.getDefaultRetryAfterMs());
+            synchronized (AdaptiveLimiter.this) {
+                if (!markReleased()) {
+                    return;
+                }
+                inFlight--;
+                backOff(epoch, settings.getBackoffRatio());
+                long until = nanoClock.getAsLong() + pause;
+                if (until - pausedUntil > 0) {
+                    pausedUntil = until;
+                }
+            }
+            dispatch();
+        }
+
+        /**
+         * The request missed its deadline: cuts the limit.
+         */
+        public void timedOut() {
+            synchronized (AdaptiveLimiter.this) {
+                if (!markReleased()) {
+                    return;
+                }
+                inFlight--;
+                backOff(epoch, settings.getBackoffRatio());
+            }
+            dispatch();
+        }
+
+        /**
+         * The request failed for a reason unrelated to load: leaves the limit as is.
+         */
+        public void ignore() {
+            synchronized (AdaptiveLimiter.this) {
+                if (!markReleased()) {
+                    return;
+                }
+                inFlight--;
+            }
+            dispatch();
+        }
+
+        private boolean markReleased() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            return true;
+        }
+    }
+}
@@ -2,292 +2,585 @@ package com.organizer.platform.service.AI;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mashape.unirest.http.HttpResponse;
-import com.mashape.unirest.http.Unirest;
-import com.mashape.unirest.http.exceptions.UnirestException;
+import com.organizer.platform.config.AiRoutingProperties;
+import com.organizer.platform.model.AI.Content;
+import com.organizer.platform.model.AI.ContentOrganization;
 import com.organizer.platform.model.AI.Response;
+import com.organizer.platform.model.AI.Usage;
 import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
 import com.organizer.platform.service.WhatsApp.WhatsAppMessageService;
+import com.organizer.platform.util.SingleFlight;
+import com.organizer.platform.util.TokenEstimator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * Service class responsible for processing and organizing different types of content (text, images, PDFs, URLs)
  * using Anthropic's Claude AI models. The service analyzes content and structures it according to predefined
  * organization schemas in Hebrew.
+ * <p>
+ * Every kind of content has an asynchronous method returning a future, completed once the
+ * organized data is set on the message, and a blocking variant for callers that need the
+ * result in place (the JMS listeners, whose transaction must cover the AI call).
+ * Content seen before is organized from the OrganizationCache without an AI call, and concurrent
+ * requests for the same content share a single AI call (metrics ai.requests.in.flight and
+ * ai.requests.coalesced).
+ * <p>
+ * The model and output limit of each request are picked by the ModelRouter from the type and
+ * size of the content (see ai.routing in application properties). An answer that does not follow
+ * the organization schema is sent again to the escalation model of its route, if it has one.
+ * <p>
+ * Answers are streamed (ai.streaming.enabled): each field is published to the
+ * OrganizationUpdates subscribers of the message as soon as its closing tag arrives, and the
+ * rest of the answer is not read once all fields are in. The closing schema tag is also a stop
+ * sequence, so the model ends its answer there instead of generating past the schema.
+ * <p>
+ * PDF documents with a text layer are organized from their text (see PdfTextExtractor), with the
+ * prompt of the documents and routes of their own (type pdf-text); only scanned documents are
+ * sent as PDFs, with the PDF beta.
+ * <p>
+ * Answers are processed on the aiResultExecutor (see AiConfig), not on the IO threads of the
+ * AnthropicClient completing them: parsing, caching and applying an organization reach the database.
+ * <p>
+ * Metrics per type of content (tag type: text, image, pdf, pdf-text, url):
+ * - ai.requests.latency: time of the AI calls, including the wait for the concurrency limit
+ * - ai.prompt.tokens (tag source: uncached, cache_write, cache_read): input tokens by how the
+ *   prompt cache handled them; the share of cache_read is the effectiveness of the cache
  */
+@Slf4j
 @Service
 public class AiService {
-    // API key for authentication with Anthropic's services
-    @Value("${anthropic.api.key}")
-    private String apiKey;
+    private static final String HAIKU = "claude-3-5-haiku-20241022";
+    private static final String SONNET = "claude-3-5-sonnet-20241022";
+    private static final int MAX_TOKENS = 8192;
+    // Cap of the scraped content in a URL request. Content is reduced to a smaller budget when it
+    // is scraped (see ContentReducer); this bounds messages scraped before that, or edited by hand.
+    private static final int MAX_SCRAPED_TOKENS = 8000;
+    private static final String SCHEMA_END = "</content_organization_schema>";
 
-    // Dependencies for JSON processing and WhatsApp message handling
+    // Fixed part of each kind of request, with the system prompts pre-encoded once. Their model
+    // and output limit are the fallback for types without routes.
+    private static final PromptTemplate TEXT_PROMPT =
+            new PromptTemplate(HAIKU, MAX_TOKENS, 0, "prompts/text-system.txt", null);
+    private static final PromptTemplate IMAGE_PROMPT =
+            new PromptTemplate(SONNET, MAX_TOKENS, 0.1, "prompts/image-system.txt", null);
+    private static final PromptTemplate PDF_PROMPT =
+            new PromptTemplate(SONNET, MAX_TOKENS, 0, "prompts/pdf-system.txt", "pdfs-2024-09-25");
+    private static final PromptTemplate PDF_TEXT_PROMPT =
+            new PromptTemplate(HAIKU, MAX_TOKENS, 0, "prompts/pdf-system.txt", null);
+    private static final PromptTemplate URL_PROMPT =
+            new PromptTemplate(HAIKU, MAX_TOKENS, 0, "prompts/url-system.txt", null);
+
+    // Dependencies for the API calls, cached results, JSON processing and WhatsApp message handling
+    private final AnthropicClient anthropicClient;
+    private final OrganizationCache organizationCache;
     private final ObjectMapper objectMapper;
     private final WhatsAppMessageService whatsAppMessageService;
+    // AI calls currently running, by cache key
+    private final SingleFlight<String, Optional<ContentOrganization>> inFlight;
+    private final ModelRouter modelRouter;
+    private final OrganizationUpdates organizationUpdates;
+    private final boolean streaming;
+    private final MeterRegistry meterRegistry;
+    // Runs the processing of the answers, off the IO threads of the client
+    private final Executor resultExecutor;
     @Autowired
-    public AiService(ObjectMapper objectMapper, WhatsAppMessageService whatsAppMessageService) {
+    public AiService(AnthropicClient anthropicClient, OrganizationCache organizationCache,
+                     ObjectMapper objectMapper, WhatsAppMessageService whatsAppMessageService,
+                     AiRoutingProperties routingProperties, OrganizationUpdates organizationUpdates,
+                     @Value("${ai.streaming.enabled:true}") boolean streaming, MeterRegistry meterRegistry,
+                     @Qualifier("aiResultExecutor") Executor resultExecutor) {
+        this.anthropicClient = anthropicClient;
+        this.organizationCache = organizationCache;
         this.objectMapper = objectMapper;
         this.whatsAppMessageService = whatsAppMessageService;
+        this.organizationUpdates = organizationUpdates;
+        this.streaming = streaming;
+        this.inFlight = new SingleFlight<>(meterRegistry, "ai.requests");
+        this.modelRouter = new ModelRouter(routingProperties,
+                Map.of("text", TEXT_PROMPT, "url", URL_PROMPT, "image", IMAGE_PROMPT, "pdf", PDF_PROMPT,
+                        "pdf-text", PDF_TEXT_PROMPT),
+                meterRegistry);
+        this.meterRegistry = meterRegistry;
+        this.resultExecutor = resultExecutor;
     }
 
     /**
      * Processes text content from a WhatsApp message and generates an organized structure using AI analysis.
-     * Uses Claude-3-Haiku model for quick text processing and categorization.
+     * Uses the model of its size route, by default Claude-3-Haiku for quick text processing and categorization.
      *
      * @param whatsAppMessage The message containing text content to be organized
-     * @throws UnirestException If there's an error in the API call
-     * @throws JsonProcessingException If there's an error processing the JSON response
+     * @throws IOException If the API call fails or times out, or its response cannot be parsed
+     * @throws AiServiceException If the AI service answered with an error status
+     */
+    public void generateOrganizationFromText(WhatsAppMessage whatsAppMessage) throws IOException {
+        await(generateOrganizationFromTextAsync(whatsAppMessage));
+    }
+
+    /**
+     * Asynchronous variant of {@link #generateOrganizationFromText}.
+     *
+     * @param whatsAppMessage The message object to store the organized data
+     * @return Future completed once the organized data is set on the message
+     */
+    public CompletableFuture<Void> generateOrganizationFromTextAsync(WhatsAppMessage whatsAppMessage) {
+        ModelRouter.Route route = textRoute(whatsAppMessage);
+        return organize(textKey(route, whatsAppMessage), route,
+                template -> textRequest(template, whatsAppMessage), whatsAppMessage, "text");
+    }
+
+    /**
+     * Processes image content and generates an organized structure using AI analysis.
+     * Uses the model of its size route, by default Claude-3-Sonnet for comprehensive image analysis and categorization.
+     *
+     * @param image The JPEG image content
+     * @param whatsAppMessage The message object to store the organized data
+     * @throws IOException If the API call fails or times out, or its response cannot be parsed
+     * @throws AiServiceException If the AI service answered with an error status
+     */
+    public void generateOrganizationFromImage(byte[] image, WhatsAppMessage whatsAppMessage) throws IOException {
+        await(generateOrganizationFromImageAsync(image, whatsAppMessage));
+    }
+
+    /**
+     * Asynchronous variant of {@link #generateOrganizationFromImage}.
+     *
+     * @param image The JPEG image content
+     * @param whatsAppMessage The message object to store the organized data
+     * @return Future completed once the organized data is set on the message
      */
-    public void generateOrganizationFromText(WhatsAppMessage whatsAppMessage) throws UnirestException, JsonProcessingException {
-        Unirest.setTimeouts(0, 0);
-        HttpResponse<String> response = Unirest.post("https://api.anthropic.com/v1/messages")
-                .header("x-api-key", apiKey)
-                .header("anthropic-version", "2023-06-01")
-                .header("content-type", "application/json")
-                .body("{\n    \"model\": \"claude-3-5-haiku-20241022\",\n    \"max_tokens\": 8192,\n    " +
-                        // System prompt defining the AI's role and output format
-                        "\"temperature\": 0,\n    \"system\": \"You are a precise text organization system that helps users find their content easily." +
-                        " Please organize and classify the content in Hebrew" +
-                        "\\n\\nOutput following this example format:\\n<content_organization_schema>" +
-                        // XML schema definition for content organization
-                        "\\n    <!-- הגדרת הסיווג הראשי של התוכן -->\\n    <primary_classification>" +
-                        "\\n        <category>\\n            <!-- הקטגוריה הראשית של התוכן (למשל: קריירה, חינוך, עסקים) -->" +
-                        "\\n        </category>\\n        <subcategory>" +
-                        "\\n            <!-- תת-קטגוריה ספציפית יותר (למשל: מכתב פנייה, קורות חיים, הצעת עבודה) -->" +
-                        "\\n        </subcategory>\\n    </primary_classification>\\n    \\n    <content_type>" +
-                        "\\n        <type>\\n            <!-- סוג המסמך או התוכן (למשל: מכתב, מצגת, דו\\\"ח, מסמך) -->" +
-                        "\\n        </type>\\n        <purpose>" +
-                        "\\n            <!-- המטרה העיקרית של התוכן (למשל: עסקי, אישי, לימודי) -->\\n        </purpose>" +
-                        "\\n    </content_type>\\n    \\n    <user_metadata>\\n        <tags>" +
-                        "\\n            <!-- תגיות מפתח חדשות, מופרדות על ידי פסיקים, המתארות את התוכן בהתבסס על ניתוח מעמיק של הטקסט -->" +
-                        "\\n        </tags>\\n        <next_steps>\\n            <!-- פעולות המשך נדרשות, מופרדות על ידי פסיקים -->" +
-                        "\\n        </next_steps>\\n    </user_metadata>\\n</content_organization_schema> " +
-                        "\\n\\nDo not add any information beyond the requested XML schema.\",\n    " +
-                        // Message content setup
-                        "\"messages\": [\n      {\n        \"role\": \"user\",\n        \"content\": [\n          " +
-                        "{\n            \"type\": \"text\",\n            \"text\": \"Analyze and organize this content:" +
-                        "\\n\\n<input_text>\\n" + convertToJavaString(whatsAppMessage.getMessageContent()) + " \\n</input_text>" +
-                        "\"\n          }\n        ]\n      }\n    ]\n  }")
-                .asString();
-        if(response.getBody() == null)
-            throw new NullPointerException("Returned null from AI during text organization");
-
-        toWhatsappMessage(response, whatsAppMessage);
+    public CompletableFuture<Void> generateOrganizationFromImageAsync(byte[] image, WhatsAppMessage whatsAppMessage) {
+        ModelRouter.Route route = modelRouter.route("image", image.length);
+        String cacheKey = organizationCache.mediaKey(route.getTemplate(), image);
+        return organize(cacheKey, route, template -> AnthropicRequest.builder(template)
+                        .text("Analyze and organize this image content.")
+                        .media("image", "image/jpeg", image),
+                whatsAppMessage, "image");
     }
 
     /**
-     * Processes image content (in base64 format) and generates an organized structure using AI analysis.
-     * Uses Claude-3-Sonnet model for comprehensive image analysis and categorization.
+     * Processes PDF content and generates an organized structure using AI analysis.
+     * Uses the model of its size route, by default Claude-3-Sonnet, with PDF beta features for document analysis.
      *
-     * @param base64Image The image content in base64 format
+     * @param pdf The PDF content
      * @param whatsAppMessage The message object to store the organized data
-     * @throws UnirestException If there's an error in the API call
-     * @throws JsonProcessingException If there's an error processing the JSON response
+     * @throws IOException If the API call fails or times out, or its response cannot be parsed
+     * @throws AiServiceException If the AI service answered with an error status
      */
-    public void generateOrganizationFromImage(String base64Image, WhatsAppMessage whatsAppMessage) throws UnirestException, JsonProcessingException {
-        Unirest.setTimeouts(0, 0);
-        HttpResponse<String> response = Unirest.post("https://api.anthropic.com/v1/messages")
-                .header("x-api-key", apiKey)
-                .header("anthropic-version", "2023-06-01")
-                .header("content-type", "application/json")
-                .body("{\n    \"model\": \"claude-3-5-sonnet-20241022\",\n    \"max_tokens\": 8192,\n    " +
-                        "\"temperature\": 0.1,\n    \"system\": " +
-                        "\"You are a precise image organization system that helps users find their visual content easily." +
-                        "  Please organize and classify the content in Hebrew" +
-                        "\\n\\nOutput following this schema format:\\n<content_organization_schema>" +
-                        "\\n    <!-- הגדרת הסיווג הראשי של התוכן -->\\n    <primary_classification>\\n        <category>" +
-                        "\\n            <!-- הקטגוריה הראשית של התמונה (למשל: טבע, אומנות, אירועים) -->" +
-                        "\\n        </category>\\n        <subcategory>" +
-                        "\\n            <!-- תת-קטגוריה ספציפית יותר (למשל: נוף, פורטרט, חתונה) -->" +
-                        "\\n        </subcategory>\\n    </primary_classification>\\n\\n    <content_type>" +
-                        "\\n        <type>\\n            <!-- סוג התמונה (למשל: צילום, איור, גרפיקה) -->\\n        </type>" +
-                        "\\n        <purpose>\\n            <!-- המטרה העיקרית של התמונה (למשל: מסחרי, אישי, חינוכי) -->" +
-                        "\\n        </purpose>\\n    </content_type>\\n\\n    <user_metadata>\\n        <tags>" +
-                        "\\n            <!-- תגיות מפתח חדשות, מופרדות על ידי פסיקים, המתארות את התמונה -->\\n        </tags>" +
-                        "\\n        <next_steps>\\n            <!-- פעולות המשך נדרשות, מופרדות על ידי פסיקים -->" +
-                        "\\n        </next_steps>\\n    </user_metadata>\\n</content_organization_schema>" +
-                        "\\n\\nDo not add any information beyond the requested XML schema.\"," +
-                        "\n    \"messages\": [\n      {\n        \"role\": \"user\",\n        \"content\": [" +
-                        "\n          {\n            \"type\": \"text\",\n            \"text\": " +
-                        "\"Analyze and organize this image content." +
-                        "\"\n          },\n          {\n            \"type\": \"image\",\n            \"source\": {\n              " +
-                        "\"type\": \"base64\",\n              \"media_type\": \"image/jpeg\",\n              " +
-                        "\"data\": \"" + base64Image + "\"\n            }\n          }\n        ]\n      }\n    ]\n  }")
-                .asString();
-
-        if(response.getBody() == null)
-            throw new NullPointerException("Returned null from AI during image organization");
-        toWhatsappMessage(response, whatsAppMessage);
+    public void generateOrganizationFromPDF(byte[] pdf, WhatsAppMessage whatsAppMessage) throws IOException {
+        await(generateOrganizationFromPDFAsync(pdf, whatsAppMessage));
     }
 
     /**
-     * Processes PDF content (in base64 format) and generates an organized structure using AI analysis.
-     * Uses Claude-3-Sonnet model with PDF beta features for document analysis.
+     * Asynchronous variant of {@link #generateOrganizationFromPDF}.
      *
-     * @param base64PDF The PDF content in base64 format
+     * @param pdf The PDF content
      * @param whatsAppMessage The message object to store the organized data
-     * @throws UnirestException If there's an error in the API call
-     * @throws JsonProcessingException If there's an error processing the JSON response
+     * @return Future completed once the organized data is set on the message
      */
-    public void generateOrganizationFromPDF(String base64PDF, WhatsAppMessage whatsAppMessage) throws UnirestException, JsonProcessingException {
-        Unirest.setTimeouts(0, 0);
-        HttpResponse<String> response = Unirest.post("https://api.anthropic.com/v1/messages")
-                .header("content-type", "application/json")
-                .header("x-api-key", apiKey)
-                .header("anthropic-version", "2023-06-01")
-                .header("anthropic-beta", "pdfs-2024-09-25")
-                .body("{\n  \"model\": \"claude-3-5-sonnet-20241022\",\n  \"max_tokens\": 8192,\n  \"temperature\": 0,\n  \"system\": \"you are a precise PDF document " +
-                        "organization system that helps users find their document content easily." +
-                        " Please organize and classify the content in Hebrew.\\n\\nOutput following this schema format:" +
-                        "\\n<content_organization_schema>\\n    <!-- הגדרת הסיווג הראשי של התוכן -->\\n    " +
-                        "<primary_classification>\\n        <category>" +
-                        "\\n            <!-- הקטגוריה הראשית של המסמך (למשל: משפטי, פיננסי, טכני) -->\\n        </category>" +
-                        "\\n        <subcategory>\\n            <!-- תת-קטגוריה ספציפית יותר (למשל: חוזה, חשבונית, מדריך) -->" +
-                        "\\n        </subcategory>\\n    </primary_classification>\\n\\n    <content_type>\\n        <type>" +
-                        "\\n            <!-- סוג המסמך (למשל: דוח, טופס, מצגת) -->\\n        </type>\\n        <purpose>" +
-                        "\\n            <!-- המטרה העיקרית של המסמך (למשל: פנימי, לקוח, תיעוד) -->\\n        </purpose>" +
-                        "\\n    </content_type>\\n\\n    <user_metadata>\\n        <tags>" +
-                        "\\n            <!-- תגיות מפתח חדשות, מופרדות על ידי פסיקים, המתארות את המסמך -->\\n        </tags>" +
-                        "\\n        <next_steps>\\n            <!-- פעולות המשך נדרשות, מופרדות על ידי פסיקים -->" +
-                        "\\n        </next_steps>\\n    </user_metadata>\\n</content_organization_schema>" +
-                        "\\n\\nDo not add any information beyond the requested XML schema.\",\n  \"messages\":" +
-                        " [\n    {\n      \"role\": \"user\",\n      \"content\": [\n        {\n          \"type\": " +
-                        "\"document\",\n          \"source\": {\n            \"type\": \"base64\",\n            " +
-                        "\"media_type\": \"application/pdf\",\n            \"data\": \"" + base64PDF +
-                        "\"\n          }\n        },\n        {\n          \"type\": \"text\",\n          " +
-                        "\"text\": \"Analyze and organize this PDF content:\"\n        }\n      ]\n    }\n  ]\n}")
-                .asString();
-
-
-        if(response.getBody() == null)
-            throw new NullPointerException("Returned null from AI during image organization");
-        toWhatsappMessage(response, whatsAppMessage);
+    public CompletableFuture<Void> generateOrganizationFromPDFAsync(byte[] pdf, WhatsAppMessage whatsAppMessage) {
+        ModelRouter.Route route = modelRouter.route("pdf", pdf.length);
+        String cacheKey = organizationCache.mediaKey(route.getTemplate(), pdf);
+        return organize(cacheKey, route, template -> AnthropicRequest.builder(template)
+                        .media("document", "application/pdf", pdf)
+                        .text("Analyze and organize this PDF content:"),
+                whatsAppMessage, "PDF");
+    }
+
+    /**
+     * Processes the text layer of a PDF document and generates an organized structure using AI analysis.
+     * Uses the model of its size route, by default Claude-3-Haiku, with the prompt of the documents.
+     *
+     * @param text The text of the document, as extracted by the PdfTextExtractor
+     * @param whatsAppMessage The message object to store the organized data
+     * @throws IOException If the API call fails or times out, or its response cannot be parsed
+     * @throws AiServiceException If the AI service answered with an error status
+     */
+    public void generateOrganizationFromPDFText(String text, WhatsAppMessage whatsAppMessage) throws IOException {
+        await(generateOrganizationFromPDFTextAsync(text, whatsAppMessage));
+    }
+
+    /**
+     * Asynchronous variant of {@link #generateOrganizationFromPDFText}.
+     *
+     * @param text The text of the document
+     * @param whatsAppMessage The message object to store the organized data
+     * @return Future completed once the organized data is set on the message
+     */
+    public CompletableFuture<Void> generateOrganizationFromPDFTextAsync(String text, WhatsAppMessage whatsAppMessage) {
+        ModelRouter.Route route = modelRouter.route("pdf-text", TokenEstimator.estimate(text));
+        String cacheKey = organizationCache.textKey(route.getTemplate(), text);
+        return organize(cacheKey, route, template -> AnthropicRequest.builder(template)
+                        .text("Analyze and organize this PDF content, extracted from its text layer:\n\n<document>\n"
+                                + text + "\n</document>"),
+                whatsAppMessage, "PDF-text");
     }
 
     /**
      * Processes URL content and its scraped data to generate an organized structure using AI analysis.
-     * Uses Claude-3-Haiku model for efficient web content processing.
+     * Uses the model of its size route, by default Claude-3-Haiku for efficient web content processing.
      *
      * @param whatsAppMessage The message containing URL and scraped content to be organized
-     * @throws UnirestException If there's an error in the API call
-     * @throws JsonProcessingException If there's an error processing the JSON response
+     * @throws IOException If the API call fails or times out, or its response cannot be parsed
+     * @throws AiServiceException If the AI service answered with an error status
+     */
+    public void generateOrganizationFromURL(WhatsAppMessage whatsAppMessage) throws IOException {
+        await(generateOrganizationFromURLAsync(whatsAppMessage));
+    }
+
+    /**
+     * Asynchronous variant of {@link #generateOrganizationFromURL}.
+     *
+     * @param whatsAppMessage The message object to store the organized data
+     * @return Future completed once the organized data is set on the message
+     */
+    public CompletableFuture<Void> generateOrganizationFromURLAsync(WhatsAppMessage whatsAppMessage) {
+        ModelRouter.Route route = urlRoute(whatsAppMessage);
+        return organize(urlKey(route, whatsAppMessage), route,
+                template -> urlRequest(template, whatsAppMessage), whatsAppMessage, "URL");
+    }
+
+    /**
+     * Looks up the cached organization of a text message, for the batch mode.
+     * Like the message processing, a message with scraped content in its purpose is treated as a URL.
+     * Once a message is organized its purpose holds the AI answer, so it is treated as plain text.
+     *
+     * @param whatsAppMessage The text message
+     * @return The cached organization, or empty if the message has to be sent to the AI
+     */
+    public Optional<ContentOrganization> cachedTextOrganization(WhatsAppMessage whatsAppMessage) {
+        return organizationCache.get(hasScrapedContent(whatsAppMessage)
+                ? urlKey(urlRoute(whatsAppMessage), whatsAppMessage)
+                : textKey(textRoute(whatsAppMessage), whatsAppMessage));
+    }
+
+    /**
+     * Builds the AI request organizing a text message, for the batch mode.
+     *
+     * @param whatsAppMessage The text message
+     * @return The request, as it would first be sent by {@link #generateOrganizationFromText} or
+     *         {@link #generateOrganizationFromURL}
+     */
+    public AnthropicRequest textOrganizationRequest(WhatsAppMessage whatsAppMessage) {
+        if (hasScrapedContent(whatsAppMessage)) {
+            return urlRequest(urlRoute(whatsAppMessage).getTemplate(), whatsAppMessage).build();
+        }
+        return textRequest(textRoute(whatsAppMessage).getTemplate(), whatsAppMessage).build();
+    }
+
+    /**
+     * Reads the organization of a text message from the AI response to its request, and caches it.
+     * Must be called before the organization is applied, as that replaces the scraped content.
+     * Answers that do not follow the schema are counted against their route, but not escalated.
+     *
+     * @param whatsAppMessage The text message the request was built from
+     * @param response The AI response
+     * @return The organization, or empty if the response has no content
+     */
+    public Optional<ContentOrganization> textOrganizationOf(WhatsAppMessage whatsAppMessage, Response response) {
+        if (hasScrapedContent(whatsAppMessage)) {
+            ModelRouter.Route route = urlRoute(whatsAppMessage);
+            return organizationOf(response, urlKey(route, whatsAppMessage), "URL", route, route.getTemplate());
+        }
+        ModelRouter.Route route = textRoute(whatsAppMessage);
+        return organizationOf(response, textKey(route, whatsAppMessage), "text", route, route.getTemplate());
+    }
+
+    private ModelRouter.Route textRoute(WhatsAppMessage whatsAppMessage) {
+        return modelRouter.route("text", TokenEstimator.estimate(whatsAppMessage.getMessageContent()));
+    }
+
+    private ModelRouter.Route urlRoute(WhatsAppMessage whatsAppMessage) {
+        return modelRouter.route("url", TokenEstimator.estimate(whatsAppMessage.getMessageContent())
+                + Math.min(MAX_SCRAPED_TOKENS, TokenEstimator.estimate(whatsAppMessage.getPurpose())));
+    }
+
+    private String textKey(ModelRouter.Route route, WhatsAppMessage whatsAppMessage) {
+        return organizationCache.textKey(route.getTemplate(), whatsAppMessage.getMessageContent());
+    }
+
+    private String urlKey(ModelRouter.Route route, WhatsAppMessage whatsAppMessage) {
+        return organizationCache.textKey(route.getTemplate(), whatsAppMessage.getMessageContent(),
+                whatsAppMessage.getPurpose());
+    }
+
+    private static AnthropicRequest.Builder textRequest(PromptTemplate template, WhatsAppMessage whatsAppMessage) {
+        return AnthropicRequest.builder(template)
+                .text("Analyze and organize this content:\n\n<input_text>\n"
+                        + whatsAppMessage.getMessageContent() + " \n</input_text>");
+    }
+
+    private static AnthropicRequest.Builder urlRequest(PromptTemplate template, WhatsAppMessage whatsAppMessage) {
+        return AnthropicRequest.builder(template)
+                .text("Carefully analyze both the input <input> and scraped content <scraped_content> below "
+                        + "to classify and organize the information.\n\n<input>\n" + whatsAppMessage.getMessageContent()
+                        + "\n</input>\n\n<scraped_content>\n"
+                        + TokenEstimator.truncate(whatsAppMessage.getPurpose(), MAX_SCRAPED_TOKENS)
+                        + "\n</scraped_content>");
+    }
+
+    private static boolean hasScrapedContent(WhatsAppMessage whatsAppMessage) {
+        String purpose = whatsAppMessage.getPurpose();
+        return whatsAppMessage.getCategory() == null && purpose != null && !purpose.isBlank();
+    }
+
+    /**
+     * Organizes a message from the cache or, on a miss, with an AI call whose result is cached.
+     * A miss for content whose AI call is already running joins that call instead of starting
+     * another one.
+     *
+     * @param cacheKey Key of the content in the organization cache
+     * @param route Route of the content
+     * @param request Builds the AI request for a template, only called when an AI call is started
+     * @param whatsAppMessage The message object to store the organized data. The fields of a
+     *                        streamed answer are published for the message starting the AI call;
+     *                        messages joining it only get the organization once it is set.
+     * @param contentKind Kind of organized content, for error messages and metrics
+     * @return Future completed once the organized data is set on the message
+     */
+    private CompletableFuture<Void> organize(String cacheKey, ModelRouter.Route route,
+                                             Function<PromptTemplate, AnthropicRequest.Builder> request,
+                                             WhatsAppMessage whatsAppMessage, String contentKind) {
+        Optional<ContentOrganization> cached = organizationCache.get(cacheKey);
+        if (cached.isPresent()) {
+            applyOrganization(whatsAppMessage, cached.get());
+            return CompletableFuture.completedFuture(null);
+        }
+        BiConsumer<String, String> onField =
+                (field, value) -> organizationUpdates.field(whatsAppMessage.getId(), field, value);
+        return inFlight.execute(cacheKey, () -> call(route, route.getTemplate(), request, onField, contentKind, cacheKey))
+                .thenAcceptAsync(organization -> organization
+                        .ifPresent(value -> applyOrganization(whatsAppMessage, value)), resultExecutor);
+    }
+
+    /**
+     * Sends the AI request of a route. An answer that does not follow the schema is sent again,
+     * once, to the escalation model of the route.
+     *
+     * @param route Route of the content
+     * @param template Template to send the request with: the route's or its escalation
+     * @param request Builds the AI request for a template
+     * @param onField Called with every field of a streamed answer once it is complete
+     * @param contentKind Kind of organized content, for error messages and metrics
+     * @param cacheKey Key the organization is cached under
+     * @return Future of the organization, empty if the response has no content
      */
-    public void generateOrganizationFromURL(WhatsAppMessage whatsAppMessage) throws UnirestException, JsonProcessingException {
-        Unirest.setTimeouts(0, 0);
-        HttpResponse<String> response = Unirest.post("https://api.anthropic.com/v1/messages")
-                .header("x-api-key", apiKey)
-                .header("anthropic-version", "2023-06-01")
-                .header("content-type", "application/json")
-                .body("{\n    \"model\": \"claude-3-5-haiku-20241022\",\n    \"max_tokens\": 8192,\n    " +
-                        "\"temperature\": 0,\n    \"system\": \"You are an advanced content organization system" +
-                        " designed to classify and structure Hebrew web content. Your task is to analyze both the" +
-                        " URL and the scraped content of a webpage, then organize this information into a structured" +
-                        " XML format for easy retrieval and management.\\n\\nOutput following this example format:" +
-                        "\\n<content_organization_schema>\\n    <!-- הגדרת הסיווג הראשי של התוכן -->\\n    " +
-                        "<primary_classification>\\n        <category>" +
-                        "\\n            <!-- הקטגוריה הראשית של התוכן (למשל: קריירה, חינוך, עסקים) -->\\n        " +
-                        "</category>\\n        <subcategory>" +
-                        "\\n            <!-- תת-קטגוריה ספציפית יותר (למשל: מכתב פנייה, קורות חיים, הצעת עבודה) -->" +
-                        "\\n        </subcategory>\\n    </primary_classification>\\n    \\n    <content_type>" +
-                        "\\n        <type>\\n            <!-- סוג המסמך או התוכן (למשל: מכתב, מצגת, דו\\\"ח, מסמך) -->" +
-                        "\\n        </type>\\n        <purpose>" +
-                        "\\n            <!-- המטרה העיקרית של התוכן (למשל: עסקי, אישי, לימודי) -->\\n        </purpose>" +
-                        "\\n    </content_type>\\n    \\n    <user_metadata>\\n        <tags>" +
-                        "\\n            <!-- תגיות מפתח חדשות, מופרדות בפסיקים, המתארות את התוכן בהתבסס על ניתוח מעמיק של הטקסט -->" +
-                        "\\n        </tags>\\n        <next_steps>\\n            <!-- פעולות המשך נדרשות, המופרדות בפסיקים -->" +
-                        "\\n        </next_steps>\\n    </user_metadata>\\n</content_organization_schema>" +
-                        "\\n\\nDo not add any information beyond what is requested in the XML schema." +
-                        "\",\n    \"messages\": [\n      {\n        \"role\": \"user\",\n        \"content\": [" +
-                        "\n          {\n            \"type\": \"text\",\n            \"text\": " +
-                        "\"Carefully analyze both the input <input> and scraped content <scraped_content> below " +
-                        "to classify and organize the information.\\n\\n<input>\\n" + convertToJavaString(whatsAppMessage.getMessageContent()) +
-                        "\\n</input>\\n\\n<scraped_content>\\n" + convertToJavaString(whatsAppMessage.getPurpose()) +
-                        "\\n</scraped_content>\"\n          }\n        ]\n      }\n    ]\n  }")
-                .asString();
-
-        if(response.getBody() == null)
-            throw new NullPointerException("Returned null from AI during URL organization");
-        toWhatsappMessage(response, whatsAppMessage);
+    private CompletableFuture<Optional<ContentOrganization>> call(ModelRouter.Route route, PromptTemplate template,
+                                                                  Function<PromptTemplate, AnthropicRequest.Builder> request,
+                                                                  BiConsumer<String, String> onField,
+                                                                  String contentKind, String cacheKey) {
+        AnthropicRequest.Builder aiRequest = request.apply(template);
+        CompletableFuture<Optional<ContentOrganization>> answer;
+        if (streaming) {
+            OrganizationSchemaParser fields = OrganizationSchemaParser.incremental(onField);
+            answer = anthropicClient.streamMessage(aiRequest.stopSequence(SCHEMA_END).stream().build(),
+                            piece -> !fields.append(piece))
+                    .whenComplete(latencyRecorder(contentKind, route, template))
+                    .thenApplyAsync(response -> organizationOf(response, cacheKey, contentKind, route, template),
+                            resultExecutor);
+        } else {
+            answer = anthropicClient.createMessage(aiRequest.build())
+                    .whenComplete(latencyRecorder(contentKind, route, template))
+                    .thenApplyAsync(body -> toOrganization(body, contentKind, cacheKey, route, template),
+                            resultExecutor);
+        }
+        return answer.thenCompose(organization -> {
+            PromptTemplate escalation = route.getEscalation();
+            if (escalation != null && template != escalation && !isComplete(organization)) {
+                route.recordEscalation();
+                return call(route, escalation, request, onField, contentKind, cacheKey);
+            }
+            return CompletableFuture.completedFuture(organization);
+        });
     }
 
     /**
-     * Processes the AI response and updates the WhatsApp message with organized content.
+     * Waits for an asynchronous organization, rethrowing its failure as thrown by the request.
+     *
+     * @param organization Future of the organization
+     * @throws IOException If the API call fails or times out, or its response cannot be parsed
+     */
+    private static void await(CompletableFuture<Void> organization) throws IOException {
+        try {
+            organization.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Processes the AI response into the organization of the content, and caches it.
      * Extracts category, subcategory, type, purpose, tags, and next steps from the XML response.
+     * Runs once per AI call, however many messages share it.
      *
-     * @param response The HTTP response from the AI service
-     * @param whatsAppMessage The message object to update with organized data
-     * @throws JsonProcessingException If there's an error processing the JSON response
+     * @param responseBody The JSON body of the AI service response
+     * @param contentKind Kind of organized content, for error messages
+     * @param cacheKey Key the organization is cached under
+     * @param route Route of the content, for metrics
+     * @param template Template the request was sent with, for metrics
+     * @return The organization, or empty if the response has no content
+     * @throws CompletionException Wrapping an IOException if the response has no body, retried as a
+     *         transient failure, or a JsonProcessingException if it cannot be parsed
      */
-    private void toWhatsappMessage(HttpResponse<String> response, WhatsAppMessage whatsAppMessage) throws JsonProcessingException {
+    private Optional<ContentOrganization> toOrganization(String responseBody, String contentKind, String cacheKey,
+                                                         ModelRouter.Route route, PromptTemplate template) {
+        if (responseBody == null) {
+            throw new CompletionException(
+                    new IOException("AI returned no response body during " + contentKind + " organization"));
+        }
         try {
-            Response res = objectMapper.readValue(response.getBody(), Response.class);
-
-            if (res.getContent().isEmpty())
-                return;
-            String content = res.getContent().get(0).getText();
-
-            // Extract all fields into the message entity
-            whatsAppMessage.setCategory(extractFromXMLContent(content, "category"));
-            whatsAppMessage.setSubCategory(extractFromXMLContent(content, "subcategory"));
-            whatsAppMessage.setType(extractFromXMLContent(content, "type"));
-            whatsAppMessage.setPurpose(extractFromXMLContent(content, "purpose"));
-
-            // Add tags and next steps if we have any
-            addTagsAndNextSteps(whatsAppMessage, content);
-        } catch (NullPointerException e){
-            System.out.println("Error is: " + e.getMessage());
+            return organizationOf(objectMapper.readValue(responseBody, Response.class), cacheKey, contentKind,
+                    route, template);
+        } catch (JsonProcessingException e) {
+            throw new CompletionException(e);
         }
     }
 
+    private Optional<ContentOrganization> organizationOf(Response res, String cacheKey, String contentKind,
+                                                         ModelRouter.Route route, PromptTemplate template) {
+        recordUsage(contentKind, res.getUsage());
+        route.recordUsage(template, res.getUsage());
+        Optional<ContentOrganization> organization = Optional.empty();
+        Optional<String> text = textOf(res);
+        if (text.isPresent()) {
+            // Extract all fields of the schema
+            organization = Optional.of(OrganizationSchemaParser.parse(text.get()));
+        } else {
+            log.warn("AI answer of {} organization has no text content (stop reason {})",
+                    contentKind, res.getStopReason());
+        }
+
+        boolean complete = isComplete(organization);
+        route.recordAnswer(template, complete);
+        // Only complete answers are reused
+        if (complete) {
+            organizationCache.put(cacheKey, organization.get(), tokensOf(res));
+        }
+        return organization;
+    }
+
     /**
-     * Adds tags and next steps to the WhatsApp message using the WhatsApp message service.
+     * @return The text of the first text block of an AI response, or empty if it has none
+     */
+    private static Optional<String> textOf(Response response) {
+        if (response.getContent() == null) {
+            return Optional.empty();
+        }
+        return response.getContent().stream()
+                .filter(content -> content != null && content.getText() != null)
+                .map(Content::getText)
+                .findFirst();
+    }
+
+    /**
+     * @return Whether the organization holds at least a category, as every answer following the schema does
+     */
+    private static boolean isComplete(Optional<ContentOrganization> organization) {
+        return organization.isPresent() && organization.get().getCategory() != null;
+    }
+
+    /**
+     * Sets an organization on the WhatsApp message.
      *
      * @param whatsAppMessage The message to update
-     * @param content The XML content containing tags and next steps
+     * @param organization The organization of its content
      */
-    private void addTagsAndNextSteps(WhatsAppMessage whatsAppMessage, String content) {
-        String tagsContent = extractFromXMLContent(content, "tags");
-        String nextStepsContent = (extractFromXMLContent(content, "next_steps"));
-        assert tagsContent != null;
-        assert nextStepsContent != null;
-        whatsAppMessageService.addTagsAndNextSteps(whatsAppMessage, tagsContent, nextStepsContent);
+    public void applyOrganization(WhatsAppMessage whatsAppMessage, ContentOrganization organization) {
+        whatsAppMessage.setCategory(organization.getCategory());
+        whatsAppMessage.setSubCategory(organization.getSubCategory());
+        whatsAppMessage.setType(organization.getType());
+        whatsAppMessage.setPurpose(organization.getPurpose());
+
+        addTagsAndNextSteps(whatsAppMessage, organization);
+        organizationUpdates.organized(whatsAppMessage.getId(), organization);
+    }
+
+    private static int tokensOf(Response response) {
+        Usage usage = response.getUsage();
+        if (usage == null) {
+            return 0;
+        }
+        return count(usage.getInputTokens()) + count(usage.getCacheCreationInputTokens())
+                + count(usage.getCacheReadInputTokens()) + count(usage.getOutputTokens());
+    }
+
+    private static int count(Integer tokens) {
+        return tokens != null ? tokens : 0;
     }
 
     /**
-     * Extracts content from XML tags using regex pattern matching.
+     * Starts timing an AI call.
      *
-     * @param content The XML content to parse
-     * @param xmlName The name of the XML tag to extract
-     * @return The content between the specified XML tags, or null if not found
+     * @param contentKind Kind of organized content
+     * @param route Route of the content
+     * @param template Template the request is sent with
+     * @return Callback recording the latency, per type and per route, once the call completes
      */
-    private String extractFromXMLContent(String content, String xmlName) {
-        Pattern pattern = Pattern.compile("<" + xmlName + ">(.*?)</" + xmlName + ">", Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(content);
+    private <T> BiConsumer<T, Throwable> latencyRecorder(String contentKind, ModelRouter.Route route,
+                                                         PromptTemplate template) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return (result, failure) -> {
+            sample.stop(meterRegistry.timer("ai.requests.latency", "type", contentKind.toLowerCase()));
+            sample.stop(route.latency(template));
+        };
+    }
 
-        return matcher.find() ? matcher.group(1).trim() : null;
+    /**
+     * Records the input tokens of an AI call by how the prompt cache handled them.
+     */
+    private void recordUsage(String contentKind, Usage usage) {
+        if (usage == null) {
+            return;
+        }
+        String type = contentKind.toLowerCase();
+        meterRegistry.counter("ai.prompt.tokens", "type", type, "source", "uncached")
+                .increment(count(usage.getInputTokens()));
+        meterRegistry.counter("ai.prompt.tokens", "type", type, "source", "cache_write")
+                .increment(count(usage.getCacheCreationInputTokens()));
+        meterRegistry.counter("ai.prompt.tokens", "type", type, "source", "cache_read")
+                .increment(count(usage.getCacheReadInputTokens()));
     }
 
     /**
-     * Converts a string to a Java-escaped string format, handling special characters.
+     * Adds tags and next steps to the WhatsApp message using the WhatsApp message service.
+     * An organization without them is still applied; they are logged as missing.
      *
-     * @param input The input string to convert
-     * @return The escaped string, or null if input is null
+     * @param whatsAppMessage The message to update
+     * @param organization The organization containing tags and next steps
      */
-    private static String convertToJavaString(String input) {
-        if (input == null) {
-            return null;
+    private void addTagsAndNextSteps(WhatsAppMessage whatsAppMessage, ContentOrganization organization) {
+        String tagsContent = organization.getTags();
+        String nextStepsContent = organization.getNextSteps();
+        if (StringUtils.isBlank(tagsContent)) {
+            log.warn("Organization of message {} has no tags", whatsAppMessage.getId());
+        }
+        if (StringUtils.isBlank(nextStepsContent)) {
+            log.warn("Organization of message {} has no next steps", whatsAppMessage.getId());
+        }
+        if (StringUtils.isNotBlank(tagsContent) || StringUtils.isNotBlank(nextStepsContent)) {
+            whatsAppMessageService.addTagsAndNextSteps(whatsAppMessage, tagsContent, nextStepsContent);
         }
-
-        return input
-                .replace("\\", "\\\\") // Must be first to avoid double-escaping
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\"", "\\\"")
-                .replace("\t", "\\t");
     }
 }
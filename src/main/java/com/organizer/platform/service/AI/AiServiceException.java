@@ -0,0 +1,51 @@
+package com.organizer.platform.service.AI;
+
+/**
+ * Thrown when the Anthropic API answers with an error status.
+ * The status is kept so callers can tell transient failures (overload, rate limit)
+ * from requests that will never succeed.
+ */
+public class AiServiceException extends RuntimeException {
+    private final int status;
+    private final long retryAfterMs;
+
+    /**
+     * @param status HTTP status of the response
+     * @param body Body of the error response
+     */
+    public AiServiceException(int status, String body) {
+        this(status, body, -1);
+    }
+
+    /**
+     * @param status HTTP status of the response
+     * @param body Body of the error response
+     * @param retryAfterMs Wait the API asked for in its 'retry-after' header, or -1 if none
+     */
+    public AiServiceException(int status, String body, long retryAfterMs) {
+        super("AI request failed with status " + status + ": " + body);
+        this.status = status;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    /**
+     * @return HTTP status of the failed response
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return Wait in milliseconds the API asked for before the next request, or -1 if none
+     */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    /**
+     * @return Whether the API refused the request for being rate limited (429) or overloaded (529)
+     */
+    public boolean isOverload() {
+        return status == 429 || status == 529;
+    }
+}
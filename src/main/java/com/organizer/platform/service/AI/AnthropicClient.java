@@ -0,0 +1,373 @@
+package com.organizer.platform.service.AI;
+
+import com.organizer.platform.config.AnthropicProperties;
+import com.organizer.platform.model.AI.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Non-blocking client of the Anthropic Messages API.
+ * Built on a single shared {@link HttpClient}, which keeps connections alive in a pool and
+ * negotiates HTTP/2 when the server supports it. Requests are sent asynchronously: a caller
+ * gets a {@link CompletableFuture} right away, and a small thread pool completes the futures
+ * as responses arrive, so many requests can be in flight at once.
+ * <p>
+ * Every request has three deadlines:
+ * - connect: establishing a connection
+ * - read: receiving the response headers once the request is sent
+ * - total: the whole exchange, including the response body
+ * A request that misses a deadline fails with {@link HttpTimeoutException} and is aborted.
+ * <p>
+ * Concurrency is limited by an {@link AdaptiveLimiter}, which backs off when the API answers
+ * 429/529 or slows down, honoring its 'retry-after' header. Requests over the limit are queued.
+ * The deadlines start once a request leaves the queue.
+ * <p>
+ * Answers can also be streamed ({@link #streamMessage}), so callers read them as they are
+ * generated and stop reading once they have what they need.
+ * <p>
+ * The client also covers the Message Batches API, used to classify backlogs without taking
+ * from the interactive capacity (see BatchClassificationService).
+ */
+@Component
+public class AnthropicClient {
+    private static final String MESSAGES_PATH = "/v1/messages";
+    private static final String BATCHES_PATH = "/v1/messages/batches";
+
+    private final AnthropicProperties properties;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final URI messagesUri;
+    private final URI batchesUri;
+    private final AdaptiveLimiter limiter;
+
+    @Autowired
+    public AnthropicClient(AnthropicProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.limiter = new AdaptiveLimiter(properties.getLimiter(), meterRegistry);
+        this.executor = Executors.newFixedThreadPool(properties.getIoThreads(), threadFactory());
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(properties.getConnectTimeoutMs()))
+                .executor(executor)
+                .build();
+        this.messagesUri = URI.create(stripTrailingSlash(properties.getBaseUrl()) + MESSAGES_PATH);
+        this.batchesUri = URI.create(stripTrailingSlash(properties.getBaseUrl()) + BATCHES_PATH);
+    }
+
+    /**
+     * Sends a request to the Messages API.
+     *
+     * @param request The serialized request
+     * @return Future of the JSON response body. It fails with {@link AiServiceException} if the API
+     *         answers with an error status, or with an IOException if the request itself fails.
+     */
+    public CompletableFuture<String> createMessage(AnthropicRequest request) {
+        return send(request.bodyPublisher(), request.getBetaFeature(), request.getLatencyClass());
+    }
+
+    /**
+     * Sends a request given as a JSON string to the Messages API.
+     *
+     * @param requestBody JSON body of the request
+     * @return Future of the JSON response body, see {@link #createMessage(AnthropicRequest)}
+     */
+    public CompletableFuture<String> createMessage(String requestBody) {
+        return createMessage(requestBody, null);
+    }
+
+    /**
+     * Sends a request given as a JSON string to the Messages API with a beta feature enabled.
+     *
+     * @param requestBody JSON body of the request
+     * @param betaFeature Value of the 'anthropic-beta' header, or null for none
+     * @return Future of the JSON response body, see {@link #createMessage(AnthropicRequest)}
+     */
+    public CompletableFuture<String> createMessage(String requestBody, String betaFeature) {
+        return send(HttpRequest.BodyPublishers.ofString(requestBody), betaFeature,
+                AdaptiveLimiter.DEFAULT_LATENCY_CLASS);
+    }
+
+    private CompletableFuture<String> send(HttpRequest.BodyPublisher body, String betaFeature, String latencyClass) {
+        return limiter.execute(latencyClass, () -> exchange(body, betaFeature));
+    }
+
+    /**
+     * Sends a request to the Messages API and reads the answer as the API streams it, as
+     * server-sent events (see MessageStreamParser). The request must be built with
+     * {@link AnthropicRequest.Builder#stream()}.
+     * <p>
+     * Once the listener returns false the rest of the stream is abandoned: the exchange is
+     * cancelled, which closes the connection (or resets the HTTP/2 stream) instead of reading
+     * on to the end of the answer.
+     *
+     * @param request The serialized request
+     * @param onText Called with every piece of the answer text as it arrives, on a client thread;
+     *               returns false to stop reading
+     * @return Future of the answer read. It fails like {@link #createMessage(AnthropicRequest)},
+     *         and with {@link AiServiceException} if the stream reports an error.
+     */
+    public CompletableFuture<Response> streamMessage(AnthropicRequest request, Predicate<String> onText) {
+        HttpRequest.Builder httpRequest = request(messagesUri)
+                .POST(request.bodyPublisher())
+                .header("accept", "text/event-stream");
+        if (request.getBetaFeature() != null) {
+            httpRequest.header("anthropic-beta", request.getBetaFeature());
+        }
+        HttpResponse.BodyHandler<Response> bodyHandler = info -> info.statusCode() == 200
+                ? new MessageStreamSubscriber(new MessageStreamParser(onText))
+                : HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8),
+                        body -> {
+                            throw new AiServiceException(info.statusCode(), body, retryAfterMs(info.headers()));
+                        });
+        // Error statuses fail in the body handler, so the error body is never read from an answer
+        return limiter.execute(request.getLatencyClass(), () -> exchange(httpRequest, bodyHandler, response -> ""));
+    }
+
+    /**
+     * Submits a batch of requests to the Message Batches API.
+     * Batches are processed by the API within 24 hours, apart from the interactive requests, so
+     * they bypass the adaptive limit.
+     *
+     * @param requestBody JSON body of the batch, holding its requests
+     * @return Future of the JSON batch object
+     */
+    public CompletableFuture<String> createMessageBatch(String requestBody) {
+        return exchange(request(batchesUri).POST(HttpRequest.BodyPublishers.ofString(requestBody)),
+                HttpResponse.BodyHandlers.ofString(), body -> body);
+    }
+
+    /**
+     * Retrieves the status of a batch from the Message Batches API.
+     *
+     * @param batchId ID of the batch
+     * @return Future of the JSON batch object
+     */
+    public CompletableFuture<String> retrieveMessageBatch(String batchId) {
+        return exchange(request(batchUri(batchId, "")).GET(),
+                HttpResponse.BodyHandlers.ofString(), body -> body);
+    }
+
+    /**
+     * Streams the results of an ended batch from the Message Batches API.
+     *
+     * @param batchId ID of the batch
+     * @return Future of the result lines, one JSON object per request. The stream must be closed.
+     */
+    public CompletableFuture<Stream<String>> messageBatchResults(String batchId) {
+        return exchange(request(batchUri(batchId, "/results")).GET(),
+                HttpResponse.BodyHandlers.ofLines(), lines -> lines.collect(Collectors.joining("\n")));
+    }
+
+    private CompletableFuture<String> exchange(HttpRequest.BodyPublisher body, String betaFeature) {
+        HttpRequest.Builder request = request(messagesUri).POST(body);
+        if (betaFeature != null) {
+            request.header("anthropic-beta", betaFeature);
+        }
+        return exchange(request, HttpResponse.BodyHandlers.ofString(), responseBody -> responseBody);
+    }
+
+    private HttpRequest.Builder request(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(properties.getReadTimeoutMs()))
+                .header("x-api-key", properties.getKey())
+                .header("anthropic-version", properties.getVersion())
+                .header("content-type", "application/json");
+    }
+
+    private URI batchUri(String batchId, String suffix) {
+        return URI.create(batchesUri + "/" + URLEncoder.encode(batchId, StandardCharsets.UTF_8) + suffix);
+    }
+
+    /**
+     * Sends a request with the deadlines applied, failing on error statuses.
+     *
+     * @param request The request to send
+     * @param bodyHandler Handler of the response body
+     * @param errorBody Reads the body of an error response as text
+     * @return Future of the response body
+     */
+    private <T> CompletableFuture<T> exchange(HttpRequest.Builder request, HttpResponse.BodyHandler<T> bodyHandler,
+                                              Function<T, String> errorBody) {
+        CompletableFuture<HttpResponse<T>> exchange = httpClient.sendAsync(request.build(), bodyHandler);
+        return exchange.copy()
+                .orTimeout(properties.getTotalTimeoutMs(), TimeUnit.MILLISECONDS)
+                .handle((response, failure) -> {
+                    if (failure != null) {
+                        exchange.cancel(true);
+                        throw new CompletionException(translate(failure));
+                    }
+                    if (response.statusCode() != 200) {
+                        throw new AiServiceException(response.statusCode(), errorBody.apply(response.body()),
+                                retryAfterMs(response.headers()));
+                    }
+                    return response.body();
+                });
+    }
+
+    /**
+     * @return The adaptive limit of concurrent requests
+     */
+    public AdaptiveLimiter getLimiter() {
+        return limiter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Unwraps a failure of the exchange, reporting a missed total deadline as a timeout.
+     */
+    private Throwable translate(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause()
+                : failure;
+        if (cause instanceof TimeoutException) {
+            return new HttpTimeoutException("Request exceeded the total deadline of "
+                    + properties.getTotalTimeoutMs() + " ms");
+        }
+        return cause;
+    }
+
+    /**
+     * Reads the 'retry-after' header, given either in seconds or as an HTTP date.
+     *
+     * @return Wait in milliseconds, or -1 if the header is missing or invalid
+     */
+    static long retryAfterMs(HttpHeaders headers) {
+        String retryAfter = headers.firstValue("retry-after").orElse(null);
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, (long) (Double.parseDouble(retryAfter.trim()) * 1000));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+            } catch (DateTimeParseException invalid) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Feeds the lines of a streamed answer to its parser, and completes with the answer once the
+     * stream ends or the parser stops reading, cancelling the rest of the stream.
+     */
+    private static final class MessageStreamSubscriber implements HttpResponse.BodySubscriber<Response> {
+        private final MessageStreamParser parser;
+        private final CompletableFuture<Response> answer = new CompletableFuture<>();
+        private final HttpResponse.BodySubscriber<Void> lines;
+        private volatile Flow.Subscription subscription;
+
+        MessageStreamSubscriber(MessageStreamParser parser) {
+            this.parser = parser;
+            this.lines = HttpResponse.BodySubscribers.fromLineSubscriber(new LineSubscriber(), lines -> null,
+                    StandardCharsets.UTF_8, null);
+        }
+
+        @Override
+        public CompletionStage<Response> getBody() {
+            return answer;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            lines.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            lines.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            lines.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            lines.onComplete();
+        }
+
+        private void finish() {
+            try {
+                answer.complete(parser.finish());
+            } catch (Exception e) {
+                answer.completeExceptionally(e);
+            }
+        }
+
+        private final class LineSubscriber implements Flow.Subscriber<String> {
+            @Override
+            public void onSubscribe(Flow.Subscription lineSubscription) {
+                subscription = lineSubscription;
+                lineSubscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(String line) {
+                if (answer.isDone()) {
+                    return;
+                }
+                try {
+                    if (!parser.line(line)) {
+                        finish();
+                        subscription.cancel();
+                    }
+                } catch (Exception e) {
+                    answer.completeExceptionally(e);
+                    subscription.cancel();
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                answer.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                if (!answer.isDone()) {
+                    finish();
+                }
+            }
+        }
+    }
+
+    private static CustomizableThreadFactory threadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("anthropic-http-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
@@ -0,0 +1,329 @@
+package com.organizer.platform.service.AI;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serialized body of a request to the Messages API.
+ * The body is written once with Jackson's streaming generator into a buffer sized up front:
+ * the system prompt is copied from its pre-encoded template, user text is escaped while it is
+ * written, and media is base64 encoded on the fly from its raw bytes. The buffer is then
+ * handed to the HTTP client as is, so a request holds a single copy of its payload.
+ * <p>
+ * The system prompt is sent as a text block marked for prompt caching, so the API can reuse
+ * its processed form across requests instead of billing and processing it every time. The
+ * API only caches prompts above a per-model minimum length, and silently skips shorter ones;
+ * the cache token counts of the responses show whether it applies (see AiService).
+ * <p>
+ * A streamed request asks for the answer as server-sent events, see
+ * {@link AnthropicClient#streamMessage}.
+ * <p>
+ * Usage:
+ * <pre>
+ * AnthropicRequest request = AnthropicRequest.builder(template)
+ *         .text("Analyze and organize this image content.")
+ *         .media("image", "image/jpeg", imageBytes)
+ *         .build();
+ * </pre>
+ */
+public final class AnthropicRequest {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final SerializedString MODEL = new SerializedString("model");
+    private static final SerializedString MAX_TOKENS = new SerializedString("max_tokens");
+    private static final SerializedString TEMPERATURE = new SerializedString("temperature");
+    private static final SerializedString SYSTEM = new SerializedString("system");
+    private static final SerializedString MESSAGES = new SerializedString("messages");
+    private static final SerializedString ROLE = new SerializedString("role");
+    private static final SerializedString USER = new SerializedString("user");
+    private static final SerializedString CONTENT = new SerializedString("content");
+    private static final SerializedString TYPE = new SerializedString("type");
+    private static final SerializedString TEXT = new SerializedString("text");
+    private static final SerializedString SOURCE = new SerializedString("source");
+    private static final SerializedString BASE64 = new SerializedString("base64");
+    private static final SerializedString MEDIA_TYPE = new SerializedString("media_type");
+    private static final SerializedString DATA = new SerializedString("data");
+    private static final SerializedString CACHE_CONTROL = new SerializedString("cache_control");
+    private static final SerializedString EPHEMERAL = new SerializedString("ephemeral");
+    private static final SerializedString STOP_SEQUENCES = new SerializedString("stop_sequences");
+    private static final SerializedString STREAM = new SerializedString("stream");
+
+    /** Room for the JSON structure around the content */
+    private static final int STRUCTURE_BYTES = 512;
+
+    private final byte[] body;
+    private final int length;
+    private final String betaFeature;
+    private final boolean stream;
+    private final String latencyClass;
+
+    private AnthropicRequest(byte[] body, int length, String betaFeature, boolean stream, String latencyClass) {
+        this.body = body;
+        this.length = length;
+        this.betaFeature = betaFeature;
+        this.stream = stream;
+        this.latencyClass = latencyClass;
+    }
+
+    /**
+     * Starts a request from a prompt template.
+     *
+     * @param template Model, settings and system prompt of the request
+     * @return Builder of the user message content
+     */
+    public static Builder builder(PromptTemplate template) {
+        return new Builder(template);
+    }
+
+    /**
+     * @return Publisher of the body, reading the serialized buffer without copying it
+     */
+    public HttpRequest.BodyPublisher bodyPublisher() {
+        return HttpRequest.BodyPublishers.ofByteArray(body, 0, length);
+    }
+
+    /**
+     * @return Size of the body in bytes
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return Value of the 'anthropic-beta' header, or null for none
+     */
+    public String getBetaFeature() {
+        return betaFeature;
+    }
+
+    /**
+     * @return Whether the answer is requested as a stream of server-sent events
+     */
+    public boolean isStream() {
+        return stream;
+    }
+
+    /**
+     * @return Model and kind of content of the request (its first media block type, or text), as
+     *         'model/kind'. Requests of the same class take comparable time (see AdaptiveLimiter).
+     */
+    public String getLatencyClass() {
+        return latencyClass;
+    }
+
+    /**
+     * @return The body as a string, for logging and tests
+     */
+    public String toJson() {
+        return new String(body, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds the content of the user message, block by block.
+     * Media is kept by reference until {@link #build()} serializes the request.
+     */
+    public static final class Builder {
+        private final PromptTemplate template;
+        private final List<ContentBlock> blocks = new ArrayList<>();
+        private final List<String> stopSequences = new ArrayList<>();
+        private boolean stream;
+
+        private Builder(PromptTemplate template) {
+            this.template = template;
+        }
+
+        /**
+         * Adds a sequence that ends the answer once the model generates it.
+         * The sequence itself is not part of the answer.
+         *
+         * @param stopSequence The sequence
+         * @return this builder
+         */
+        public Builder stopSequence(String stopSequence) {
+            stopSequences.add(stopSequence);
+            return this;
+        }
+
+        /**
+         * Requests the answer as a stream of server-sent events.
+         *
+         * @return this builder
+         */
+        public Builder stream() {
+            this.stream = true;
+            return this;
+        }
+
+        /**
+         * Adds a text block.
+         *
+         * @param text The text, escaped during serialization
+         * @return this builder
+         */
+        public Builder text(String text) {
+            blocks.add(new ContentBlock("text", text, null, null));
+            return this;
+        }
+
+        /**
+         * Adds a base64 media block.
+         *
+         * @param type Block type, 'image' or 'document'
+         * @param mediaType MIME type of the media
+         * @param data Raw media bytes, base64 encoded during serialization
+         * @return this builder
+         */
+        public Builder media(String type, String mediaType, byte[] data) {
+            blocks.add(new ContentBlock(type, null, mediaType, data));
+            return this;
+        }
+
+        /**
+         * Serializes the request.
+         *
+         * @return The serialized request
+         */
+        public AnthropicRequest build() {
+            BodyBuffer buffer = new BodyBuffer(estimateLength());
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(buffer, JsonEncoding.UTF8)) {
+                generator.writeStartObject();
+                generator.writeFieldName(MODEL);
+                generator.writeString(template.getModel());
+                generator.writeFieldName(MAX_TOKENS);
+                generator.writeNumber(template.getMaxTokens());
+                generator.writeFieldName(TEMPERATURE);
+                generator.writeNumber(template.getTemperature());
+                generator.writeFieldName(SYSTEM);
+                generator.writeStartArray();
+                generator.writeStartObject();
+                generator.writeFieldName(TYPE);
+                generator.writeString(TEXT);
+                generator.writeFieldName(TEXT);
+                generator.writeString(template.getSystem());
+                generator.writeFieldName(CACHE_CONTROL);
+                generator.writeStartObject();
+                generator.writeFieldName(TYPE);
+                generator.writeString(EPHEMERAL);
+                generator.writeEndObject();
+                generator.writeEndObject();
+                generator.writeEndArray();
+
+                generator.writeFieldName(MESSAGES);
+                generator.writeStartArray();
+                generator.writeStartObject();
+                generator.writeFieldName(ROLE);
+                generator.writeString(USER);
+                generator.writeFieldName(CONTENT);
+                generator.writeStartArray();
+                for (ContentBlock block : blocks) {
+                    block.writeTo(generator);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.writeEndArray();
+
+                if (!stopSequences.isEmpty()) {
+                    generator.writeFieldName(STOP_SEQUENCES);
+                    generator.writeStartArray();
+                    for (String stopSequence : stopSequences) {
+                        generator.writeString(stopSequence);
+                    }
+                    generator.writeEndArray();
+                }
+                if (stream) {
+                    generator.writeFieldName(STREAM);
+                    generator.writeBoolean(true);
+                }
+                generator.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to serialize AI request", e);
+            }
+            return new AnthropicRequest(buffer.buffer(), buffer.size(), template.getBetaFeature(), stream,
+                    template.getModel().getValue() + "/" + contentKind());
+        }
+
+        private String contentKind() {
+            for (ContentBlock block : blocks) {
+                if (block.data != null) {
+                    return block.type;
+                }
+            }
+            return "text";
+        }
+
+        private int estimateLength() {
+            long estimate = STRUCTURE_BYTES + template.getSystemLength();
+            for (ContentBlock block : blocks) {
+                estimate += block.estimateLength();
+            }
+            return (int) Math.min(estimate, Integer.MAX_VALUE - 8);
+        }
+    }
+
+    private static final class ContentBlock {
+        private final String type;
+        private final String text;
+        private final String mediaType;
+        private final byte[] data;
+
+        private ContentBlock(String type, String text, String mediaType, byte[] data) {
+            this.type = type;
+            this.text = text;
+            this.mediaType = mediaType;
+            this.data = data;
+        }
+
+        private void writeTo(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeFieldName(TYPE);
+            generator.writeString(type);
+            if (data == null) {
+                generator.writeFieldName(TEXT);
+                generator.writeString(text);
+            } else {
+                generator.writeFieldName(SOURCE);
+                generator.writeStartObject();
+                generator.writeFieldName(TYPE);
+                generator.writeString(BASE64);
+                generator.writeFieldName(MEDIA_TYPE);
+                generator.writeString(mediaType);
+                generator.writeFieldName(DATA);
+                generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, data, 0, data.length);
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+
+        private long estimateLength() {
+            if (data == null) {
+                // Hebrew text takes two bytes per character in UTF-8, escapes a few more
+                return text != null ? 3L * text.length() + 32 : 32;
+            }
+            return 4L * ((data.length + 2) / 3) + 96;
+        }
+    }
+
+    /**
+     * Output buffer exposing its array, so the serialized body is not copied once more.
+     */
+    private static final class BodyBuffer extends ByteArrayOutputStream {
+        private BodyBuffer(int size) {
+            super(size);
+        }
+
+        private byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.organizer.platform.service.AI;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.organizer.platform.model.AI.ClassificationBatch;
+import com.organizer.platform.model.AI.ContentOrganization;
+import com.organizer.platform.model.AI.Response;
+import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import com.organizer.platform.repository.ClassificationBatchRepository;
+import com.organizer.platform.repository.WhatsAppMessageRepository;
+import com.organizer.platform.service.WhatsApp.WhatsAppMessageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Classifies backlogs of text messages with the Anthropic Message Batches API, instead of
+ * replaying them one at a time through the processing queues.
+ * Batches are processed by the API apart from the interactive requests, at a lower price and
+ * without taking from their rate limits or from the adaptive limit of AnthropicClient, so
+ * interactive traffic keeps flowing while a backlog is classified.
+ * <p>
+ * A run classifies the messages of a mode (see {@link ClassificationBatch.Mode}) in batches of
+ * up to max-requests messages, submitted one after another:
+ * - messages whose organization is cached are organized at once and not sent
+ * - the others are sent in a batch, which is kept in the database
+ * - a scheduler polls the open batches; once one ends, its results are applied in chunks, each
+ *   in one transaction, and the next batch of the run is submitted
+ * Only text messages are classified in batches: media has to be fetched and resized first, so
+ * media messages keep going through the processing queues. Messages younger than min-age are
+ * left to the queues too. With auto-collect enabled, a run over the pending messages starts
+ * whenever no batch is open.
+ * <p>
+ * Metrics: ai.batch.requests (tag result: cached, submitted, succeeded, failed)
+ */
+@Slf4j
+@Service
+public class BatchClassificationService {
+    private static final String CUSTOM_ID_PREFIX = "message-";
+    // Results applied per transaction
+    private static final int RESULTS_CHUNK = 100;
+
+    private final AiService aiService;
+    private final AnthropicClient anthropicClient;
+    private final WhatsAppMessageService messageService;
+    private final WhatsAppMessageRepository messageRepository;
+    private final ClassificationBatchRepository batchRepository;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final boolean autoCollect;
+    private final int maxRequests;
+    private final long minAgeMillis;
+
+    private final Counter cachedRequests;
+    private final Counter submittedRequests;
+    private final Counter succeededRequests;
+    private final Counter failedRequests;
+
+    @Autowired
+    public BatchClassificationService(AiService aiService, AnthropicClient anthropicClient,
+                                      WhatsAppMessageService messageService,
+                                      WhatsAppMessageRepository messageRepository,
+                                      ClassificationBatchRepository batchRepository,
+                                      ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                      @Value("${ai.batch.enabled:true}") boolean enabled,
+                                      @Value("${ai.batch.auto-collect:false}") boolean autoCollect,
+                                      @Value("${ai.batch.max-requests:1000}") int maxRequests,
+                                      @Value("${ai.batch.min-age-minutes:60}") long minAgeMinutes) {
+        this.aiService = aiService;
+        this.anthropicClient = anthropicClient;
+        this.messageService = messageService;
+        this.messageRepository = messageRepository;
+        this.batchRepository = batchRepository;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.autoCollect = autoCollect;
+        this.maxRequests = maxRequests;
+        this.minAgeMillis = TimeUnit.MINUTES.toMillis(minAgeMinutes);
+
+        this.cachedRequests = meterRegistry.counter("ai.batch.requests", "result", "cached");
+        this.submittedRequests = meterRegistry.counter("ai.batch.requests", "result", "submitted");
+        this.succeededRequests = meterRegistry.counter("ai.batch.requests", "result", "succeeded");
+        this.failedRequests = meterRegistry.counter("ai.batch.requests", "result", "failed");
+    }
+
+    /**
+     * @return Whether a batch is open, waiting for its results
+     */
+    public boolean isRunning() {
+        return !batchRepository.findByEndedAtIsNullOrderByCreatedAt().isEmpty();
+    }
+
+    /**
+     * @return The most recent batches, newest first
+     */
+    public List<ClassificationBatch> recentBatches() {
+        return batchRepository.findTop20ByOrderByCreatedAtDesc();
+    }
+
+    /**
+     * Starts a run classifying the text messages of a mode.
+     *
+     * @param mode Which messages to classify
+     * @return The first batch of the run, or empty if no message had to be sent
+     * @throws IllegalStateException If a batch is already open
+     */
+    public synchronized Optional<ClassificationBatch> submit(ClassificationBatch.Mode mode) {
+        if (isRunning()) {
+            throw new IllegalStateException("A classification batch is already running");
+        }
+        return submit(mode, 0);
+    }
+
+    /**
+     * Polls the open batches, applying the results of those that ended.
+     */
+    @Scheduled(initialDelayString = "${ai.batch.poll-interval-ms:60000}",
+            fixedDelayString = "${ai.batch.poll-interval-ms:60000}")
+    public synchronized void poll() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            for (ClassificationBatch batch : batchRepository.findByEndedAtIsNullOrderByCreatedAt()) {
+                pollBatch(batch);
+            }
+            if (autoCollect && !isRunning()) {
+                submit(ClassificationBatch.Mode.PENDING, 0);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Polling classification batches failed, will retry: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Submits the batch of the next page of messages after a given message.
+     * Pages whose messages are all cached are organized at once and skipped.
+     */
+    private Optional<ClassificationBatch> submit(ClassificationBatch.Mode mode, long afterId) {
+        while (true) {
+            List<WhatsAppMessage> messages = messageRepository.findTextMessagesToClassify(afterId,
+                    new Date(System.currentTimeMillis() - minAgeMillis), mode == ClassificationBatch.Mode.ALL,
+                    PageRequest.of(0, maxRequests));
+            if (messages.isEmpty()) {
+                return Optional.empty();
+            }
+            long lastId = messages.get(messages.size() - 1).getId();
+            boolean moreMessages = messages.size() == maxRequests;
+
+            Map<Long, ContentOrganization> cached = new HashMap<>();
+            List<WhatsAppMessage> uncached = new ArrayList<>();
+            for (WhatsAppMessage message : messages) {
+                Optional<ContentOrganization> organization = aiService.cachedTextOrganization(message);
+                if (organization.isPresent()) {
+                    cached.put(message.getId(), organization.get());
+                } else {
+                    uncached.add(message);
+                }
+            }
+            if (!cached.isEmpty()) {
+                messageService.updateMessages(cached.keySet(),
+                        message -> apply(message, cached.get(message.getId()), mode));
+                cachedRequests.increment(cached.size());
+            }
+
+            if (!uncached.isEmpty()) {
+                String batchId = createBatch(uncached);
+                submittedRequests.increment(uncached.size());
+                log.info("Submitted classification batch {} with {} {} messages", batchId, uncached.size(), mode);
+                return Optional.of(batchRepository.save(
+                        new ClassificationBatch(batchId, mode, lastId, uncached.size(), moreMessages)));
+            }
+            if (!moreMessages) {
+                return Optional.empty();
+            }
+            afterId = lastId;
+        }
+    }
+
+    private String createBatch(List<WhatsAppMessage> messages) {
+        StringWriter body = new StringWriter();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(body)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("requests");
+            for (WhatsAppMessage message : messages) {
+                generator.writeStartObject();
+                generator.writeStringField("custom_id", CUSTOM_ID_PREFIX + message.getId());
+                generator.writeFieldName("params");
+                generator.writeRawValue(aiService.textOrganizationRequest(message).toJson());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write classification batch", e);
+        }
+
+        try {
+            return objectMapper.readTree(anthropicClient.createMessageBatch(body.toString()).join())
+                    .path("id").asText();
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to read created classification batch", e);
+        }
+    }
+
+    private void pollBatch(ClassificationBatch batch) {
+        try {
+            JsonNode status = objectMapper.readTree(anthropicClient.retrieveMessageBatch(batch.getId()).join());
+            if (!"ended".equals(status.path("processing_status").asText())) {
+                return;
+            }
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to read status of classification batch " + batch.getId(), e);
+        }
+
+        int[] counts = applyResults(batch);
+        batch.end(counts[0], counts[1]);
+        batchRepository.save(batch);
+        log.info("Classification batch {} ended: {} messages organized, {} failed",
+                batch.getId(), counts[0], counts[1]);
+
+        if (batch.hasMoreMessages()) {
+            submit(batch.getMode(), batch.getLastMessageId());
+        }
+    }
+
+    /**
+     * Streams the results of an ended batch and applies them in chunks.
+     *
+     * @return Number of organized messages and number of failed requests
+     */
+    private int[] applyResults(ClassificationBatch batch) {
+        int succeeded = 0;
+        int failed = 0;
+        Map<Long, Response> chunk = new HashMap<>();
+        try (Stream<String> lines = anthropicClient.messageBatchResults(batch.getId()).join()) {
+            Iterator<String> results = lines.iterator();
+            while (results.hasNext()) {
+                String line = results.next();
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode result = objectMapper.readTree(line);
+                JsonNode outcome = result.path("result");
+                if ("succeeded".equals(outcome.path("type").asText())) {
+                    chunk.put(messageIdOf(result), objectMapper.treeToValue(outcome.path("message"), Response.class));
+                } else {
+                    failed++;
+                }
+
+                if (chunk.size() == RESULTS_CHUNK) {
+                    succeeded += applyChunk(chunk, batch.getMode());
+                    chunk.clear();
+                }
+            }
+            succeeded += applyChunk(chunk, batch.getMode());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to read results of classification batch " + batch.getId(), e);
+        }
+
+        succeededRequests.increment(succeeded);
+        failedRequests.increment(failed);
+        return new int[]{succeeded, failed};
+    }
+
+    private int applyChunk(Map<Long, Response> responses, ClassificationBatch.Mode mode) {
+        if (responses.isEmpty()) {
+            return 0;
+        }
+        AtomicInteger organized = new AtomicInteger();
+        messageService.updateMessages(responses.keySet(), message -> {
+            // The processing queues may have organized the message since it was sent
+            if (mode == ClassificationBatch.Mode.PENDING && message.getCategory() != null) {
+                return;
+            }
+            aiService.textOrganizationOf(message, responses.get(message.getId()))
+                    .ifPresent(organization -> {
+                        apply(message, organization, mode);
+                        organized.incrementAndGet();
+                    });
+        });
+        return organized.get();
+    }
+
+    /**
+     * Sets an organization on a message. When classifying all messages, the tags and next
+     * steps of the previous organization are replaced rather than added to.
+     */
+    private void apply(WhatsAppMessage message, ContentOrganization organization, ClassificationBatch.Mode mode) {
+        if (mode == ClassificationBatch.Mode.ALL) {
+            messageService.deleteTags(message);
+            messageService.deleteNextSteps(message);
+        }
+        aiService.applyOrganization(message, organization);
+        message.setProcessed(true);
+    }
+
+    private static long messageIdOf(JsonNode result) {
+        String customId = result.path("custom_id").asText();
+        if (!customId.startsWith(CUSTOM_ID_PREFIX)) {
+            throw new IllegalArgumentException("Unexpected custom_id in batch results: " + customId);
+        }
+        return Long.parseLong(customId.substring(CUSTOM_ID_PREFIX.length()));
+    }
+}
@@ -0,0 +1,151 @@
+package com.organizer.platform.service.AI;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.organizer.platform.model.AI.ContentOrganization;
+import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import com.organizer.platform.repository.WhatsAppMessageRepository;
+import com.organizer.platform.service.WhatsApp.WhatsAppMessageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recognizes images a user already sent, even recompressed or resized, so they reuse the
+ * organization of the earlier message instead of paying for another AI call.
+ * The OrganizationCache only matches identical bytes, which a forwarded screenshot rarely is.
+ * <p>
+ * Image messages carry the perceptual hash of the image, computed at ingestion (see
+ * MediaProcessor). Every user has a HammingIndex of the hashes of their organized images; an
+ * image within ai.duplicates.max-distance bits of one of them is its duplicate. The indexes are
+ * loaded from the database on the first image of a user and kept in a bounded cache, so a lookup
+ * stays a few dozen comparisons with hundreds of thousands of images per user. Failures of the
+ * database are logged and treated as misses, so the index never fails message processing.
+ * <p>
+ * Metrics:
+ * - ai.duplicates.requests (tag result: hit, miss): lookups of image messages with a hash
+ * - ai.duplicates.indexes.*: statistics of the cache of per-user indexes
+ */
+@Slf4j
+@Service
+public class DuplicateImageIndex {
+    private final WhatsAppMessageRepository repository;
+    private final WhatsAppMessageService messageService;
+    private final boolean enabled;
+    private final int maxDistance;
+    private final LoadingCache<String, HammingIndex> indexes;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public DuplicateImageIndex(WhatsAppMessageRepository repository, WhatsAppMessageService messageService,
+                               MeterRegistry meterRegistry,
+                               @Value("${ai.duplicates.enabled:true}") boolean enabled,
+                               @Value("${ai.duplicates.max-distance:4}") int maxDistance,
+                               @Value("${ai.duplicates.max-users:1000}") long maxUsers,
+                               @Value("${ai.duplicates.ttl-minutes:1440}") long ttlMinutes) {
+        this.repository = repository;
+        this.messageService = messageService;
+        this.enabled = enabled;
+        this.maxDistance = maxDistance;
+        this.indexes = CacheBuilder.newBuilder()
+                .expireAfterAccess(ttlMinutes, TimeUnit.MINUTES)
+                .maximumSize(maxUsers)
+                .recordStats()
+                .build(CacheLoader.from(this::load));
+        GuavaCacheMetrics.monitor(meterRegistry, indexes, "ai.duplicates.indexes");
+
+        this.hits = meterRegistry.counter("ai.duplicates.requests", "result", "hit");
+        this.misses = meterRegistry.counter("ai.duplicates.requests", "result", "miss");
+    }
+
+    /**
+     * Looks for an organized image of the same user within the maximum distance of an image
+     * message. On a match the message is marked as a duplicate of it.
+     *
+     * @param whatsAppMessage The image message, with its perceptual hash
+     * @return The organization of the matching image, or empty if the message has no hash or no match
+     */
+    public Optional<ContentOrganization> findOriginal(WhatsAppMessage whatsAppMessage) {
+        Long hash = whatsAppMessage.getImageHash();
+        if (!enabled || hash == null) {
+            return Optional.empty();
+        }
+
+        Optional<HammingIndex> index = indexOf(whatsAppMessage.getFromNumber());
+        long original = index.map(hashes -> hashes.nearest(hash)).orElse(-1L);
+        if (original >= 0 && !Long.valueOf(original).equals(whatsAppMessage.getId())) {
+            Optional<ContentOrganization> organization = organizationOf(original);
+            if (organization.isPresent()) {
+                whatsAppMessage.setDuplicateOf(original);
+                hits.increment();
+                return organization;
+            }
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Adds an organized image message to the index of its user, so later copies of the image match it.
+     * Messages without a hash, an ID or a category are skipped.
+     *
+     * @param whatsAppMessage The image message
+     */
+    public void add(WhatsAppMessage whatsAppMessage) {
+        if (!enabled || whatsAppMessage.getImageHash() == null || whatsAppMessage.getId() == null
+                || whatsAppMessage.getCategory() == null) {
+            return;
+        }
+        // An index not loaded yet reads the message from the database when it is
+        HammingIndex index = indexes.getIfPresent(whatsAppMessage.getFromNumber());
+        if (index != null) {
+            index.add(whatsAppMessage.getImageHash(), whatsAppMessage.getId());
+        }
+    }
+
+    private Optional<HammingIndex> indexOf(String fromNumber) {
+        try {
+            return Optional.of(indexes.get(fromNumber));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            log.warn("Could not load the image hashes of {}: {}", fromNumber, e.getCause().getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Optional<ContentOrganization> organizationOf(long messageId) {
+        try {
+            return messageService.findOrganization(messageId);
+        } catch (DataAccessException e) {
+            log.warn("Could not read the organization of message {}: {}", messageId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private HammingIndex load(String fromNumber) {
+        List<Object[]> rows = repository.findImageHashesByFromNumber(fromNumber);
+        long[] hashes = new long[rows.size()];
+        long[] ids = new long[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            ids[i] = (Long) rows.get(i)[0];
+            hashes[i] = (Long) rows.get(i)[1];
+        }
+        HammingIndex index = new HammingIndex(maxDistance);
+        index.addAll(hashes, ids);
+        return index;
+    }
+}
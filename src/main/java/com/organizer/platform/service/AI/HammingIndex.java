@@ -0,0 +1,171 @@
+package com.organizer.platform.service.AI;
+
+import java.util.Arrays;
+
+/**
+ * Index of 64-bit hashes answering "which stored hash is nearest to this one, within a Hamming
+ * distance", without comparing against every stored hash.
+ * <p>
+ * Multi-index hashing: the 64 bits are split into more bands than the maximum distance. Two
+ * hashes within the distance differ in fewer bits than there are bands, so at least one band is
+ * identical in both (pigeonhole). Each band keeps the entries sorted by the value of its bits;
+ * a lookup binary searches the band values of the query and only compares the entries found
+ * there. With hundreds of thousands of entries and bands of 12 or 13 bits, that is a few dozen
+ * comparisons per band instead of a scan.
+ * <p>
+ * Entries added one by one are first kept in a short pending list that lookups scan, and merged
+ * into the sorted bands once it is full, one linear merge per band. Entries loaded together are
+ * sorted at once with {@link #addAll}.
+ * <p>
+ * Thread-safe: all methods are synchronized.
+ */
+final class HammingIndex {
+    private static final int MAX_PENDING = 256;
+
+    private final int maxDistance;
+    private final int[] bandShift;
+    private final long[] bandMask;
+
+    private long[] hashes = new long[16];
+    private long[] ids = new long[16];
+    private int size;
+    // Per band: (band value << 32 | entry) of the first `indexed` entries, sorted
+    private long[][] bands;
+    private int indexed;
+
+    /**
+     * @param maxDistance Largest Hamming distance of a match, from 0 to 31
+     */
+    HammingIndex(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > 31) {
+            throw new IllegalArgumentException("Maximum distance must be between 0 and 31: " + maxDistance);
+        }
+        this.maxDistance = maxDistance;
+        // At least 2 bands, so a band value fits in the upper half of a long
+        int count = Math.max(2, maxDistance + 1);
+        bandShift = new int[count];
+        bandMask = new long[count];
+        int shift = 0;
+        for (int band = 0; band < count; band++) {
+            int width = 64 / count + (band < 64 % count ? 1 : 0);
+            bandShift[band] = shift;
+            bandMask[band] = (1L << width) - 1;
+            shift += width;
+        }
+        bands = new long[count][0];
+    }
+
+    /**
+     * Adds an entry. The same id may be added again with another hash.
+     *
+     * @param hash Hash of the entry
+     * @param id Identifier returned by the lookups matching the entry
+     */
+    synchronized void add(long hash, long id) {
+        append(hash, id);
+        if (size - indexed >= MAX_PENDING) {
+            reindex();
+        }
+    }
+
+    /**
+     * Adds many entries at once, for example when the index is loaded.
+     *
+     * @param hashes Hashes of the entries
+     * @param ids Identifiers of the entries, in the order of their hashes
+     */
+    synchronized void addAll(long[] hashes, long[] ids) {
+        for (int i = 0; i < hashes.length; i++) {
+            append(hashes[i], ids[i]);
+        }
+        reindex();
+    }
+
+    private void append(long hash, long id) {
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        hashes[size] = hash;
+        ids[size] = id;
+        size++;
+    }
+
+    /**
+     * Finds the entry nearest to a hash. Of entries at the same distance, the first added wins.
+     *
+     * @param hash Hash to look up
+     * @return Id of the nearest entry within the maximum distance, or -1 if there is none
+     */
+    synchronized long nearest(long hash) {
+        int best = -1;
+        int bestDistance = maxDistance + 1;
+        for (int band = 0; band < bands.length; band++) {
+            long value = bandOf(hash, band);
+            long[] sorted = bands[band];
+            for (int i = lowerBound(sorted, value << 32); i < sorted.length && sorted[i] >>> 32 == value; i++) {
+                int entry = (int) sorted[i];
+                int distance = Long.bitCount(hashes[entry] ^ hash);
+                if (distance < bestDistance || (distance == bestDistance && entry < best)) {
+                    best = entry;
+                    bestDistance = distance;
+                }
+            }
+        }
+        for (int entry = indexed; entry < size; entry++) {
+            int distance = Long.bitCount(hashes[entry] ^ hash);
+            if (distance < bestDistance) {
+                best = entry;
+                bestDistance = distance;
+            }
+        }
+        return best < 0 ? -1 : ids[best];
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Merges the pending entries into the sorted bands.
+     */
+    private void reindex() {
+        for (int band = 0; band < bands.length; band++) {
+            long[] pending = new long[size - indexed];
+            for (int entry = indexed; entry < size; entry++) {
+                pending[entry - indexed] = bandOf(hashes[entry], band) << 32 | entry;
+            }
+            Arrays.sort(pending);
+
+            long[] sorted = bands[band];
+            long[] merged = new long[size];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < merged.length; k++) {
+                merged[k] = j == pending.length || (i < sorted.length && sorted[i] < pending[j])
+                        ? sorted[i++]
+                        : pending[j++];
+            }
+            bands[band] = merged;
+        }
+        indexed = size;
+    }
+
+    private long bandOf(long hash, int band) {
+        return (hash >>> bandShift[band]) & bandMask[band];
+    }
+
+    private static int lowerBound(long[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,161 @@
+package com.organizer.platform.service.AI;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.organizer.platform.model.AI.Response;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * Reads a streamed Messages API answer line by line, as server-sent events.
+ * Every event carries a JSON object whose 'type' tells what it is:
+ * - message_start: the message without content, with the input token usage
+ * - content_block_delta: the next piece of the answer text, handed to the listener
+ * - message_delta: the stop reason and the output token usage
+ * - message_stop: the end of the stream
+ * - error: a failure after the stream started, such as an overload
+ * Other events (pings, block starts and stops) are skipped.
+ * <p>
+ * The listener can stop the reading once it has what it needs. The answer then holds the text
+ * read so far; its output token usage is the count reported at the start, as the final count
+ * only comes with the message_delta at the end.
+ */
+public final class MessageStreamParser {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final Predicate<String> onText;
+    // Data lines of the event being read
+    private final StringBuilder data = new StringBuilder();
+    private final StringBuilder text = new StringBuilder();
+    private ObjectNode message;
+    private String stopReason;
+    private String stopSequence;
+    private JsonNode finalUsage;
+    private boolean done;
+
+    /**
+     * @param onText Called with every piece of the answer text; returns false to stop reading
+     */
+    public MessageStreamParser(Predicate<String> onText) {
+        this.onText = onText;
+    }
+
+    /**
+     * Reads the next line of the stream.
+     *
+     * @param line The line, without its line break
+     * @return Whether to go on reading: false once the message ended or the listener stopped it
+     * @throws IOException If an event holds invalid JSON
+     * @throws AiServiceException If the stream reports an error
+     */
+    public boolean line(String line) throws IOException {
+        if (done) {
+            return false;
+        }
+        if (line.isEmpty()) {
+            dispatch();
+        } else if (line.startsWith("data:")) {
+            if (data.length() > 0) {
+                data.append('\n');
+            }
+            data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+        }
+        // Event names, IDs and comments are not needed: every data object carries its type
+        return !done;
+    }
+
+    /**
+     * Ends the stream, reading an event left without its closing blank line.
+     *
+     * @return The answer read
+     * @throws IOException If an event holds invalid JSON, or the stream ended before the message started
+     * @throws AiServiceException If the stream reports an error
+     */
+    public Response finish() throws IOException {
+        if (!done) {
+            dispatch();
+        }
+        if (message == null) {
+            throw new IOException("AI answer stream ended before the message started");
+        }
+        ObjectNode response = message.deepCopy();
+        response.putArray("content").addObject()
+                .put("type", "text")
+                .put("text", text.toString());
+        if (stopReason != null) {
+            response.put("stop_reason", stopReason);
+            response.put("stop_sequence", stopSequence);
+        }
+        if (finalUsage != null) {
+            ObjectNode usage = response.with("usage");
+            finalUsage.fields().forEachRemaining(field -> usage.set(field.getKey(), field.getValue()));
+        }
+        return MAPPER.treeToValue(response, Response.class);
+    }
+
+    /**
+     * @return The answer text read so far
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    private void dispatch() throws IOException {
+        if (data.length() == 0) {
+            return;
+        }
+        JsonNode event = MAPPER.readTree(data.toString());
+        data.setLength(0);
+        switch (event.path("type").asText()) {
+            case "message_start":
+                message = (ObjectNode) event.path("message");
+                break;
+            case "content_block_delta":
+                JsonNode delta = event.path("delta");
+                if ("text_delta".equals(delta.path("type").asText())) {
+                    String piece = delta.path("text").asText();
+                    text.append(piece);
+                    if (!onText.test(piece)) {
+                        done = true;
+                    }
+                }
+                break;
+            case "message_delta":
+                stopReason = event.path("delta").path("stop_reason").textValue();
+                stopSequence = event.path("delta").path("stop_sequence").textValue();
+                if (event.has("usage")) {
+                    finalUsage = event.get("usage");
+                }
+                break;
+            case "message_stop":
+                done = true;
+                break;
+            case "error":
+                done = true;
+                throw new AiServiceException(statusOf(event.path("error").path("type").asText()), event.toString());
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return The HTTP status the API uses for an error type, so stream errors are handled
+     *         like error responses (overloads back off the limit)
+     */
+    private static int statusOf(String errorType) {
+        switch (errorType) {
+            case "overloaded_error":
+                return 529;
+            case "rate_limit_error":
+                return 429;
+            case "invalid_request_error":
+                return 400;
+            default:
+                return 500;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.organizer.platform.service.AI;
+
+import com.organizer.platform.config.AiRoutingProperties;
+import com.organizer.platform.model.AI.Usage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the model and output limit of an AI request by the type of the message and the size of
+ * its input (see AiRoutingProperties), so a three-word note does not take the model and limits
+ * of a long document. A route may name an escalation model, which gets the request again when
+ * the answer of the route's model does not follow the organization schema.
+ * <p>
+ * Every route records how it performs, so routes can be tuned from production data.
+ * Metrics (tags type, route, model):
+ * - ai.route.latency: time of the AI calls
+ * - ai.route.tokens (tag direction: input, output): tokens used, input including cached tokens
+ * - ai.route.answers (tag result: parsed, parse_failure): answers by whether they followed the
+ *   schema; the share of parse_failure is the parse-failure rate of the route's model
+ * - ai.route.escalations (tags type, route): requests sent again to the escalation model
+ */
+public class ModelRouter {
+    private final Map<String, List<Route>> routes = new HashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param properties Configured routes per message type
+     * @param prompts Prompt of every message type, with the model it falls back to without routes
+     * @param meterRegistry Registry of the route metrics
+     */
+    public ModelRouter(AiRoutingProperties properties, Map<String, PromptTemplate> prompts,
+                       MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        prompts.forEach((type, prompt) -> {
+            List<Route> typeRoutes = new ArrayList<>();
+            for (AiRoutingProperties.Route route : configured(properties, type)) {
+                typeRoutes.add(new Route(type, route.getName(), route.getMaxInput(),
+                        prompt.withModel(route.getModel(), route.getMaxTokens()),
+                        route.getEscalationModel() == null || route.getEscalationModel().isBlank()
+                                ? null
+                                : prompt.withModel(route.getEscalationModel(), route.getEscalationMaxTokens())));
+            }
+            if (typeRoutes.isEmpty()) {
+                typeRoutes.add(new Route(type, "default", Long.MAX_VALUE, prompt, null));
+            }
+            routes.put(type, typeRoutes);
+        });
+    }
+
+    /**
+     * @param type Type of the message: text, url, image, pdf or pdf-text
+     * @param inputSize Size of the input, in the unit of the type (see AiRoutingProperties)
+     * @return The first route of the type covering the input size, or its last route if none does
+     */
+    public Route route(String type, long inputSize) {
+        List<Route> typeRoutes = routes.get(type);
+        if (typeRoutes == null) {
+            throw new IllegalArgumentException("No prompt for message type " + type);
+        }
+        for (Route route : typeRoutes) {
+            if (inputSize <= route.maxInput) {
+                return route;
+            }
+        }
+        return typeRoutes.get(typeRoutes.size() - 1);
+    }
+
+    /**
+     * @return The routes of a message type, in the order they are tried
+     */
+    public List<Route> routes(String type) {
+        return Collections.unmodifiableList(routes.getOrDefault(type, List.of()));
+    }
+
+    private static List<AiRoutingProperties.Route> configured(AiRoutingProperties properties, String type) {
+        switch (type) {
+            case "text":
+                return properties.getText();
+            case "url":
+                return properties.getUrl();
+            case "image":
+                return properties.getImage();
+            case "pdf":
+                return properties.getPdf();
+            case "pdf-text":
+                return properties.getPdfText();
+            default:
+                return List.of();
+        }
+    }
+
+    /**
+     * Model and output limit for one input-size bucket of a message type.
+     */
+    public final class Route {
+        private final String type;
+        private final String name;
+        private final long maxInput;
+        private final PromptTemplate template;
+        private final PromptTemplate escalation;
+
+        private Route(String type, String name, long maxInput, PromptTemplate template, PromptTemplate escalation) {
+            this.type = type;
+            this.name = name;
+            this.maxInput = maxInput;
+            this.template = template;
+            this.escalation = escalation;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Template of the requests of this route; its fingerprint keys the cached answers
+         */
+        public PromptTemplate getTemplate() {
+            return template;
+        }
+
+        /**
+         * @return Template of the requests sent again after an answer that did not follow the
+         *         schema, or null if the route does not escalate
+         */
+        public PromptTemplate getEscalation() {
+            return escalation;
+        }
+
+        /**
+         * @param template Template the call was sent with
+         * @return Timer of the AI calls of this route with the model of the template
+         */
+        public Timer latency(PromptTemplate template) {
+            return meterRegistry.timer("ai.route.latency", "type", type, "route", name,
+                    "model", template.getModel().getValue());
+        }
+
+        /**
+         * Records the tokens an answer used.
+         *
+         * @param template Template the call was sent with
+         * @param usage Token usage of the answer, if reported
+         */
+        public void recordUsage(PromptTemplate template, Usage usage) {
+            if (usage == null) {
+                return;
+            }
+            String model = template.getModel().getValue();
+            meterRegistry.counter("ai.route.tokens", "type", type, "route", name, "model", model,
+                    "direction", "input").increment(count(usage.getInputTokens())
+                    + count(usage.getCacheCreationInputTokens()) + count(usage.getCacheReadInputTokens()));
+            meterRegistry.counter("ai.route.tokens", "type", type, "route", name, "model", model,
+                    "direction", "output").increment(count(usage.getOutputTokens()));
+        }
+
+        /**
+         * Records whether an answer followed the organization schema.
+         *
+         * @param template Template the call was sent with
+         * @param parsed Whether the answer held a complete organization
+         */
+        public void recordAnswer(PromptTemplate template, boolean parsed) {
+            meterRegistry.counter("ai.route.answers", "type", type, "route", name,
+                    "model", template.getModel().getValue(), "result", parsed ? "parsed" : "parse_failure")
+                    .increment();
+        }
+
+        /**
+         * Records a request sent again to the escalation model.
+         */
+        public void recordEscalation() {
+            meterRegistry.counter("ai.route.escalations", "type", type, "route", name).increment();
+        }
+
+        private int count(Integer tokens) {
+            return tokens != null ? tokens : 0;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.organizer.platform.service.AI;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.organizer.platform.model.AI.CachedOrganization;
+import com.organizer.platform.model.AI.ContentOrganization;
+import com.organizer.platform.repository.CachedOrganizationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of AI organization results, keyed by the hash of the prompt and the content.
+ * Users often forward the same link, image or PDF; every copy after the first is organized
+ * from the cache instead of paying for another AI call.
+ * <p>
+ * Two tiers:
+ * - memory: bounded Guava cache with a short TTL, for bursts of the same content
+ * - database: the ai_organization_cache table with a long TTL, surviving restarts
+ * A database hit is promoted to memory. Failures of the database tier are logged and treated
+ * as misses, so the cache never fails message processing.
+ * <p>
+ * Keys hash the prompt fingerprint with the content: text is normalized (Unicode NFC, trimmed,
+ * runs of whitespace collapsed) and media is hashed as sent, after image resizing.
+ * <p>
+ * Metrics:
+ * - ai.organization.cache.requests (tag result: memory, database, miss)
+ * - ai.organization.cache.tokens.saved: tokens of the AI calls answered from the cache
+ * - ai.organization.cache.*: statistics of the memory tier
+ */
+@Slf4j
+@Service
+public class OrganizationCache {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final CachedOrganizationRepository repository;
+    private final Cache<String, CachedOrganization> memory;
+    private final boolean enabled;
+    private final long persistentTtlMillis;
+
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+    private final Counter misses;
+    private final Counter tokensSaved;
+
+    @Autowired
+    public OrganizationCache(CachedOrganizationRepository repository, MeterRegistry meterRegistry,
+                             @Value("${ai.cache.enabled:true}") boolean enabled,
+                             @Value("${ai.cache.memory.ttl-minutes:1440}") long memoryTtlMinutes,
+                             @Value("${ai.cache.memory.max-entries:10000}") long memoryMaxEntries,
+                             @Value("${ai.cache.persistent.ttl-days:30}") long persistentTtlDays) {
+        this.repository = repository;
+        this.enabled = enabled;
+        this.persistentTtlMillis = TimeUnit.DAYS.toMillis(persistentTtlDays);
+        this.memory = CacheBuilder.newBuilder()
+                .expireAfterWrite(memoryTtlMinutes, TimeUnit.MINUTES)
+                .maximumSize(memoryMaxEntries)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, memory, "ai.organization.cache");
+
+        this.memoryHits = meterRegistry.counter("ai.organization.cache.requests", "result", "memory");
+        this.databaseHits = meterRegistry.counter("ai.organization.cache.requests", "result", "database");
+        this.misses = meterRegistry.counter("ai.organization.cache.requests", "result", "miss");
+        this.tokensSaved = meterRegistry.counter("ai.organization.cache.tokens.saved");
+    }
+
+    /**
+     * Removes the expired entries of the database tier.
+     */
+    @PostConstruct
+    public void purgeExpired() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int purged = repository.deleteCreatedBefore(new Date(System.currentTimeMillis() - persistentTtlMillis));
+            if (purged > 0) {
+                log.info("Purged {} expired AI organization cache entries", purged);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not purge the AI organization cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Computes the key of text content.
+     *
+     * @param template Prompt the content is sent with
+     * @param texts The text parts of the content, in order
+     * @return Hex key of the content
+     */
+    public String textKey(PromptTemplate template, String... texts) {
+        Hasher hasher = Hashing.sha256().newHasher().putBytes(template.getFingerprint().asBytes());
+        for (String text : texts) {
+            String normalized = normalize(text);
+            hasher.putInt(normalized.length()).putString(normalized, StandardCharsets.UTF_8);
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Computes the key of media content.
+     *
+     * @param template Prompt the content is sent with
+     * @param media The media bytes, as sent to the AI
+     * @return Hex key of the content
+     */
+    public String mediaKey(PromptTemplate template, byte[] media) {
+        return Hashing.sha256().newHasher()
+                .putBytes(template.getFingerprint().asBytes())
+                .putBytes(media)
+                .hash()
+                .toString();
+    }
+
+    /**
+     * Looks up the organization of content, in memory first and then in the database.
+     *
+     * @param key Key of the content
+     * @return The cached organization, or empty on a miss
+     */
+    public Optional<ContentOrganization> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        CachedOrganization cached = memory.getIfPresent(key);
+        if (cached != null) {
+            return hit(memoryHits, cached);
+        }
+
+        cached = findPersisted(key);
+        if (cached != null) {
+            memory.put(key, cached);
+            return hit(databaseHits, cached);
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Caches the organization the AI returned for content.
+     *
+     * @param key Key of the content
+     * @param organization The organization
+     * @param tokens Input and output tokens of the AI call
+     */
+    public void put(String key, ContentOrganization organization, int tokens) {
+        if (!enabled) {
+            return;
+        }
+
+        CachedOrganization cached = new CachedOrganization(key, organization, tokens);
+        memory.put(key, cached);
+        try {
+            repository.save(cached);
+        } catch (DataAccessException e) {
+            log.warn("Could not persist AI organization cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    private CachedOrganization findPersisted(String key) {
+        try {
+            Optional<CachedOrganization> persisted = repository.findById(key);
+            if (persisted.isEmpty()) {
+                return null;
+            }
+            if (persisted.get().getCreatedAt().getTime() < System.currentTimeMillis() - persistentTtlMillis) {
+                repository.delete(persisted.get());
+                return null;
+            }
+            return persisted.get();
+        } catch (DataAccessException e) {
+            log.warn("Could not read AI organization cache entry {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private Optional<ContentOrganization> hit(Counter tier, CachedOrganization cached) {
+        tier.increment();
+        tokensSaved.increment(cached.getTokens());
+        return Optional.of(cached.toOrganization());
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFC)).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,181 @@
+package com.organizer.platform.service.AI;
+
+import com.organizer.platform.model.AI.ContentOrganization;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Extracts the fields of a content_organization_schema answer in a single pass.
+ * The response is walked once from tag to tag; the first occurrence of each known tag is
+ * captured up to its first closing tag and trimmed. Unknown tags, comments and tags nested
+ * inside a captured one are skipped over, and a missing or unclosed tag leaves its field null.
+ * <p>
+ * This yields the same values as matching {@code <name>(.*?)</name>} once per field, without
+ * compiling a pattern and rescanning the response for each of them.
+ * <p>
+ * A streamed answer is parsed as it arrives with {@link #incremental}: every appended piece is
+ * scanned from where the previous one left off (a tag cut between pieces is scanned again once
+ * complete), and each field is reported as soon as its closing tag arrives. The answer is
+ * complete once all fields are found or the schema is closed.
+ */
+public final class OrganizationSchemaParser {
+    private static final String[] TAGS = {"category", "subcategory", "type", "purpose", "tags", "next_steps"};
+    private static final String SCHEMA = "content_organization_schema";
+    private static final int CATEGORY = 0;
+    private static final int SUBCATEGORY = 1;
+    private static final int TYPE = 2;
+    private static final int PURPOSE = 3;
+    private static final int TAG_LIST = 4;
+    private static final int NEXT_STEPS = 5;
+
+    private final CharSequence content;
+    // Appended pieces of a streamed answer, null when parsing a whole answer
+    private final StringBuilder buffer;
+    private final BiConsumer<String, String> onField;
+    private final String[] values = new String[TAGS.length];
+    private final int[] openedAt = new int[TAGS.length];
+    private int remaining = TAGS.length;
+    // Where the scan continues
+    private int position;
+    private boolean schemaClosed;
+
+    private OrganizationSchemaParser(CharSequence content, StringBuilder buffer, BiConsumer<String, String> onField) {
+        this.content = content;
+        this.buffer = buffer;
+        this.onField = onField;
+        Arrays.fill(openedAt, -1);
+    }
+
+    /**
+     * Parses the text of an AI answer.
+     *
+     * @param content Text of the answer
+     * @return The organization found in the answer
+     */
+    public static ContentOrganization parse(String content) {
+        OrganizationSchemaParser parser = new OrganizationSchemaParser(content, null, null);
+        parser.scan();
+        return parser.result();
+    }
+
+    /**
+     * Starts parsing an answer that arrives in pieces.
+     *
+     * @param onField Called with the name and value of every field once its closing tag arrived
+     * @return The parser, to {@link #append} the pieces to
+     */
+    public static OrganizationSchemaParser incremental(BiConsumer<String, String> onField) {
+        StringBuilder buffer = new StringBuilder();
+        return new OrganizationSchemaParser(buffer, buffer, onField);
+    }
+
+    /**
+     * Parses the next piece of a streamed answer.
+     *
+     * @param piece Text following the pieces appended so far
+     * @return Whether the answer is complete, so the rest of it can be skipped
+     */
+    public boolean append(CharSequence piece) {
+        if (buffer == null) {
+            throw new IllegalStateException("Not an incremental parser");
+        }
+        buffer.append(piece);
+        scan();
+        return isComplete();
+    }
+
+    /**
+     * @return Whether all fields were found, or the schema was closed
+     */
+    public boolean isComplete() {
+        return remaining == 0 || schemaClosed;
+    }
+
+    /**
+     * @return The organization found so far
+     */
+    public ContentOrganization result() {
+        return ContentOrganization.builder()
+                .category(values[CATEGORY])
+                .subCategory(values[SUBCATEGORY])
+                .type(values[TYPE])
+                .purpose(values[PURPOSE])
+                .tags(values[TAG_LIST])
+                .nextSteps(values[NEXT_STEPS])
+                .build();
+    }
+
+    private void scan() {
+        int length = content.length();
+        while (remaining > 0 && !schemaClosed) {
+            int start = indexOf(content, '<', position);
+            if (start < 0) {
+                position = length;
+                return;
+            }
+            boolean closing = start + 1 < length && content.charAt(start + 1) == '/';
+            int nameStart = start + (closing ? 2 : 1);
+            int nameEnd = nameStart;
+            while (nameEnd < length && isNameChar(content.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            if (nameEnd >= length) {
+                // The tag may go on in the next piece
+                position = start;
+                return;
+            }
+            if (content.charAt(nameEnd) == '>') {
+                int tag = indexOfTag(content, nameStart, nameEnd);
+                if (tag >= 0 && values[tag] == null) {
+                    if (!closing && openedAt[tag] < 0) {
+                        openedAt[tag] = nameEnd + 1;
+                    } else if (closing && openedAt[tag] >= 0) {
+                        values[tag] = content.subSequence(openedAt[tag], start).toString().trim();
+                        remaining--;
+                        if (onField != null) {
+                            onField.accept(TAGS[tag], values[tag]);
+                        }
+                    }
+                } else if (closing && buffer != null && matches(content, nameStart, nameEnd, SCHEMA)) {
+                    schemaClosed = true;
+                }
+            }
+            position = start + 1;
+        }
+    }
+
+    private static int indexOf(CharSequence content, char c, int from) {
+        for (int i = from; i < content.length(); i++) {
+            if (content.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfTag(CharSequence content, int nameStart, int nameEnd) {
+        for (int tag = 0; tag < TAGS.length; tag++) {
+            if (matches(content, nameStart, nameEnd, TAGS[tag])) {
+                return tag;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(CharSequence content, int nameStart, int nameEnd, String name) {
+        if (name.length() != nameEnd - nameStart) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (content.charAt(nameStart + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
@@ -0,0 +1,89 @@
+package com.organizer.platform.service.AI;
+
+import com.organizer.platform.model.AI.ContentOrganization;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Publishes the organization of messages while the AI answers stream in, so the UI can show each
+ * field as soon as it is generated instead of after the message is saved.
+ * Every field is published once the parser read its closing tag, and the whole organization once
+ * it is set on the message, which ends the updates of the message.
+ * <p>
+ * Subscriptions are kept in memory, so a subscriber only gets the updates of messages organized
+ * by this instance of the application.
+ */
+@Component
+public class OrganizationUpdates {
+    public static final String ORGANIZED = "organized";
+
+    private final Map<Long, List<Consumer<Update>>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Subscribes to the updates of a message.
+     *
+     * @param messageId ID of the message
+     * @param subscriber Called with every update, on the thread organizing the message
+     * @return Action ending the subscription
+     */
+    public Runnable subscribe(Long messageId, Consumer<Update> subscriber) {
+        subscribers.computeIfAbsent(messageId, id -> new CopyOnWriteArrayList<>()).add(subscriber);
+        return () -> subscribers.computeIfPresent(messageId, (id, messageSubscribers) -> {
+            messageSubscribers.remove(subscriber);
+            return messageSubscribers.isEmpty() ? null : messageSubscribers;
+        });
+    }
+
+    /**
+     * Publishes a field of an organization being generated.
+     *
+     * @param messageId ID of the message, or null if it is not saved yet
+     * @param field Name of the field in the organization schema, like 'category'
+     * @param value Value of the field
+     */
+    public void field(Long messageId, String field, String value) {
+        publish(messageId, new Update(field, value, null));
+    }
+
+    /**
+     * Publishes the organization set on a message.
+     *
+     * @param messageId ID of the message, or null if it is not saved yet
+     * @param organization The organization
+     */
+    public void organized(Long messageId, ContentOrganization organization) {
+        publish(messageId, new Update(ORGANIZED, null, organization));
+    }
+
+    private void publish(Long messageId, Update update) {
+        if (messageId == null) {
+            return;
+        }
+        List<Consumer<Update>> messageSubscribers = subscribers.get(messageId);
+        if (messageSubscribers != null) {
+            messageSubscribers.forEach(subscriber -> subscriber.accept(update));
+        }
+    }
+
+    /**
+     * A field of the organization of a message, or its whole organization once set.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Update {
+        private final String field;         // Name of the field, or 'organized'
+        private final String value;         // Value of the field, null once organized
+        private final ContentOrganization organization; // The organization, only once organized
+
+        public boolean isOrganized() {
+            return organization != null;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.organizer.platform.service.AI;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The fixed part of an AI request: model, sampling settings and system prompt.
+ * The system prompt is loaded once from the classpath (see resources/prompts) and kept as a
+ * {@link SerializedString}, whose quoted UTF-8 form is encoded on first use and then copied
+ * as is into every request body.
+ * <p>
+ * The fingerprint identifies the model and prompt, so cached answers (see OrganizationCache)
+ * are not reused once either of them changes.
+ */
+public final class PromptTemplate {
+    private final SerializedString model;
+    private final int maxTokens;
+    private final double temperature;
+    private final SerializedString system;
+    private final int systemLength;
+    private final String betaFeature;
+    private final HashCode fingerprint;
+
+    /**
+     * @param model Name of the model
+     * @param maxTokens Maximum number of tokens to generate
+     * @param temperature Sampling temperature
+     * @param systemPromptResource Classpath location of the system prompt
+     * @param betaFeature Value of the 'anthropic-beta' header, or null for none
+     */
+    public PromptTemplate(String model, int maxTokens, double temperature,
+                          String systemPromptResource, String betaFeature) {
+        this(model, maxTokens, temperature, new SerializedString(load(systemPromptResource)), betaFeature);
+    }
+
+    private PromptTemplate(String model, int maxTokens, double temperature,
+                           SerializedString system, String betaFeature) {
+        this.model = new SerializedString(model);
+        this.maxTokens = maxTokens;
+        this.temperature = temperature;
+        this.system = system;
+        this.systemLength = system.asQuotedUTF8().length;
+        this.betaFeature = betaFeature;
+        this.fingerprint = Hashing.sha256().newHasher()
+                .putString(model, StandardCharsets.UTF_8)
+                .putDouble(temperature)
+                .putBytes(system.asQuotedUTF8())
+                .hash();
+    }
+
+    /**
+     * Derives the template of the same prompt for another model.
+     *
+     * @param model Name of the model
+     * @param maxTokens Maximum number of tokens to generate
+     * @return Template sharing the encoded system prompt of this one
+     */
+    public PromptTemplate withModel(String model, int maxTokens) {
+        return new PromptTemplate(model, maxTokens, temperature, system, betaFeature);
+    }
+
+    public SerializedString getModel() {
+        return model;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    public SerializedString getSystem() {
+        return system;
+    }
+
+    /**
+     * @return Size in bytes of the encoded system prompt
+     */
+    public int getSystemLength() {
+        return systemLength;
+    }
+
+    public String getBetaFeature() {
+        return betaFeature;
+    }
+
+    /**
+     * @return Hash of the model, temperature and system prompt
+     */
+    public HashCode getFingerprint() {
+        return fingerprint;
+    }
+
+    private static String load(String resource) {
+        try (InputStream inputStream = new ClassPathResource(resource).getInputStream()) {
+            return StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load prompt " + resource, e);
+        }
+    }
+}
@@ -1,62 +1,54 @@
 package com.organizer.platform.service.Google;
 
-import com.google.auth.oauth2.GoogleCredentials;
-import com.google.cloud.storage.*;
-import com.organizer.platform.config.GCSProperties;
+import com.organizer.platform.service.Storage.MediaSpool;
+import com.organizer.platform.service.Storage.MediaStore;
+import com.organizer.platform.service.Storage.SignedUrlCache;
 import com.organizer.platform.util.Dates;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
-import javax.annotation.PostConstruct;
 import java.io.IOException;
+import java.io.InputStream;
 import java.text.SimpleDateFormat;
-import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.*;
 
 /**
- * Service class for handling Google Cloud Storage operations.
+ * Service class for handling media storage operations.
  * This service provides functionality to upload and manage different types of media files
- * (images, documents, and audio) in Google Cloud Storage.
+ * (images, documents, and audio) in the configured {@link MediaStore}: Google Cloud Storage
+ * in production, or the local filesystem for development and benchmarks.
  * Each media type is stored in its own directory structure with user-specific subdirectories.
+ * Every upload is also written through to the local {@link MediaSpool}, so the AI workers
+ * can read freshly ingested media without downloading it again.
+ * <p>
+ * Images may have renditions, JPEGs created from the original at ingestion and stored next to
+ * it: images/{fromNumber}/{rendition}/{imageName}. The AI workers read the "ai" rendition and the
+ * UI shows the "thumbnail" one, instead of both reading the full-size original.
  */
 @Service
 public class CloudStorageService {
-    private final GCSProperties gcsProperties;
-    private Storage storage;
-    private Bucket bucket;
+    /** Rendition of an image resized for the AI service */
+    public static final String AI_RENDITION = "ai";
+    /** Rendition of an image shown as a thumbnail by the UI */
+    public static final String THUMBNAIL_RENDITION = "thumbnail";
 
-    /**
-     * Constructs the CloudStorageService with necessary GCS properties.
-     * @param gcsProperties Configuration properties for Google Cloud Storage
-     */
-    @Autowired
-    public CloudStorageService(GCSProperties gcsProperties) {
-        this.gcsProperties = gcsProperties;
-    }
+    private final MediaStore mediaStore;
+    private final MediaSpool mediaSpool;
+    private final SignedUrlCache signedUrlCache;
 
     /**
-     * Initializes the Google Cloud Storage client and validates bucket access.
-     * This method is called automatically after bean construction.
-     * @throws IOException if there's an error reading credentials or accessing the bucket
+     * Constructs the CloudStorageService on top of the configured storage backend.
+     * @param mediaStore Backend holding the media objects
+     * @param mediaSpool Local claim-check spool receiving a copy of every upload
+     * @param signedUrlCache Cache of the signed URLs handed out to clients
      */
-    @PostConstruct
-    public void initialize() throws IOException {
-        Resource resource = new ClassPathResource(gcsProperties.getCredentialsPath().replace("classpath:", ""));
-        GoogleCredentials credentials = GoogleCredentials.fromStream(resource.getInputStream());
-
-        storage = StorageOptions.newBuilder()
-                .setProjectId(gcsProperties.getProjectId())
-                .setCredentials(credentials)
-                .build()
-                .getService();
-
-        // Test bucket access
-        bucket = storage.get(gcsProperties.getBucketName());
-        if (bucket == null) {
-            throw new IllegalStateException("Bucket not found: " + gcsProperties.getBucketName());
-        }
+    @Autowired
+    public CloudStorageService(MediaStore mediaStore, MediaSpool mediaSpool, SignedUrlCache signedUrlCache) {
+        this.mediaStore = mediaStore;
+        this.mediaSpool = mediaSpool;
+        this.signedUrlCache = signedUrlCache;
     }
 
     /**
@@ -69,6 +61,19 @@ public class CloudStorageService {
         return generateSignedUrlForObject("images/" + fromNumber + "/" + imageName);
     }
 
+    /**
+     * Generates a signed URL for accessing a rendition of an image file.
+     * The URL is signed whether or not the rendition was created; images ingested before
+     * renditions existed have none.
+     * @param fromNumber User identifier or phone number
+     * @param imageName Name of the image file
+     * @param rendition Name of the rendition, for example {@link #THUMBNAIL_RENDITION}
+     * @return Signed URL with temporary access to the rendition
+     */
+    public String generateImageSignedUrl(String fromNumber, String imageName, String rendition) {
+        return generateSignedUrlForObject(renditionPath("images/" + fromNumber + "/" + imageName, rendition));
+    }
+
     /**
      * Generates a signed URL for accessing a document file.
      * @param fromNumber User identifier or phone number
@@ -89,24 +94,77 @@ public class CloudStorageService {
         return generateSignedUrlForObject("audios/" + fromNumber + "/" + audioName);
     }
 
+    /**
+     * Generates signed URLs for several media files of one user at once, for example all the
+     * images of a gallery page. Only the files without a fresh cached URL are signed.
+     * @param mediaType Type of the media files: image, document or audio
+     * @param fromNumber User identifier or phone number
+     * @param mediaNames Names of the media files
+     * @return Signed URL of every media file, keyed by its name
+     * @throws IllegalArgumentException if the media type is unknown
+     */
+    public Map<String, String> generateSignedUrls(String mediaType, String fromNumber, Collection<String> mediaNames) {
+        return generateSignedUrls(mediaType, fromNumber, mediaNames, null);
+    }
+
+    /**
+     * Generates signed URLs for a rendition of several media files of one user at once, for
+     * example the thumbnails of a gallery page. Only images have renditions.
+     * @param mediaType Type of the media files: image, document or audio
+     * @param fromNumber User identifier or phone number
+     * @param mediaNames Names of the media files
+     * @param rendition Name of the rendition, or null for the original files
+     * @return Signed URL of every media file, keyed by its name
+     * @throws IllegalArgumentException if the media type is unknown, or has no renditions
+     */
+    public Map<String, String> generateSignedUrls(String mediaType, String fromNumber, Collection<String> mediaNames,
+                                                  String rendition) {
+        if (rendition != null && !mediaType.equals("image")) {
+            throw new IllegalArgumentException("Only images have renditions, not " + mediaType);
+        }
+        String prefix = directoryOf(mediaType) + "/" + fromNumber + "/";
+        Map<String, String> pathsByName = new LinkedHashMap<>();
+        for (String name : mediaNames) {
+            pathsByName.put(name, rendition == null ? prefix + name : renditionPath(prefix + name, rendition));
+        }
+
+        Map<String, String> signedUrls = signedUrlCache.getAll(pathsByName.values());
+        Map<String, String> urlsByName = new LinkedHashMap<>();
+        pathsByName.forEach((name, path) -> urlsByName.put(name, signedUrls.get(path)));
+        return urlsByName;
+    }
+
     /**
      * Generates a signed URL for any object in the storage bucket.
-     * The URL expires after 15 minutes.
+     * The URL is valid for at least the cache refresh margin; see {@link SignedUrlCache}.
      * @param objectPath Full path to the object in the bucket
      * @return Temporary signed URL for accessing the object
      */
     private String generateSignedUrlForObject(String objectPath) {
-        BlobId blobId = BlobId.of(gcsProperties.getBucketName(), objectPath);
-        BlobInfo blobInfo = BlobInfo.newBuilder(blobId).build();
+        return signedUrlCache.get(objectPath);
+    }
 
-        // Create signed URL that expires in 15 minutes
-        return storage.signUrl(blobInfo, 15, TimeUnit.MINUTES,
-                        Storage.SignUrlOption.withV4Signature())
-                .toString();
+    /**
+     * Maps a media type to the top-level directory its files are stored in.
+     * @param mediaType Type of the media: image, document or audio
+     * @return The storage directory of the media type
+     * @throws IllegalArgumentException if the media type is unknown
+     */
+    private static String directoryOf(String mediaType) {
+        switch (mediaType) {
+            case "image":
+                return "images";
+            case "document":
+                return "documents";
+            case "audio":
+                return "audios";
+            default:
+                throw new IllegalArgumentException("Unsupported media type: " + mediaType);
+        }
     }
 
     /**
-     * Uploads a document to Google Cloud Storage.
+     * Uploads a document to storage.
      * The document is stored in a user-specific directory with a timestamp-based filename.
      * @param fromNumber User identifier or phone number
      * @param documentData Binary content of the document
@@ -117,55 +175,60 @@ public class CloudStorageService {
      */
     public String uploadDocument(String fromNumber, byte[] documentData, String mimeType, String originalFilename) {
         try {
-            // Create a unique filename using timestamp and original filename
-            String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(Dates.nowUTC());
-            String uniqueFilename = timestamp + "_" + originalFilename;
-
-            // Create document path in GCS with fromNumber prefix
-            String documentPath = "documents/" + fromNumber + "/" + uniqueFilename;
-
-            BlobId blobId = BlobId.of(gcsProperties.getBucketName(), documentPath);
-            BlobInfo blobInfo = BlobInfo.newBuilder(blobId)
-                    .setContentType(mimeType)
-                    .build();
-
-            storage.create(blobInfo, documentData);
+            String documentPath = newDocumentPath(fromNumber, originalFilename);
+            mediaStore.put(documentPath, mimeType, documentData);
+            mediaSpool.put(documentPath, documentData);
             return documentPath;
 
         } catch (Exception e) {
-            throw new RuntimeException("Failed to upload document to Google Cloud Storage", e);
+            throw new RuntimeException("Failed to upload document to storage", e);
         }
     }
 
     /**
-     * Uploads an image to Google Cloud Storage.
+     * Uploads an image to storage.
      * The image is stored in a user-specific directory with a UUID-based filename.
      * @param fromNumber User identifier or phone number
      * @param imageData Binary content of the image
      * @param mimeType MIME type of the image
      * @param originalFileName Original name of the uploaded file
      * @return Path to the uploaded image in GCS
+     * @throws RuntimeException if upload fails
      */
     public String uploadImage(String fromNumber, byte[] imageData, String mimeType, String originalFileName) {
-        // Generates a unique filename using UUID
-        String fileName = generateFileName(originalFileName);
+        try {
+            String imagePath = newImagePath(fromNumber, originalFileName);
+            mediaStore.put(imagePath, mimeType, imageData);
+            mediaSpool.put(imagePath, imageData);
+            return imagePath;
 
-        // Create image path in GCS with fromNumber prefix
-        String imagePath = "images/" + fromNumber + "/" + fileName;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to upload image to storage", e);
+        }
+    }
 
-        // Creates a blob (file) in GCS
-        BlobId blobId = BlobId.of(gcsProperties.getBucketName(), imagePath);
-        BlobInfo blobInfo = BlobInfo.newBuilder(blobId)
-                .setContentType(mimeType)
-                .build();
+    /**
+     * Uploads a rendition of a stored image, a JPEG created from it.
+     * @param imagePath Full path of the original image in the bucket
+     * @param rendition Name of the rendition, for example {@link #AI_RENDITION}
+     * @param jpeg JPEG content of the rendition
+     * @return Path to the uploaded rendition
+     * @throws RuntimeException if upload fails
+     */
+    public String uploadRendition(String imagePath, String rendition, byte[] jpeg) {
+        try {
+            String renditionPath = renditionPath(imagePath, rendition);
+            mediaStore.put(renditionPath, "image/jpeg", jpeg);
+            mediaSpool.put(renditionPath, jpeg);
+            return renditionPath;
 
-        // Uploads the file
-        storage.create(blobInfo, imageData);
-        return imagePath;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to upload " + rendition + " rendition to storage", e);
+        }
     }
 
     /**
-     * Uploads an audio file to Google Cloud Storage.
+     * Uploads an audio file to storage.
      * The audio is stored in a user-specific directory with a timestamp-based filename.
      * @param fromNumber User identifier or phone number
      * @param audioData Binary content of the audio file
@@ -176,27 +239,150 @@ public class CloudStorageService {
      */
     public String uploadAudio(String fromNumber, byte[] audioData, String mimeType, String originalFileName) {
         try {
-            // Generate a unique filename using timestamp and original filename
-            String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(Dates.nowUTC());
-            String uniqueFilename = timestamp + "_" + originalFileName;
+            String audioPath = newAudioPath(fromNumber, originalFileName);
+            mediaStore.put(audioPath, mimeType, audioData);
+            mediaSpool.put(audioPath, audioData);
+            return audioPath;
 
-            // Create audio path in GCS under 'audio' directory with fromNumber prefix
-            String audioPath = "audios/" + fromNumber + "/" + uniqueFilename;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to upload audio to storage", e);
+        }
+    }
 
-            // Create blob (file) in GCS
-            BlobId blobId = BlobId.of(gcsProperties.getBucketName(), audioPath);
-            BlobInfo blobInfo = BlobInfo.newBuilder(blobId)
-                    .setContentType(mimeType)
-                    .build();
+    /**
+     * Streams content into storage without holding the whole file in memory.
+     * The stream is copied in fixed-size chunks, so the memory used per transfer is
+     * constant regardless of the file size.
+     * The content is teed into the media spool and admitted there once the upload succeeded.
+     * A failed upload deletes whatever part of the object was written, so it is never served as complete.
+     * @param objectPath Full path of the object in the bucket
+     * @param mimeType MIME type of the content
+     * @param data Stream with the content, it is not closed by this method
+     * @return Number of bytes uploaded
+     * @throws RuntimeException if the upload fails
+     */
+    public long uploadStream(String objectPath, String mimeType, InputStream data) {
+        try (MediaSpool.Staged staged = mediaSpool.stage(objectPath)) {
+            long uploaded = mediaStore.put(objectPath, mimeType, new TeeInputStream(data, staged.getOutputStream()));
+            staged.commit();
+            return uploaded;
+        } catch (IOException | RuntimeException e) {
+            // A failed upload may leave a partial object behind, so drop it. The failure can come
+            // from the store or from the source stream, like the HTTP download feeding it.
+            try {
+                delete(objectPath);
+            } catch (RuntimeException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new RuntimeException("Failed to stream upload to storage: " + objectPath, e);
+        }
+    }
 
-            // Upload the file
-            storage.create(blobInfo, audioData);
+    /**
+     * Opens a stream over a stored object, reading it from the backend directly
+     * instead of going through a signed URL.
+     * @param objectPath Full path of the object in the bucket
+     * @return Stream with the object content, to be closed by the caller
+     * @throws IOException if the object does not exist or cannot be read
+     */
+    public InputStream open(String objectPath) throws IOException {
+        return mediaStore.open(objectPath);
+    }
 
-            return audioPath;
+    /**
+     * Reads a whole stored object, from the media spool when it holds a copy and from the
+     * backend otherwise.
+     * @param objectPath Full path of the object in the bucket
+     * @return Content of the object
+     * @throws java.io.FileNotFoundException if the object does not exist
+     * @throws IOException if the object cannot be read
+     */
+    public byte[] read(String objectPath) throws IOException {
+        Optional<byte[]> spooled = mediaSpool.read(objectPath);
+        if (spooled.isPresent()) {
+            return spooled.get();
+        }
+        try (InputStream data = mediaStore.open(objectPath)) {
+            return IOUtils.toByteArray(data);
+        }
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to upload audio to Google Cloud Storage", e);
+    /**
+     * Drops the spooled copy of an object that will not be read again soon, leaving the
+     * stored object in place.
+     * @param objectPath Full path of the object in the bucket
+     */
+    public void unspool(String objectPath) {
+        mediaSpool.evict(objectPath);
+    }
+
+    /**
+     * Deletes an object from the storage bucket.
+     * @param objectPath Full path of the object in the bucket
+     * @return true if the object was deleted, false if it did not exist
+     */
+    public boolean delete(String objectPath) {
+        mediaSpool.evict(objectPath);
+        signedUrlCache.invalidate(objectPath);
+        return mediaStore.delete(objectPath);
+    }
+
+    /**
+     * Builds the storage path of an image rendition: images/{fromNumber}/{rendition}/{imageName}
+     * @param imagePath Full path of the original image
+     * @param rendition Name of the rendition
+     * @return Path of the rendition in GCS
+     * @throws IllegalArgumentException if the rendition is unknown
+     */
+    public static String renditionPath(String imagePath, String rendition) {
+        if (!AI_RENDITION.equals(rendition) && !THUMBNAIL_RENDITION.equals(rendition)) {
+            throw new IllegalArgumentException("Unknown image rendition: " + rendition);
         }
+        int nameStart = imagePath.lastIndexOf('/') + 1;
+        return imagePath.substring(0, nameStart) + rendition + "/" + imagePath.substring(nameStart);
+    }
+
+    /**
+     * Builds the storage path for a new image: images/{fromNumber}/{uuid}.{extension}
+     * @param fromNumber User identifier or phone number
+     * @param originalFileName Original name of the file, used for its extension
+     * @return Path for the new image in GCS
+     */
+    public String newImagePath(String fromNumber, String originalFileName) {
+        return "images/" + fromNumber + "/" + generateFileName(originalFileName);
+    }
+
+    /**
+     * Builds the storage path for a new document: documents/{fromNumber}/{timestamp}_{originalFilename}
+     * @param fromNumber User identifier or phone number
+     * @param originalFilename Original name of the document
+     * @return Path for the new document in GCS
+     */
+    public String newDocumentPath(String fromNumber, String originalFilename) {
+        return "documents/" + fromNumber + "/" + timestampedFileName(originalFilename);
+    }
+
+    /**
+     * Builds the storage path for a new audio file: audios/{fromNumber}/{timestamp}_{originalFileName}
+     * @param fromNumber User identifier or phone number
+     * @param originalFileName Original name of the audio file
+     * @return Path for the new audio file in GCS
+     */
+    public String newAudioPath(String fromNumber, String originalFileName) {
+        return "audios/" + fromNumber + "/" + timestampedFileName(originalFileName);
+    }
+
+    /**
+     * Generates a unique filename using a timestamp prefix and the original filename.
+     * @param originalFileName Original name of the uploaded file
+     * @return New filename in the form {yyyyMMdd_HHmmss}_{originalFileName}
+     */
+    private String timestampedFileName(String originalFileName) {
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(Dates.nowUTC());
+        return timestamp + "_" + originalFileName;
     }
 
     /**
@@ -0,0 +1,123 @@
+package com.organizer.platform.service.Google;
+
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.*;
+import com.organizer.platform.config.GCSProperties;
+import com.organizer.platform.service.Storage.MediaStore;
+import com.organizer.platform.util.MediaStreams;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MediaStore} backed by a Google Cloud Storage bucket.
+ * This is the production backend and the default when {@code media.store.type} is not set.
+ */
+@Component
+@ConditionalOnProperty(name = "media.store.type", havingValue = "gcs", matchIfMissing = true)
+public class GcsMediaStore implements MediaStore {
+    // Size of each resumable upload request; the GCS client buffers one chunk per open writer
+    private static final int UPLOAD_CHUNK_SIZE = 1024 * 1024;
+
+    private final GCSProperties gcsProperties;
+    private Storage storage;
+
+    /**
+     * Constructs the GcsMediaStore with necessary GCS properties.
+     * @param gcsProperties Configuration properties for Google Cloud Storage
+     */
+    @Autowired
+    public GcsMediaStore(GCSProperties gcsProperties) {
+        this.gcsProperties = gcsProperties;
+    }
+
+    /**
+     * Initializes the Google Cloud Storage client and validates bucket access.
+     * This method is called automatically after bean construction.
+     * @throws IOException if there's an error reading credentials or accessing the bucket
+     */
+    @PostConstruct
+    public void initialize() throws IOException {
+        Resource resource = new ClassPathResource(gcsProperties.getCredentialsPath().replace("classpath:", ""));
+        GoogleCredentials credentials = GoogleCredentials.fromStream(resource.getInputStream());
+
+        storage = StorageOptions.newBuilder()
+                .setProjectId(gcsProperties.getProjectId())
+                .setCredentials(credentials)
+                .build()
+                .getService();
+
+        // Test bucket access
+        Bucket bucket = storage.get(gcsProperties.getBucketName());
+        if (bucket == null) {
+            throw new IllegalStateException("Bucket not found: " + gcsProperties.getBucketName());
+        }
+    }
+
+    @Override
+    public void put(String objectPath, String mimeType, byte[] data) {
+        storage.create(newBlobInfo(objectPath, mimeType), data);
+    }
+
+    /**
+     * Copies the stream in fixed-size chunks into a resumable upload channel.
+     * Closing the channel finalizes whatever was written, so a failed upload leaves a partial object.
+     */
+    @Override
+    public long put(String objectPath, String mimeType, InputStream data) throws IOException {
+        try (WriteChannel writer = storage.writer(newBlobInfo(objectPath, mimeType))) {
+            writer.setChunkSize(UPLOAD_CHUNK_SIZE);
+            return MediaStreams.copy(data, writer);
+        }
+    }
+
+    @Override
+    public InputStream open(String objectPath) throws IOException {
+        BlobId blobId = BlobId.of(gcsProperties.getBucketName(), objectPath);
+        if (storage.get(blobId) == null) {
+            throw new FileNotFoundException("Object not found: " + objectPath);
+        }
+        return Channels.newInputStream(storage.reader(blobId));
+    }
+
+    /**
+     * Creates a V4 signed URL for the object.
+     */
+    @Override
+    public String signedUrl(String objectPath, long duration, TimeUnit unit) {
+        BlobId blobId = BlobId.of(gcsProperties.getBucketName(), objectPath);
+        BlobInfo blobInfo = BlobInfo.newBuilder(blobId).build();
+
+        return storage.signUrl(blobInfo, duration, unit,
+                        Storage.SignUrlOption.withV4Signature())
+                .toString();
+    }
+
+    @Override
+    public boolean delete(String objectPath) {
+        return storage.delete(BlobId.of(gcsProperties.getBucketName(), objectPath));
+    }
+
+    /**
+     * Creates the blob metadata for an object in the configured bucket.
+     * @param objectPath Full path of the object in the bucket
+     * @param mimeType MIME type of the content
+     * @return Blob metadata with the content type set
+     */
+    private BlobInfo newBlobInfo(String objectPath, String mimeType) {
+        BlobId blobId = BlobId.of(gcsProperties.getBucketName(), objectPath);
+        return BlobInfo.newBuilder(blobId)
+                .setContentType(mimeType)
+                .build();
+    }
+}
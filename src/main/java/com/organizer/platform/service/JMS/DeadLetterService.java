@@ -0,0 +1,123 @@
+package com.organizer.platform.service.JMS;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.jms.*;
+
+/**
+ * Manages the dead-letter queue of the processing pipeline.
+ * Messages arrive there in two ways:
+ * - the broker moves a message once its redelivery attempts are exhausted (see JmsConfig)
+ * - a listener sends a message whose failure can never succeed, without retrying it
+ * <p>
+ * Either way the message keeps its original queue, so it can be replayed once the cause is fixed.
+ * A message without one cannot be replayed; replaying moves it to a parking queue for inspection,
+ * so it does not hold back the messages behind it.
+ */
+@Slf4j
+@Service
+public class DeadLetterService {
+    /** Dead-letter queue of every pipeline queue */
+    public static final String DLQ = "DLQ";
+    /** Dead-lettered messages without an original queue, moved aside by a replay */
+    public static final String PARKING_QUEUE = "DLQ.parked";
+
+    /** Original queue of a message dead-lettered by a listener */
+    public static final String ORIGINAL_QUEUE_PROPERTY = "originalQueue";
+    /** Original queue of a message dead-lettered by the broker */
+    public static final String BROKER_ORIGINAL_QUEUE_PROPERTY = "_AMQ_ORIG_ADDRESS";
+    /** Failure classification of a message dead-lettered by a listener */
+    public static final String FAILURE_PROPERTY = "failure";
+    /** Failure description of a message dead-lettered by a listener */
+    public static final String FAILURE_REASON_PROPERTY = "failureReason";
+
+    private final JmsTemplate jmsTemplate;
+    private final MessageQueueMetrics queueMetrics;
+
+    @Autowired
+    public DeadLetterService(@Qualifier("jmsConnectionFactory") ConnectionFactory connectionFactory,
+                             MessageQueueMetrics queueMetrics) {
+        this.jmsTemplate = new JmsTemplate(connectionFactory);
+        this.jmsTemplate.setSessionTransacted(true);
+        this.queueMetrics = queueMetrics;
+    }
+
+    /**
+     * Moves a message that can never be processed to the dead-letter queue.
+     *
+     * @param queue Queue the message was received from
+     * @param serializedMessage Body of the message
+     * @param groupId Message group of the message, if any
+     * @param failure Classification of the failure
+     * @param cause The failure
+     */
+    public void deadLetter(String queue, String serializedMessage, String groupId,
+                           ProcessingFailure failure, Throwable cause) {
+        jmsTemplate.convertAndSend(DLQ, serializedMessage, message -> {
+            message.setStringProperty(ORIGINAL_QUEUE_PROPERTY, queue);
+            message.setStringProperty(FAILURE_PROPERTY, failure.name());
+            message.setStringProperty(FAILURE_REASON_PROPERTY, String.valueOf(cause.getMessage()));
+            if (groupId != null) {
+                message.setStringProperty(MessageQueues.GROUP_ID_PROPERTY, groupId);
+            }
+            return message;
+        });
+        queueMetrics.recordDeadLetter(queue, failure);
+        log.warn("Dead-lettered message from {} after {} failure: {}", queue, failure, cause.getMessage());
+    }
+
+    /**
+     * Sends dead-lettered messages back to their original queues, oldest first.
+     * Each message is moved in its own transaction, so a failed replay leaves it in the DLQ.
+     * Messages without an original queue are moved to the parking queue instead.
+     *
+     * @param limit Maximum number of messages to take from the DLQ, replayed or parked
+     * @return Number of messages replayed
+     */
+    public int replay(int limit) {
+        Integer replayed = jmsTemplate.execute(session -> {
+            int count = 0;
+            int parked = 0;
+            try (MessageConsumer consumer = session.createConsumer(session.createQueue(DLQ))) {
+                while (count + parked < limit) {
+                    Message message = consumer.receiveNoWait();
+                    if (message == null) {
+                        break;
+                    }
+                    String originalQueue = originalQueueOf(message);
+                    if (originalQueue == null) {
+                        log.warn("Dead-lettered message {} has no original queue, moving it to {}",
+                                message.getJMSMessageID(), PARKING_QUEUE);
+                        originalQueue = PARKING_QUEUE;
+                        parked++;
+                    } else {
+                        count++;
+                    }
+                    try (MessageProducer producer = session.createProducer(session.createQueue(originalQueue))) {
+                        producer.send(message);
+                    }
+                    session.commit();
+                }
+            }
+            return count;
+        }, true);
+        return replayed != null ? replayed : 0;
+    }
+
+    /**
+     * @return Number of messages waiting in the dead-letter queue, or -1 if unknown
+     */
+    public long depth() {
+        double depth = queueMetrics.depth(DLQ);
+        return Double.isNaN(depth) ? -1 : (long) depth;
+    }
+
+    private static String originalQueueOf(Message message) throws JMSException {
+        String queue = message.getStringProperty(ORIGINAL_QUEUE_PROPERTY);
+        return queue != null ? queue : message.getStringProperty(BROKER_ORIGINAL_QUEUE_PROPERTY);
+    }
+}
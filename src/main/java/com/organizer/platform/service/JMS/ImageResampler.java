@@ -0,0 +1,241 @@
+package com.organizer.platform.service.JMS;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Separable image resampler working on raw pixel rasters, for shrinking photos to the AI target size.
+ * <p>
+ * Each output pixel is a weighted sum of the source pixels around it, with a Catmull-Rom (bicubic)
+ * kernel stretched by the reduction factor, so every source pixel contributes and large reductions
+ * do not alias as a single bicubic drawImage does (it samples 4x4 pixels whatever the factor).
+ * The kernel is separable: rows are first resampled horizontally, then columns vertically, with
+ * the weights of every output column and row computed once.
+ * <p>
+ * Source rows are pushed in order, in as many bands as the decoder produces. Only the
+ * horizontally resampled rows the next output row still needs are kept, in a small ring, so the
+ * memory is the target raster plus a few rows whatever the source height.
+ * <p>
+ * Usage:
+ * <pre>
+ * ImageResampler resampler = new ImageResampler(sourceWidth, sourceHeight, targetWidth, targetHeight);
+ * resampler.push(band);   // for every band of source rows, top to bottom
+ * BufferedImage resized = resampler.result();
+ * </pre>
+ */
+final class ImageResampler {
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final int targetWidth;
+    private final int targetHeight;
+    private final Weights columns;
+    private final Weights rows;
+
+    // Horizontally resampled source rows, 3 channels per target column, by source row modulo its size
+    private final float[][] window;
+    private final int[] sourceRow;
+    // Channels of the source row, unpacked once as every source pixel is weighted several times
+    private final float[] red;
+    private final float[] green;
+    private final float[] blue;
+    // Window rows an output row is summed from
+    private final float[][] rowInputs;
+    private final BufferedImage target;
+    private final int[] targetPixels;
+    private int pushedRows;
+    private int emittedRows;
+
+    /**
+     * @param sourceWidth Width of the source rows
+     * @param sourceHeight Number of source rows that will be pushed
+     * @param targetWidth Width of the result
+     * @param targetHeight Height of the result
+     */
+    ImageResampler(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+        this.columns = new Weights(sourceWidth, targetWidth);
+        this.rows = new Weights(sourceHeight, targetHeight);
+        this.window = new float[rows.maxCount][targetWidth * 3];
+        this.sourceRow = new int[sourceWidth];
+        this.red = new float[sourceWidth];
+        this.green = new float[sourceWidth];
+        this.blue = new float[sourceWidth];
+        this.rowInputs = new float[rows.maxCount][];
+        this.target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        this.targetPixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Pushes the next band of source rows.
+     *
+     * @param band Decoded rows, as wide as the source
+     */
+    void push(BufferedImage band) {
+        if (band.getWidth() != sourceWidth || pushedRows + band.getHeight() > sourceHeight) {
+            throw new IllegalArgumentException("Band of " + band.getWidth() + "x" + band.getHeight()
+                    + " does not fit the remaining source rows of " + sourceWidth + "x" + (sourceHeight - pushedRows));
+        }
+        if (isPlainBgr(band)) {
+            // The usual JPEG raster: read the bytes in place instead of converting them through getRGB
+            byte[] data = ((DataBufferByte) band.getRaster().getDataBuffer()).getData();
+            for (int y = 0; y < band.getHeight(); y++) {
+                int offset = y * sourceWidth * 3;
+                for (int x = 0; x < sourceWidth; x++) {
+                    int i = offset + x * 3;
+                    blue[x] = data[i] & 0xff;
+                    green[x] = data[i + 1] & 0xff;
+                    red[x] = data[i + 2] & 0xff;
+                }
+                pushRow();
+            }
+        } else {
+            for (int y = 0; y < band.getHeight(); y++) {
+                band.getRGB(0, y, sourceWidth, 1, sourceRow, 0, sourceWidth);
+                for (int x = 0; x < sourceWidth; x++) {
+                    int pixel = sourceRow[x];
+                    red[x] = (pixel >> 16) & 0xff;
+                    green[x] = (pixel >> 8) & 0xff;
+                    blue[x] = pixel & 0xff;
+                }
+                pushRow();
+            }
+        }
+    }
+
+    private static boolean isPlainBgr(BufferedImage band) {
+        return band.getType() == BufferedImage.TYPE_3BYTE_BGR
+                && band.getRaster().getDataBuffer().getSize() == band.getWidth() * band.getHeight() * 3;
+    }
+
+    /**
+     * @return The resampled image, once all source rows are pushed
+     */
+    BufferedImage result() {
+        if (pushedRows != sourceHeight) {
+            throw new IllegalStateException("Only " + pushedRows + " of " + sourceHeight + " source rows pushed");
+        }
+        return target;
+    }
+
+    /**
+     * Resamples the source row horizontally into the window, then emits the output rows whose
+     * source rows are all in.
+     */
+    private void pushRow() {
+        float[] resampled = window[pushedRows % window.length];
+        for (int x = 0; x < targetWidth; x++) {
+            int start = columns.start[x];
+            float[] weights = columns.weights[x];
+            float r = 0;
+            float g = 0;
+            float b = 0;
+            for (int k = 0; k < weights.length; k++) {
+                float weight = weights[k];
+                r += weight * red[start + k];
+                g += weight * green[start + k];
+                b += weight * blue[start + k];
+            }
+            resampled[x * 3] = r;
+            resampled[x * 3 + 1] = g;
+            resampled[x * 3 + 2] = b;
+        }
+        pushedRows++;
+
+        while (emittedRows < targetHeight && rows.start[emittedRows] + rows.weights[emittedRows].length <= pushedRows) {
+            emitRow(emittedRows++);
+        }
+    }
+
+    private void emitRow(int y) {
+        int start = rows.start[y];
+        float[] weights = rows.weights[y];
+        for (int k = 0; k < weights.length; k++) {
+            rowInputs[k] = window[(start + k) % window.length];
+        }
+        int offset = y * targetWidth;
+        for (int x = 0; x < targetWidth * 3; x += 3) {
+            float r = 0;
+            float g = 0;
+            float b = 0;
+            for (int k = 0; k < weights.length; k++) {
+                float[] resampled = rowInputs[k];
+                float weight = weights[k];
+                r += weight * resampled[x];
+                g += weight * resampled[x + 1];
+                b += weight * resampled[x + 2];
+            }
+            targetPixels[offset + x / 3] = clamp(r) << 16 | clamp(g) << 8 | clamp(b);
+        }
+    }
+
+    private static int clamp(float value) {
+        int rounded = Math.round(value);
+        return rounded < 0 ? 0 : Math.min(rounded, 255);
+    }
+
+    /**
+     * Catmull-Rom cubic, the bicubic kernel of Java2D.
+     */
+    private static double kernel(double x) {
+        x = Math.abs(x);
+        if (x < 1) {
+            return 1.5 * x * x * x - 2.5 * x * x + 1;
+        }
+        if (x < 2) {
+            return -0.5 * x * x * x + 2.5 * x * x - 4 * x + 2;
+        }
+        return 0;
+    }
+
+    /**
+     * Normalized kernel weights of every output index along one axis: output index i is the
+     * weighted sum of the source indexes from start[i] on.
+     */
+    private static final class Weights {
+        final int[] start;
+        final float[][] weights;
+        final int maxCount;
+
+        Weights(int sourceSize, int targetSize) {
+            start = new int[targetSize];
+            weights = new float[targetSize][];
+            double scale = (double) sourceSize / targetSize;
+            // Shrinking stretches the kernel over the source pixels each output pixel covers
+            double filterScale = Math.max(1, scale);
+            double support = 2 * filterScale;
+            int max = 1;
+            for (int i = 0; i < targetSize; i++) {
+                double center = (i + 0.5) * scale;
+                int left = Math.max(0, (int) Math.floor(center - support));
+                int right = Math.min(sourceSize, (int) Math.ceil(center + support));
+                double[] values = new double[right - left];
+                double sum = 0;
+                for (int j = left; j < right; j++) {
+                    values[j - left] = kernel((j + 0.5 - center) / filterScale);
+                    sum += values[j - left];
+                }
+                // Trim the zero weights at both ends
+                int first = 0;
+                int last = values.length - 1;
+                while (first < last && values[first] == 0) {
+                    first++;
+                }
+                while (last > first && values[last] == 0) {
+                    last--;
+                }
+                float[] normalized = new float[last - first + 1];
+                for (int k = 0; k < normalized.length; k++) {
+                    normalized[k] = (float) (values[first + k] / sum);
+                }
+                start[i] = left + first;
+                weights[i] = normalized;
+                max = Math.max(max, normalized.length);
+            }
+            maxCount = max;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.organizer.platform.service.JMS;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.organizer.platform.model.WhatsApp.Audio;
+import com.organizer.platform.model.WhatsApp.Document;
+import com.organizer.platform.model.WhatsApp.MediaEnvelope;
+import com.organizer.platform.model.WhatsApp.Message;
+import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import com.organizer.platform.service.Google.CloudStorageService;
+import com.organizer.platform.service.WhatsApp.WhatsAppMediaService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+import static com.organizer.platform.model.organizedDTO.WhatsAppMessage.WhatsAppMessageBuilder.aWhatsAppMessage;
+
+/**
+ * Media ingestion stage of the WhatsApp pipeline.
+ * The webhook only enqueues a lightweight {@link MediaEnvelope} for media messages and returns
+ * immediately. This component consumes those envelopes on its own worker pool, performs the
+ * Graph API to Google Cloud Storage transfer, and forwards the completed message to the
+ * AI processing queues. A slow media host therefore only delays this stage, never the webhook.
+ * <p>
+ * Images are decoded once here, right after their transfer, into the renditions stored next to
+ * the original (see {@link MediaProcessor#createRenditions}): the AI workers read the small "ai"
+ * rendition and the UI shows the thumbnail. The perceptual hash of the image is set on the
+ * message, to recognize images the user already sent (see DuplicateImageIndex). A failed
+ * rendition does not fail the ingestion; the AI worker then resizes the original itself, and the
+ * message has no hash.
+ */
+@Slf4j
+@Component
+public class MediaIngestionReceiver {
+    /** Queue of the media pending envelopes */
+    public static final String QUEUE = "mediaIngestionQueue";
+
+    private final JmsTemplate jmsTemplate;
+    private final ObjectMapper objectMapper;
+    private final WhatsAppMediaService whatsAppMediaService;
+    private final MessageQueueMetrics queueMetrics;
+    private final CloudStorageService cloudStorageService;
+    private final MediaProcessor mediaProcessor;
+
+    // WhatsApp API authentication token
+    @Value("${whatsapp.api.token}")
+    String whatsAppToken;
+
+    /**
+     * Constructor initializing the services needed for the media transfer.
+     *
+     * @param jmsTemplate JMS template for forwarding messages to the AI queue
+     * @param objectMapper JSON serialization/deserialization utility
+     * @param whatsAppMediaService Service for streaming WhatsApp media into storage
+     * @param queueMetrics Load metrics of the processing queues
+     * @param cloudStorageService Service storing the image renditions
+     * @param mediaProcessor Creator of the image renditions
+     */
+    @Autowired
+    public MediaIngestionReceiver(JmsTemplate jmsTemplate, ObjectMapper objectMapper,
+                                  WhatsAppMediaService whatsAppMediaService, MessageQueueMetrics queueMetrics,
+                                  CloudStorageService cloudStorageService, MediaProcessor mediaProcessor) {
+        this.jmsTemplate = jmsTemplate;
+        this.objectMapper = objectMapper;
+        this.whatsAppMediaService = whatsAppMediaService;
+        this.queueMetrics = queueMetrics;
+        this.cloudStorageService = cloudStorageService;
+        this.mediaProcessor = mediaProcessor;
+    }
+
+    /**
+     * Consumes a media pending envelope from 'mediaIngestionQueue'.
+     * Downloads the media from WhatsApp, stores it, and sends the resulting
+     * WhatsAppMessage to the processing queue of its type.
+     *
+     * @param serializedEnvelope JSON string containing the media envelope
+     */
+    @JmsListener(id = QUEUE, destination = QUEUE, containerFactory = "mediaIngestionContainerFactory")
+    public void ingest(String serializedEnvelope) {
+        queueMetrics.process(QUEUE, () -> {
+            try {
+                MediaEnvelope envelope = objectMapper.readValue(serializedEnvelope, MediaEnvelope.class);
+                WhatsAppMessage whatsAppMessage = createWhatsAppMessage(envelope);
+
+                // Forward the completed message to its AI processing queue
+                MessageQueues.send(jmsTemplate, whatsAppMessage, objectMapper.writeValueAsString(whatsAppMessage));
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("Error processing media envelope from queue", e);
+            }
+        });
+    }
+
+    /**
+     * Creates a standardized WhatsAppMessage from a media envelope, transferring the media
+     * to Google Cloud Storage on the way. The creation time is the time the webhook received
+     * the message, not the time the transfer finished.
+     *
+     * @param envelope The media pending envelope
+     * @return A structured WhatsAppMessage ready for AI queue processing
+     */
+    private WhatsAppMessage createWhatsAppMessage(MediaEnvelope envelope) {
+        Message message = envelope.getMessage();
+        WhatsAppMessage.WhatsAppMessageBuilder builder = aWhatsAppMessage()
+                .fromNumber(message.getFrom())
+                .messageType(message.getType())
+                .whatsAppMessageId(message.getId())
+                .processed(false);
+
+        if (envelope.getReceivedAt() != null) {
+            builder.createdAt(envelope.getReceivedAt());
+        }
+
+        switch (message.getType().toLowerCase()) {
+            case "image":
+                processImageMessage(message, builder);
+                break;
+            case "document":
+                processDocumentMessage(message, builder);
+                break;
+            case "audio":
+                processAudioMessage(message, builder);
+                break;
+            default:
+                log.warn("Unexpected message type in media ingestion: {}", message.getType());
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Processes audio messages by uploading them to Google Cloud Storage.
+     * The stored file location is then encoded in the message metadata for downstream processing.
+     */
+    private void processAudioMessage(Message message, WhatsAppMessage.WhatsAppMessageBuilder builder) {
+        if (message.getAudio() != null) {
+            // Upload audio to Google Cloud Storage
+            String storedFileName = whatsAppMediaService.processAndUploadAudio(
+                    message.getFrom(),
+                    message.getAudio(),
+                    whatsAppToken
+            );
+
+            String audioMetadata = createAudioMetadata(message.getAudio(), storedFileName);
+            builder.messageContent(audioMetadata);
+        }
+    }
+
+    /**
+     * Handles document messages through Google Cloud Storage upload.
+     * Document metadata is preserved to maintain file context and enable proper handling
+     * by downstream processors.
+     */
+    private void processDocumentMessage(Message message, WhatsAppMessage.WhatsAppMessageBuilder builder) {
+        if (message.getDocument() != null) {
+            // Upload document to Google Cloud Storage
+            String storedFileName = whatsAppMediaService.processAndUploadDocument(
+                    message.getFrom(),
+                    message.getDocument(),
+                    whatsAppToken
+            );
+
+            String documentMetadata = createDocumentMetadata(message.getDocument(), storedFileName);
+            builder.messageContent(documentMetadata);
+        }
+    }
+
+    /**
+     * Manages image message processing and storage.
+     * Images are stored with metadata to maintain context and enable features like
+     * galleries or image search, and with their renditions.
+     */
+    private void processImageMessage(Message message, WhatsAppMessage.WhatsAppMessageBuilder builder) {
+        if (message.getImage() != null) {
+            // Upload image to Google Cloud Storage
+            String storedFileName = whatsAppMediaService.processAndUploadImage(
+                    message.getFrom(),
+                    message.getImage(),
+                    whatsAppToken
+            );
+            builder.imageHash(storeRenditions(storedFileName));
+
+            String imageMetadata = createImageMetadata(message, storedFileName);
+            builder.messageContent(imageMetadata);
+        }
+    }
+
+    /**
+     * Creates and stores the renditions of a freshly stored image. The original is read back
+     * from the media spool the transfer wrote it to, and dropped from the spool afterwards:
+     * the AI worker reads the spooled AI rendition instead.
+     *
+     * @param imagePath Storage path of the original image
+     * @return Perceptual hash of the image, or null if the renditions could not be created
+     */
+    private Long storeRenditions(String imagePath) {
+        try {
+            MediaProcessor.Renditions renditions = mediaProcessor.createRenditions(cloudStorageService.read(imagePath));
+            cloudStorageService.uploadRendition(imagePath, CloudStorageService.AI_RENDITION, renditions.getAi());
+            cloudStorageService.uploadRendition(imagePath, CloudStorageService.THUMBNAIL_RENDITION,
+                    renditions.getThumbnail());
+            cloudStorageService.unspool(imagePath);
+            return renditions.getPerceptualHash();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not create the renditions of {}, the original will be processed instead", imagePath, e);
+            return null;
+        }
+    }
+
+    /**
+     * Creates structured metadata for audio files.
+     * The format strips storage-specific prefixes to maintain clean references
+     * while preserving essential audio metadata.
+     */
+    private String createAudioMetadata(Audio audio, String storedFileName) {
+        String cleanFileName = storedFileName.startsWith("audios/")
+                ? storedFileName.substring("audios/".length())
+                : storedFileName;  // get after the prefix "audios/" to get the actual file name
+        return String.format("Audio ID: %s, MIME Type: %s, GCS File: %s",
+                audio.getId(),
+                audio.getMimeType(),
+                cleanFileName);
+    }
+
+    /**
+     * Creates standardized metadata for image files.
+     * The clean filename approach (removing storage prefixes) maintains platform
+     * independence and simplifies integration with various frontend components
+     * while preserving the original GCS reference.
+     */
+    public static String createImageMetadata(Message message, String storedFileName) {
+        // Create image metadata and GCS filename
+        String cleanFileName = storedFileName.startsWith("images/")
+                ? storedFileName.substring("images/".length())
+                : storedFileName;  // get after the prefix "images/" to get the actual file name
+        return String.format("Image ID: %s, MIME Type: %s, GCS File: %s",
+                message.getImage().getId(),
+                message.getImage().getMimeType(),
+                cleanFileName);
+    }
+
+    /**
+     * Creates standardized metadata for document files.
+     * The metadata format aligns with other media types for consistency
+     * while capturing document-specific attributes needed for proper
+     * handling in downstream processing.
+     */
+    private String createDocumentMetadata(Document document, String storedFileName) {
+        String cleanFileName = storedFileName.startsWith("documents/")
+                ? storedFileName.substring("documents/".length())
+                : storedFileName;  // get after the prefix "documents/" to get the actual file name
+        return String.format("Document ID: %s, MIME Type: %s, GCS File: %s",
+                document.getId(),
+                document.getMimeType(),
+                cleanFileName);
+    }
+}
@@ -1,12 +1,28 @@
 package com.organizer.platform.service.JMS;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Base64;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
 
 /**
  * MediaProcessor handles image processing operations, specifically for optimizing images
@@ -17,7 +33,31 @@ import java.util.Base64;
  * - Maximum long edge: 1568 pixels
  * - Minimum edge: 200 pixels
  * - Maximum resolution: 1.15 megapixels
+ * <p>
+ * Images are never decoded at full resolution when they are shrunk. The target size is computed
+ * from the image header, and the image is decoded with source subsampling, skipping rows and
+ * columns, down to no less than the target size. When that still leaves more pixels than the
+ * target (a source less than twice the target), it is decoded in bands of rows, each scaled into
+ * the target before the next is read. Either way at most about twice the target pixels are held
+ * per image, instead of the 48 MP a phone photo decodes to.
+ * <p>
+ * The decoded rows are shrunk by an ImageResampler, whose kernel covers every source pixel, and
+ * encoded as JPEG at an explicit quality (media.image.jpeg-quality). When the result exceeds the
+ * byte budget (media.image.max-bytes), the quality is stepped down until it fits, or reaches
+ * the lowest quality kept for legibility.
+ * <p>
+ * Ingestion creates the renditions of an image from the same decode: the AI rendition above, and
+ * a thumbnail for the UI resampled from it, so the original is decoded once and never again by
+ * the AI workers. The PerceptualHash of the image is computed along, to recognize the
+ * same image sent again recompressed or resized.
+ * <p>
+ * The pixels held by all decodes together are capped by a budget shared across the JMS workers
+ * (media.image.decode-pixel-budget); a decode waits until its pixels fit.
+ * Metrics:
+ * - media.decode.pixels.reserved: pixels of the budget currently held
+ * - media.image.bytes (tag rendition=ai|thumbnail): size of the encoded images
  */
+@Component
 public class MediaProcessor {
     // Maximum length allowed for the longer edge of the image
     private static final int MAX_LONG_EDGE = 1568;
@@ -25,65 +65,161 @@ public class MediaProcessor {
     private static final int MIN_EDGE = 200;
     // Maximum allowed resolution in megapixels (width * height / 1,000,000)
     private static final double MAX_MEGAPIXELS = 1.15;
+    // Maximum length of the longer edge of the UI thumbnails
+    static final int THUMBNAIL_EDGE = 320;
+    // Lowest JPEG quality used to fit the byte budget, and the step down to it
+    private static final float MIN_JPEG_QUALITY = 0.5f;
+    private static final float JPEG_QUALITY_STEP = 0.1f;
+
+    private final int pixelBudget;
+    private final Semaphore pixels;
+    private final float jpegQuality;
+    private final int maxBytes;
+    private final DistributionSummary aiBytes;
+    private final DistributionSummary thumbnailBytes;
+
+    @Autowired
+    public MediaProcessor(@Value("${media.image.decode-pixel-budget:10000000}") int pixelBudget,
+                          @Value("${media.image.jpeg-quality:0.85}") float jpegQuality,
+                          @Value("${media.image.max-bytes:524288}") int maxBytes,
+                          MeterRegistry meterRegistry) {
+        this.pixelBudget = pixelBudget;
+        this.pixels = new Semaphore(pixelBudget, true);
+        this.jpegQuality = jpegQuality;
+        this.maxBytes = maxBytes;
+        this.aiBytes = DistributionSummary.builder("media.image.bytes").baseUnit("bytes")
+                .tag("rendition", "ai").register(meterRegistry);
+        this.thumbnailBytes = DistributionSummary.builder("media.image.bytes").baseUnit("bytes")
+                .tag("rendition", "thumbnail").register(meterRegistry);
+        Gauge.builder("media.decode.pixels.reserved", pixels, available -> pixelBudget - available.availablePermits())
+                .register(meterRegistry);
+    }
 
     /**
-     * Processes an image from a byte array and converts it to a Base64 string.
+     * Processes an image from a byte array and re-encodes it as JPEG.
      * This is the main entry point for image processing from external sources.
+     * The result is base64 encoded while the AI request is written (see AnthropicRequest).
+     *
+     * @param imageBytes The raw image data as a byte array
+     * @return JPEG bytes of the processed image
+     * @throws IOException If there are issues reading or processing the image, or the thread is
+     *                     interrupted while waiting for the pixel budget
+     */
+    public byte[] processImageFromBytes(byte[] imageBytes) throws IOException {
+        return process(imageBytes, false).getAi();
+    }
+
+    /**
+     * Creates the stored renditions of an image in a single decode: the JPEG sent to the AI
+     * service, as returned by {@link #processImageFromBytes}, and a thumbnail for the UI whose
+     * longer edge is at most THUMBNAIL_EDGE pixels.
      *
      * @param imageBytes The raw image data as a byte array
-     * @return Base64 encoded string of the processed image
-     * @throws IOException If there are issues reading or processing the image
+     * @return JPEG bytes of both renditions, and the perceptual hash of the image
+     * @throws IOException If there are issues reading or processing the image, or the thread is
+     *                     interrupted while waiting for the pixel budget
      */
-    public String processAndConvertImageFromBytes(byte[] imageBytes) throws IOException {
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(imageBytes)) {
-            BufferedImage originalImage = ImageIO.read(bis);
-            if (originalImage == null) {
-                throw new IOException("Failed to read image from byte array");
+    public Renditions createRenditions(byte[] imageBytes) throws IOException {
+        return process(imageBytes, true);
+    }
+
+    private Renditions process(byte[] imageBytes, boolean withThumbnail) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(imageBytes))) {
+            ImageReader reader = readerFor(input);
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int[] newDimensions = calculateOptimalDimensions(width, height);
+                DecodePlan plan = DecodePlan.of(width, height, newDimensions[0], newDimensions[1]);
+
+                long thumbnailPixels = withThumbnail ? (long) THUMBNAIL_EDGE * THUMBNAIL_EDGE : 0;
+                int reserved = (int) Math.min(pixelBudget, plan.getReservedPixels() + thumbnailPixels);
+                acquire(reserved);
+                try {
+                    BufferedImage image = decode(reader, plan);
+                    byte[] ai = toJpeg(image, maxBytes, aiBytes);
+                    if (!withThumbnail) {
+                        return new Renditions(ai, null, 0);
+                    }
+                    // The hash is taken from the thumbnail, as alike as the AI rendition and cheaper to shrink
+                    BufferedImage thumbnail = thumbnail(image);
+                    return new Renditions(ai, toJpeg(thumbnail, Integer.MAX_VALUE, thumbnailBytes),
+                            PerceptualHash.of(thumbnail));
+                } finally {
+                    pixels.release(reserved);
+                }
+            } finally {
+                reader.dispose();
             }
-            return processImage(originalImage);
         }
     }
 
     /**
-     * Processes a BufferedImage by resizing it if necessary and converting to Base64.
-     * The method applies high-quality rendering settings when resizing.
+     * Decodes an image following its plan, subsampled and band by band, and resamples it into
+     * the target size. An image keeping its size is only converted to RGB.
      *
-     * @param originalImage The original BufferedImage to process
-     * @return Base64 encoded string of the processed image
-     * @throws IOException If there are issues processing or encoding the image
+     * @param reader Reader of the image, with its input set
+     * @param plan Decode plan of the image
+     * @return The image in its target size
+     * @throws IOException If the image cannot be decoded
+     */
+    private BufferedImage decode(ImageReader reader, DecodePlan plan) throws IOException {
+        ImageResampler resampler = new ImageResampler(plan.getDecodedWidth(), plan.getDecodedHeight(),
+                plan.targetWidth, plan.targetHeight);
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(plan.subsampling, plan.subsampling, 0, 0);
+        for (int top = 0; top < plan.height; top += plan.bandRows) {
+            int bottom = Math.min(plan.height, top + plan.bandRows);
+            if (plan.bandRows < plan.height) {
+                param.setSourceRegion(new Rectangle(0, top, plan.width, bottom - top));
+            }
+            resampler.push(reader.read(0, param));
+        }
+        return resampler.result();
+    }
+
+    /**
+     * Resamples the AI rendition into the thumbnail size. Images already within the thumbnail
+     * size are kept as they are.
+     */
+    private static BufferedImage thumbnail(BufferedImage image) {
+        int[] size = thumbnailDimensions(image.getWidth(), image.getHeight());
+        if (size[0] == image.getWidth() && size[1] == image.getHeight()) {
+            return image;
+        }
+        ImageResampler resampler = new ImageResampler(image.getWidth(), image.getHeight(), size[0], size[1]);
+        resampler.push(image);
+        return resampler.result();
+    }
+
+    /**
+     * @return [width, height] of the thumbnail of an image, its longer edge at most THUMBNAIL_EDGE
      */
-    private String processImage(BufferedImage originalImage) throws IOException {
-        // Get dimensions
-        int originalWidth = originalImage.getWidth();
-        int originalHeight = originalImage.getHeight();
-
-        // Calculate new dimensions based on constraints
-        int[] newDimensions = calculateOptimalDimensions(originalWidth, originalHeight);
-        int newWidth = newDimensions[0];
-        int newHeight = newDimensions[1];
-
-        // Skip resizing if image is already optimal
-        if (newWidth == originalWidth && newHeight == originalHeight) {
-            return convertToBase64(originalImage);
-        }
-
-        // Create new image with optimal dimensions
-        BufferedImage resizedImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = resizedImage.createGraphics();
-
-        // Configure high-quality rendering settings
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-                RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING,
-                RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON);
-
-        // Perform the resize operation
-        g2d.drawImage(originalImage, 0, 0, newWidth, newHeight, null);
-        g2d.dispose();
-
-        return convertToBase64(resizedImage);
+    static int[] thumbnailDimensions(int width, int height) {
+        int longEdge = Math.max(width, height);
+        if (longEdge <= THUMBNAIL_EDGE) {
+            return new int[]{width, height};
+        }
+        double scale = (double) THUMBNAIL_EDGE / longEdge;
+        return new int[]{Math.max(1, (int) Math.round(width * scale)), Math.max(1, (int) Math.round(height * scale))};
+    }
+
+    private static ImageReader readerFor(ImageInputStream input) throws IOException {
+        Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+        if (readers == null || !readers.hasNext()) {
+            throw new IOException("Failed to read image from byte array");
+        }
+        return readers.next();
+    }
+
+    private void acquire(int reserved) throws IOException {
+        try {
+            pixels.acquire(reserved);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the image decode budget");
+        }
     }
 
     /**
@@ -97,7 +233,7 @@ public class MediaProcessor {
      * @param height Original height of the image
      * @return int array containing [newWidth, newHeight]
      */
-    private int[] calculateOptimalDimensions(int width, int height) {
+    static int[] calculateOptimalDimensions(int width, int height) {
         double aspectRatio = (double) width / height;
         int newWidth = width;
         int newHeight = height;
@@ -135,17 +271,129 @@ public class MediaProcessor {
     }
 
     /**
-     * Converts a BufferedImage to a Base64 encoded string.
-     * The image is encoded as a JPG format before conversion.
+     * Encodes a BufferedImage in JPG format, at the configured quality or the highest lower one
+     * fitting the byte budget.
      *
-     * @param image The BufferedImage to convert
-     * @return Base64 encoded string representation of the image
-     * @throws IOException If there are issues writing or encoding the image
+     * @param image The BufferedImage to encode
+     * @param maxBytes Byte budget of the encoded image
+     * @param encodedBytes Summary recording the encoded size
+     * @return JPEG bytes of the image
+     * @throws IOException If there are issues writing the image
      */
-    private String convertToBase64(BufferedImage image) throws IOException {
+    private byte[] toJpeg(BufferedImage image, int maxBytes, DistributionSummary encodedBytes) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            float quality = jpegQuality;
+            while (true) {
+                param.setCompressionQuality(quality);
+                byte[] jpeg = encode(writer, image, param);
+                if (jpeg.length <= maxBytes || quality <= MIN_JPEG_QUALITY) {
+                    encodedBytes.record(jpeg.length);
+                    return jpeg;
+                }
+                quality = Math.max(MIN_JPEG_QUALITY, quality - JPEG_QUALITY_STEP);
+            }
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static byte[] encode(ImageWriter writer, BufferedImage image, ImageWriteParam param) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(image, "jpg", baos);
-        byte[] imageBytes = baos.toByteArray();
-        return Base64.getEncoder().encodeToString(imageBytes);
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(baos)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * JPEG renditions created from one decode of an image, and its perceptual hash.
+     */
+    public static final class Renditions {
+        private final byte[] ai;
+        private final byte[] thumbnail;
+        private final long perceptualHash;
+
+        Renditions(byte[] ai, byte[] thumbnail, long perceptualHash) {
+            this.ai = ai;
+            this.thumbnail = thumbnail;
+            this.perceptualHash = perceptualHash;
+        }
+
+        /**
+         * @return The image resized for the AI service
+         */
+        public byte[] getAi() {
+            return ai;
+        }
+
+        /**
+         * @return The thumbnail shown by the UI
+         */
+        public byte[] getThumbnail() {
+            return thumbnail;
+        }
+
+        /**
+         * @return The difference hash of the image (see PerceptualHash)
+         */
+        public long getPerceptualHash() {
+            return perceptualHash;
+        }
+    }
+
+    /**
+     * How an image is decoded into its target size: the subsampling factor, the largest that
+     * keeps the decoded image at least as large as the target, and the source rows decoded at
+     * once, so a band never holds more pixels than the target.
+     */
+    static final class DecodePlan {
+        final int width;
+        final int height;
+        final int targetWidth;
+        final int targetHeight;
+        final int subsampling;
+        final int bandRows;
+
+        private DecodePlan(int width, int height, int targetWidth, int targetHeight, int subsampling, int bandRows) {
+            this.width = width;
+            this.height = height;
+            this.targetWidth = targetWidth;
+            this.targetHeight = targetHeight;
+            this.subsampling = subsampling;
+            this.bandRows = bandRows;
+        }
+
+        static DecodePlan of(int width, int height, int targetWidth, int targetHeight) {
+            int subsampling = Math.max(1, Math.min(width / targetWidth, height / targetHeight));
+            long decodedWidth = ceilDiv(width, subsampling);
+            long targetPixels = (long) targetWidth * targetHeight;
+            // Whole subsampled rows per band, aligned on the subsampling grid
+            long decodedRows = Math.max(1, targetPixels / decodedWidth);
+            int bandRows = (int) Math.min(height, decodedRows * subsampling);
+            return new DecodePlan(width, height, targetWidth, targetHeight, subsampling, bandRows);
+        }
+
+        int getDecodedWidth() {
+            return (int) ceilDiv(width, subsampling);
+        }
+
+        int getDecodedHeight() {
+            return (int) ceilDiv(height, subsampling);
+        }
+
+        /**
+         * @return Pixels held at once: the target image and one decoded band
+         */
+        long getReservedPixels() {
+            return (long) targetWidth * targetHeight + getDecodedWidth() * ceilDiv(bandRows, subsampling);
+        }
+
+        private static long ceilDiv(long value, int divisor) {
+            return (value + divisor - 1) / divisor;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,145 @@
+package com.organizer.platform.service.JMS;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.activemq.artemis.core.server.Queue;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes the load of every processing queue:
+ * - jms.queue.depth (tag queue): messages waiting in the broker, when it is embedded
+ * - jms.queue.consumers.busy (tag queue): consumers currently processing a message
+ * - jms.queue.consumers.utilization (tag queue): busy consumers over the maximum concurrency
+ * - jms.queue.redeliveries (tag queue): messages received again after a rolled back attempt
+ * - jms.queue.failures (tags queue, failure): failed processing attempts by classification
+ * - jms.queue.dead.lettered (tags queue, failure): messages sent to the DLQ by a listener
+ * The depth of the DLQ itself is published as jms.queue.depth with queue=DLQ.
+ * <p>
+ * Listeners report their work through {@link #process(String, Runnable)}. The listener id of
+ * each queue must be the queue name, so its container can be found in the endpoint registry.
+ */
+@Component
+public class MessageQueueMetrics {
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<EmbeddedActiveMQ> embeddedBroker;
+    private final JmsListenerEndpointRegistry listenerRegistry;
+    private final Map<String, AtomicInteger> busyConsumers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public MessageQueueMetrics(MeterRegistry meterRegistry,
+                               ObjectProvider<EmbeddedActiveMQ> embeddedBroker,
+                               JmsListenerEndpointRegistry listenerRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.embeddedBroker = embeddedBroker;
+        this.listenerRegistry = listenerRegistry;
+    }
+
+    /**
+     * Registers the gauges of the known queues, so their depth is visible before any consumer ran.
+     */
+    @PostConstruct
+    public void registerKnownQueues() {
+        MessageQueues.ALL.forEach(queue -> busyConsumers.computeIfAbsent(queue, this::register));
+        busyConsumers.computeIfAbsent(MediaIngestionReceiver.QUEUE, this::register);
+        Gauge.builder("jms.queue.depth", this, metrics -> metrics.depth(DeadLetterService.DLQ))
+                .tag("queue", DeadLetterService.DLQ)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the processing of one message, counting its consumer as busy meanwhile.
+     *
+     * @param queue Name of the queue the message was received from
+     * @param work Processing of the message
+     */
+    public void process(String queue, Runnable work) {
+        AtomicInteger busy = busyConsumers.computeIfAbsent(queue, this::register);
+        busy.incrementAndGet();
+        try {
+            work.run();
+        } finally {
+            busy.decrementAndGet();
+        }
+    }
+
+    /**
+     * Counts a message received again after a failed attempt.
+     *
+     * @param queue Name of the queue the message was received from
+     */
+    public void recordRedelivery(String queue) {
+        meterRegistry.counter("jms.queue.redeliveries", "queue", queue).increment();
+    }
+
+    /**
+     * Counts a failed processing attempt.
+     *
+     * @param queue Name of the queue the message was received from
+     * @param failure Classification of the failure
+     */
+    public void recordFailure(String queue, ProcessingFailure failure) {
+        meterRegistry.counter("jms.queue.failures", "queue", queue, "failure", failure.name()).increment();
+    }
+
+    /**
+     * Counts a message sent to the dead-letter queue by a listener.
+     *
+     * @param queue Name of the queue the message was received from
+     * @param failure Classification of the failure
+     */
+    public void recordDeadLetter(String queue, ProcessingFailure failure) {
+        meterRegistry.counter("jms.queue.dead.lettered", "queue", queue, "failure", failure.name()).increment();
+    }
+
+    /**
+     * Returns the number of messages waiting in a queue of the embedded broker.
+     *
+     * @param queue Name of the queue
+     * @return The queue depth, or NaN when the broker is not embedded or the queue does not exist
+     */
+    public double depth(String queue) {
+        EmbeddedActiveMQ broker = embeddedBroker.getIfAvailable();
+        if (broker == null || broker.getActiveMQServer() == null) {
+            return Double.NaN;
+        }
+        Queue brokerQueue = broker.getActiveMQServer().locateQueue(queue);
+        return brokerQueue != null ? brokerQueue.getMessageCount() : Double.NaN;
+    }
+
+    /**
+     * Registers the gauges of a queue.
+     */
+    private AtomicInteger register(String queue) {
+        AtomicInteger busy = new AtomicInteger();
+        Gauge.builder("jms.queue.depth", this, metrics -> metrics.depth(queue))
+                .tag("queue", queue)
+                .register(meterRegistry);
+        Gauge.builder("jms.queue.consumers.busy", busy, AtomicInteger::get)
+                .tag("queue", queue)
+                .register(meterRegistry);
+        Gauge.builder("jms.queue.consumers.utilization", this, metrics -> metrics.utilization(queue, busy))
+                .tag("queue", queue)
+                .register(meterRegistry);
+        return busy;
+    }
+
+    private double utilization(String queue, AtomicInteger busy) {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(queue);
+        if (!(container instanceof DefaultMessageListenerContainer)) {
+            return Double.NaN;
+        }
+        int maxConsumers = ((DefaultMessageListenerContainer) container).getMaxConcurrentConsumers();
+        return maxConsumers > 0 ? (double) busy.get() / maxConsumers : Double.NaN;
+    }
+}
@@ -0,0 +1,73 @@
+package com.organizer.platform.service.JMS;
+
+import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import org.springframework.jms.core.JmsTemplate;
+
+import java.util.List;
+
+/**
+ * Destinations of the AI processing pipeline, one per kind of work.
+ * Each queue is consumed by its own listener container and thread pool (see JmsConfig),
+ * so an expensive PDF analysis never delays a cheap text classification queued behind it.
+ * <p>
+ * Messages are sent in a JMS message group per user. The broker delivers all messages of a
+ * group to one consumer at a time, so the messages of a user are processed in the order they
+ * were sent (for example two quick smart updates of the same message), while different
+ * users are still spread across all consumers of the queue.
+ */
+public final class MessageQueues {
+    /** Plain text messages */
+    public static final String TEXT = "textQueue";
+    /** Text messages carrying scraped content of a URL */
+    public static final String URL_TEXT = "urlTextQueue";
+    /** Images, analyzed by the vision model */
+    public static final String IMAGE = "imageQueue";
+    /** PDF documents, the most expensive AI requests */
+    public static final String PDF = "pdfQueue";
+    /** Audio and non-PDF documents, stored without AI processing */
+    public static final String MEDIA = "mediaQueue";
+
+    /** Message property holding the JMS message group */
+    public static final String GROUP_ID_PROPERTY = "JMSXGroupID";
+
+    /** Every AI processing destination */
+    public static final List<String> ALL = List.of(TEXT, URL_TEXT, IMAGE, PDF, MEDIA);
+
+    private MessageQueues() {
+    }
+
+    /**
+     * Selects the destination a message is processed from.
+     *
+     * @param message The message to route
+     * @return Name of the destination queue
+     */
+    public static String destinationFor(WhatsAppMessage message) {
+        switch (message.getMessageType().toLowerCase()) {
+            case "text":
+                String purpose = message.getPurpose();
+                return purpose != null && !purpose.isBlank() ? URL_TEXT : TEXT;
+            case "image":
+                return IMAGE;
+            case "document":
+                String content = message.getMessageContent();
+                return content != null && content.trim().toLowerCase().endsWith(".pdf") ? PDF : MEDIA;
+            default:
+                return MEDIA;
+        }
+    }
+
+    /**
+     * Sends a message to its processing queue, in the message group of its sender.
+     *
+     * @param jmsTemplate JMS template used to send the message
+     * @param message The message to send
+     * @param serializedMessage JSON string of the message
+     */
+    public static void send(JmsTemplate jmsTemplate, WhatsAppMessage message, String serializedMessage) {
+        jmsTemplate.convertAndSend(destinationFor(message), serializedMessage, jmsMessage -> {
+            jmsMessage.setStringProperty(GROUP_ID_PROPERTY, message.getFromNumber());
+            return jmsMessage;
+        });
+    }
+}
@@ -2,36 +2,49 @@ package com.organizer.platform.service.JMS;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mashape.unirest.http.exceptions.UnirestException;
 import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import com.organizer.platform.model.AI.ContentOrganization;
 import com.organizer.platform.service.AI.AiService;
+import com.organizer.platform.service.AI.DuplicateImageIndex;
 import com.organizer.platform.service.Google.CloudStorageService;
 import com.organizer.platform.service.WhatsApp.WhatsAppMessageService;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Component;
 
+import javax.jms.JMSException;
+import javax.jms.Message;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
-import java.util.Base64;
+import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * Component responsible for processing WhatsApp messages received through JMS queue.
+ * Component responsible for processing WhatsApp messages received through the JMS processing queues.
  * This service handles different types of messages (text, image, document, audio)
  * and coordinates with various services for AI processing, storage, and message management.
+ * <p>
+ * Failures are classified (see ProcessingFailure). Retryable failures are rethrown, so the
+ * transaction rolls back and the broker redelivers the message with backoff; the others are
+ * sent to the dead-letter queue at once instead of wasting further attempts.
  */
 @Slf4j
 @Component
 public class MessageReceiver {
+    /** Message property holding the number of times the broker delivered a message */
+    private static final String DELIVERY_COUNT_PROPERTY = "JMSXDeliveryCount";
+
     private final AiService aiService;
     private final WhatsAppMessageService messageService;
     private final ObjectMapper objectMapper;
     private final CloudStorageService cloudStorageService;
+    private final MessageQueueMetrics queueMetrics;
+    private final DeadLetterService deadLetterService;
+    private final MediaProcessor mediaProcessor;
+    private final DuplicateImageIndex duplicateImageIndex;
+    private final PdfTextExtractor pdfTextExtractor;
 
     /**
      * Constructor initializing required services for message processing.
@@ -40,18 +53,133 @@ public class MessageReceiver {
      * @param messageService Service for WhatsApp message persistence
      * @param objectMapper JSON serialization/deserialization utility
      * @param cloudStorageService Service for cloud storage operations
+     * @param queueMetrics Load metrics of the processing queues
+     * @param deadLetterService Dead-letter queue of messages that can never be processed
+     * @param mediaProcessor Resizer of images for the AI service
+     * @param duplicateImageIndex Index of the organized images of every user, by perceptual hash
+     * @param pdfTextExtractor Reader of the text layer of PDF documents
      */
     @Autowired
     public MessageReceiver(AiService aiService, WhatsAppMessageService messageService,
-                           ObjectMapper objectMapper, CloudStorageService cloudStorageService) {
+                           ObjectMapper objectMapper, CloudStorageService cloudStorageService,
+                           MessageQueueMetrics queueMetrics,
+                           DeadLetterService deadLetterService, MediaProcessor mediaProcessor,
+                           DuplicateImageIndex duplicateImageIndex, PdfTextExtractor pdfTextExtractor) {
         this.aiService = aiService;
         this.messageService = messageService;
         this.objectMapper = objectMapper;
         this.cloudStorageService = cloudStorageService;
+        this.queueMetrics = queueMetrics;
+        this.deadLetterService = deadLetterService;
+        this.mediaProcessor = mediaProcessor;
+        this.duplicateImageIndex = duplicateImageIndex;
+        this.pdfTextExtractor = pdfTextExtractor;
+    }
+
+    /**
+     * Consumes plain text messages from 'textQueue'.
+     *
+     * @param serializedMessage JSON string containing WhatsApp message data
+     * @param message The received JMS message, carrying its delivery count and group
+     */
+    @JmsListener(id = MessageQueues.TEXT, destination = MessageQueues.TEXT, containerFactory = "textContainerFactory")
+    public void processTextMessage(String serializedMessage, Message message) {
+        consume(MessageQueues.TEXT, serializedMessage, message);
+    }
+
+    /**
+     * Consumes text messages with scraped URL content from 'urlTextQueue'.
+     *
+     * @param serializedMessage JSON string containing WhatsApp message data
+     * @param message The received JMS message, carrying its delivery count and group
+     */
+    @JmsListener(id = MessageQueues.URL_TEXT, destination = MessageQueues.URL_TEXT, containerFactory = "urlTextContainerFactory")
+    public void processUrlTextMessage(String serializedMessage, Message message) {
+        consume(MessageQueues.URL_TEXT, serializedMessage, message);
+    }
+
+    /**
+     * Consumes image messages from 'imageQueue'.
+     *
+     * @param serializedMessage JSON string containing WhatsApp message data
+     * @param message The received JMS message, carrying its delivery count and group
+     */
+    @JmsListener(id = MessageQueues.IMAGE, destination = MessageQueues.IMAGE, containerFactory = "imageContainerFactory")
+    public void processImageMessage(String serializedMessage, Message message) {
+        consume(MessageQueues.IMAGE, serializedMessage, message);
     }
 
     /**
-     * Main message processing method triggered by JMS messages from 'exampleQueue'.
+     * Consumes PDF document messages from 'pdfQueue'.
+     *
+     * @param serializedMessage JSON string containing WhatsApp message data
+     * @param message The received JMS message, carrying its delivery count and group
+     */
+    @JmsListener(id = MessageQueues.PDF, destination = MessageQueues.PDF, containerFactory = "pdfContainerFactory")
+    public void processPdfMessage(String serializedMessage, Message message) {
+        consume(MessageQueues.PDF, serializedMessage, message);
+    }
+
+    /**
+     * Consumes audio and non-PDF document messages from 'mediaQueue'.
+     *
+     * @param serializedMessage JSON string containing WhatsApp message data
+     * @param message The received JMS message, carrying its delivery count and group
+     */
+    @JmsListener(id = MessageQueues.MEDIA, destination = MessageQueues.MEDIA, containerFactory = "mediaContainerFactory")
+    public void processMediaMessage(String serializedMessage, Message message) {
+        consume(MessageQueues.MEDIA, serializedMessage, message);
+    }
+
+    /**
+     * Processes a message received from a queue, handling its failure.
+     * A retryable failure is rethrown so the broker redelivers the message; any other failure
+     * moves it to the dead-letter queue and acknowledges it.
+     *
+     * @param queue Queue the message was received from
+     * @param serializedMessage JSON string containing WhatsApp message data
+     * @param message The received JMS message, carrying its delivery count and group
+     */
+    private void consume(String queue, String serializedMessage, Message message) {
+        int deliveryCount = deliveryCountOf(message);
+        if (deliveryCount > 1) {
+            queueMetrics.recordRedelivery(queue);
+        }
+        queueMetrics.process(queue, () -> {
+            try {
+                processMessage(serializedMessage);
+            } catch (RuntimeException e) {
+                ProcessingFailure failure = ProcessingFailure.classify(e);
+                queueMetrics.recordFailure(queue, failure);
+                if (!failure.isRetryable()) {
+                    deadLetterService.deadLetter(queue, serializedMessage, groupIdOf(message), failure, e);
+                    return;
+                }
+                log.warn("Attempt {} of message from {} failed with {} failure, will retry: {}",
+                        deliveryCount, queue, failure, e.getMessage());
+                throw e;
+            }
+        });
+    }
+
+    private static int deliveryCountOf(Message message) {
+        try {
+            return message.getIntProperty(DELIVERY_COUNT_PROPERTY);
+        } catch (JMSException | NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    private static String groupIdOf(Message message) {
+        try {
+            return message.getStringProperty(MessageQueues.GROUP_ID_PROPERTY);
+        } catch (JMSException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Main message processing method, shared by the listeners of every processing queue.
      * Handles the complete lifecycle of message processing including:
      * - Message deserialization
      * - Validation
@@ -61,7 +189,6 @@ public class MessageReceiver {
      *
      * @param serializedMessage JSON string containing WhatsApp message data
      */
-    @JmsListener(destination = "exampleQueue")
     public void processMessage(String serializedMessage) {
         try {
             WhatsAppMessage whatsAppMessage = objectMapper.readValue(serializedMessage, WhatsAppMessage.class);
@@ -76,7 +203,7 @@ public class MessageReceiver {
             saveAfterProcessedMessage(whatsAppMessage, mediaName);
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Error processing message from queue", e);
-        } catch (UnirestException e) {
+        } catch (IOException e) {
             throw new RuntimeException("Failed to process message content", e);
         }
     }
@@ -112,14 +239,19 @@ public class MessageReceiver {
      * Handles message persistence and processing workflow.
      * Saves the message initially if new, processes it based on type,
      * and saves again if AI processing was performed.
+     * A redelivered or replayed queue message carries no row ID, so the row an earlier delivery
+     * saved is found by the WhatsApp message ID and updated instead of saving the message again.
      *
      * @param whatsAppMessage Message to be saved and processed
      * @param mediaName Name of associated media file
-     * @throws UnirestException If message processing fails
-     * @throws JsonProcessingException If JSON processing fails
+     * @throws IOException If the AI request fails or its response cannot be parsed
      */
     private void saveAfterProcessedMessage(WhatsAppMessage whatsAppMessage, String mediaName)
-            throws UnirestException, JsonProcessingException {
+            throws IOException {
+        if (whatsAppMessage.getId() == null) {
+            messageService.findIdByWhatsAppMessageId(whatsAppMessage.getWhatsAppMessageId())
+                    .ifPresent(whatsAppMessage::setId);
+        }
         if (whatsAppMessage.getId() == null) {
             messageService.save(whatsAppMessage);
         }
@@ -137,11 +269,10 @@ public class MessageReceiver {
      *
      * @param whatsAppMessage Message to be processed
      * @param mediaName Name of associated media file
-     * @throws UnirestException If message processing fails
-     * @throws JsonProcessingException If JSON processing fails
+     * @throws IOException If the AI request fails or its response cannot be parsed
      */
     private void processMessageByType(WhatsAppMessage whatsAppMessage, String mediaName)
-            throws UnirestException, JsonProcessingException {
+            throws IOException {
         switch (whatsAppMessage.getMessageType().toLowerCase()) {
             case "text":
                 String purpose = whatsAppMessage.getPurpose();
@@ -153,14 +284,12 @@ public class MessageReceiver {
                 break;
 
             case "image":
-                String base64Image = fetchAndConvertToBase64(whatsAppMessage.getFromNumber(), mediaName, "image");
-                aiService.generateOrganizationFromImage(base64Image, whatsAppMessage);
+                organizeImage(whatsAppMessage, mediaName);
                 break;
 
             case "document":
                 if(mediaName.toLowerCase().endsWith(".pdf")){
-                    String base64pdf = fetchAndConvertToBase64(whatsAppMessage.getFromNumber(), mediaName, "pdf");
-                    aiService.generateOrganizationFromPDF(base64pdf, whatsAppMessage);
+                    organizePdf(whatsAppMessage, mediaName);
                 }
                 break;
 
@@ -172,6 +301,44 @@ public class MessageReceiver {
         }
     }
 
+    /**
+     * Organizes an image message. An image the user already sent, even recompressed or resized,
+     * reuses the organization of the earlier message without fetching the image or calling the AI.
+     *
+     * @param whatsAppMessage The image message
+     * @param mediaName Name of the image file
+     * @throws IOException If the AI request fails or its response cannot be parsed
+     */
+    private void organizeImage(WhatsAppMessage whatsAppMessage, String mediaName) throws IOException {
+        Optional<ContentOrganization> original = duplicateImageIndex.findOriginal(whatsAppMessage);
+        if (original.isPresent()) {
+            aiService.applyOrganization(whatsAppMessage, original.get());
+            return;
+        }
+
+        byte[] image = fetchMedia(whatsAppMessage.getFromNumber(), mediaName, "image");
+        aiService.generateOrganizationFromImage(image, whatsAppMessage);
+        duplicateImageIndex.add(whatsAppMessage);
+    }
+
+    /**
+     * Organizes a PDF document message. A document with a text layer is organized from its text;
+     * only scanned documents, or documents whose text cannot be read, are sent as PDFs.
+     *
+     * @param whatsAppMessage The document message
+     * @param mediaName Name of the PDF file
+     * @throws IOException If the AI request fails or its response cannot be parsed
+     */
+    private void organizePdf(WhatsAppMessage whatsAppMessage, String mediaName) throws IOException {
+        byte[] pdf = fetchMedia(whatsAppMessage.getFromNumber(), mediaName, "pdf");
+        Optional<String> text = pdfTextExtractor.extract(pdf);
+        if (text.isPresent()) {
+            aiService.generateOrganizationFromPDFText(text.get(), whatsAppMessage);
+        } else {
+            aiService.generateOrganizationFromPDF(pdf, whatsAppMessage);
+        }
+    }
+
     /**
      * Validates required fields in the WhatsApp message.
      * Ensures all necessary fields are present and properly formatted.
@@ -212,62 +379,54 @@ public class MessageReceiver {
     }
 
     /**
-     * Fetches media content and converts it to base64 format.
+     * Fetches media content and prepares it for AI analysis.
      * Handles both image and document file types.
+     * Images are read from their AI rendition, created at ingestion; only images without one,
+     * ingested before renditions existed or whose rendition failed, are resized here.
+     * The local media spool is checked first; only on a miss is the content read from storage.
      *
      * @param from Sender's identifier
      * @param fileName Name of the file to fetch
      * @param fileType Type of file (image/pdf)
-     * @return Base64 encoded string of the file content
+     * @return Content of the file, ready to be sent to the AI service
      * @throws IllegalArgumentException If required parameters are null
      * @throws RuntimeException If processing fails
      */
-    private String fetchAndConvertToBase64(String from, String fileName, String fileType) {
+    private byte[] fetchMedia(String from, String fileName, String fileType) {
         if (fileName == null || fileType == null) {
             throw new IllegalArgumentException("fileName and fileType cannot be null");
         }
 
         try {
-            String preSignedUrl = fileType.equals("image")
-                    ? cloudStorageService.generateImageSignedUrl(from, fileName)
-                    : cloudStorageService.generateDocumentSignedUrl(from, fileName);
+            String objectPath = (fileType.equals("image") ? "images/" : "documents/") + from + "/" + fileName;
+            if (fileType.equals("image")) {
+                try {
+                    return cloudStorageService.read(
+                            CloudStorageService.renditionPath(objectPath, CloudStorageService.AI_RENDITION));
+                } catch (FileNotFoundException e) {
+                    log.debug("No AI rendition of {}, processing the original", objectPath);
+                }
+            }
 
-            return fetchAndProcessContent(preSignedUrl, fileType);
+            return processContent(cloudStorageService.read(objectPath), fileType);
         } catch (Exception e) {
             throw new RuntimeException(String.format("Failed to process %s: %s", fileType, fileName), e);
         }
     }
 
-    /**
-     * Fetches content from a pre-signed URL and processes it.
-     *
-     * @param preSignedUrl URL to fetch content from
-     * @param fileType Type of file being processed
-     * @return Processed content as base64 string
-     * @throws IOException If content fetching or processing fails
-     */
-    private String fetchAndProcessContent(String preSignedUrl, String fileType)
-            throws IOException {
-        try (InputStream inputStream = new URL(preSignedUrl).openStream()) {
-            byte[] fileBytes = IOUtils.toByteArray(inputStream);
-            return processContent(fileBytes, fileType);
-        }
-    }
-
     /**
      * Processes file content based on type.
      * For images, includes additional processing for AI optimization.
      *
      * @param fileBytes Raw file content
      * @param fileType Type of file being processed
-     * @return Processed content as base64 string
+     * @return Processed content
      * @throws IOException If processing fails
      */
-    private String processContent(byte[] fileBytes, String fileType) throws IOException {
+    private byte[] processContent(byte[] fileBytes, String fileType) throws IOException {
         if (fileType.equals("image")) {
-            MediaProcessor mediaProcessor = new MediaProcessor();
-            return mediaProcessor.processAndConvertImageFromBytes(fileBytes);
+            return mediaProcessor.processImageFromBytes(fileBytes);
         }
-        return Base64.getEncoder().encodeToString(fileBytes);
+        return fileBytes;
     }
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+package com.organizer.platform.service.JMS;
+
+import com.organizer.platform.util.TokenEstimator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts the text layer of PDF documents, so documents created as text (invoices, statements,
+ * exported forms) are organized from their text instead of being sent whole to the AI service.
+ * A PDF sent as a document is base64 encoded into the request, and every page costs the tokens
+ * of its text and of its image; the text alone is a fraction of both.
+ * <p>
+ * Pages are read one at a time, from the first, until media.pdf.text.max-pages are read or the
+ * text reaches its token budget (media.pdf.text.max-tokens), so a long document costs no more
+ * than its first pages. The text of a page is compacted: lines are trimmed, runs of spaces
+ * become one and empty lines are dropped, keeping a blank line between pages.
+ * <p>
+ * Scanned documents have no text layer, or only a stamp or a header over the scanned image.
+ * The text is used only when the pages read hold at least media.pdf.text.min-chars-per-page
+ * letters and digits on average; otherwise, or when the document cannot be read (encrypted,
+ * damaged), the document is sent as a PDF as before.
+ * <p>
+ * Metrics:
+ * - media.pdf.extractions (tag result: text, scanned, failed): documents by whether their text was used
+ * - media.pdf.extraction.latency: time to read the text layer
+ * - media.pdf.text.tokens: estimated tokens of the texts used
+ */
+@Slf4j
+@Component
+public class PdfTextExtractor {
+    private static final Pattern SPACES = Pattern.compile("\\h+");
+    private static final Pattern LINES = Pattern.compile("\\R");
+
+    private final boolean enabled;
+    private final int maxPages;
+    private final int minCharsPerPage;
+    private final int maxTokens;
+
+    private final Counter textDocuments;
+    private final Counter scannedDocuments;
+    private final Counter failedDocuments;
+    private final Timer latency;
+    private final DistributionSummary tokens;
+
+    @Autowired
+    public PdfTextExtractor(@Value("${media.pdf.text.enabled:true}") boolean enabled,
+                            @Value("${media.pdf.text.max-pages:30}") int maxPages,
+                            @Value("${media.pdf.text.min-chars-per-page:100}") int minCharsPerPage,
+                            @Value("${media.pdf.text.max-tokens:8000}") int maxTokens,
+                            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxPages = maxPages;
+        this.minCharsPerPage = minCharsPerPage;
+        this.maxTokens = maxTokens;
+        this.textDocuments = meterRegistry.counter("media.pdf.extractions", "result", "text");
+        this.scannedDocuments = meterRegistry.counter("media.pdf.extractions", "result", "scanned");
+        this.failedDocuments = meterRegistry.counter("media.pdf.extractions", "result", "failed");
+        this.latency = meterRegistry.timer("media.pdf.extraction.latency");
+        this.tokens = DistributionSummary.builder("media.pdf.text.tokens").baseUnit("tokens").register(meterRegistry);
+    }
+
+    /**
+     * Reads the text layer of a PDF document.
+     *
+     * @param pdf The PDF content
+     * @return The compacted text of the first pages, within the token budget, or empty if the
+     *         document has too little text to be organized from it or cannot be read
+     */
+    public Optional<String> extract(byte[] pdf) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Timer.Sample sample = Timer.start();
+        try (PDDocument document = PDDocument.load(pdf)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            // Reading order of the page rather than the order the text was drawn in
+            stripper.setSortByPosition(true);
+
+            int pages = Math.min(maxPages, document.getNumberOfPages());
+            StringBuilder text = new StringBuilder();
+            long chars = 0;
+            int read = 0;
+            while (read < pages && TokenEstimator.estimate(text) < maxTokens) {
+                read++;
+                stripper.setStartPage(read);
+                stripper.setEndPage(read);
+                String page = stripper.getText(document);
+                chars += page.codePoints().filter(Character::isLetterOrDigit).count();
+                String compacted = compact(page);
+                if (!compacted.isEmpty()) {
+                    text.append(text.length() > 0 ? "\n\n" : "").append(compacted);
+                }
+            }
+
+            if (read == 0 || chars < (long) minCharsPerPage * read) {
+                log.debug("PDF of {} pages has {} characters in its first {}, sending the document",
+                        document.getNumberOfPages(), chars, read);
+                scannedDocuments.increment();
+                return Optional.empty();
+            }
+            String result = TokenEstimator.truncate(text.toString(), maxTokens);
+            textDocuments.increment();
+            tokens.record(TokenEstimator.estimate(result));
+            return Optional.of(result);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read the text of a PDF, sending the document: {}", e.getMessage());
+            failedDocuments.increment();
+            return Optional.empty();
+        } finally {
+            sample.stop(latency);
+        }
+    }
+
+    /**
+     * Trims the lines of a text, replaces runs of spaces with one and drops the empty lines.
+     *
+     * @param text Text as extracted, laid out with spaces
+     * @return The compacted text
+     */
+    static String compact(String text) {
+        StringBuilder compacted = new StringBuilder(text.length());
+        for (String line : LINES.split(text)) {
+            String trimmed = SPACES.matcher(line).replaceAll(" ").trim();
+            if (!trimmed.isEmpty()) {
+                compacted.append(compacted.length() > 0 ? "\n" : "").append(trimmed);
+            }
+        }
+        return compacted.toString();
+    }
+}
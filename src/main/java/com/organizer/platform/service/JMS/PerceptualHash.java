@@ -0,0 +1,54 @@
+package com.organizer.platform.service.JMS;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Difference hash (dHash) of an image: 64 bits that stay the same, or nearly, when the image is
+ * recompressed, resized or slightly recolored, unlike a hash of its bytes.
+ * <p>
+ * The image is shrunk to 9x8 pixels with the ImageResampler, whose kernel averages every source
+ * pixel, and converted to luma. Each bit tells whether a pixel is darker than its right
+ * neighbour, so the hash follows the gradients of the image rather than its exact values.
+ * Similar images differ in a few bits; the number of differing bits (the Hamming distance,
+ * {@link #distance}) measures how alike two images are.
+ */
+final class PerceptualHash {
+    private static final int WIDTH = 9;
+    private static final int HEIGHT = 8;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * @param image The image to hash, at any size
+     * @return The difference hash of the image
+     */
+    static long of(BufferedImage image) {
+        ImageResampler resampler = new ImageResampler(image.getWidth(), image.getHeight(), WIDTH, HEIGHT);
+        resampler.push(image);
+        BufferedImage small = resampler.result();
+
+        long hash = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            int left = luma(small.getRGB(0, y));
+            for (int x = 1; x < WIDTH; x++) {
+                int right = luma(small.getRGB(x, y));
+                hash = hash << 1 | (left < right ? 1 : 0);
+                left = right;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return The number of bits two hashes differ in, from 0 for alike images to 64
+     */
+    static int distance(long hash, long other) {
+        return Long.bitCount(hash ^ other);
+    }
+
+    // ITU-R BT.601 luma, scaled by 1000 to stay in integers
+    private static int luma(int rgb) {
+        return 299 * ((rgb >> 16) & 0xff) + 587 * ((rgb >> 8) & 0xff) + 114 * (rgb & 0xff);
+    }
+}
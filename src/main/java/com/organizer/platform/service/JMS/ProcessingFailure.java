@@ -0,0 +1,74 @@
+package com.organizer.platform.service.JMS;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.organizer.platform.service.AI.AiServiceException;
+
+import java.io.IOException;
+
+/**
+ * Classification of the failures of the processing pipeline.
+ * Retryable failures are rolled back so the broker redelivers the message with exponential
+ * backoff; the others can never succeed and go straight to the dead-letter queue.
+ */
+public enum ProcessingFailure {
+    /** Network failure or 5xx/529 answer of a remote service */
+    TRANSIENT_HTTP(true),
+    /** 429 answer of a remote service */
+    RATE_LIMIT(true),
+    /** The message or a response could not be parsed */
+    PARSE_ERROR(false),
+    /** The message is invalid, or a remote service rejected the request as such */
+    VALIDATION(false),
+    /** Any other failure, retried in case it is transient */
+    UNKNOWN(true);
+
+    private final boolean retryable;
+
+    ProcessingFailure(boolean retryable) {
+        this.retryable = retryable;
+    }
+
+    /**
+     * @return true if redelivering the message may succeed
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * Classifies a failure by the first recognized exception in its cause chain.
+     *
+     * @param failure The failure thrown while processing a message
+     * @return The kind of failure
+     */
+    public static ProcessingFailure classify(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof AiServiceException) {
+                return classifyStatus(((AiServiceException) cause).getStatus());
+            }
+            if (cause instanceof JsonProcessingException) {
+                return PARSE_ERROR;
+            }
+            if (cause instanceof IllegalArgumentException) {
+                return VALIDATION;
+            }
+            if (cause instanceof IOException) {
+                return TRANSIENT_HTTP;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private static ProcessingFailure classifyStatus(int status) {
+        if (status == 429) {
+            return RATE_LIMIT;
+        }
+        if (status == 408 || status >= 500) {
+            return TRANSIENT_HTTP;
+        }
+        return VALIDATION;
+    }
+}
@@ -1,7 +1,6 @@
 package com.organizer.platform.service.Scraper;
 
 import com.organizer.platform.model.ScraperDTO.ProcessingResult;
-import com.organizer.platform.model.ScraperDTO.TextBlock;
 import com.organizer.platform.model.ScraperDTO.WebsiteContent;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -10,11 +9,11 @@ import java.io.IOException;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Service responsible for processing content that may contain URLs and extracting website content.
- * This service works in conjunction with WebContentScraperService to analyze and scrape web content.
+ * This service works in conjunction with WebContentScraperService to analyze and scrape web content,
+ * and with ContentReducer to keep the scraped text within the token budget of the AI call.
  */
 @Service
 public class ContentProcessorService {
@@ -22,16 +21,19 @@ public class ContentProcessorService {
     private static final String URL_REGEX = "https?://\\S+";
     private static final Pattern URL_PATTERN = Pattern.compile(URL_REGEX);
 
-    // Service dependency for scraping website content
+    // Service dependencies for scraping website content and reducing it to the token budget
     private final WebContentScraperService scraperService;
+    private final ContentReducer contentReducer;
 
     /**
      * Constructor for ContentProcessorService.
      * @param scraperService Injected service for scraping web content
+     * @param contentReducer Injected reducer of the scraped text
      */
     @Autowired
-    public ContentProcessorService(WebContentScraperService scraperService) {
+    public ContentProcessorService(WebContentScraperService scraperService, ContentReducer contentReducer) {
         this.scraperService = scraperService;
+        this.contentReducer = contentReducer;
     }
 
     /**
@@ -73,7 +75,8 @@ public class ContentProcessorService {
 
     /**
      * Scrapes content from the provided URL using the WebContentScraperService.
-     * Extracts visible text blocks and joins them with commas.
+     * Keeps the title, description and best ranked visible text blocks within the token budget,
+     * joined with commas.
      *
      * @param url The URL to scrape
      * @return A comma-separated string of visible text from the webpage, or empty string if scraping fails
@@ -81,28 +84,12 @@ public class ContentProcessorService {
     private String scrapeUrl(String url) {
         try {
             WebsiteContent websiteContent = scraperService.scrapeWebsite(url);
-            List<String> visibleTexts = extractVisibleTexts(websiteContent);
-            return String.join(",", visibleTexts);
+            return contentReducer.reduce(websiteContent);
         } catch (IOException e) {
             return "";
         }
     }
 
-    /**
-     * Extracts visible text blocks from the scraped website content.
-     * Filters out invisible elements and empty text blocks.
-     *
-     * @param websiteContent The scraped content from the website
-     * @return List of visible text strings from the website
-     */
-    private List<String> extractVisibleTexts(WebsiteContent websiteContent) {
-        return websiteContent.getTextBlocks().stream()
-                .filter(TextBlock::isVisible)
-                .map(TextBlock::getText)
-                .filter(text -> text != null && !text.trim().isEmpty())
-                .collect(Collectors.toList());
-    }
-
     /**
      * Formats the scraped content into a readable string with block numbers.
      * Note: This method is currently unused but kept for potential future use.
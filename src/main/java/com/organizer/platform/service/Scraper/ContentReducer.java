@@ -0,0 +1,241 @@
+package com.organizer.platform.service.Scraper;
+
+import com.organizer.platform.model.ScraperDTO.TextBlock;
+import com.organizer.platform.model.ScraperDTO.WebsiteContent;
+import com.organizer.platform.util.TokenEstimator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces the scraped content of a web page to a token budget before it is sent to the AI model.
+ * The page title and meta description always come first; the visible text blocks are then ranked
+ * and the best ones kept, in page order, until the budget is spent. A block is ranked by:
+ * - its tag: headings first, then paragraphs, with links and form controls last
+ * - its place: text inside article or main ranks higher, text inside nav, header, footer,
+ *   aside or forms lower, as do blocks whose class or id names boilerplate (menu, share, comments)
+ * - its density: paragraphs and list items with fewer than a sentence's worth of words rank lower
+ * Repeated blocks are kept once. Pages within the budget keep all their text.
+ * <p>
+ * Metrics:
+ * - scraper.content.tokens (tag stage: scraped, reduced): estimated tokens of the page text
+ *   before and after the reduction
+ */
+@Component
+public class ContentReducer {
+    // Separator of the blocks in the reduced text, as stored in the message purpose
+    private static final String SEPARATOR = ",";
+    // Words from which a block counts as full running text
+    private static final double DENSE_WORDS = 25;
+    // Smallest remainder of the budget worth filling with the start of a block that does not fit
+    private static final int MIN_PARTIAL_TOKENS = 30;
+    private static final Set<String> CONTENT_TAGS = Set.of("article", "main");
+    private static final Set<String> BOILERPLATE_TAGS = Set.of("nav", "footer", "aside", "form", "menu");
+    private static final Pattern BOILERPLATE_NAMES = Pattern.compile(
+            "nav|menu|footer|sidebar|share|social|comment|related|promo|banner|cookie|newsletter|breadcrumb|subscribe");
+    private static final Pattern CONTENT_NAMES = Pattern.compile("article|content|story|post|entry|body|text");
+
+    private final int tokenBudget;
+    private final DistributionSummary scrapedTokens;
+    private final DistributionSummary reducedTokens;
+
+    @Autowired
+    public ContentReducer(@Value("${scraper.content.token-budget:2000}") int tokenBudget, MeterRegistry meterRegistry) {
+        this.tokenBudget = tokenBudget;
+        this.scrapedTokens = meterRegistry.summary("scraper.content.tokens", "stage", "scraped");
+        this.reducedTokens = meterRegistry.summary("scraper.content.tokens", "stage", "reduced");
+    }
+
+    /**
+     * Reduces the text of a scraped page to the token budget.
+     *
+     * @param websiteContent The scraped page
+     * @return The title, description and best ranked text blocks of the page, comma separated
+     */
+    public String reduce(WebsiteContent websiteContent) {
+        List<String> head = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        addHead(head, seen, websiteContent.getTitle());
+        addHead(head, seen, websiteContent.getDescription());
+
+        List<Block> blocks = new ArrayList<>();
+        int scraped = 0;
+        List<TextBlock> textBlocks = Optional.ofNullable(websiteContent.getTextBlocks()).orElse(List.of());
+        for (TextBlock textBlock : textBlocks) {
+            String text = textBlock.getText();
+            if (!textBlock.isVisible() || text == null || text.isBlank()) {
+                continue;
+            }
+            int tokens = TokenEstimator.estimate(text) + 1;
+            scraped += tokens;
+            if (seen.add(normalize(text))) {
+                blocks.add(new Block(blocks.size(), text.trim(), tokens, score(textBlock, text)));
+            }
+        }
+
+        int remaining = tokenBudget;
+        for (String text : head) {
+            remaining -= TokenEstimator.estimate(text) + 1;
+        }
+        select(blocks, remaining);
+
+        List<String> kept = new ArrayList<>(head);
+        for (Block block : blocks) {
+            if (block.kept != null) {
+                kept.add(block.kept);
+            }
+        }
+        String reduced = String.join(SEPARATOR, kept);
+        scrapedTokens.record(scraped);
+        reducedTokens.record(TokenEstimator.estimate(reduced));
+        return reduced;
+    }
+
+    /**
+     * Keeps the best ranked blocks that fit the budget; the first block that does not fit is
+     * cut to the rest of the budget if enough of it is left.
+     */
+    private static void select(List<Block> blocks, int budget) {
+        List<Block> ranked = new ArrayList<>(blocks);
+        ranked.sort(Comparator.comparingDouble((Block block) -> -block.score).thenComparingInt(block -> block.index));
+        int remaining = budget;
+        for (Block block : ranked) {
+            if (block.tokens <= remaining) {
+                block.kept = block.text;
+                remaining -= block.tokens;
+            } else if (remaining >= MIN_PARTIAL_TOKENS) {
+                block.kept = TokenEstimator.truncate(block.text, remaining - 1);
+                remaining = 0;
+            }
+        }
+    }
+
+    private static double score(TextBlock block, String text) {
+        String tag = Optional.ofNullable(block.getTag()).orElse("").toLowerCase(Locale.ROOT);
+        double score;
+        boolean heading = false;
+        switch (tag) {
+            case "h1":
+                score = 10;
+                heading = true;
+                break;
+            case "h2":
+                score = 6;
+                heading = true;
+                break;
+            case "h3":
+                score = 4;
+                heading = true;
+                break;
+            case "h4":
+            case "h5":
+            case "h6":
+                score = 2.5;
+                heading = true;
+                break;
+            case "p":
+            case "blockquote":
+            case "pre":
+                score = 1.5;
+                break;
+            case "a":
+                score = 0.3;
+                break;
+            case "button":
+            case "label":
+            case "option":
+            case "select":
+            case "input":
+                score = 0.1;
+                break;
+            default:
+                score = 1;
+        }
+
+        Set<String> parents = new HashSet<>(Arrays.asList(
+                Optional.ofNullable(block.getParentTags()).orElse("").toLowerCase(Locale.ROOT).split(" > ")));
+        boolean inContent = !Collections.disjoint(parents, CONTENT_TAGS);
+        if (inContent) {
+            score *= 2;
+        }
+        // The header of an article holds its headline; only the page header is boilerplate
+        if (!Collections.disjoint(parents, BOILERPLATE_TAGS) || (!inContent && parents.contains("header"))) {
+            score *= 0.2;
+        }
+
+        String names = (Optional.ofNullable(block.getCssClass()).orElse("") + " "
+                + Optional.ofNullable(block.getId()).orElse("")).toLowerCase(Locale.ROOT);
+        if (BOILERPLATE_NAMES.matcher(names).find()) {
+            score *= 0.3;
+        } else if (CONTENT_NAMES.matcher(names).find()) {
+            score *= 1.5;
+        }
+
+        if (!heading) {
+            score *= Math.min(1, words(text) / DENSE_WORDS);
+        }
+        return score;
+    }
+
+    private static void addHead(List<String> head, Set<String> seen, String text) {
+        if (text != null && !text.isBlank() && seen.add(normalize(text))) {
+            head.add(text.trim());
+        }
+    }
+
+    private static int words(String text) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean letter = !Character.isWhitespace(text.charAt(i));
+            if (letter && !inWord) {
+                words++;
+            }
+            inWord = letter;
+        }
+        return words;
+    }
+
+    /**
+     * @return The text in lower case with its whitespace collapsed, to recognize repeated blocks
+     */
+    private static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static final class Block {
+        private final int index;
+        private final String text;
+        // Estimated tokens, including the separator
+        private final int tokens;
+        private final double score;
+        // Text kept in the reduced content, null if dropped
+        private String kept;
+
+        private Block(int index, String text, int tokens, double score) {
+            this.index = index;
+            this.text = text;
+            this.tokens = tokens;
+            this.score = score;
+        }
+    }
+}
@@ -32,6 +32,17 @@ public class WebContentScraperService {
         return extractWebsiteContent(doc);
     }
 
+    /**
+     * Extracts all relevant content from an already fetched page, such as a saved copy.
+     *
+     * @param html The HTML of the page
+     * @param baseUri The URL the page was fetched from, to resolve relative links
+     * @return WebsiteContent object containing all extracted content
+     */
+    public WebsiteContent scrapeHtml(String html, String baseUri) {
+        return extractWebsiteContent(Jsoup.parse(html, baseUri));
+    }
+
     /**
      * Establishes connection to the website with configured parameters.
      * Sets up user agent, timeout, and other connection settings.
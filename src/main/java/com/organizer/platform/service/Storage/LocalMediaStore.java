@@ -0,0 +1,252 @@
+package com.organizer.platform.service.Storage;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.organizer.platform.util.MediaStreams;
+import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.annotation.PostConstruct;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MediaStore} backed by a directory on the local filesystem.
+ * Enabled with {@code media.store.type=local}, so the application can run and be load-tested
+ * without a Google Cloud bucket.
+ * <p>
+ * Reads are memory-mapped; files are served to HTTP clients through a fixed-size buffer, so
+ * serving a file never holds more of it than the buffer. Signed URLs point to
+ * {@code /media/local} and carry an expiry and an HMAC-SHA256 signature of the object path,
+ * which the serving controller verifies instead of requiring a login.
+ */
+@Component
+@ConditionalOnProperty(name = "media.store.type", havingValue = "local")
+public class LocalMediaStore implements MediaStore {
+    /** Path of the endpoint serving signed local media */
+    public static final String SERVE_PATH = "/media/local";
+
+    private final Path root;
+    private final String baseUrl;
+    private final HashFunction signer;
+
+    /**
+     * @param root Directory holding the stored objects
+     * @param baseUrl Prefix of the signed URLs, empty for URLs relative to this application
+     * @param signingKey Key of the URL signatures; a random key is generated when empty,
+     *                   which invalidates outstanding URLs on restart
+     */
+    @Autowired
+    public LocalMediaStore(@Value("${media.store.local.root:${java.io.tmpdir}/organizer-media-store}") String root,
+                           @Value("${media.store.local.base-url:}") String baseUrl,
+                           @Value("${media.store.local.signing-key:}") String signingKey) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.baseUrl = baseUrl;
+        this.signer = Hashing.hmacSha256(signingKey.isEmpty()
+                ? randomKey()
+                : signingKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates the root directory.
+     * @throws IOException if the directory cannot be created
+     */
+    @PostConstruct
+    public void initialize() throws IOException {
+        Files.createDirectories(root);
+    }
+
+    /**
+     * Writes the object to a temporary file first and moves it into place, so readers never
+     * see a partially written object.
+     */
+    @Override
+    public void put(String objectPath, String mimeType, byte[] data) throws IOException {
+        Path target = resolve(objectPath);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            Files.write(temp, data);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Streams the object into a temporary file and moves it into place like {@link #put(String, String, byte[])},
+     * so readers never see a partially written object and a failed upload leaves no object behind.
+     */
+    @Override
+    public long put(String objectPath, String mimeType, InputStream data) throws IOException {
+        Path target = resolve(objectPath);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            long written;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                written = MediaStreams.copy(data, channel);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return written;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Opens the object through a read-only memory mapping. The mapping stays valid after the
+     * file channel is closed.
+     */
+    @Override
+    public InputStream open(String objectPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(objectPath), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return Files.newInputStream(resolve(objectPath));
+            }
+            return new MappedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("Object not found: " + objectPath);
+        }
+    }
+
+    @Override
+    public String signedUrl(String objectPath, long duration, TimeUnit unit) {
+        long expires = Instant.now().getEpochSecond() + unit.toSeconds(duration);
+        return UriComponentsBuilder.fromUriString(baseUrl + SERVE_PATH)
+                .queryParam("path", objectPath)
+                .queryParam("expires", expires)
+                .queryParam("signature", sign(objectPath, expires))
+                .encode()
+                .build()
+                .toUriString();
+    }
+
+    @Override
+    public boolean delete(String objectPath) {
+        try {
+            return Files.deleteIfExists(resolve(objectPath));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete " + objectPath, e);
+        }
+    }
+
+    /**
+     * Checks the expiry and signature of a signed URL.
+     *
+     * @param objectPath Object path from the URL
+     * @param expires Expiry from the URL, in epoch seconds
+     * @param signature Signature from the URL
+     * @return true if the URL was issued by this store and has not expired
+     */
+    public boolean verify(String objectPath, long expires, String signature) {
+        if (Instant.now().getEpochSecond() > expires) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                sign(objectPath, expires).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Returns the size of a stored object.
+     *
+     * @param objectPath Full path of the object
+     * @return Size in bytes
+     * @throws IOException if the object does not exist
+     */
+    public long size(String objectPath) throws IOException {
+        return Files.size(resolve(objectPath));
+    }
+
+    /**
+     * Writes a stored object into a stream, in chunks of a single fixed-size buffer.
+     *
+     * @param objectPath Full path of the object
+     * @param target Stream to write to, it is not closed by this method
+     * @return Number of bytes written
+     * @throws IOException if the object does not exist or writing fails
+     */
+    public long copyTo(String objectPath, OutputStream target) throws IOException {
+        try (InputStream source = Files.newInputStream(resolve(objectPath))) {
+            return IOUtils.copyLarge(source, target, new byte[MediaStreams.DEFAULT_BUFFER_SIZE]);
+        }
+    }
+
+    /**
+     * Maps an object path to its file, rejecting paths that would escape the root directory.
+     */
+    private Path resolve(String objectPath) {
+        Path file = root.resolve(objectPath).normalize();
+        if (!file.startsWith(root) || file.equals(root)) {
+            throw new IllegalArgumentException("Invalid object path: " + objectPath);
+        }
+        return file;
+    }
+
+    private String sign(String objectPath, long expires) {
+        return signer.hashString(objectPath + "\n" + expires, StandardCharsets.UTF_8).toString();
+    }
+
+    private static byte[] randomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    /**
+     * Input stream reading from a memory-mapped buffer.
+     */
+    private static class MappedInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        MappedInputStream(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.organizer.platform.service.Storage;
+
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Bounded on-disk claim-check spool for freshly ingested media.
+ * <p>
+ * Media is uploaded to storage during ingestion and read back moments later by the AI
+ * workers. Every upload writes a copy here, keyed by the stored object path, so the workers
+ * can read the bytes from local disk instead of signing a URL and downloading them again.
+ * <p>
+ * The spool is bounded by total size and evicts the least recently used files first.
+ * A miss is never an error: callers fall back to storage. The spool is disabled when
+ * {@code media.spool.max-bytes} is 0.
+ * <p>
+ * Metrics:
+ * - media.spool.requests (tag result=hit|miss): lookups, from which the hit rate is derived
+ * - media.spool.bytes.saved: bytes served from disk instead of storage
+ * - media.spool.size / media.spool.entries: current spool occupancy
+ */
+@Slf4j
+@Component
+public class MediaSpool {
+    private final Path directory;
+    private final long maxBytes;
+
+    // Object path -> file size, in access order so the eldest entry is the LRU one
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bytesSaved;
+
+    @Autowired
+    public MediaSpool(@Value("${media.spool.directory:${java.io.tmpdir}/organizer-media-spool}") String directory,
+                      @Value("${media.spool.max-bytes:536870912}") long maxBytes,
+                      MeterRegistry meterRegistry) {
+        this.directory = Paths.get(directory);
+        this.maxBytes = maxBytes;
+        this.hits = meterRegistry.counter("media.spool.requests", "result", "hit");
+        this.misses = meterRegistry.counter("media.spool.requests", "result", "miss");
+        this.bytesSaved = meterRegistry.counter("media.spool.bytes.saved");
+        Gauge.builder("media.spool.size", this, MediaSpool::size).baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("media.spool.entries", this, MediaSpool::entryCount).register(meterRegistry);
+    }
+
+    /**
+     * Prepares the spool directory. Files left by a previous run are not indexed, so they are removed.
+     * @throws IOException if the directory cannot be created or cleaned
+     */
+    @PostConstruct
+    public void initialize() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        Files.createDirectories(directory);
+        try (Stream<Path> leftovers = Files.list(directory)) {
+            leftovers.forEach(MediaSpool::deleteQuietly);
+        }
+    }
+
+    /**
+     * @return true if the spool keeps media on disk
+     */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Opens a staging file for an object that is about to be uploaded.
+     * The caller writes the media to {@link Staged#getOutputStream()} while uploading and
+     * calls {@link Staged#commit()} once the upload succeeded. Closing an uncommitted handle
+     * discards the file. Spool write failures never propagate to the caller.
+     *
+     * @param objectPath Storage path of the object being uploaded
+     * @return A staging handle, a no-op one when the spool is disabled or unavailable
+     */
+    public Staged stage(String objectPath) {
+        if (!isEnabled()) {
+            return new Staged(objectPath, null);
+        }
+        try {
+            return new Staged(objectPath, Files.createTempFile(directory, "staging-", ".tmp"));
+        } catch (IOException e) {
+            log.warn("Media spool unavailable, skipping {}", objectPath, e);
+            return new Staged(objectPath, null);
+        }
+    }
+
+    /**
+     * Stores a fully buffered object in the spool.
+     *
+     * @param objectPath Storage path of the object
+     * @param data Content of the object
+     */
+    public void put(String objectPath, byte[] data) {
+        try (Staged staged = stage(objectPath)) {
+            staged.getOutputStream().write(data);
+            staged.commit();
+        } catch (IOException e) {
+            log.warn("Failed to spool {}", objectPath, e);
+        }
+    }
+
+    /**
+     * Reads an object from the spool.
+     *
+     * @param objectPath Storage path of the object
+     * @return The object content, or empty if it is not spooled
+     */
+    public Optional<byte[]> read(String objectPath) {
+        boolean present;
+        synchronized (this) {
+            present = entries.get(objectPath) != null; // get() also refreshes the LRU position
+        }
+        if (present) {
+            try {
+                byte[] data = Files.readAllBytes(fileFor(objectPath));
+                hits.increment();
+                bytesSaved.increment(data.length);
+                return Optional.of(data);
+            } catch (IOException e) {
+                // Evicted between the lookup and the read
+                log.debug("Spooled file disappeared for {}", objectPath);
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Removes an object from the spool, for example after it was deleted from storage.
+     *
+     * @param objectPath Storage path of the object
+     */
+    public void evict(String objectPath) {
+        synchronized (this) {
+            Long size = entries.remove(objectPath);
+            if (size == null) {
+                return;
+            }
+            totalBytes -= size;
+        }
+        deleteQuietly(fileFor(objectPath));
+    }
+
+    /**
+     * @return Total size of the spooled files in bytes
+     */
+    public synchronized long size() {
+        return totalBytes;
+    }
+
+    /**
+     * @return Number of spooled files
+     */
+    public synchronized int entryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Moves a completed staging file into the spool and evicts least recently used files
+     * until the spool fits its size bound again.
+     */
+    private void admit(String objectPath, Path stagingFile) throws IOException {
+        long size = Files.size(stagingFile);
+        if (size > maxBytes) {
+            deleteQuietly(stagingFile);
+            return;
+        }
+
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            Files.move(stagingFile, fileFor(objectPath), StandardCopyOption.REPLACE_EXISTING);
+            Long previous = entries.put(objectPath, size);
+            totalBytes += size - (previous == null ? 0 : previous);
+
+            Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                totalBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        }
+        evicted.forEach(path -> deleteQuietly(fileFor(path)));
+    }
+
+    /**
+     * Maps an object path to its spool file. Object paths contain slashes and user supplied
+     * filenames, so the file name is a hash of the path.
+     */
+    private Path fileFor(String objectPath) {
+        return directory.resolve(Hashing.sha256().hashString(objectPath, StandardCharsets.UTF_8).toString());
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Failed to delete spool file {}", file, e);
+        }
+    }
+
+    /**
+     * Staging handle for an object being written to the spool while it is uploaded.
+     */
+    public class Staged implements Closeable {
+        private final String objectPath;
+        private final Path stagingFile;
+        private final SpoolOutputStream outputStream;
+        private boolean committed;
+
+        private Staged(String objectPath, Path stagingFile) {
+            this.objectPath = objectPath;
+            this.stagingFile = stagingFile;
+            this.outputStream = new SpoolOutputStream(stagingFile);
+        }
+
+        /**
+         * @return Stream receiving the object content; it never throws on write failures
+         */
+        public OutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        /**
+         * Admits the staged file into the spool. Called once the storage upload succeeded.
+         */
+        public void commit() {
+            outputStream.close();
+            if (stagingFile == null || outputStream.failed) {
+                return;
+            }
+            try {
+                admit(objectPath, stagingFile);
+                committed = true;
+            } catch (IOException e) {
+                log.warn("Failed to admit {} into the media spool", objectPath, e);
+            }
+        }
+
+        /**
+         * Discards the staging file unless it was committed.
+         */
+        @Override
+        public void close() {
+            outputStream.close();
+            if (stagingFile != null && !committed) {
+                deleteQuietly(stagingFile);
+            }
+        }
+    }
+
+    /**
+     * Output stream that writes to the staging file and swallows failures, so a full disk
+     * never breaks the upload that is being spooled.
+     */
+    private static class SpoolOutputStream extends OutputStream {
+        private OutputStream target;
+        private boolean failed;
+
+        SpoolOutputStream(Path stagingFile) {
+            if (stagingFile == null) {
+                return;
+            }
+            try {
+                target = new BufferedOutputStream(Files.newOutputStream(stagingFile));
+            } catch (IOException e) {
+                failed = true;
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (target == null || failed) {
+                return;
+            }
+            try {
+                target.write(b, off, len);
+            } catch (IOException e) {
+                failed = true;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (target == null) {
+                return;
+            }
+            try {
+                target.close();
+            } catch (IOException e) {
+                failed = true;
+            }
+            target = null;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.organizer.platform.service.Storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backend holding the stored media objects.
+ * Objects are addressed by their path, for example images/{fromNumber}/{fileName}.
+ * The backend is selected with {@code media.store.type}: "gcs" (default) stores the media in
+ * Google Cloud Storage, "local" stores it on the local filesystem for development, CI and
+ * single-box benchmarks.
+ */
+public interface MediaStore {
+
+    /**
+     * Stores a fully buffered object, replacing any existing object at the same path.
+     *
+     * @param objectPath Full path of the object
+     * @param mimeType MIME type of the content
+     * @param data Content of the object
+     * @throws IOException if the object could not be stored
+     */
+    void put(String objectPath, String mimeType, byte[] data) throws IOException;
+
+    /**
+     * Streams an object into the store without holding it in memory.
+     * An object that failed halfway may be left behind; callers delete it.
+     *
+     * @param objectPath Full path of the object
+     * @param mimeType MIME type of the content
+     * @param data Stream with the content, it is not closed by this method
+     * @return Number of bytes stored
+     * @throws IOException if reading or storing fails
+     */
+    long put(String objectPath, String mimeType, InputStream data) throws IOException;
+
+    /**
+     * Opens a stream over a stored object.
+     *
+     * @param objectPath Full path of the object
+     * @return Stream with the object content, to be closed by the caller
+     * @throws java.io.FileNotFoundException if the object does not exist
+     * @throws IOException if the object cannot be read
+     */
+    InputStream open(String objectPath) throws IOException;
+
+    /**
+     * Creates a URL granting temporary read access to an object without any other credentials.
+     *
+     * @param objectPath Full path of the object
+     * @param duration How long the URL stays valid
+     * @param unit Unit of the duration
+     * @return The signed URL
+     */
+    String signedUrl(String objectPath, long duration, TimeUnit unit);
+
+    /**
+     * Deletes an object.
+     *
+     * @param objectPath Full path of the object
+     * @return true if the object was deleted, false if it did not exist
+     */
+    boolean delete(String objectPath);
+}
@@ -0,0 +1,116 @@
+package com.organizer.platform.service.Storage;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of signed URLs keyed by object path.
+ * <p>
+ * Signing a URL is an RSA operation with the GCS backend, and the same media is viewed many
+ * times while a URL is still valid. A cached URL is handed out until it enters its refresh
+ * margin, after which the next request signs a fresh one, so clients always receive a URL
+ * with at least the margin of validity left.
+ * <p>
+ * Metrics:
+ * - media.signed.urls (cache.gets, cache.size, cache.evictions...): hit rate and occupancy
+ * - media.signed.urls.signing.cpu: CPU time spent signing each URL
+ */
+@Component
+public class SignedUrlCache {
+    private final MediaStore mediaStore;
+    private final long validityMinutes;
+    private final LoadingCache<String, String> urls;
+    private final Timer signingCpu;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    /**
+     * @param mediaStore Backend signing the URLs
+     * @param validityMinutes Validity of every signed URL
+     * @param refreshMarginMinutes Remaining validity below which a cached URL is re-signed
+     * @param maximumSize Maximum number of cached URLs
+     * @param meterRegistry Registry receiving the cache and signing metrics
+     */
+    @Autowired
+    public SignedUrlCache(MediaStore mediaStore,
+                          @Value("${media.signed-url.validity-minutes:15}") long validityMinutes,
+                          @Value("${media.signed-url.refresh-margin-minutes:5}") long refreshMarginMinutes,
+                          @Value("${media.signed-url.cache-size:10000}") long maximumSize,
+                          MeterRegistry meterRegistry) {
+        if (refreshMarginMinutes >= validityMinutes) {
+            throw new IllegalArgumentException("Signed URL refresh margin must be shorter than its validity");
+        }
+        this.mediaStore = mediaStore;
+        this.validityMinutes = validityMinutes;
+        this.urls = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(validityMinutes - refreshMarginMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build(CacheLoader.from(this::sign));
+        this.signingCpu = Timer.builder("media.signed.urls.signing.cpu")
+                .description("CPU time spent signing a media URL")
+                .register(meterRegistry);
+        GuavaCacheMetrics.monitor(meterRegistry, urls, "media.signed.urls");
+    }
+
+    /**
+     * Returns a signed URL for an object, signing it only if no sufficiently fresh URL is cached.
+     *
+     * @param objectPath Full path of the object
+     * @return Signed URL for the object
+     */
+    public String get(String objectPath) {
+        return urls.getUnchecked(objectPath);
+    }
+
+    /**
+     * Returns signed URLs for several objects at once, signing only the ones that are not cached.
+     *
+     * @param objectPaths Full paths of the objects
+     * @return Signed URL of every object, keyed by object path
+     */
+    public Map<String, String> getAll(Collection<String> objectPaths) {
+        try {
+            return urls.getAll(objectPaths);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to sign media URLs", e.getCause());
+        }
+    }
+
+    /**
+     * Drops the cached URL of an object, for example after the object was deleted.
+     *
+     * @param objectPath Full path of the object
+     */
+    public void invalidate(String objectPath) {
+        urls.invalidate(objectPath);
+    }
+
+    /**
+     * Signs a URL through the storage backend, recording the CPU time it took.
+     */
+    private String sign(String objectPath) {
+        long start = threads.getCurrentThreadCpuTime();
+        try {
+            return mediaStore.signedUrl(objectPath, validityMinutes, TimeUnit.MINUTES);
+        } finally {
+            long end = threads.getCurrentThreadCpuTime();
+            if (start >= 0 && end >= 0) {
+                signingCpu.record(end - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.organizer.platform.service.WhatsApp;
+
+import com.organizer.platform.model.WhatsApp.Audio;
+import com.organizer.platform.model.WhatsApp.Document;
+import com.organizer.platform.model.WhatsApp.Image;
+import com.organizer.platform.model.organizedDTO.MediaResponse;
+import com.organizer.platform.service.Google.CloudStorageService;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Service responsible for transferring WhatsApp media (images, documents and audio) into
+ * Google Cloud Storage.
+ * <p>
+ * Every media type goes through the same two-step transfer:
+ * 1. Resolve the temporary download URL of the media ID through the Graph API
+ * 2. Stream the download straight into a storage upload channel in fixed-size chunks
+ * <p>
+ * The media is never materialized as a byte array, so memory per transfer stays constant
+ * whether the file is a 20 KB voice note or a 100 MB PDF. The media types only differ in
+ * how the stored filename is built.
+ */
+@Service
+public class WhatsAppMediaService {
+    // Graph API endpoint resolving a media ID into its download URL
+    private static final String MEDIA_URL_TEMPLATE = "https://graph.facebook.com/v18.0/%s";
+
+    private final CloudStorageService cloudStorageService;
+    private final RestTemplate restTemplate;
+
+    @Autowired
+    public WhatsAppMediaService(CloudStorageService cloudStorageService, RestTemplate restTemplate) {
+        this.cloudStorageService = cloudStorageService;
+        this.restTemplate = restTemplate;
+    }
+
+    /**
+     * Transfers an image message from WhatsApp to Google Cloud Storage.
+     *
+     * @param from The sender's WhatsApp number
+     * @param whatsAppImage The image message data from WhatsApp
+     * @param whatsAppToken The authentication token for WhatsApp's API
+     * @return The filename/path where the image was stored in Cloud Storage
+     * @throws RuntimeException if download or upload fails
+     */
+    public String processAndUploadImage(String from, Image whatsAppImage, String whatsAppToken) {
+        String imagePath = cloudStorageService.newImagePath(from,
+                whatsAppImage.getId() + "." + getImageExtension(whatsAppImage.getMimeType()));
+        return transfer(whatsAppImage.getId(), whatsAppToken, imagePath, whatsAppImage.getMimeType());
+    }
+
+    /**
+     * Transfers a document message from WhatsApp to Google Cloud Storage.
+     * Maintains the original filename when storing in Cloud Storage.
+     *
+     * @param from The sender's WhatsApp number
+     * @param whatsAppDocument The document message data from WhatsApp
+     * @param whatsAppToken The authentication token for WhatsApp's API
+     * @return The filename/path where the document was stored in Cloud Storage
+     * @throws RuntimeException if download or upload fails
+     */
+    public String processAndUploadDocument(String from, Document whatsAppDocument, String whatsAppToken) {
+        String documentPath = cloudStorageService.newDocumentPath(from, whatsAppDocument.getFilename());
+        return transfer(whatsAppDocument.getId(), whatsAppToken, documentPath, whatsAppDocument.getMimeType());
+    }
+
+    /**
+     * Transfers an audio message from WhatsApp to Google Cloud Storage.
+     *
+     * @param from The sender's WhatsApp number
+     * @param whatsAppAudio The audio message data from WhatsApp
+     * @param whatsAppToken The authentication token for WhatsApp's API
+     * @return The filename/path where the audio was stored in Cloud Storage
+     * @throws RuntimeException if download or upload fails
+     */
+    public String processAndUploadAudio(String from, Audio whatsAppAudio, String whatsAppToken) {
+        String audioPath = cloudStorageService.newAudioPath(from,
+                whatsAppAudio.getId() + "." + getAudioExtension(whatsAppAudio.getMimeType()));
+        return transfer(whatsAppAudio.getId(), whatsAppToken, audioPath, whatsAppAudio.getMimeType());
+    }
+
+    /**
+     * Streams a media file from WhatsApp's servers into Cloud Storage.
+     * The download response body is piped into the upload channel while it is being read,
+     * so neither side holds more than one transfer buffer.
+     *
+     * @param mediaId The ID of the media to transfer
+     * @param token WhatsApp API authentication token
+     * @param objectPath Target path of the media in Cloud Storage
+     * @param mimeType MIME type of the media
+     * @return The path where the media was stored
+     * @throws IllegalArgumentException if token or mediaId is empty
+     * @throws RuntimeException for download or upload failures
+     */
+    private String transfer(String mediaId, String token, String objectPath, String mimeType) {
+        if (StringUtils.isEmpty(token)) {
+            throw new IllegalArgumentException("WhatsApp API token cannot be empty");
+        }
+        if (StringUtils.isEmpty(mediaId)) {
+            throw new IllegalArgumentException("Media ID cannot be empty");
+        }
+
+        String bearerToken = token.trim(); // Trim the token to remove any whitespace
+        try {
+            String downloadUrl = resolveDownloadUrl(mediaId, bearerToken);
+
+            Long uploaded = restTemplate.execute(
+                    downloadUrl,
+                    HttpMethod.GET,
+                    request -> request.getHeaders().setBearerAuth(bearerToken),
+                    response -> cloudStorageService.uploadStream(objectPath, mimeType, response.getBody())
+            );
+
+            if (uploaded == null || uploaded == 0) {
+                cloudStorageService.delete(objectPath);
+                throw new RuntimeException("Downloaded media data is empty");
+            }
+
+            return objectPath;
+
+        } catch (HttpClientErrorException.Unauthorized e) {
+            throw new RuntimeException("Invalid or expired WhatsApp API token", e);
+        } catch (HttpClientErrorException e) {
+            throw new RuntimeException("Failed to download media: " + e.getStatusText(), e);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to transfer media " + mediaId, e);
+        }
+    }
+
+    /**
+     * Resolves the temporary download URL of a media ID through the Graph API.
+     *
+     * @param mediaId The ID of the media
+     * @param token WhatsApp API authentication token
+     * @return The URL the media can be downloaded from
+     * @throws RuntimeException if the URL could not be resolved
+     */
+    private String resolveDownloadUrl(String mediaId, String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+
+        ResponseEntity<MediaResponse> mediaResponse = restTemplate.exchange(
+                String.format(MEDIA_URL_TEMPLATE, mediaId),
+                HttpMethod.GET,
+                new HttpEntity<>(headers),
+                MediaResponse.class
+        );
+
+        if (mediaResponse.getBody() == null || mediaResponse.getBody().getUrl() == null) {
+            throw new RuntimeException("Failed to get media URL");
+        }
+        return mediaResponse.getBody().getUrl();
+    }
+
+    /**
+     * Determines the appropriate image file extension based on the MIME type.
+     *
+     * @param mimeType The MIME type of the image file
+     * @return The corresponding file extension (defaults to jpg)
+     */
+    private String getImageExtension(String mimeType) {
+        switch (mimeType.toLowerCase()) {
+            case "image/png":
+                return "png";
+            case "image/gif":
+                return "gif";
+            default:
+                return "jpg";
+        }
+    }
+
+    /**
+     * Determines the appropriate audio file extension based on the MIME type.
+     *
+     * @param mimeType The MIME type of the audio file
+     * @return The corresponding file extension (defaults to ogg)
+     */
+    private String getAudioExtension(String mimeType) {
+        // Extract the main MIME type without parameters
+        String baseMimeType = mimeType.split(";")[0].trim().toLowerCase();
+
+        switch (baseMimeType) {
+            case "audio/mpeg":
+                return "mp3";
+            case "audio/mp4":
+                return "m4a";
+            case "audio/wav":
+                return "wav";
+            case "audio/webm":
+                return "webm";
+            case "audio/aac":
+                return "aac";
+            default:
+                return "ogg";
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.organizer.platform.service.WhatsApp;
 
+import com.organizer.platform.model.AI.ContentOrganization;
 import com.organizer.platform.model.organizedDTO.*;
 import com.organizer.platform.repository.NextStepRepository;
 import com.organizer.platform.repository.TagRepository;
@@ -11,6 +12,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.organizer.platform.model.organizedDTO.NextStep.NextStepBuilder.aNextStep;
@@ -361,6 +363,7 @@ public class WhatsAppMessageService {
                         .collect(Collectors.toSet()))
                 // Provide empty string for null message type
                 .mime(Optional.ofNullable(message.getMessageType()).orElse(""))
+                .duplicateOf(message.getDuplicateOf())
                 .build();
     }
 
@@ -453,6 +456,21 @@ public class WhatsAppMessageService {
         return messageRepository.save(whatsAppMessage);
     }
 
+    /**
+     * Updates many messages in one transaction and saves them together.
+     * Used to apply results in bulk, for example those of a classification batch.
+     *
+     * @param messageIds IDs of the messages to update; missing messages are skipped
+     * @param update Applies the changes to a message
+     * @return The updated messages
+     */
+    @Transactional
+    public List<WhatsAppMessage> updateMessages(Collection<Long> messageIds, Consumer<WhatsAppMessage> update) {
+        List<WhatsAppMessage> messages = messageRepository.findAllById(messageIds);
+        messages.forEach(update);
+        return messageRepository.saveAll(messages);
+    }
+
     /**
      * Cleans the database by truncating all related tables while properly handling PostgreSQL constraints.
      * This method:
@@ -503,6 +521,41 @@ public class WhatsAppMessageService {
         return messageRepository.findById(messageId);
     }
 
+    /**
+     * Retrieves the ID of a message saved by an earlier delivery of the same WhatsApp message.
+     *
+     * @param whatsAppMessageId The ID WhatsApp gave the message, or null if unknown
+     * @return The ID of the saved message, or empty if there is none
+     */
+    public Optional<Long> findIdByWhatsAppMessageId(String whatsAppMessageId) {
+        if (whatsAppMessageId == null) {
+            return Optional.empty();
+        }
+        return messageRepository.findIdByWhatsAppMessageId(whatsAppMessageId);
+    }
+
+    /**
+     * Retrieves the organization of a message, as the AI answered it or as the user edited it since.
+     * Tags and next steps are read within the transaction, so callers outside of one can use it.
+     *
+     * @param messageId The unique identifier of the message
+     * @return The organization of the message, or empty if it does not exist or has no category
+     */
+    @Transactional(readOnly = true)
+    public Optional<ContentOrganization> findOrganization(Long messageId) {
+        return messageRepository.findById(messageId)
+                .filter(message -> message.getCategory() != null)
+                .map(message -> ContentOrganization.builder()
+                        .category(message.getCategory())
+                        .subCategory(message.getSubCategory())
+                        .type(message.getType())
+                        .purpose(message.getPurpose())
+                        .tags(message.getTags().stream().map(Tag::getName).collect(Collectors.joining(", ")))
+                        .nextSteps(message.getNextSteps().stream().map(NextStep::getName)
+                                .collect(Collectors.joining(", ")))
+                        .build());
+    }
+
     /**
      * Partially updates a WhatsApp message with new data from a MessageDTO.
      * Only non-null fields in the updateRequest will be applied to the message.
@@ -0,0 +1,56 @@
+package com.organizer.platform.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Utility class for moving media bytes between streams and channels.
+ * Transfers go through a single fixed-size buffer, so the memory used per transfer
+ * stays constant no matter how large the media file is.
+ */
+public class MediaStreams {
+    /** Default size of the transfer buffer (64 KB) */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private MediaStreams() {
+    }
+
+    /**
+     * Copies an input stream into a writable channel in fixed-size chunks.
+     * The buffer is allocated once and reused for every chunk.
+     *
+     * @param source The stream to read from, it is not closed by this method
+     * @param target The channel to write to, it is not closed by this method
+     * @param bufferSize Size of the transfer buffer in bytes
+     * @return Total number of bytes copied
+     * @throws IOException If reading or writing fails
+     */
+    public static long copy(InputStream source, WritableByteChannel target, int bufferSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        byte[] chunk = buffer.array();
+        long total = 0;
+        int read;
+        while ((read = source.read(chunk, 0, chunk.length)) != -1) {
+            buffer.clear().limit(read);
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Copies an input stream into a writable channel using the default buffer size.
+     *
+     * @param source The stream to read from, it is not closed by this method
+     * @param target The channel to write to, it is not closed by this method
+     * @return Total number of bytes copied
+     * @throws IOException If reading or writing fails
+     */
+    public static long copy(InputStream source, WritableByteChannel target) throws IOException {
+        return copy(source, target, DEFAULT_BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,71 @@
+package com.organizer.platform.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key into one.
+ * The first caller of a key starts the call; every caller arriving while it is still running
+ * gets the same result instead of starting its own. Once the call completes the key is free
+ * again, so later callers start a new call (normally answered by a cache by then).
+ * <p>
+ * Metrics, under the given name:
+ * - name.in.flight: calls currently running
+ * - name.coalesced: callers that joined a running call instead of starting one
+ *
+ * @param <K> Type of the call keys
+ * @param <V> Type of the call results
+ */
+public class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    public SingleFlight(MeterRegistry meterRegistry, String name) {
+        this.coalesced = meterRegistry.counter(name + ".coalesced");
+        Gauge.builder(name + ".in.flight", inFlight, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Runs a call, or joins the running call with the same key.
+     *
+     * @param key Key of the call
+     * @param call Starts the call, only invoked when no call with the key is running
+     * @return Future of the call result. Cancelling it does not cancel the shared call.
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> result = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, result);
+        if (running != null) {
+            coalesced.increment();
+            return running.copy();
+        }
+
+        try {
+            call.get().whenComplete((value, failure) -> {
+                inFlight.remove(key, result);
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, result);
+            result.completeExceptionally(e);
+        }
+        return result.copy();
+    }
+
+    /**
+     * @return Number of calls currently running
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+}
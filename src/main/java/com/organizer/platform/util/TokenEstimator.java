@@ -0,0 +1,96 @@
+package com.organizer.platform.util;
+
+/**
+ * Estimates the number of model tokens in a text without a tokenizer.
+ * Latin words cost about one token per 4 characters; letters of other scripts (Hebrew, Arabic,
+ * Cyrillic) are split into far smaller pieces, about one token per 2 characters; every
+ * punctuation mark or symbol is a token of its own. The estimate errs on the high side, so
+ * text trimmed to a budget by it stays within the budget.
+ */
+public final class TokenEstimator {
+    // Characters per token within a run of Latin letters and digits
+    private static final int LATIN_CHARS_PER_TOKEN = 4;
+    // Characters per token within a run of letters of other scripts
+    private static final int OTHER_CHARS_PER_TOKEN = 2;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * @param text The text to estimate
+     * @return Estimated number of tokens in the text, 0 for null
+     */
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, tokensBefore(text, text.length()));
+    }
+
+    /**
+     * Cuts a text to a token budget, at the last whitespace that keeps it within the budget.
+     *
+     * @param text The text to cut
+     * @param maxTokens Token budget
+     * @return The text itself if it is within the budget, or its longest prefix that is
+     */
+    public static String truncate(String text, int maxTokens) {
+        if (text == null || estimate(text) <= maxTokens) {
+            return text;
+        }
+        int end = prefixLength(text, maxTokens);
+        int lastSpace = end;
+        while (lastSpace > 0 && !Character.isWhitespace(text.charAt(lastSpace - 1))) {
+            lastSpace--;
+        }
+        // Cut inside the word if a single word exceeds the whole budget
+        return text.substring(0, lastSpace > 0 ? lastSpace : end).trim();
+    }
+
+    /**
+     * @return Length of the longest prefix of the text within the token budget
+     */
+    private static int prefixLength(CharSequence text, int maxTokens) {
+        int low = 0;
+        int high = text.length();
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (tokensBefore(text, middle) <= maxTokens) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private static long tokensBefore(CharSequence text, int end) {
+        long tokens = 0;
+        int latinRun = 0;
+        int otherRun = 0;
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 128 && Character.isLetterOrDigit(c)) {
+                tokens += runTokens(otherRun, OTHER_CHARS_PER_TOKEN);
+                otherRun = 0;
+                latinRun++;
+            } else if (Character.isLetterOrDigit(c)) {
+                tokens += runTokens(latinRun, LATIN_CHARS_PER_TOKEN);
+                latinRun = 0;
+                otherRun++;
+            } else {
+                tokens += runTokens(latinRun, LATIN_CHARS_PER_TOKEN) + runTokens(otherRun, OTHER_CHARS_PER_TOKEN);
+                latinRun = 0;
+                otherRun = 0;
+                if (!Character.isWhitespace(c)) {
+                    tokens++;
+                }
+            }
+        }
+        return tokens + runTokens(latinRun, LATIN_CHARS_PER_TOKEN) + runTokens(otherRun, OTHER_CHARS_PER_TOKEN);
+    }
+
+    private static int runTokens(int length, int charsPerToken) {
+        return (length + charsPerToken - 1) / charsPerToken;
+    }
+}
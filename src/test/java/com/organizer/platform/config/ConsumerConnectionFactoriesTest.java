@@ -0,0 +1,50 @@
+package com.organizer.platform.config;
+
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.connection.CachingConnectionFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsumerConnectionFactoriesTest {
+
+    @Test
+    void copiesKeepTheWholeConfigurationOfTheSharedFactory() {
+        ActiveMQConnectionFactory shared =
+                new ActiveMQConnectionFactory("tcp://broker:61617?reconnectAttempts=7&callTimeout=4321&clientFailureCheckPeriod=5000");
+        shared.setUser("organizer");
+        shared.setPassword("secret");
+
+        try (ConsumerConnectionFactories factories =
+                     new ConsumerConnectionFactories(new CachingConnectionFactory(shared))) {
+            ActiveMQConnectionFactory copy = (ActiveMQConnectionFactory) factories.withConsumerWindowSize(0);
+
+            assertNotSame(shared, copy);
+            assertSame(copy, factories.withConsumerWindowSize(0));
+            assertEquals(0, copy.getConsumerWindowSize());
+            assertEquals(7, copy.getReconnectAttempts());
+            assertEquals(4321, copy.getCallTimeout());
+            assertEquals(5000, copy.getClientFailureCheckPeriod());
+            assertEquals("organizer", copy.getUser());
+            assertEquals("secret", copy.getPassword());
+            assertEquals(shared.getStaticConnectors()[0].getParams(), copy.getStaticConnectors()[0].getParams());
+
+            factories.close();
+            assertTrue(copy.getServerLocator().isClosed());
+        }
+    }
+
+    @Test
+    void copiesTheInVmFactoryOfTheEmbeddedBroker() {
+        ActiveMQConnectionFactory shared = new ActiveMQConnectionFactory("vm://0");
+
+        try (ConsumerConnectionFactories factories = new ConsumerConnectionFactories(shared)) {
+            ActiveMQConnectionFactory copy = (ActiveMQConnectionFactory) factories.withConsumerWindowSize(65536);
+
+            assertEquals(65536, copy.getConsumerWindowSize());
+            assertEquals(shared.getStaticConnectors()[0].getFactoryClassName(),
+                    copy.getStaticConnectors()[0].getFactoryClassName());
+            assertEquals(shared.getStaticConnectors()[0].getParams(), copy.getStaticConnectors()[0].getParams());
+        }
+    }
+}
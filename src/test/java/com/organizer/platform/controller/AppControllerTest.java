@@ -0,0 +1,128 @@
+package com.organizer.platform.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.organizer.platform.model.AI.ContentOrganization;
+import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import com.organizer.platform.service.AI.OrganizationUpdates;
+import com.organizer.platform.service.Google.CloudStorageService;
+import com.organizer.platform.service.Scraper.ContentProcessorService;
+import com.organizer.platform.service.User.UserService;
+import com.organizer.platform.service.WhatsApp.WhatsAppMessageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Optional;
+
+import static com.organizer.platform.model.organizedDTO.WhatsAppMessage.WhatsAppMessageBuilder.aWhatsAppMessage;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Streams the organization of messages organized before, while and after a client subscribes.
+ */
+class AppControllerTest {
+    private static final long MESSAGE_ID = 42L;
+
+    private WhatsAppMessageService messageService;
+    private OrganizationUpdates organizationUpdates;
+    private Authentication admin;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        messageService = mock(WhatsAppMessageService.class);
+        organizationUpdates = new OrganizationUpdates();
+        UserService userService = mock(UserService.class);
+        when(userService.isAdmin(anyString())).thenReturn(true);
+
+        OAuth2User user = mock(OAuth2User.class);
+        when(user.getAttribute("email")).thenReturn("admin@example.com");
+        admin = mock(Authentication.class);
+        when(admin.getPrincipal()).thenReturn(user);
+        when(admin.getName()).thenReturn("admin@example.com");
+
+        WhatsAppMessage message = aWhatsAppMessage().id(MESSAGE_ID).fromNumber("972500000001")
+                .messageType("text").messageContent("Dentist on Sunday at 10").build();
+        when(messageService.findMessageById(MESSAGE_ID)).thenReturn(Optional.of(message));
+
+        mvc = MockMvcBuilders.standaloneSetup(new AppController(messageService, mock(CloudStorageService.class),
+                userService, new ObjectMapper(), mock(JmsTemplate.class), mock(ContentProcessorService.class),
+                organizationUpdates)).build();
+    }
+
+    @Test
+    void messagesOrganizedBeforeSubscribingGetTheirStoredOrganization() throws Exception {
+        when(messageService.findOrganization(MESSAGE_ID)).thenReturn(Optional.of(organization()));
+
+        MvcResult result = stream();
+
+        String events = result.getResponse().getContentAsString();
+        assertTrue(events.contains("event:organized"), events);
+        assertTrue(events.contains("\"category\":\"Health\""), events);
+        assertTrue(isCompleted(result), "stream left open");
+    }
+
+    @Test
+    void messagesOrganizedAfterSubscribingGetTheFieldsAndTheOrganization() throws Exception {
+        when(messageService.findOrganization(MESSAGE_ID)).thenReturn(Optional.empty());
+
+        MvcResult result = stream();
+        assertEquals("", result.getResponse().getContentAsString());
+
+        organizationUpdates.field(MESSAGE_ID, "category", "Health");
+        organizationUpdates.organized(MESSAGE_ID, organization());
+
+        String events = result.getResponse().getContentAsString();
+        assertTrue(events.indexOf("event:field") < events.indexOf("event:organized"), events);
+        assertEquals(1, events.split("event:organized", -1).length - 1, events);
+        assertTrue(isCompleted(result));
+    }
+
+    @Test
+    void organizationsSetWhileSubscribingAreSentOnce() throws Exception {
+        // Organized after the message was read, before its stored organization is
+        when(messageService.findOrganization(MESSAGE_ID)).thenAnswer(invocation -> {
+            organizationUpdates.organized(MESSAGE_ID, organization());
+            return Optional.of(organization());
+        });
+
+        MvcResult result = stream();
+
+        String events = result.getResponse().getContentAsString();
+        assertEquals(1, events.split("event:organized", -1).length - 1, events);
+        assertTrue(isCompleted(result));
+    }
+
+    private MvcResult stream() throws Exception {
+        return mvc.perform(get("/api/content/messages/{messageId}/organization/stream", MESSAGE_ID)
+                        .principal(admin))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    /**
+     * @return Whether the emitter completed, which sets the result of the async request
+     */
+    private static boolean isCompleted(MvcResult result) {
+        try {
+            result.getAsyncResult(1000);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private static ContentOrganization organization() {
+        return ContentOrganization.builder().category("Health").subCategory("Appointments")
+                .type("reminder").purpose("personal").tags("dentist").nextSteps("book").build();
+    }
+}
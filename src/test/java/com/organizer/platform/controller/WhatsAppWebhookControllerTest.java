@@ -0,0 +1,183 @@
+package com.organizer.platform.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.organizer.platform.model.WhatsApp.*;
+import com.organizer.platform.service.JMS.MessageQueues;
+import com.organizer.platform.service.User.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jms.UncategorizedJmsException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessagePostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Throughput test for the webhook fan-out: posts multi-entry, multi-message payloads
+ * concurrently and checks that every single message reaches the queue, once.
+ */
+class WhatsAppWebhookControllerTest {
+    private static final int DELIVERIES = 20;
+    private static final int ENTRIES = 3;
+    private static final int CHANGES = 2;
+    private static final int MESSAGES = 5;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final Queue<String> enqueued = new ConcurrentLinkedQueue<>();
+    private final Queue<String> pendingMedia = new ConcurrentLinkedQueue<>();
+    private ThreadPoolTaskExecutor webhookExecutor;
+    private JmsTemplate jmsTemplate;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        jmsTemplate = mock(JmsTemplate.class);
+        doAnswer(invocation -> enqueued.add(invocation.getArgument(1)))
+                .when(jmsTemplate).convertAndSend(eq(MessageQueues.TEXT), anyString(), any(MessagePostProcessor.class));
+        doAnswer(invocation -> pendingMedia.add(invocation.getArgument(1)))
+                .when(jmsTemplate).convertAndSend(eq("mediaIngestionQueue"), anyString());
+
+        UserService userService = mock(UserService.class);
+        when(userService.processNewUser(anyString())).thenReturn(true);
+
+        webhookExecutor = new ThreadPoolTaskExecutor();
+        webhookExecutor.setCorePoolSize(4);
+        webhookExecutor.setMaxPoolSize(8);
+        webhookExecutor.setQueueCapacity(16);
+        webhookExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        webhookExecutor.initialize();
+
+        WhatsAppWebhookController controller =
+                new WhatsAppWebhookController(jmsTemplate, objectMapper, userService, webhookExecutor, 60, 10_000);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        webhookExecutor.shutdown();
+    }
+
+    @Test
+    void everyMessageOfEveryBatchReachesTheQueue() throws Exception {
+        ExecutorService senders = Executors.newFixedThreadPool(8);
+        List<Future<?>> deliveries = new ArrayList<>();
+        for (int delivery = 0; delivery < DELIVERIES; delivery++) {
+            String payload = objectMapper.writeValueAsString(batch(delivery));
+            deliveries.add(senders.submit(() -> {
+                mockMvc.perform(post("/webhook")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(payload))
+                        .andExpect(status().isOk());
+                return null;
+            }));
+        }
+        for (Future<?> delivery : deliveries) {
+            delivery.get(30, TimeUnit.SECONDS);
+        }
+        senders.shutdown();
+
+        Set<String> bodies = new HashSet<>();
+        for (String serialized : enqueued) {
+            bodies.add(objectMapper.readTree(serialized).get("messageContent").asText());
+        }
+        int expected = DELIVERIES * ENTRIES * CHANGES * MESSAGES;
+        assertEquals(expected, enqueued.size());
+        assertEquals(expected, bodies.size());
+    }
+
+    @Test
+    void redeliveredBatchesOnlyEnqueueTheMessagesThatFailed() throws Exception {
+        AtomicBoolean failed = new AtomicBoolean();
+        doAnswer(invocation -> {
+            String serialized = invocation.getArgument(1);
+            if (serialized.contains("message-3") && failed.compareAndSet(false, true)) {
+                throw new UncategorizedJmsException("broker unavailable");
+            }
+            return enqueued.add(serialized);
+        }).when(jmsTemplate).convertAndSend(eq(MessageQueues.TEXT), anyString(), any(MessagePostProcessor.class));
+        String payload = objectMapper.writeValueAsString(batch(0));
+
+        mockMvc.perform(post("/webhook").contentType(MediaType.APPLICATION_JSON).content(payload))
+                .andExpect(status().isInternalServerError());
+        // Meta redelivers the whole batch, twice
+        for (int redelivery = 0; redelivery < 2; redelivery++) {
+            mockMvc.perform(post("/webhook").contentType(MediaType.APPLICATION_JSON).content(payload))
+                    .andExpect(status().isOk());
+        }
+
+        List<String> bodies = new ArrayList<>();
+        for (String serialized : enqueued) {
+            bodies.add(objectMapper.readTree(serialized).get("messageContent").asText());
+        }
+        assertEquals(ENTRIES * CHANGES * MESSAGES, bodies.size());
+        assertEquals(ENTRIES * CHANGES * MESSAGES, new HashSet<>(bodies).size());
+    }
+
+    @Test
+    void mediaMessagesAreAcknowledgedWithAPendingEnvelope() throws Exception {
+        Message image = Message.builder()
+                .from("972500000000")
+                .id("wamid.image")
+                .type("image")
+                .image(Image.builder().id("media-1").mimeType("image/jpeg").build())
+                .build();
+        WhatsAppWebhookRequest request = WhatsAppWebhookRequest.builder()
+                .entry(List.of(Entry.builder()
+                        .changes(List.of(Change.builder()
+                                .value(Value.builder().messages(List.of(image)).build())
+                                .build()))
+                        .build()))
+                .build();
+
+        mockMvc.perform(post("/webhook")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+
+        assertEquals(0, enqueued.size());
+        assertEquals(1, pendingMedia.size());
+        MediaEnvelope envelope = objectMapper.readValue(pendingMedia.peek(), MediaEnvelope.class);
+        assertEquals("media-1", envelope.getMessage().getImage().getId());
+    }
+
+    private static WhatsAppWebhookRequest batch(int delivery) {
+        List<Entry> entries = new ArrayList<>();
+        for (int e = 0; e < ENTRIES; e++) {
+            List<Change> changes = new ArrayList<>();
+            for (int c = 0; c < CHANGES; c++) {
+                List<Message> messages = new ArrayList<>();
+                for (int m = 0; m < MESSAGES; m++) {
+                    String body = String.format("delivery-%d entry-%d change-%d message-%d", delivery, e, c, m);
+                    messages.add(Message.builder()
+                            .from("97250000000" + m)
+                            .id(body)
+                            .type("text")
+                            .text(Text.builder().body(body).build())
+                            .build());
+                }
+                changes.add(Change.builder()
+                        .field("messages")
+                        .value(Value.builder().messagingProduct("whatsapp").messages(messages).build())
+                        .build());
+            }
+            entries.add(Entry.builder().id("entry-" + e).changes(changes).build());
+        }
+        return WhatsAppWebhookRequest.builder().object("whatsapp_business_account").entry(entries).build();
+    }
+}
@@ -0,0 +1,241 @@
+package com.organizer.platform.service.AI;
+
+import com.organizer.platform.config.AnthropicProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveLimiterTest {
+    private final AtomicLong clock = new AtomicLong();
+    private AnthropicProperties.Limiter settings;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        settings = new AnthropicProperties.Limiter();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void growsAboutOnePerRoundWhileLatencyIsHealthy() {
+        settings.setInitialLimit(2);
+        settings.setMaxLimit(5);
+        AdaptiveLimiter limiter = new AdaptiveLimiter(settings, meterRegistry, clock::get);
+
+        int rounds = 0;
+        while (limiter.getLimit() < 5) {
+            runRound(limiter, 100);
+            rounds++;
+        }
+        assertEquals(3 * 2, rounds, 2);
+        runRound(limiter, 100);
+        assertEquals(5, limiter.getLimit());
+        assertEquals(5, meterRegistry.get("ai.limiter.limit").gauge().value());
+    }
+
+    @Test
+    void cutsOncePerRoundOfOverloads() {
+        settings.setInitialLimit(8);
+        AdaptiveLimiter limiter = new AdaptiveLimiter(settings, meterRegistry, clock::get);
+
+        List<AdaptiveLimiter.Permit> permits = acquire(limiter, 8);
+        permits.forEach(permit -> permit.overloaded(0));
+
+        assertEquals(4, limiter.getLimit());
+        assertEquals(1, meterRegistry.counter("ai.limiter.backoffs").count());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void cutsOnRisingLatency() {
+        settings.setInitialLimit(10);
+        AdaptiveLimiter limiter = new AdaptiveLimiter(settings, meterRegistry, clock::get);
+        runRound(limiter, 100);
+        int healthy = limiter.getLimit();
+
+        AdaptiveLimiter.Permit slow = limiter.acquire().join();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+        slow.success();
+
+        assertEquals((int) (healthy * 0.9), limiter.getLimit());
+    }
+
+    @Test
+    void comparesLatencyWithinItsClassOnly() {
+        settings.setInitialLimit(4);
+        AdaptiveLimiter limiter = new AdaptiveLimiter(settings, meterRegistry, clock::get);
+
+        for (int i = 0; i < 20; i++) {
+            AdaptiveLimiter.Permit text = limiter.acquire("haiku/text").join();
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+            text.success();
+
+            AdaptiveLimiter.Permit pdf = limiter.acquire("sonnet/document").join();
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(8_000));
+            pdf.success();
+        }
+
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, meterRegistry.counter("ai.limiter.backoffs").count());
+    }
+
+    @Test
+    void queuesRequestsOverTheLimit() {
+        settings.setInitialLimit(1);
+        settings.setMaxLimit(1);
+        AdaptiveLimiter limiter = new AdaptiveLimiter(settings, meterRegistry, clock::get);
+
+        AdaptiveLimiter.Permit first = limiter.acquire().join();
+        CompletableFuture<AdaptiveLimiter.Permit> second = limiter.acquire();
+        assertFalse(second.isDone());
+        assertEquals(1, limiter.getQueued());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        first.success();
+
+        assertTrue(second.isDone());
+        assertEquals(2, meterRegistry.timer("ai.limiter.queue.wait").count());
+        assertEquals(50, meterRegistry.timer("ai.limiter.queue.wait").max(TimeUnit.MILLISECONDS), 1);
+    }
+
+    @Test
+    void pausesUntilRetryAfter() throws Exception {
+        settings.setInitialLimit(2);
+        AdaptiveLimiter limiter = new AdaptiveLimiter(settings, meterRegistry);
+
+        long start = System.nanoTime();
+        limiter.acquire().join().overloaded(300);
+        CompletableFuture<AdaptiveLimiter.Permit> next = limiter.acquire();
+        assertFalse(next.isDone());
+
+        next.get(5, TimeUnit.SECONDS);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 300);
+    }
+
+    /**
+     * 16 workers send requests through the client to a stub that serves 4 at a time and
+     * answers 429 to the rest. Without a limit 3 of 4 requests would be refused; the limit has
+     * to settle around the capacity so refusals become rare.
+     */
+    @Test
+    void convergesAgainstRateLimitingStub() throws Exception {
+        int capacity = 4;
+        AtomicInteger running = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/messages", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            if (running.incrementAndGet() > capacity) {
+                running.decrementAndGet();
+                exchange.getResponseHeaders().add("retry-after", "0");
+                respond(exchange, 429);
+                return;
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            respond(exchange, 200);
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        AnthropicProperties properties = new AnthropicProperties();
+        properties.setKey("test-key");
+        properties.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        properties.getLimiter().setInitialLimit(16);
+        properties.getLimiter().setMaxLimit(32);
+        AnthropicClient client = new AnthropicClient(properties, meterRegistry);
+        ExecutorService workers = Executors.newFixedThreadPool(16);
+        try {
+            int warmUpRefusals = sendRequests(client, workers, 160);
+            int steadyRequests = 480;
+            int steadyRefusals = sendRequests(client, workers, steadyRequests);
+
+            int limit = client.getLimiter().getLimit();
+            assertTrue(limit >= 1 && limit <= 2 * capacity, "Limit did not converge: " + limit);
+            assertTrue(steadyRefusals < steadyRequests / 5,
+                    "Refused " + steadyRefusals + " of " + steadyRequests + " requests after "
+                            + warmUpRefusals + " refusals during warm-up");
+        } finally {
+            workers.shutdownNow();
+            client.shutdown();
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Sends requests from all workers until the given number succeeded.
+     *
+     * @return Number of refused requests
+     */
+    private static int sendRequests(AnthropicClient client, ExecutorService workers, int requests) throws Exception {
+        AtomicInteger remaining = new AtomicInteger(requests);
+        AtomicInteger refused = new AtomicInteger();
+        List<Future<?>> done = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            done.add(workers.submit(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    while (true) {
+                        try {
+                            client.createMessage("{}").get(10, TimeUnit.SECONDS);
+                            break;
+                        } catch (ExecutionException e) {
+                            assertTrue(e.getCause() instanceof AiServiceException);
+                            refused.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : done) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        return refused.get();
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException {
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private List<AdaptiveLimiter.Permit> acquire(AdaptiveLimiter limiter, int count) {
+        List<AdaptiveLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            permits.add(limiter.acquire().join());
+        }
+        return permits;
+    }
+
+    /**
+     * Runs as many requests as the limit allows, each taking the given latency.
+     *
+     * @return The limit after the round
+     */
+    private int runRound(AdaptiveLimiter limiter, long latencyMs) {
+        List<AdaptiveLimiter.Permit> permits = acquire(limiter, limiter.getLimit());
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(latencyMs));
+        permits.forEach(AdaptiveLimiter.Permit::success);
+        return limiter.getLimit();
+    }
+}
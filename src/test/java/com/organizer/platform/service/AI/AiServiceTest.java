@@ -0,0 +1,366 @@
+package com.organizer.platform.service.AI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.organizer.platform.config.AiRoutingProperties;
+import com.organizer.platform.model.AI.ContentOrganization;
+import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import com.organizer.platform.repository.CachedOrganizationRepository;
+import com.organizer.platform.service.JMS.ProcessingFailure;
+import com.organizer.platform.service.WhatsApp.WhatsAppMessageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Stress test of the request coalescing: concurrent jobs for the same content have to share
+ * a single AI call. Also covers the routing of requests to models, the streamed answers and the
+ * threads processing the answers.
+ */
+class AiServiceTest {
+    private static final int JOBS = 50;
+
+    private AnthropicClient anthropicClient;
+    private CachedOrganizationRepository repository;
+    private ExecutorService resultExecutor;
+    private SimpleMeterRegistry meterRegistry;
+    private OrganizationCache cache;
+    private AiService aiService;
+
+    @BeforeEach
+    void setUp() {
+        anthropicClient = mock(AnthropicClient.class);
+        repository = mock(CachedOrganizationRepository.class);
+        when(repository.findById(any())).thenReturn(Optional.empty());
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new OrganizationCache(repository, meterRegistry, true, 60, 100, 30);
+        resultExecutor = Executors.newFixedThreadPool(4, new CustomizableThreadFactory("ai-result-"));
+        aiService = new AiService(anthropicClient, cache, new ObjectMapper(),
+                mock(WhatsAppMessageService.class), new AiRoutingProperties(), new OrganizationUpdates(), false,
+                meterRegistry, resultExecutor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        resultExecutor.shutdownNow();
+    }
+
+    @Test
+    void concurrentIdenticalJobsShareOneAiCall() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        when(anthropicClient.createMessage(any(AnthropicRequest.class))).thenReturn(upstream);
+
+        List<WhatsAppMessage> messages = new ArrayList<>();
+        List<CompletableFuture<Void>> organizations = submitConcurrently("תזכורת לשלם חשבונית", messages);
+        assertTrue(organizations.stream().noneMatch(CompletableFuture::isDone));
+
+        upstream.complete(response());
+        CompletableFuture.allOf(organizations.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        verify(anthropicClient, times(1)).createMessage(any(AnthropicRequest.class));
+        messages.forEach(message -> assertNotNull(message.getCategory()));
+        assertEquals(JOBS - 1, meterRegistry.counter("ai.requests.coalesced").count());
+        assertEquals(0, meterRegistry.get("ai.requests.in.flight").gauge().value());
+
+        // Once the call completed, the same content is answered by the cache
+        aiService.generateOrganizationFromText(message("תזכורת לשלם חשבונית"));
+        verify(anthropicClient, times(1)).createMessage(any(AnthropicRequest.class));
+    }
+
+    @Test
+    void distinctContentIsNotCoalesced() throws Exception {
+        when(anthropicClient.createMessage(any(AnthropicRequest.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(response()));
+
+        aiService.generateOrganizationFromText(message("first"));
+        aiService.generateOrganizationFromText(message("second"));
+
+        verify(anthropicClient, times(2)).createMessage(any(AnthropicRequest.class));
+        assertEquals(0, meterRegistry.counter("ai.requests.coalesced").count());
+    }
+
+    @Test
+    void recordsPromptCacheUsageAndLatencyPerType() throws Exception {
+        when(anthropicClient.createMessage(any(AnthropicRequest.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(response()));
+
+        aiService.generateOrganizationFromText(message("first"));
+        aiService.generateOrganizationFromText(message("second"));
+        aiService.generateOrganizationFromImage(new byte[]{1, 2, 3}, message("image"));
+
+        assertEquals(1720, tokens("text", "cache_read"));
+        assertEquals(80, tokens("text", "uncached"));
+        assertEquals(0, tokens("text", "cache_write"));
+        assertEquals(860, tokens("image", "cache_read"));
+        assertEquals(2, meterRegistry.timer("ai.requests.latency", "type", "text").count());
+        assertEquals(1, meterRegistry.timer("ai.requests.latency", "type", "image").count());
+    }
+
+    @Test
+    void sharedFailuresReachEveryJob() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        when(anthropicClient.createMessage(any(AnthropicRequest.class))).thenReturn(upstream);
+
+        List<CompletableFuture<Void>> organizations = submitConcurrently("failing", new ArrayList<>());
+        upstream.completeExceptionally(new AiServiceException(529, "overloaded"));
+
+        for (CompletableFuture<Void> organization : organizations) {
+            Exception e = assertThrows(Exception.class, () -> organization.get(10, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof AiServiceException);
+        }
+        verify(anthropicClient, times(1)).createMessage(any(AnthropicRequest.class));
+    }
+
+    @Test
+    void processesAnswersOffTheThreadsCompletingThem() throws Exception {
+        WhatsAppMessageService messageService = mock(WhatsAppMessageService.class);
+        aiService = new AiService(anthropicClient, cache, new ObjectMapper(), messageService,
+                new AiRoutingProperties(), new OrganizationUpdates(), false, meterRegistry, resultExecutor);
+        AtomicReference<String> cachingThread = new AtomicReference<>();
+        AtomicReference<String> applyingThread = new AtomicReference<>();
+        when(repository.save(any())).thenAnswer(invocation -> {
+            cachingThread.set(Thread.currentThread().getName());
+            return invocation.getArgument(0);
+        });
+        doAnswer(invocation -> {
+            applyingThread.set(Thread.currentThread().getName());
+            return null;
+        }).when(messageService).addTagsAndNextSteps(any(), any(), any());
+
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        when(anthropicClient.createMessage(any(AnthropicRequest.class))).thenReturn(upstream);
+        CompletableFuture<Void> organization = aiService.generateOrganizationFromTextAsync(message("first"));
+        ExecutorService io = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("anthropic-http-"));
+        try {
+            io.submit(() -> upstream.complete(response())).get(10, TimeUnit.SECONDS);
+        } finally {
+            io.shutdownNow();
+        }
+        organization.get(10, TimeUnit.SECONDS);
+
+        assertTrue(cachingThread.get().startsWith("ai-result-"), cachingThread.get());
+        assertTrue(applyingThread.get().startsWith("ai-result-"), applyingThread.get());
+    }
+
+    @Test
+    void answersWithoutTextLeaveTheMessageUnorganized() throws Exception {
+        when(anthropicClient.createMessage(any(AnthropicRequest.class))).thenReturn(
+                CompletableFuture.completedFuture("{\"id\":\"msg_1\",\"content\":[]}"),
+                CompletableFuture.completedFuture("{\"id\":\"msg_2\",\"content\":[{\"type\":\"tool_use\"}]}"),
+                CompletableFuture.completedFuture("{\"id\":\"msg_3\"}"));
+
+        for (String content : List.of("first", "second", "third")) {
+            WhatsAppMessage message = message(content);
+            aiService.generateOrganizationFromText(message);
+            assertNull(message.getCategory());
+        }
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void missingBodiesFailAsTransientAndMissingTagsAreSkipped() throws Exception {
+        WhatsAppMessageService messageService = mock(WhatsAppMessageService.class);
+        aiService = new AiService(anthropicClient, cache, new ObjectMapper(), messageService,
+                new AiRoutingProperties(), new OrganizationUpdates(), false, meterRegistry, resultExecutor);
+        when(anthropicClient.createMessage(any(AnthropicRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        IOException failure = assertThrows(IOException.class, () -> aiService.generateOrganizationFromText(message("first")));
+        assertEquals(ProcessingFailure.TRANSIENT_HTTP, ProcessingFailure.classify(failure));
+
+        WhatsAppMessage message = message("second");
+        aiService.applyOrganization(message, ContentOrganization.builder().category("Health").build());
+        assertEquals("Health", message.getCategory());
+        verify(messageService, never()).addTagsAndNextSteps(any(), any(), any());
+    }
+
+    @Test
+    void routesBySizeAndEscalatesAnswersNotFollowingTheSchema() throws Exception {
+        AiRoutingProperties routing = new AiRoutingProperties();
+        routing.getText().add(route("short", 10, "small-model", 1024, "large-model"));
+        routing.getText().add(route("long", Long.MAX_VALUE, "large-model", 4096, null));
+        aiService = new AiService(anthropicClient, cache, new ObjectMapper(),
+                mock(WhatsAppMessageService.class), routing, new OrganizationUpdates(), false, meterRegistry,
+                resultExecutor);
+
+        List<JsonNode> requests = new ArrayList<>();
+        when(anthropicClient.createMessage(any(AnthropicRequest.class))).thenAnswer(invocation -> {
+            JsonNode request = new ObjectMapper().readTree(invocation.<AnthropicRequest>getArgument(0).toJson());
+            requests.add(request);
+            return CompletableFuture.completedFuture("small-model".equals(request.path("model").asText())
+                    ? response("I am not sure how to classify this.")
+                    : response());
+        });
+
+        WhatsAppMessage note = message("פגישה מחר");
+        aiService.generateOrganizationFromText(note);
+        assertNotNull(note.getCategory());
+        assertEquals(List.of("small-model", "large-model"), models(requests));
+        assertEquals(1024, requests.get(0).path("max_tokens").asInt());
+        assertEquals(8192, requests.get(1).path("max_tokens").asInt());
+        assertEquals(1, answers("short", "small-model", "parse_failure"));
+        assertEquals(1, answers("short", "large-model", "parsed"));
+        assertEquals(1, meterRegistry.counter("ai.route.escalations", "type", "text", "route", "short").count());
+        assertEquals(40 + 860, meterRegistry.counter("ai.route.tokens", "type", "text", "route", "short",
+                "model", "small-model", "direction", "input").count());
+        assertEquals(1, meterRegistry.timer("ai.route.latency", "type", "text", "route", "short",
+                "model", "small-model").count());
+
+        // The escalated answer is cached for the route
+        aiService.generateOrganizationFromText(message("פגישה מחר"));
+        assertEquals(2, requests.size());
+
+        aiService.generateOrganizationFromText(message("תזכורת: לשלם את חשבונית החשמל עד סוף החודש ולבדוק את הקריאה"));
+        assertEquals("large-model", models(requests).get(2));
+        assertEquals(4096, requests.get(2).path("max_tokens").asInt());
+        assertEquals(1, answers("long", "large-model", "parsed"));
+    }
+
+    @Test
+    void publishesTheFieldsOfAStreamedAnswerAsTheyArrive() throws Exception {
+        OrganizationUpdates updates = new OrganizationUpdates();
+        aiService = new AiService(anthropicClient, cache, new ObjectMapper(),
+                mock(WhatsAppMessageService.class), new AiRoutingProperties(), updates, true, meterRegistry,
+                resultExecutor);
+
+        List<JsonNode> requests = new ArrayList<>();
+        when(anthropicClient.streamMessage(any(AnthropicRequest.class), any())).thenAnswer(invocation -> {
+            requests.add(new ObjectMapper().readTree(invocation.<AnthropicRequest>getArgument(0).toJson()));
+            MessageStreamParser parser = new MessageStreamParser(invocation.<Predicate<String>>getArgument(1));
+            MessageStreamParserTest.feed(parser, MessageStreamParserTest.transcript("complete.txt"));
+            return CompletableFuture.completedFuture(parser.finish());
+        });
+
+        WhatsAppMessage message = WhatsAppMessage.WhatsAppMessageBuilder.aWhatsAppMessage()
+                .id(42L).messageType("text").messageContent("תזכורת לשלם את חשבון החשמל").build();
+        List<String> published = new ArrayList<>();
+        Runnable unsubscribe = updates.subscribe(42L, update -> published.add(update.isOrganized()
+                ? OrganizationUpdates.ORGANIZED + "=" + update.getOrganization().getCategory()
+                : update.getField() + "=" + update.getValue()));
+        aiService.generateOrganizationFromText(message);
+        unsubscribe.run();
+
+        assertEquals("כספים", message.getCategory());
+        assertEquals(List.of("category=כספים", "subcategory=חשבונות", "type=תזכורת",
+                "purpose=תזכורת לתשלום חשבון החשמל עד סוף החודש", "tags=חשמל, תשלום, חשבונות",
+                "next_steps=לשלם את החשבון באתר חברת החשמל, לשמור את הקבלה", "organized=כספים"), published);
+        assertTrue(requests.get(0).path("stream").asBoolean());
+        assertEquals("</content_organization_schema>", requests.get(0).path("stop_sequences").get(0).asText());
+        verify(anthropicClient, never()).createMessage(any(AnthropicRequest.class));
+        assertEquals(1024, tokens("text", "cache_read"));
+    }
+
+    @Test
+    void sendsTheTextOfPdfDocumentsWithoutThePdfBeta() throws Exception {
+        List<AnthropicRequest> requests = new ArrayList<>();
+        when(anthropicClient.createMessage(any(AnthropicRequest.class))).thenAnswer(invocation -> {
+            requests.add(invocation.getArgument(0));
+            return CompletableFuture.completedFuture(response());
+        });
+
+        WhatsAppMessage invoice = message("invoice.pdf");
+        aiService.generateOrganizationFromPDFText("Invoice 1042\nTotal 350.00", invoice);
+        aiService.generateOrganizationFromPDF(new byte[]{'%', 'P', 'D', 'F'}, message("scan.pdf"));
+
+        assertNotNull(invoice.getCategory());
+        JsonNode text = new ObjectMapper().readTree(requests.get(0).toJson());
+        assertNull(requests.get(0).getBetaFeature());
+        assertEquals("claude-3-5-haiku-20241022", text.path("model").asText());
+        assertTrue(text.path("messages").get(0).path("content").get(0).path("text").asText()
+                .contains("<document>\nInvoice 1042\nTotal 350.00\n</document>"));
+        assertEquals("pdfs-2024-09-25", requests.get(1).getBetaFeature());
+        assertEquals(1, meterRegistry.timer("ai.requests.latency", "type", "pdf-text").count());
+        assertEquals(1, meterRegistry.timer("ai.requests.latency", "type", "pdf").count());
+    }
+
+    private List<CompletableFuture<Void>> submitConcurrently(String content, List<WhatsAppMessage> messages)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(JOBS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<CompletableFuture<Void>>> submissions = new ArrayList<>();
+            for (int i = 0; i < JOBS; i++) {
+                WhatsAppMessage message = message(content);
+                messages.add(message);
+                submissions.add(executor.submit(() -> {
+                    start.await();
+                    return aiService.generateOrganizationFromTextAsync(message);
+                }));
+            }
+            start.countDown();
+
+            List<CompletableFuture<Void>> organizations = new ArrayList<>();
+            for (Future<CompletableFuture<Void>> submission : submissions) {
+                organizations.add(submission.get(10, TimeUnit.SECONDS));
+            }
+            return organizations;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double answers(String route, String model, String result) {
+        return meterRegistry.counter("ai.route.answers", "type", "text", "route", route, "model", model,
+                "result", result).count();
+    }
+
+    private static List<String> models(List<JsonNode> requests) {
+        List<String> models = new ArrayList<>();
+        requests.forEach(request -> models.add(request.path("model").asText()));
+        return models;
+    }
+
+    private static AiRoutingProperties.Route route(String name, long maxInput, String model, int maxTokens,
+                                                   String escalationModel) {
+        AiRoutingProperties.Route route = new AiRoutingProperties.Route();
+        route.setName(name);
+        route.setMaxInput(maxInput);
+        route.setModel(model);
+        route.setMaxTokens(maxTokens);
+        route.setEscalationModel(escalationModel);
+        return route;
+    }
+
+    private double tokens(String type, String source) {
+        return meterRegistry.counter("ai.prompt.tokens", "type", type, "source", source).count();
+    }
+
+    private static WhatsAppMessage message(String content) {
+        return WhatsAppMessage.WhatsAppMessageBuilder.aWhatsAppMessage()
+                .messageType("text").messageContent(content).build();
+    }
+
+    private static String response() throws Exception {
+        return response(SchemaResponses.response(new Random(7), 3));
+    }
+
+    private static String response(String text) throws Exception {
+        return new ObjectMapper().writeValueAsString(Map.of(
+                "id", "msg_1",
+                "type", "message",
+                "role", "assistant",
+                "content", List.of(Map.of("type", "text", "text", text)),
+                "usage", Map.of("input_tokens", 40, "cache_read_input_tokens", 860, "output_tokens", 300)));
+    }
+}
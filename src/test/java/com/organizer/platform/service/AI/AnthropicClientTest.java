@@ -0,0 +1,184 @@
+package com.organizer.platform.service.AI;
+
+import com.organizer.platform.config.AnthropicProperties;
+import com.organizer.platform.model.AI.Response;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the client against a local stub of the Messages API.
+ */
+class AnthropicClientTest {
+    private HttpServer server;
+    private AnthropicClient client;
+    private final Map<String, String> receivedHeaders = new ConcurrentHashMap<>();
+    private volatile int status = 200;
+    private volatile long delayMs = 0;
+    private volatile String retryAfter;
+    // Lines of an answer stream to send, after which the stub holds the connection open
+    private volatile List<String> streamLines;
+    private final CountDownLatch streamReleased = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/messages", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        AnthropicProperties properties = new AnthropicProperties();
+        properties.setKey("test-key");
+        properties.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        properties.setTotalTimeoutMs(1_000);
+        properties.setIoThreads(2);
+        properties.getLimiter().setInitialLimit(20);
+        properties.getLimiter().setMaxLimit(20);
+        client = new AnthropicClient(properties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        streamReleased.countDown();
+        client.shutdown();
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getRequestHeaders().forEach((name, values) -> receivedHeaders.put(name.toLowerCase(), values.get(0)));
+        byte[] request = exchange.getRequestBody().readAllBytes();
+        if (streamLines != null && status == 200) {
+            stream(exchange);
+            return;
+        }
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] response = ("echo:" + new String(request, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+        if (retryAfter != null) {
+            exchange.getResponseHeaders().add("retry-after", retryAfter);
+        }
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(response);
+        }
+    }
+
+    private void stream(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("content-type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream body = exchange.getResponseBody()) {
+            for (String line : streamLines) {
+                body.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                if (line.isEmpty()) {
+                    body.flush();
+                }
+            }
+            body.flush();
+            // The rest of a long answer, which the client should not wait for
+            streamReleased.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // The client closed the stream
+        }
+    }
+
+    @Test
+    void sendsRequestWithApiHeaders() throws Exception {
+        assertEquals("echo:{}", client.createMessage("{}", "pdfs-2024-09-25").get(5, TimeUnit.SECONDS));
+        assertEquals("test-key", receivedHeaders.get("x-api-key"));
+        assertEquals("2023-06-01", receivedHeaders.get("anthropic-version"));
+        assertEquals("pdfs-2024-09-25", receivedHeaders.get("anthropic-beta"));
+    }
+
+    @Test
+    void failsWithStatusOfErrorResponse() {
+        status = 429;
+        retryAfter = "2";
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> client.createMessage("{}").get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof AiServiceException);
+        assertEquals(429, ((AiServiceException) failure.getCause()).getStatus());
+        assertEquals(2_000, ((AiServiceException) failure.getCause()).getRetryAfterMs());
+        assertEquals(10, client.getLimiter().getLimit());
+    }
+
+    @Test
+    void failsWithTimeoutPastTotalDeadline() {
+        delayMs = 3_000;
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> client.createMessage("{}").get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof HttpTimeoutException);
+    }
+
+    @Test
+    void keepsManyRequestsInFlightWithFewThreads() throws Exception {
+        delayMs = 300;
+        List<CompletableFuture<String>> responses = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            responses.add(client.createMessage("{\"n\":" + i + "}"));
+        }
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("echo:{\"n\":7}", responses.get(7).get());
+        // Sequentially 20 requests would take 6 seconds
+        assertTrue(elapsedMs < 3_000, "Requests did not overlap: " + elapsedMs + " ms");
+    }
+
+    @Test
+    void stopsReadingAStreamedAnswerOnceTheListenerHasWhatItNeeds() throws Exception {
+        // Send the answer up to the end of its schema, then hold the connection open
+        List<String> lines = MessageStreamParserTest.transcript("rambling.txt");
+        OrganizationSchemaParser replay = OrganizationSchemaParser.incremental((field, value) -> { });
+        streamLines = lines.subList(0, MessageStreamParserTest.feed(
+                new MessageStreamParser(piece -> !replay.append(piece)), lines));
+        OrganizationSchemaParser schema = OrganizationSchemaParser.incremental((field, value) -> { });
+
+        Response response = client.streamMessage(streamRequest(), piece -> !schema.append(piece))
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals("text/event-stream", receivedHeaders.get("accept"));
+        assertTrue(schema.isComplete());
+        assertEquals("msg_01XFDUDYJgAACzvnptvVoYEL", response.getId());
+        assertTrue(response.getContent().get(0).getText().contains("</next_steps>"));
+    }
+
+    @Test
+    void failsAStreamedAnswerWithStatusOfErrorResponse() {
+        streamLines = List.of();
+        status = 529;
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> client.streamMessage(streamRequest(), piece -> true).get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof AiServiceException);
+        assertEquals(529, ((AiServiceException) failure.getCause()).getStatus());
+    }
+
+    private static AnthropicRequest streamRequest() {
+        return AnthropicRequest.builder(
+                        new PromptTemplate("claude-3-5-haiku-20241022", 1024, 0, "prompts/text-system.txt", null))
+                .text("תזכורת לשלם את חשבון החשמל")
+                .stopSequence("</content_organization_schema>")
+                .stream()
+                .build();
+    }
+}
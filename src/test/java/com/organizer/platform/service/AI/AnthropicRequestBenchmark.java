@@ -0,0 +1,134 @@
+package com.organizer.platform.service.AI;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the allocation per AI request body of the streaming serialization (AnthropicRequest)
+ * with the former string concatenation, for a text message and a PDF.
+ * <p>
+ * Run from the test classpath, after 'mvn test-compile':
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     com.organizer.platform.service.AI.AnthropicRequestBenchmark
+ * and compare gc.alloc.rate.norm (bytes per operation).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnthropicRequestBenchmark {
+    private static final String MODEL = "claude-3-5-sonnet-20241022";
+
+    @Param({"2097152"})
+    private int pdfBytes;
+
+    private PromptTemplate pdfTemplate;
+    private PromptTemplate textTemplate;
+    private String legacyPdfSystem;
+    private String legacyTextSystem;
+    private byte[] pdf;
+    private String text;
+
+    @Setup
+    public void setUp() throws IOException {
+        pdfTemplate = new PromptTemplate(MODEL, 8192, 0, "prompts/pdf-system.txt", "pdfs-2024-09-25");
+        textTemplate = new PromptTemplate(MODEL, 8192, 0, "prompts/text-system.txt", null);
+        // The former code held the prompts as escaped string literals
+        legacyPdfSystem = escape(load("prompts/pdf-system.txt"));
+        legacyTextSystem = escape(load("prompts/text-system.txt"));
+
+        pdf = new byte[pdfBytes];
+        new Random(1).nextBytes(pdf);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            builder.append("פגישה עם \"הצוות\" ביום שלישי בשעה 10:00\n");
+        }
+        text = builder.toString();
+    }
+
+    @Benchmark
+    public int streamingPdf() {
+        return AnthropicRequest.builder(pdfTemplate)
+                .media("document", "application/pdf", pdf)
+                .text("Analyze and organize this PDF content:")
+                .build()
+                .length();
+    }
+
+    @Benchmark
+    public int concatenatedPdf() {
+        String base64PDF = Base64.getEncoder().encodeToString(pdf);
+        String body = "{\n  \"model\": \"" + MODEL + "\",\n  \"max_tokens\": 8192,\n  \"temperature\": 0,\n  \"system\": \""
+                + legacyPdfSystem + "\",\n  \"messages\": [\n    {\n      \"role\": \"user\",\n      \"content\": [\n"
+                + "        {\n          \"type\": \"document\",\n          \"source\": {\n            \"type\": \"base64\",\n"
+                + "            \"media_type\": \"application/pdf\",\n            \"data\": \"" + base64PDF
+                + "\"\n          }\n        },\n        {\n          \"type\": \"text\",\n"
+                + "          \"text\": \"Analyze and organize this PDF content:\"\n        }\n      ]\n    }\n  ]\n}";
+        // The HTTP client encoded the body once more before sending it
+        return body.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Benchmark
+    public int streamingText() {
+        return AnthropicRequest.builder(textTemplate)
+                .text("Analyze and organize this content:\n\n<input_text>\n" + text + " \n</input_text>")
+                .build()
+                .length();
+    }
+
+    @Benchmark
+    public int concatenatedText() {
+        String body = "{\n    \"model\": \"" + MODEL + "\",\n    \"max_tokens\": 8192,\n    \"temperature\": 0,\n"
+                + "    \"system\": \"" + legacyTextSystem + "\",\n    \"messages\": [\n      {\n        \"role\": \"user\",\n"
+                + "        \"content\": [\n          {\n            \"type\": \"text\",\n            \"text\": "
+                + "\"Analyze and organize this content:\\n\\n<input_text>\\n" + convertToJavaString(text)
+                + " \\n</input_text>\"\n          }\n        ]\n      }\n    ]\n  }";
+        return body.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * The escaping the former code applied to user content.
+     */
+    private static String convertToJavaString(String input) {
+        return input
+                .replace("\\", "\\\\")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r")
+                .replace("\"", "\\\"")
+                .replace("\t", "\\t");
+    }
+
+    private static String escape(String value) {
+        return new String(JsonStringEncoder.getInstance().quoteAsString(value));
+    }
+
+    private static String load(String resource) throws IOException {
+        try (InputStream inputStream = new ClassPathResource(resource).getInputStream()) {
+            return StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AnthropicRequestBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,59 @@
+package com.organizer.platform.service.AI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnthropicRequestTest {
+    private static final PromptTemplate TEMPLATE =
+            new PromptTemplate("claude-3-5-sonnet-20241022", 8192, 0.1, "prompts/pdf-system.txt", "pdfs-2024-09-25");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void writesTemplateAndContentBlocksInOrder() throws Exception {
+        byte[] pdf = new byte[100_001];
+        new Random(7).nextBytes(pdf);
+
+        AnthropicRequest request = AnthropicRequest.builder(TEMPLATE)
+                .media("document", "application/pdf", pdf)
+                .text("Analyze and organize this PDF content:")
+                .build();
+        JsonNode body = objectMapper.readTree(request.toJson());
+
+        assertEquals("claude-3-5-sonnet-20241022", body.get("model").asText());
+        assertEquals(8192, body.get("max_tokens").asInt());
+        assertEquals(0.1, body.get("temperature").asDouble());
+        JsonNode system = body.get("system").get(0);
+        assertTrue(system.get("text").asText().startsWith("you are a precise PDF document organization system"));
+        assertTrue(system.get("text").asText().contains("<!-- הגדרת הסיווג הראשי של התוכן -->\n"));
+        assertEquals("ephemeral", system.get("cache_control").get("type").asText());
+        assertEquals("pdfs-2024-09-25", request.getBetaFeature());
+        assertEquals("claude-3-5-sonnet-20241022/document", request.getLatencyClass());
+
+        JsonNode message = body.get("messages").get(0);
+        assertEquals("user", message.get("role").asText());
+        JsonNode document = message.get("content").get(0);
+        assertEquals("document", document.get("type").asText());
+        assertEquals("base64", document.get("source").get("type").asText());
+        assertEquals("application/pdf", document.get("source").get("media_type").asText());
+        assertEquals(Base64.getEncoder().encodeToString(pdf), document.get("source").get("data").asText());
+        assertEquals("Analyze and organize this PDF content:", message.get("content").get(1).get("text").asText());
+        assertEquals(request.length(), request.toJson().getBytes("UTF-8").length);
+    }
+
+    @Test
+    void escapesUserText() throws Exception {
+        String text = "שלום \"world\"\n\tback\\slash \u0001 end";
+
+        AnthropicRequest request = AnthropicRequest.builder(TEMPLATE).text(text).build();
+        JsonNode body = objectMapper.readTree(request.toJson());
+
+        assertEquals(text, body.get("messages").get(0).get("content").get(0).get("text").asText());
+    }
+}
@@ -0,0 +1,231 @@
+package com.organizer.platform.service.AI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.organizer.platform.config.AiRoutingProperties;
+import com.organizer.platform.config.AnthropicProperties;
+import com.organizer.platform.model.AI.ClassificationBatch;
+import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import com.organizer.platform.repository.CachedOrganizationRepository;
+import com.organizer.platform.repository.ClassificationBatchRepository;
+import com.organizer.platform.repository.WhatsAppMessageRepository;
+import com.organizer.platform.service.WhatsApp.WhatsAppMessageService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Drives batch runs against a local stub of the Message Batches API.
+ */
+class BatchClassificationServiceTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private HttpServer server;
+    private AnthropicClient client;
+    // Custom IDs of the requests of each submitted batch
+    private final List<List<String>> submitted = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> polls = new ConcurrentHashMap<>();
+    private final Set<String> erroredIds = ConcurrentHashMap.newKeySet();
+
+    private final Map<Long, WhatsAppMessage> messages = new TreeMap<>();
+    private final Map<String, ClassificationBatch> batches = new LinkedHashMap<>();
+    private SimpleMeterRegistry meterRegistry;
+    private BatchClassificationService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/messages/batches", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        AnthropicProperties properties = new AnthropicProperties();
+        properties.setKey("test-key");
+        properties.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        meterRegistry = new SimpleMeterRegistry();
+        client = new AnthropicClient(properties, meterRegistry);
+
+        CachedOrganizationRepository cacheRepository = mock(CachedOrganizationRepository.class);
+        when(cacheRepository.findById(any())).thenReturn(Optional.empty());
+        OrganizationCache cache = new OrganizationCache(cacheRepository, meterRegistry, true, 60, 100, 30);
+        WhatsAppMessageService messageService = mock(WhatsAppMessageService.class);
+        when(messageService.updateMessages(anyCollection(), any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            Consumer<WhatsAppMessage> update = invocation.getArgument(1);
+            List<WhatsAppMessage> updated = ids.stream().map(messages::get).collect(Collectors.toList());
+            updated.forEach(update);
+            return updated;
+        });
+        AiService aiService = new AiService(client, cache, MAPPER, messageService, new AiRoutingProperties(),
+                new OrganizationUpdates(), false, meterRegistry, Runnable::run);
+
+        service = new BatchClassificationService(aiService, client, messageService, messageRepository(),
+                batchRepository(), MAPPER, meterRegistry, true, false, 2, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void classifiesPendingMessagesInChainedBatches() {
+        addMessage(1, "פגישה ביום שני");
+        addMessage(2, "לשלם חשבונית חשמל");
+        addMessage(3, "https://example.com", "scraped page about flights");
+        messages.get(2L).setCategory("עסקים");
+        addMessage(4, "מתכון לעוגה");
+        erroredIds.add("message-4");
+
+        ClassificationBatch first = service.submit(ClassificationBatch.Mode.PENDING).orElseThrow();
+        assertEquals(List.of("message-1", "message-3"), submitted.get(0));
+        assertTrue(service.isRunning());
+        assertThrows(IllegalStateException.class, () -> service.submit(ClassificationBatch.Mode.PENDING));
+
+        service.poll();
+        assertNull(first.getEndedAt(), "Batch applied while still in progress");
+        service.poll();
+
+        assertNotNull(first.getEndedAt());
+        assertEquals(2, first.getSucceeded());
+        assertNotNull(messages.get(1L).getCategory());
+        assertNotNull(messages.get(3L).getCategory());
+        assertTrue(messages.get(1L).isProcessed());
+        // The run continued after the last message of the full first page
+        assertEquals(List.of("message-4"), submitted.get(1));
+
+        service.poll();
+        service.poll();
+        assertFalse(service.isRunning());
+        assertEquals(1, batches.get("msgbatch_2").getFailed());
+        assertNull(messages.get(4L).getCategory());
+        assertEquals(2, meterRegistry.counter("ai.batch.requests", "result", "succeeded").count());
+        assertEquals(1, meterRegistry.counter("ai.batch.requests", "result", "failed").count());
+    }
+
+    @Test
+    void organizesCachedMessagesWithoutSendingThem() {
+        addMessage(1, "פגישה ביום שני");
+        service.submit(ClassificationBatch.Mode.PENDING);
+        service.poll();
+        service.poll();
+        assertEquals(1, submitted.size());
+
+        // Same content again: answered by the cache that the first batch filled
+        addMessage(2, "  פגישה   ביום שני ");
+        assertTrue(service.submit(ClassificationBatch.Mode.PENDING).isEmpty());
+
+        assertEquals(1, submitted.size());
+        assertEquals(messages.get(1L).getCategory(), messages.get(2L).getCategory());
+        assertEquals(1, meterRegistry.counter("ai.batch.requests", "result", "cached").count());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if ("POST".equals(exchange.getRequestMethod())) {
+            JsonNode body = MAPPER.readTree(exchange.getRequestBody());
+            List<String> ids = new ArrayList<>();
+            body.path("requests").forEach(request -> {
+                assertEquals("user", request.path("params").path("messages").get(0).path("role").asText());
+                ids.add(request.path("custom_id").asText());
+            });
+            submitted.add(ids);
+            respond(exchange, "{\"id\":\"msgbatch_" + submitted.size() + "\",\"processing_status\":\"in_progress\"}");
+            return;
+        }
+
+        String batchId = path.split("/")[4];
+        List<String> ids = submitted.get(Integer.parseInt(batchId.substring("msgbatch_".length())) - 1);
+        if (path.endsWith("/results")) {
+            StringBuilder results = new StringBuilder();
+            for (String id : ids) {
+                results.append(erroredIds.contains(id) ? errored(id) : succeeded(id)).append('\n');
+            }
+            respond(exchange, results.toString());
+            return;
+        }
+        String status = polls.merge(batchId, 1, Integer::sum) > 1 ? "ended" : "in_progress";
+        respond(exchange, "{\"id\":\"" + batchId + "\",\"processing_status\":\"" + status + "\"}");
+    }
+
+    private static String succeeded(String customId) throws IOException {
+        Map<String, Object> message = Map.of(
+                "id", "msg_" + customId,
+                "type", "message",
+                "role", "assistant",
+                "content", List.of(Map.of("type", "text", "text", SchemaResponses.response(new Random(customId.hashCode()), 3))),
+                "usage", Map.of("input_tokens", 500, "output_tokens", 200));
+        return MAPPER.writeValueAsString(Map.of("custom_id", customId,
+                "result", Map.of("type", "succeeded", "message", message)));
+    }
+
+    private static String errored(String customId) throws IOException {
+        return MAPPER.writeValueAsString(Map.of("custom_id", customId,
+                "result", Map.of("type", "errored", "error", Map.of("type", "invalid_request_error"))));
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void addMessage(long id, String content) {
+        addMessage(id, content, null);
+    }
+
+    private void addMessage(long id, String content, String scrapedContent) {
+        WhatsAppMessage message = WhatsAppMessage.WhatsAppMessageBuilder.aWhatsAppMessage()
+                .id(id).fromNumber("972500000000").messageType("text").messageContent(content)
+                .purpose(scrapedContent).createdAt(new Date(0)).build();
+        messages.put(id, message);
+    }
+
+    private WhatsAppMessageRepository messageRepository() {
+        WhatsAppMessageRepository repository = mock(WhatsAppMessageRepository.class);
+        when(repository.findTextMessagesToClassify(anyLong(), any(), anyBoolean(), any())).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            boolean all = invocation.getArgument(2);
+            Pageable page = invocation.getArgument(3);
+            return messages.values().stream()
+                    .filter(message -> message.getId() > afterId && (all || message.getCategory() == null))
+                    .limit(page.getPageSize())
+                    .collect(Collectors.toList());
+        });
+        return repository;
+    }
+
+    private ClassificationBatchRepository batchRepository() {
+        ClassificationBatchRepository repository = mock(ClassificationBatchRepository.class);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            ClassificationBatch batch = invocation.getArgument(0);
+            batches.put(batch.getId(), batch);
+            return batch;
+        });
+        when(repository.findByEndedAtIsNullOrderByCreatedAt()).thenAnswer(invocation -> batches.values().stream()
+                .filter(batch -> batch.getEndedAt() == null)
+                .collect(Collectors.toList()));
+        return repository;
+    }
+}
@@ -0,0 +1,93 @@
+package com.organizer.platform.service.AI;
+
+import com.organizer.platform.model.AI.ContentOrganization;
+import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import com.organizer.platform.repository.WhatsAppMessageRepository;
+import com.organizer.platform.service.WhatsApp.WhatsAppMessageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.organizer.platform.model.organizedDTO.WhatsAppMessage.WhatsAppMessageBuilder.aWhatsAppMessage;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DuplicateImageIndexTest {
+    private static final String FROM = "972500000000";
+    private static final long HASH = 0x3C3C_7E7E_0F0F_F00FL;
+    private static final ContentOrganization ORGANIZATION = ContentOrganization.builder()
+            .category("עסקים").subCategory("קבלה").type("צילום מסך").purpose("אישי")
+            .tags("קבלה").nextSteps("לשמור")
+            .build();
+
+    private WhatsAppMessageRepository repository;
+    private WhatsAppMessageService messageService;
+    private SimpleMeterRegistry meterRegistry;
+    private DuplicateImageIndex index;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(WhatsAppMessageRepository.class);
+        messageService = mock(WhatsAppMessageService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        index = new DuplicateImageIndex(repository, messageService, meterRegistry, true, 4, 100, 60);
+    }
+
+    @Test
+    void reusesTheOrganizationOfAnAlikeImageOfTheSameUser() {
+        List<Object[]> hashes = new ArrayList<>();
+        hashes.add(new Object[]{7L, HASH});
+        when(repository.findImageHashesByFromNumber(FROM)).thenReturn(hashes);
+        when(messageService.findOrganization(7L)).thenReturn(Optional.of(ORGANIZATION));
+
+        WhatsAppMessage resent = image(8L, HASH ^ 0b1011);
+        assertEquals("קבלה", index.findOriginal(resent).orElseThrow().getSubCategory());
+        assertEquals(7L, resent.getDuplicateOf());
+
+        WhatsAppMessage other = image(9L, ~HASH);
+        assertTrue(index.findOriginal(other).isEmpty());
+        assertNull(other.getDuplicateOf());
+        verify(repository, times(1)).findImageHashesByFromNumber(FROM);
+        assertEquals(1, count("hit"));
+        assertEquals(1, count("miss"));
+    }
+
+    @Test
+    void matchesImagesOrganizedAfterTheIndexWasLoaded() {
+        when(repository.findImageHashesByFromNumber(FROM)).thenReturn(new ArrayList<>());
+        when(messageService.findOrganization(8L)).thenReturn(Optional.of(ORGANIZATION));
+
+        WhatsAppMessage first = image(8L, HASH);
+        assertTrue(index.findOriginal(first).isEmpty());
+        first.setCategory("עסקים");
+        index.add(first);
+
+        WhatsAppMessage second = image(9L, HASH ^ 1);
+        assertTrue(index.findOriginal(second).isPresent());
+        assertEquals(8L, second.getDuplicateOf());
+        // A redelivered message does not match itself
+        assertTrue(index.findOriginal(image(8L, HASH)).isEmpty());
+    }
+
+    @Test
+    void treatsDatabaseFailuresAndMissingHashesAsMisses() {
+        when(repository.findImageHashesByFromNumber(FROM)).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertTrue(index.findOriginal(image(8L, HASH)).isEmpty());
+        assertTrue(index.findOriginal(image(9L, null)).isEmpty());
+        verify(messageService, never()).findOrganization(any());
+    }
+
+    private static WhatsAppMessage image(Long id, Long hash) {
+        return aWhatsAppMessage().id(id).fromNumber(FROM).messageType("image").imageHash(hash).build();
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("ai.duplicates.requests", "result", result).count();
+    }
+}
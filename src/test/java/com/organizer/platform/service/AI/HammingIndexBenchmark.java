@@ -0,0 +1,88 @@
+package com.organizer.platform.service.AI;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a HammingIndex lookup with a scan of every hash, for the images of one user.
+ * Half of the queries are copies of a stored hash with up to 4 bits flipped, the others match nothing.
+ * <p>
+ * Run like AnthropicRequestBenchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HammingIndexBenchmark {
+    private static final int MAX_DISTANCE = 4;
+
+    @Param({"10000", "100000", "500000"})
+    private int images;
+
+    private long[] hashes;
+    private long[] queries;
+    private HammingIndex index;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(5);
+        hashes = new long[images];
+        long[] ids = new long[images];
+        for (int i = 0; i < images; i++) {
+            hashes[i] = random.nextLong();
+            ids[i] = i;
+        }
+        index = new HammingIndex(MAX_DISTANCE);
+        index.addAll(hashes, ids);
+        // Images organized since the index was loaded
+        for (int i = 0; i < 200; i++) {
+            index.add(random.nextLong(), images + i);
+        }
+        queries = new long[1024];
+        for (int i = 0; i < queries.length; i++) {
+            long hash = i % 2 == 0 ? hashes[random.nextInt(images)] : random.nextLong();
+            for (int bit = random.nextInt(MAX_DISTANCE + 1); bit > 0; bit--) {
+                hash ^= 1L << random.nextInt(64);
+            }
+            queries[i] = hash;
+        }
+    }
+
+    @Benchmark
+    public long index() {
+        return index.nearest(queries[next++ & 1023]);
+    }
+
+    @Benchmark
+    public long scan() {
+        long hash = queries[next++ & 1023];
+        long best = -1;
+        int bestDistance = MAX_DISTANCE + 1;
+        for (int i = 0; i < hashes.length; i++) {
+            int distance = Long.bitCount(hashes[i] ^ hash);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(HammingIndexBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,76 @@
+package com.organizer.platform.service.AI;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HammingIndexTest {
+
+    @Test
+    void findsTheSameNearestEntryAsAScan() {
+        Random random = new Random(11);
+        long[] hashes = new long[20_000];
+        long[] ids = new long[10_000];
+        HammingIndex index = new HammingIndex(4);
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextLong();
+            if (i < ids.length) {
+                ids[i] = 1000 + i;
+            } else {
+                index.add(hashes[i], 1000 + i);
+            }
+        }
+        index.addAll(Arrays.copyOf(hashes, ids.length), ids);
+
+        for (int query = 0; query < 2_000; query++) {
+            long hash = flip(hashes[random.nextInt(hashes.length)], random.nextInt(7), random);
+            assertEquals(scan(hashes, hash, 4), index.nearest(hash), Long.toHexString(hash));
+        }
+        assertEquals(20_000, index.size());
+    }
+
+    @Test
+    void matchesEntriesAddedSinceTheLastReindex() {
+        HammingIndex index = new HammingIndex(4);
+        index.add(0xF0F0F0F0F0F0F0F0L, 1);
+        index.add(0x0123456789ABCDEFL, 2);
+
+        assertEquals(1, index.nearest(0xF0F0F0F0F0F0F0F3L));
+        assertEquals(2, index.nearest(0x0123456789ABCDEFL ^ 0x8001_0000_0000_0100L));
+        assertEquals(-1, index.nearest(0x0123456789ABCDEFL ^ 0x1F));
+    }
+
+    @Test
+    void prefersTheNearestThenTheFirstAddedEntry() {
+        HammingIndex index = new HammingIndex(6);
+        index.add(0b111, 1);
+        index.add(0b011, 2);
+        index.add(0b011, 3);
+
+        assertEquals(2, index.nearest(0b001));
+        assertEquals(1, index.nearest(0b1111));
+    }
+
+    private static long scan(long[] hashes, long hash, int maxDistance) {
+        long best = -1;
+        int bestDistance = maxDistance + 1;
+        for (int i = 0; i < hashes.length; i++) {
+            int distance = Long.bitCount(hashes[i] ^ hash);
+            if (distance < bestDistance) {
+                best = 1000 + i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    private static long flip(long hash, int bits, Random random) {
+        for (int i = 0; i < bits; i++) {
+            hash ^= 1L << random.nextInt(64);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,106 @@
+package com.organizer.platform.service.AI;
+
+import com.organizer.platform.model.AI.ContentOrganization;
+import com.organizer.platform.model.AI.Response;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Replays the recorded answer streams in test/resources/sse.
+ */
+class MessageStreamParserTest {
+
+    @Test
+    void assemblesTheAnswerOfACompleteStream() throws IOException {
+        List<String> pieces = new ArrayList<>();
+        MessageStreamParser parser = new MessageStreamParser(pieces::add);
+
+        feed(parser, transcript("complete.txt"));
+        Response response = parser.finish();
+
+        assertEquals("msg_01XFDUDYJgAACzvnptvVoYEL", response.getId());
+        assertEquals("claude-3-5-haiku-20241022", response.getModel());
+        assertEquals("stop_sequence", response.getStopReason());
+        assertEquals("</content_organization_schema>", response.getStopSequence());
+        assertEquals(String.join("", pieces), response.getContent().get(0).getText());
+        assertEquals(38, response.getUsage().getInputTokens());
+        assertEquals(1024, response.getUsage().getCacheReadInputTokens());
+        assertEquals(96, response.getUsage().getOutputTokens());
+
+        ContentOrganization organization = OrganizationSchemaParser.parse(response.getContent().get(0).getText());
+        assertEquals("כספים", organization.getCategory());
+        assertEquals("לשלם את החשבון באתר חברת החשמל, לשמור את הקבלה", organization.getNextSteps());
+    }
+
+    @Test
+    void stopsReadingOnceTheSchemaIsComplete() throws IOException {
+        List<String> fields = new ArrayList<>();
+        OrganizationSchemaParser schema = OrganizationSchemaParser.incremental((field, value) -> fields.add(field));
+        MessageStreamParser parser = new MessageStreamParser(piece -> !schema.append(piece));
+
+        List<String> lines = transcript("rambling.txt");
+        int read = feed(parser, lines);
+        Response response = parser.finish();
+
+        assertTrue(read < lines.size() / 4, "read " + read + " of " + lines.size() + " lines");
+        assertEquals(List.of("category", "subcategory", "type", "purpose", "tags", "next_steps"), fields);
+        assertNull(response.getStopReason());
+        assertEquals("חשמל, תשלום, חשבונות",
+                OrganizationSchemaParser.parse(response.getContent().get(0).getText()).getTags());
+    }
+
+    @Test
+    void failsOnAnErrorEvent() throws IOException {
+        MessageStreamParser parser = new MessageStreamParser(piece -> true);
+
+        AiServiceException error = assertThrows(AiServiceException.class,
+                () -> feed(parser, transcript("overloaded.txt")));
+        assertEquals(529, error.getStatus());
+        assertTrue(error.getMessage().contains("Overloaded"));
+        assertFalse(parser.getText().isEmpty());
+    }
+
+    @Test
+    void readsAnEventWithoutItsClosingBlankLine() throws IOException {
+        MessageStreamParser parser = new MessageStreamParser(piece -> true);
+        parser.line("data: {\"type\":\"message_start\",\"message\":{\"id\":\"msg\",\"usage\":{\"input_tokens\":3}}}");
+        parser.line("");
+        parser.line("data:{\"type\":\"content_block_delta\",\"delta\":{\"type\":\"text_delta\",\"text\":\"<category>x\"}}");
+
+        assertEquals("<category>x", parser.finish().getContent().get(0).getText());
+    }
+
+    @Test
+    void failsWhenTheStreamEndsBeforeTheMessageStarts() {
+        MessageStreamParser parser = new MessageStreamParser(piece -> true);
+
+        assertThrows(IOException.class, parser::finish);
+    }
+
+    /**
+     * @return Number of lines read before the parser stopped
+     */
+    static int feed(MessageStreamParser parser, List<String> lines) throws IOException {
+        int read = 0;
+        for (String line : lines) {
+            read++;
+            if (!parser.line(line)) {
+                break;
+            }
+        }
+        return read;
+    }
+
+    static List<String> transcript(String name) throws IOException {
+        try (InputStream in = MessageStreamParserTest.class.getResourceAsStream("/sse/" + name)) {
+            return List.of(new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n", -1));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.organizer.platform.service.AI;
+
+import com.organizer.platform.model.AI.CachedOrganization;
+import com.organizer.platform.model.AI.ContentOrganization;
+import com.organizer.platform.repository.CachedOrganizationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OrganizationCacheTest {
+    private static final PromptTemplate TEXT =
+            new PromptTemplate("claude-3-5-haiku-20241022", 8192, 0, "prompts/text-system.txt", null);
+    private static final PromptTemplate URL =
+            new PromptTemplate("claude-3-5-haiku-20241022", 8192, 0, "prompts/url-system.txt", null);
+    private static final ContentOrganization ORGANIZATION = ContentOrganization.builder()
+            .category("עסקים").subCategory("חשבונית").type("מסמך").purpose("אישי")
+            .tags("חשבונית, תשלום").nextSteps("לשלם")
+            .build();
+
+    private CachedOrganizationRepository repository;
+    private SimpleMeterRegistry meterRegistry;
+    private OrganizationCache cache;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(CachedOrganizationRepository.class);
+        when(repository.findById(any())).thenReturn(Optional.empty());
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new OrganizationCache(repository, meterRegistry, true, 60, 100, 30);
+    }
+
+    @Test
+    void normalizesTextKeysPerPrompt() {
+        String key = cache.textKey(TEXT, "  שלום\n\nעולם ");
+
+        assertEquals(key, cache.textKey(TEXT, "שלום עולם"));
+        assertNotEquals(key, cache.textKey(TEXT, "שלום עולם!"));
+        assertNotEquals(key, cache.textKey(URL, "שלום עולם"));
+        assertNotEquals(cache.textKey(URL, "ab", "c"), cache.textKey(URL, "a", "bc"));
+        assertEquals(cache.mediaKey(TEXT, new byte[]{1, 2}), cache.mediaKey(TEXT, new byte[]{1, 2}));
+    }
+
+    @Test
+    void servesRepeatedContentFromMemoryAndCountsSavedTokens() {
+        String key = cache.textKey(TEXT, "meme");
+        assertTrue(cache.get(key).isEmpty());
+
+        cache.put(key, ORGANIZATION, 1200);
+        ContentOrganization cached = cache.get(key).orElseThrow();
+
+        assertEquals("עסקים", cached.getCategory());
+        assertEquals("לשלם", cached.getNextSteps());
+        verify(repository).save(any(CachedOrganization.class));
+        assertEquals(1, count("miss"));
+        assertEquals(1, count("memory"));
+        assertEquals(1200, meterRegistry.counter("ai.organization.cache.tokens.saved").count());
+    }
+
+    @Test
+    void promotesDatabaseHitsAndDropsExpiredEntries() {
+        String fresh = cache.textKey(TEXT, "fresh");
+        String expired = cache.textKey(TEXT, "expired");
+        CachedOrganization old = new CachedOrganization(expired, ORGANIZATION, 10);
+        ReflectionTestUtils.setField(old, "createdAt",
+                new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(31)));
+        when(repository.findById(fresh)).thenReturn(Optional.of(new CachedOrganization(fresh, ORGANIZATION, 10)));
+        when(repository.findById(expired)).thenReturn(Optional.of(old));
+
+        assertTrue(cache.get(fresh).isPresent());
+        assertTrue(cache.get(fresh).isPresent());
+        assertTrue(cache.get(expired).isEmpty());
+
+        verify(repository, times(1)).findById(fresh);
+        verify(repository).delete(old);
+        assertEquals(1, count("database"));
+        assertEquals(1, count("memory"));
+        assertEquals(1, count("miss"));
+    }
+
+    @Test
+    void treatsDatabaseFailuresAsMisses() {
+        when(repository.findById(any())).thenThrow(new DataAccessResourceFailureException("down"));
+        when(repository.save(any())).thenThrow(new DataAccessResourceFailureException("down"));
+        String key = cache.mediaKey(TEXT, new byte[]{1});
+
+        assertTrue(cache.get(key).isEmpty());
+        cache.put(key, ORGANIZATION, 5);
+        assertTrue(cache.get(key).isPresent());
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("ai.organization.cache.requests", "result", result).count();
+    }
+}
@@ -0,0 +1,61 @@
+package com.organizer.platform.service.AI;
+
+import com.organizer.platform.model.AI.ContentOrganization;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single-pass OrganizationSchemaParser with the former per-field regex extraction
+ * over a corpus of real-sized AI answers. Each operation parses the whole corpus.
+ * <p>
+ * Run like AnthropicRequestBenchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrganizationSchemaParserBenchmark {
+    private static final String[] FIELDS = {"category", "subcategory", "type", "purpose", "tags", "next_steps"};
+
+    private List<String> corpus;
+
+    @Setup
+    public void setUp() {
+        corpus = SchemaResponses.corpus(100);
+    }
+
+    @Benchmark
+    public void singlePass(Blackhole blackhole) {
+        for (String response : corpus) {
+            ContentOrganization organization = OrganizationSchemaParser.parse(response);
+            blackhole.consume(organization);
+        }
+    }
+
+    @Benchmark
+    public void regexPerField(Blackhole blackhole) {
+        for (String response : corpus) {
+            for (String field : FIELDS) {
+                blackhole.consume(SchemaResponses.extractWithRegex(response, field));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(OrganizationSchemaParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
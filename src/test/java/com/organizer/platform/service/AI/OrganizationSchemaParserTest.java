@@ -0,0 +1,104 @@
+package com.organizer.platform.service.AI;
+
+import com.organizer.platform.model.AI.ContentOrganization;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.organizer.platform.service.AI.SchemaResponses.extractWithRegex;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrganizationSchemaParserTest {
+
+    @Test
+    void matchesRegexExtractionOnCorpus() {
+        for (String response : SchemaResponses.corpus(200)) {
+            assertSameAsRegex(response);
+        }
+    }
+
+    @Test
+    void leavesMissingAndUnclosedTagsNull() {
+        ContentOrganization organization = OrganizationSchemaParser.parse(
+                "<category>עסקים</category><type>מסמך<tags>a, b</tags>");
+
+        assertEquals("עסקים", organization.getCategory());
+        assertNull(organization.getSubCategory());
+        assertNull(organization.getType());
+        assertEquals("a, b", organization.getTags());
+        assertNull(organization.getNextSteps());
+    }
+
+    @Test
+    void keepsNestedAndRepeatedTagsAsRegexDid() {
+        assertSameAsRegex("<purpose> <b>bold</b> <purpose>inner</purpose> tail</purpose>");
+        assertSameAsRegex("</category><category>first</category><category>second</category>");
+        assertSameAsRegex("<content_type><type>x</type></content_type><subcategory attr=\"1\">y</subcategory>");
+        assertSameAsRegex("<next_steps>a < b, c<d</next_steps><tags></tags>");
+        assertSameAsRegex("no schema at all");
+    }
+
+    @Test
+    void incrementalParsingMatchesParseWhateverThePieces() {
+        Random random = new Random(7);
+        for (String response : SchemaResponses.corpus(200)) {
+            OrganizationSchemaParser parser = OrganizationSchemaParser.incremental((field, value) -> { });
+            int position = 0;
+            while (position < response.length() && !parser.isComplete()) {
+                int end = Math.min(response.length(), position + 1 + random.nextInt(12));
+                parser.append(response.substring(position, end));
+                position = end;
+            }
+            assertSameOrganization(OrganizationSchemaParser.parse(response.substring(0, position)), parser.result(),
+                    response);
+        }
+    }
+
+    @Test
+    void reportsEachFieldOnceItsClosingTagArrives() {
+        List<String> reported = new ArrayList<>();
+        OrganizationSchemaParser parser = OrganizationSchemaParser.incremental(
+                (field, value) -> reported.add(field + "=" + value));
+
+        assertFalse(parser.append("<content_organization_schema>\n<category> כספים </cate"));
+        assertTrue(reported.isEmpty());
+        assertFalse(parser.append("gory>\n<subcategory>חשבונות</subcategory><type>תזכ"));
+        assertEquals(List.of("category=כספים", "subcategory=חשבונות"), reported);
+        assertFalse(parser.append("ורת</type><purpose>x</purpose><tags>a, b</tags><next_steps>c<"));
+        assertTrue(parser.append("d</next_steps>"));
+        assertEquals(List.of("category=כספים", "subcategory=חשבונות", "type=תזכורת", "purpose=x", "tags=a, b",
+                "next_steps=c<d"), reported);
+    }
+
+    @Test
+    void incrementalParsingIsCompleteOnceTheSchemaIsClosed() {
+        OrganizationSchemaParser parser = OrganizationSchemaParser.incremental((field, value) -> { });
+
+        assertFalse(parser.append("<content_organization_schema><category>x</category></content_organiza"));
+        assertTrue(parser.append("tion_schema> and some more text"));
+        assertEquals("x", parser.result().getCategory());
+        assertNull(parser.result().getTags());
+    }
+
+    private static void assertSameOrganization(ContentOrganization expected, ContentOrganization actual,
+                                               String response) {
+        assertEquals(expected.getCategory(), actual.getCategory(), response);
+        assertEquals(expected.getSubCategory(), actual.getSubCategory(), response);
+        assertEquals(expected.getType(), actual.getType(), response);
+        assertEquals(expected.getPurpose(), actual.getPurpose(), response);
+        assertEquals(expected.getTags(), actual.getTags(), response);
+        assertEquals(expected.getNextSteps(), actual.getNextSteps(), response);
+    }
+
+    private static void assertSameAsRegex(String response) {
+        ContentOrganization organization = OrganizationSchemaParser.parse(response);
+        assertEquals(extractWithRegex(response, "category"), organization.getCategory(), response);
+        assertEquals(extractWithRegex(response, "subcategory"), organization.getSubCategory(), response);
+        assertEquals(extractWithRegex(response, "type"), organization.getType(), response);
+        assertEquals(extractWithRegex(response, "purpose"), organization.getPurpose(), response);
+        assertEquals(extractWithRegex(response, "tags"), organization.getTags(), response);
+        assertEquals(extractWithRegex(response, "next_steps"), organization.getNextSteps(), response);
+    }
+}
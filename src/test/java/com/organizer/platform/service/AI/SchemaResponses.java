@@ -0,0 +1,65 @@
+package com.organizer.platform.service.AI;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Corpus of AI answers shaped like real content_organization_schema responses (1-6 KB), and the
+ * former regex extraction as a reference.
+ */
+final class SchemaResponses {
+    private static final String[] CATEGORIES = {"קריירה", "חינוך", "עסקים", "בריאות", "משפחה", "פיננסים"};
+    private static final String[] WORDS = {"פגישה", "חשבונית", "מסמך", "תזכורת", "קורות חיים", "הצעת עבודה",
+            "מתכון", "טיסה", "ביטוח", "לימודים", "פרויקט", "דוח"};
+
+    private SchemaResponses() {
+    }
+
+    static List<String> corpus(int size) {
+        Random random = new Random(42);
+        List<String> responses = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            responses.add(response(random, 2 + random.nextInt(25)));
+        }
+        return responses;
+    }
+
+    static String response(Random random, int tagCount) {
+        StringBuilder tags = new StringBuilder();
+        for (int i = 0; i < tagCount; i++) {
+            tags.append(i == 0 ? "" : ", ").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        StringBuilder steps = new StringBuilder();
+        for (int i = 0; i < 1 + tagCount / 4; i++) {
+            steps.append(i == 0 ? "" : ", ").append("לבדוק ").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return "להלן ארגון התוכן:\n\n<content_organization_schema>\n"
+                + "    <!-- הגדרת הסיווג הראשי של התוכן -->\n"
+                + "    <primary_classification>\n"
+                + "        <category>\n            " + CATEGORIES[random.nextInt(CATEGORIES.length)] + "\n        </category>\n"
+                + "        <subcategory>\n            " + WORDS[random.nextInt(WORDS.length)] + "\n        </subcategory>\n"
+                + "    </primary_classification>\n\n"
+                + "    <content_type>\n"
+                + "        <type>\n            מסמך\n        </type>\n"
+                + "        <purpose>\n            אישי\n        </purpose>\n"
+                + "    </content_type>\n\n"
+                + "    <user_metadata>\n"
+                + "        <tags>\n            " + tags + "\n        </tags>\n"
+                + "        <next_steps>\n            " + steps + "\n        </next_steps>\n"
+                + "    </user_metadata>\n"
+                + "</content_organization_schema>";
+    }
+
+    /**
+     * The former extraction: one compiled pattern and one scan per field.
+     */
+    static String extractWithRegex(String content, String xmlName) {
+        Pattern pattern = Pattern.compile("<" + xmlName + ">(.*?)</" + xmlName + ">", Pattern.DOTALL);
+        Matcher matcher = pattern.matcher(content);
+
+        return matcher.find() ? matcher.group(1).trim() : null;
+    }
+}
@@ -0,0 +1,93 @@
+package com.organizer.platform.service.JMS;
+
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+
+import javax.jms.Message;
+import javax.jms.TextMessage;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Dead-letters messages on a real embedded broker and replays them to their original queue.
+ */
+class DeadLetterServiceTest {
+    private EmbeddedActiveMQ broker;
+    private CachingConnectionFactory connectionFactory;
+    private MessageQueueMetrics queueMetrics;
+    private DeadLetterService deadLetterService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .addAcceptorConfiguration("in-vm", "vm://78"));
+        broker.start();
+
+        connectionFactory = new CachingConnectionFactory(new ActiveMQConnectionFactory("vm://78"));
+        queueMetrics = mock(MessageQueueMetrics.class);
+        deadLetterService = new DeadLetterService(connectionFactory, queueMetrics);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        broker.stop();
+    }
+
+    @Test
+    void replaysDeadLetteredMessagesToTheirQueueInTheirGroup() throws Exception {
+        deadLetterService.deadLetter(MessageQueues.IMAGE, "first", "972500000001",
+                ProcessingFailure.VALIDATION, new IllegalArgumentException("bad"));
+        deadLetterService.deadLetter(MessageQueues.PDF, "second", null,
+                ProcessingFailure.PARSE_ERROR, new IllegalArgumentException("bad"));
+        verify(queueMetrics).recordDeadLetter(eq(MessageQueues.IMAGE), eq(ProcessingFailure.VALIDATION));
+
+        assertEquals(1, deadLetterService.replay(1));
+        assertEquals(1, deadLetterService.replay(10));
+        assertEquals(0, deadLetterService.replay(10));
+
+        JmsTemplate jmsTemplate = new JmsTemplate(connectionFactory);
+        jmsTemplate.setReceiveTimeout(5000);
+        Message image = jmsTemplate.receive(MessageQueues.IMAGE);
+        assertNotNull(image);
+        assertEquals("first", ((TextMessage) image).getText());
+        assertEquals("972500000001", image.getStringProperty(MessageQueues.GROUP_ID_PROPERTY));
+        assertEquals("VALIDATION", image.getStringProperty(DeadLetterService.FAILURE_PROPERTY));
+
+        Message pdf = jmsTemplate.receive(MessageQueues.PDF);
+        assertNotNull(pdf);
+        assertEquals("second", ((TextMessage) pdf).getText());
+    }
+
+    @Test
+    void parksMessagesWithoutAnOriginalQueueAndReplaysTheOthers() throws Exception {
+        JmsTemplate jmsTemplate = new JmsTemplate(connectionFactory);
+        jmsTemplate.setReceiveTimeout(5000);
+        jmsTemplate.convertAndSend(DeadLetterService.DLQ, "unknown");
+        deadLetterService.deadLetter(MessageQueues.TEXT, "known", null,
+                ProcessingFailure.PARSE_ERROR, new IllegalArgumentException("bad"));
+
+        assertEquals(1, deadLetterService.replay(10));
+        assertEquals(0, deadLetterService.replay(10));
+
+        Message parked = jmsTemplate.receive(DeadLetterService.PARKING_QUEUE);
+        assertNotNull(parked);
+        assertEquals("unknown", ((TextMessage) parked).getText());
+
+        Message text = jmsTemplate.receive(MessageQueues.TEXT);
+        assertNotNull(text);
+        assertEquals("known", ((TextMessage) text).getText());
+    }
+}
@@ -0,0 +1,105 @@
+package com.organizer.platform.service.JMS;
+
+import com.organizer.platform.service.Google.CloudStorageService;
+import com.organizer.platform.service.Storage.LocalMediaStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares the image work of an AI worker reading the original from storage and resizing it,
+ * as before ingestion stored renditions, against reading the stored AI rendition; and the cost
+ * ingestion now pays once to create the renditions.
+ * <p>
+ * The store is a LocalMediaStore, so reads are nearly free here; against GCS the download time
+ * scales with the bytes printed at setup, along with the storage added by the renditions.
+ * Run like AnthropicRequestBenchmark, and compare gc.alloc.rate.norm (bytes per operation).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ImageRenditionBenchmark {
+    private static final String IMAGE_PATH = "images/972500000000/photo.jpg";
+
+    @Param({"4000x3000", "8000x6000"})
+    private String image;
+
+    private Path root;
+    private LocalMediaStore mediaStore;
+    private MediaProcessor processor;
+    private byte[] original;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] size = image.split("x");
+        original = MediaProcessorTest.encode(
+                MediaProcessorTest.pattern(Integer.parseInt(size[0]), Integer.parseInt(size[1])), "jpg");
+        processor = new MediaProcessor(10_000_000, 0.85f, 524_288, new SimpleMeterRegistry());
+        MediaProcessor.Renditions renditions = processor.createRenditions(original);
+
+        root = Files.createTempDirectory("rendition-benchmark");
+        mediaStore = new LocalMediaStore(root.toString(), "", "benchmark-key");
+        mediaStore.initialize();
+        mediaStore.put(IMAGE_PATH, "image/jpeg", original);
+        mediaStore.put(aiPath(), "image/jpeg", renditions.getAi());
+
+        int stored = original.length + renditions.getAi().length + renditions.getThumbnail().length;
+        System.out.printf("%n%s: original %d bytes, ai %d bytes, thumbnail %d bytes, storage +%.1f%%%n",
+                image, original.length, renditions.getAi().length, renditions.getThumbnail().length,
+                100.0 * (stored - original.length) / original.length);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public byte[] workerResizesOriginal() throws IOException {
+        try (InputStream in = mediaStore.open(IMAGE_PATH)) {
+            return processor.processImageFromBytes(IOUtils.toByteArray(in));
+        }
+    }
+
+    @Benchmark
+    public byte[] workerReadsRendition() throws IOException {
+        try (InputStream in = mediaStore.open(aiPath())) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    @Benchmark
+    public MediaProcessor.Renditions ingestionCreatesRenditions() throws IOException {
+        return processor.createRenditions(original);
+    }
+
+    private static String aiPath() {
+        return CloudStorageService.renditionPath(IMAGE_PATH, CloudStorageService.AI_RENDITION);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ImageRenditionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
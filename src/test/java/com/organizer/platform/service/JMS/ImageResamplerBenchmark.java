@@ -0,0 +1,87 @@
+package com.organizer.platform.service.JMS;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the resize of a decoded photo to the AI target size: a single bicubic drawImage,
+ * encoded with the ImageIO default quality, against the ImageResampler and the JPEG quality of
+ * MediaProcessor. The encoded size of both is printed at setup.
+ * <p>
+ * Sources are the sizes MediaProcessor decodes: a 48 MP photo subsampled by 6, and a photo
+ * under twice the target, which is not subsampled.
+ * Run like AnthropicRequestBenchmark, and compare gc.alloc.rate.norm (bytes per operation).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageResamplerBenchmark {
+
+    @Param({"1334x1000", "2400x1800"})
+    private String source;
+
+    private BufferedImage image;
+    private int targetWidth;
+    private int targetHeight;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] size = source.split("x");
+        // Decoded JPEG rasters are 3-byte BGR
+        BufferedImage pattern = MediaProcessorTest.pattern(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        image = new BufferedImage(pattern.getWidth(), pattern.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        image.getGraphics().drawImage(pattern, 0, 0, null);
+        int[] target = MediaProcessor.calculateOptimalDimensions(image.getWidth(), image.getHeight());
+        targetWidth = target[0];
+        targetHeight = target[1];
+
+        ByteArrayOutputStream drawn = new ByteArrayOutputStream();
+        ImageIO.write(drawImage(), "jpg", drawn);
+        byte[] processed = new MediaProcessor(10_000_000, 0.85f, 524_288, new SimpleMeterRegistry())
+                .processImageFromBytes(MediaProcessorTest.encode(image, "png"));
+        System.out.printf("%n%s: drawImage at default quality %d bytes, resampler at 0.85 %d bytes%n",
+                source, drawn.size(), processed.length);
+    }
+
+    @Benchmark
+    public BufferedImage drawImage() {
+        BufferedImage resized = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = resized.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        g2d.dispose();
+        return resized;
+    }
+
+    @Benchmark
+    public BufferedImage resampler() {
+        ImageResampler resampler = new ImageResampler(image.getWidth(), image.getHeight(), targetWidth, targetHeight);
+        resampler.push(image);
+        return resampler.result();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ImageResamplerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
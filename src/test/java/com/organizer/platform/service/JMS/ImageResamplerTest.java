@@ -0,0 +1,72 @@
+package com.organizer.platform.service.JMS;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageResamplerTest {
+
+    @Test
+    void keepsPixelsWhenTheSizeDoesNotChange() {
+        BufferedImage source = MediaProcessorTest.pattern(300, 200);
+        ImageResampler resampler = new ImageResampler(300, 200, 300, 200);
+        resampler.push(source);
+
+        BufferedImage result = resampler.result();
+        for (int y = 0; y < 200; y += 7) {
+            for (int x = 0; x < 300; x += 7) {
+                assertEquals(source.getRGB(x, y), result.getRGB(x, y), x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void averagesDetailFinerThanTheTargetInsteadOfAliasing() {
+        // One-pixel black and white stripes shrunk by 4.3 should become an even gray
+        BufferedImage stripes = new BufferedImage(1290, 860, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < stripes.getHeight(); y++) {
+            for (int x = 0; x < stripes.getWidth(); x++) {
+                stripes.setRGB(x, y, x % 2 == 0 ? 0xffffff : 0);
+            }
+        }
+        ImageResampler resampler = new ImageResampler(1290, 860, 300, 200);
+        resampler.push(stripes);
+
+        BufferedImage result = resampler.result();
+        for (int x = 5; x < 295; x++) {
+            int gray = result.getRGB(x, 100) & 0xff;
+            assertTrue(Math.abs(gray - 128) < 20, "column " + x + " is " + gray);
+        }
+    }
+
+    @Test
+    void bandsGiveTheSameResultAsOneImage() {
+        BufferedImage source = MediaProcessorTest.pattern(1000, 700);
+        ImageResampler whole = new ImageResampler(1000, 700, 430, 301);
+        whole.push(source);
+        ImageResampler banded = new ImageResampler(1000, 700, 430, 301);
+        for (int top = 0; top < 700; top += 90) {
+            banded.push(source.getSubimage(0, top, 1000, Math.min(90, 700 - top)));
+        }
+
+        BufferedImage expected = whole.result();
+        BufferedImage actual = banded.result();
+        for (int y = 0; y < 301; y++) {
+            for (int x = 0; x < 430; x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void rejectsRowsBeyondTheSource() {
+        ImageResampler resampler = new ImageResampler(100, 50, 40, 20);
+        resampler.push(new BufferedImage(100, 30, BufferedImage.TYPE_INT_RGB));
+
+        assertThrows(IllegalStateException.class, resampler::result);
+        assertThrows(IllegalArgumentException.class,
+                () -> resampler.push(new BufferedImage(100, 30, BufferedImage.TYPE_INT_RGB)));
+    }
+}
@@ -0,0 +1,75 @@
+package com.organizer.platform.service.JMS;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the memory and time of shrinking large photos with the subsampled decode of
+ * MediaProcessor against the former full-resolution ImageIO.read followed by a resize.
+ * Run like AnthropicRequestBenchmark, and compare gc.alloc.rate.norm (bytes per operation):
+ * the full decode of a 48 MP image allocates its whole raster.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class MediaProcessorBenchmark {
+
+    @Param({"8000x6000:jpg", "4000x3000:jpg", "4000x3000:png"})
+    private String image;
+
+    private byte[] bytes;
+    private MediaProcessor processor;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] size = image.split("[x:]");
+        bytes = MediaProcessorTest.encode(
+                MediaProcessorTest.pattern(Integer.parseInt(size[0]), Integer.parseInt(size[1])), size[2]);
+        processor = new MediaProcessor(10_000_000, 0.85f, 524_288, new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public byte[] fullDecode() throws IOException {
+        BufferedImage original = ImageIO.read(new ByteArrayInputStream(bytes));
+        int[] size = MediaProcessor.calculateOptimalDimensions(original.getWidth(), original.getHeight());
+        BufferedImage resized = new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = resized.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.drawImage(original, 0, 0, size[0], size[1], null);
+        g2d.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(resized, "jpg", out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] subsampledDecode() throws IOException {
+        return processor.processImageFromBytes(bytes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MediaProcessorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,176 @@
+package com.organizer.platform.service.JMS;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaProcessorTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MediaProcessor processor = new MediaProcessor(10_000_000, 0.85f, 524_288, meterRegistry);
+
+    @Test
+    void plansToHoldAtMostTwiceTheTargetPixels() {
+        for (int[] size : new int[][]{{8000, 6000}, {2400, 1800}, {3100, 2300}, {1600, 1200}, {12000, 900}}) {
+            int[] target = MediaProcessor.calculateOptimalDimensions(size[0], size[1]);
+            MediaProcessor.DecodePlan plan = MediaProcessor.DecodePlan.of(size[0], size[1], target[0], target[1]);
+            long targetPixels = (long) target[0] * target[1];
+
+            assertTrue(plan.getReservedPixels() <= 2 * targetPixels + size[0],
+                    size[0] + "x" + size[1] + " holds " + plan.getReservedPixels() + " pixels");
+            // Subsampling never drops below the target size
+            assertTrue((size[0] + plan.subsampling - 1) / plan.subsampling >= target[0]);
+            assertTrue((size[1] + plan.subsampling - 1) / plan.subsampling >= target[1]);
+        }
+        assertEquals(6, plan(8000, 6000).subsampling);
+        assertTrue(plan(2400, 1800).bandRows < 1800);
+    }
+
+    @Test
+    void shrinksLargeImagesToTheTargetSize() throws IOException {
+        for (String format : new String[]{"jpg", "png"}) {
+            BufferedImage result = process(encode(pattern(4000, 3000), format));
+
+            int[] target = MediaProcessor.calculateOptimalDimensions(4000, 3000);
+            assertEquals(target[0], result.getWidth(), format);
+            assertEquals(target[1], result.getHeight(), format);
+        }
+        assertEquals(0, meterRegistry.get("media.decode.pixels.reserved").gauge().value());
+    }
+
+    @Test
+    void bandedDecodeMatchesAFullDecode() throws IOException {
+        BufferedImage source = pattern(2400, 1800);
+        BufferedImage result = process(encode(source, "png"));
+
+        BufferedImage expected = new BufferedImage(result.getWidth(), result.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = expected.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2d.drawImage(source, 0, 0, result.getWidth(), result.getHeight(), null);
+        g2d.dispose();
+
+        assertTrue(meanDifference(expected, result) < 4, "mean difference " + meanDifference(expected, result));
+    }
+
+    @Test
+    void keepsSmallImagesAndProcessesImagesLargerThanTheBudget() throws IOException {
+        BufferedImage small = process(encode(pattern(640, 480), "jpg"));
+        assertEquals(640, small.getWidth());
+        assertEquals(480, small.getHeight());
+
+        MediaProcessor tightBudget = new MediaProcessor(1_000, 0.85f, 524_288, new SimpleMeterRegistry());
+        BufferedImage large = ImageIO.read(new ByteArrayInputStream(
+                tightBudget.processImageFromBytes(encode(pattern(3000, 2000), "jpg"))));
+        assertEquals(MediaProcessor.calculateOptimalDimensions(3000, 2000)[0], large.getWidth());
+    }
+
+    @Test
+    void lowersTheJpegQualityToFitTheByteBudget() throws IOException {
+        byte[] photo = encode(noise(2000, 1500), "jpg");
+        byte[] generous = new MediaProcessor(10_000_000, 0.85f, Integer.MAX_VALUE, new SimpleMeterRegistry())
+                .processImageFromBytes(photo);
+
+        int budget = generous.length * 3 / 4;
+        byte[] tight = new MediaProcessor(10_000_000, 0.85f, budget, meterRegistry).processImageFromBytes(photo);
+        assertTrue(tight.length <= budget, tight.length + " bytes over the budget of " + budget);
+        assertEquals(tight.length, meterRegistry.get("media.image.bytes").tag("rendition", "ai").summary().max());
+    }
+
+    @Test
+    void createsTheAiRenditionAndAThumbnailFromOneDecode() throws IOException {
+        byte[] photo = encode(pattern(4000, 3000), "jpg");
+        MediaProcessor.Renditions renditions = processor.createRenditions(photo);
+
+        BufferedImage ai = ImageIO.read(new ByteArrayInputStream(renditions.getAi()));
+        assertArrayEquals(MediaProcessor.calculateOptimalDimensions(4000, 3000), new int[]{ai.getWidth(), ai.getHeight()});
+        assertArrayEquals(processor.processImageFromBytes(photo), renditions.getAi());
+
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(renditions.getThumbnail()));
+        assertEquals(MediaProcessor.THUMBNAIL_EDGE, thumbnail.getWidth());
+        assertEquals(240, thumbnail.getHeight());
+        assertEquals(renditions.getThumbnail().length,
+                meterRegistry.get("media.image.bytes").tag("rendition", "thumbnail").summary().max());
+        assertEquals(0, meterRegistry.get("media.decode.pixels.reserved").gauge().value());
+    }
+
+    @Test
+    void keepsTheSizeOfImagesSmallerThanAThumbnail() throws IOException {
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(
+                processor.createRenditions(encode(pattern(200, 300), "png")).getThumbnail()));
+
+        assertEquals(200, thumbnail.getWidth());
+        assertEquals(300, thumbnail.getHeight());
+    }
+
+    @Test
+    void failsOnBytesThatAreNoImage() {
+        assertThrows(IOException.class, () -> processor.processImageFromBytes("not an image".getBytes()));
+    }
+
+    private BufferedImage process(byte[] image) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(processor.processImageFromBytes(image)));
+    }
+
+    private static MediaProcessor.DecodePlan plan(int width, int height) {
+        int[] target = MediaProcessor.calculateOptimalDimensions(width, height);
+        return MediaProcessor.DecodePlan.of(width, height, target[0], target[1]);
+    }
+
+    /**
+     * @return A smooth test image: gradients with a few shapes
+     */
+    static BufferedImage pattern(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setPaint(new GradientPaint(0, 0, new Color(30, 90, 200), width, height, new Color(240, 200, 60)));
+        g2d.fillRect(0, 0, width, height);
+        g2d.setColor(new Color(200, 40, 40));
+        g2d.fillOval(width / 4, height / 4, width / 2, height / 2);
+        g2d.setColor(Color.WHITE);
+        g2d.setStroke(new BasicStroke(Math.max(2, width / 200f)));
+        for (int x = 0; x < width; x += width / 8) {
+            g2d.drawLine(x, 0, width - x, height);
+        }
+        g2d.dispose();
+        return image;
+    }
+
+    private static BufferedImage noise(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(3);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    private static double meanDifference(BufferedImage expected, BufferedImage actual) {
+        long total = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int a = expected.getRGB(x, y);
+                int b = actual.getRGB(x, y);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    total += Math.abs(((a >> shift) & 0xff) - ((b >> shift) & 0xff));
+                }
+            }
+        }
+        return (double) total / (3L * expected.getWidth() * expected.getHeight());
+    }
+}
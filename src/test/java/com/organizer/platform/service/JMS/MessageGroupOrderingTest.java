@@ -0,0 +1,184 @@
+package com.organizer.platform.service.JMS;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.organizer.platform.controller.WhatsAppWebhookController;
+import com.organizer.platform.model.WhatsApp.*;
+import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import com.organizer.platform.service.User.UserService;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.jms.TextMessage;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.organizer.platform.model.organizedDTO.WhatsAppMessage.WhatsAppMessageBuilder.aWhatsAppMessage;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Stress test of the per-user message groups against a real embedded broker: many users send
+ * concurrently to a queue with many consumers, and every user's messages must still be
+ * processed in the order they were sent, also when they arrive together in one webhook batch.
+ */
+class MessageGroupOrderingTest {
+    private static final int USERS = 40;
+    private static final int MESSAGES_PER_USER = 50;
+    private static final int CONSUMERS = 16;
+
+    private EmbeddedActiveMQ broker;
+    private CachingConnectionFactory connectionFactory;
+    private DefaultMessageListenerContainer container;
+
+    private final Map<String, List<Integer>> processed = new ConcurrentHashMap<>();
+    private final Set<String> consumerThreads = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch done = new CountDownLatch(USERS * MESSAGES_PER_USER);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .addAcceptorConfiguration("in-vm", "vm://77"));
+        broker.start();
+
+        connectionFactory = new CachingConnectionFactory(new ActiveMQConnectionFactory("vm://77"));
+
+        container = new DefaultMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setDestinationName(MessageQueues.TEXT);
+        container.setConcurrentConsumers(CONSUMERS);
+        container.setMessageListener((javax.jms.MessageListener) message -> {
+            try {
+                String user = message.getStringProperty(MessageQueues.GROUP_ID_PROPERTY);
+                int sequence = sequenceOf(((TextMessage) message).getText());
+                consumerThreads.add(Thread.currentThread().getName());
+                // Uneven processing time, as with real AI calls
+                Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+                processed.computeIfAbsent(user, key -> Collections.synchronizedList(new ArrayList<>())).add(sequence);
+                done.countDown();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        container.afterPropertiesSet();
+        container.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        container.shutdown();
+        connectionFactory.destroy();
+        broker.stop();
+    }
+
+    @Test
+    void messagesOfEachUserAreProcessedInOrderAcrossManyConsumers() throws Exception {
+        JmsTemplate jmsTemplate = new JmsTemplate(connectionFactory);
+        ExecutorService senders = Executors.newFixedThreadPool(8);
+        List<Future<?>> sent = new ArrayList<>();
+        for (int user = 0; user < USERS; user++) {
+            WhatsAppMessage message = aWhatsAppMessage()
+                    .fromNumber("97250000" + String.format("%04d", user))
+                    .messageType("text")
+                    .build();
+            sent.add(senders.submit(() -> {
+                for (int sequence = 0; sequence < MESSAGES_PER_USER; sequence++) {
+                    MessageQueues.send(jmsTemplate, message, String.valueOf(sequence));
+                }
+            }));
+        }
+        for (Future<?> future : sent) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        senders.shutdown();
+
+        assertProcessedInOrder();
+    }
+
+    @Test
+    void messagesOfEachUserInOneWebhookBatchAreProcessedInOrder() throws Exception {
+        UserService userService = mock(UserService.class);
+        when(userService.processNewUser(anyString())).thenReturn(true);
+        ThreadPoolTaskExecutor webhookExecutor = new ThreadPoolTaskExecutor();
+        webhookExecutor.setCorePoolSize(8);
+        webhookExecutor.setMaxPoolSize(8);
+        webhookExecutor.setQueueCapacity(16);
+        webhookExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        webhookExecutor.initialize();
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new WhatsAppWebhookController(
+                new JmsTemplate(connectionFactory), objectMapper, userService, webhookExecutor, 60, 10_000)).build();
+
+        // One delivery, with the messages of all users interleaved as Meta batches them
+        List<Message> messages = new ArrayList<>();
+        for (int sequence = 0; sequence < MESSAGES_PER_USER; sequence++) {
+            for (int user = 0; user < USERS; user++) {
+                messages.add(Message.builder()
+                        .from("97250000" + String.format("%04d", user))
+                        .id("wamid." + user + "." + sequence)
+                        .type("text")
+                        .text(Text.builder().body(String.valueOf(sequence)).build())
+                        .build());
+            }
+        }
+        WhatsAppWebhookRequest batch = WhatsAppWebhookRequest.builder()
+                .entry(List.of(Entry.builder()
+                        .changes(List.of(Change.builder()
+                                .value(Value.builder().messages(messages).build())
+                                .build()))
+                        .build()))
+                .build();
+        try {
+            mockMvc.perform(post("/webhook")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(batch)))
+                    .andExpect(status().isOk());
+        } finally {
+            webhookExecutor.shutdown();
+        }
+
+        assertProcessedInOrder();
+    }
+
+    private void assertProcessedInOrder() throws InterruptedException {
+        assertTrue(done.await(60, TimeUnit.SECONDS), "Not all messages were processed");
+        assertEquals(USERS, processed.size());
+        for (Map.Entry<String, List<Integer>> user : processed.entrySet()) {
+            List<Integer> expected = new ArrayList<>();
+            for (int sequence = 0; sequence < MESSAGES_PER_USER; sequence++) {
+                expected.add(sequence);
+            }
+            assertEquals(expected, user.getValue(), "Out of order for " + user.getKey());
+        }
+        assertTrue(consumerThreads.size() > 1, "Users were not spread across consumers");
+    }
+
+    /**
+     * @return The sequence number sent as the body, or as the content of a serialized message
+     */
+    private static int sequenceOf(String body) throws IOException {
+        return body.startsWith("{")
+                ? Integer.parseInt(new ObjectMapper().readTree(body).get("messageContent").asText())
+                : Integer.parseInt(body);
+    }
+}
@@ -0,0 +1,34 @@
+package com.organizer.platform.service.JMS;
+
+import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import org.junit.jupiter.api.Test;
+
+import static com.organizer.platform.model.organizedDTO.WhatsAppMessage.WhatsAppMessageBuilder.aWhatsAppMessage;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MessageQueuesTest {
+
+    @Test
+    void messagesAreRoutedToTheQueueOfTheirWork() {
+        assertEquals(MessageQueues.TEXT, MessageQueues.destinationFor(message("text", "hello", null)));
+        assertEquals(MessageQueues.TEXT, MessageQueues.destinationFor(message("text", "hello", " ")));
+        assertEquals(MessageQueues.URL_TEXT, MessageQueues.destinationFor(message("text", "https://a.b", "page text")));
+        assertEquals(MessageQueues.IMAGE, MessageQueues.destinationFor(message("image",
+                "Image ID: 1, MIME Type: image/jpeg, GCS File: 972500000000/a.jpg", null)));
+        assertEquals(MessageQueues.PDF, MessageQueues.destinationFor(message("document",
+                "Document ID: 1, MIME Type: application/pdf, GCS File: 972500000000/20240101_000000_Report.PDF", null)));
+        assertEquals(MessageQueues.MEDIA, MessageQueues.destinationFor(message("document",
+                "Document ID: 1, MIME Type: text/csv, GCS File: 972500000000/20240101_000000_table.csv", null)));
+        assertEquals(MessageQueues.MEDIA, MessageQueues.destinationFor(message("audio",
+                "Audio ID: 1, MIME Type: audio/ogg, GCS File: 972500000000/20240101_000000_1.ogg", null)));
+    }
+
+    private static WhatsAppMessage message(String type, String content, String purpose) {
+        return aWhatsAppMessage()
+                .fromNumber("972500000000")
+                .messageType(type)
+                .messageContent(content)
+                .purpose(purpose)
+                .build();
+    }
+}
@@ -0,0 +1,84 @@
+package com.organizer.platform.service.JMS;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.organizer.platform.model.organizedDTO.WhatsAppMessage;
+import com.organizer.platform.service.AI.AiService;
+import com.organizer.platform.service.AI.AiServiceException;
+import com.organizer.platform.service.AI.DuplicateImageIndex;
+import com.organizer.platform.service.Google.CloudStorageService;
+import com.organizer.platform.service.WhatsApp.WhatsAppMessageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.Message;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Processes messages against an in-memory message table, to check what redeliveries save.
+ */
+class MessageReceiverTest {
+    private static final String TEXT_MESSAGE = "{\"fromNumber\":\"972500000001\",\"messageType\":\"text\","
+            + "\"messageContent\":\"Dentist on Sunday at 10\",\"whatsAppMessageId\":\"wamid.HBgM1\"}";
+
+    private final Map<Long, WhatsAppMessage> rows = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private AiService aiService;
+    private MessageReceiver receiver;
+
+    @BeforeEach
+    void setUp() {
+        aiService = mock(AiService.class);
+
+        WhatsAppMessageService messageService = mock(WhatsAppMessageService.class);
+        when(messageService.save(any())).thenAnswer(invocation -> {
+            WhatsAppMessage message = invocation.getArgument(0);
+            if (message.getId() == null) {
+                message.setId(ids.incrementAndGet());
+            }
+            rows.put(message.getId(), message);
+            return message;
+        });
+        when(messageService.findIdByWhatsAppMessageId(anyString())).thenAnswer(invocation -> rows.values().stream()
+                .filter(row -> invocation.getArgument(0).equals(row.getWhatsAppMessageId()))
+                .map(WhatsAppMessage::getId)
+                .findFirst());
+
+        MessageQueueMetrics queueMetrics = mock(MessageQueueMetrics.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(queueMetrics).process(anyString(), any());
+
+        receiver = new MessageReceiver(aiService, messageService, new ObjectMapper(),
+                mock(CloudStorageService.class), queueMetrics, mock(DeadLetterService.class),
+                mock(MediaProcessor.class), mock(DuplicateImageIndex.class), mock(PdfTextExtractor.class));
+    }
+
+    @Test
+    void redeliveredMessagesUpdateTheRowOfTheirFirstDelivery() throws Exception {
+        doThrow(new AiServiceException(529, "overloaded"))
+                .doAnswer(invocation -> {
+                    invocation.<WhatsAppMessage>getArgument(0).setCategory("Health");
+                    return null;
+                })
+                .when(aiService).generateOrganizationFromText(any());
+
+        assertThrows(RuntimeException.class, () -> receiver.processTextMessage(TEXT_MESSAGE, mock(Message.class)));
+        assertEquals(1, rows.size());
+
+        receiver.processTextMessage(TEXT_MESSAGE, mock(Message.class));
+        receiver.processTextMessage(TEXT_MESSAGE, mock(Message.class));
+
+        assertEquals(1, rows.size());
+        WhatsAppMessage row = rows.values().iterator().next();
+        assertEquals("wamid.HBgM1", row.getWhatsAppMessageId());
+        assertEquals("Health", row.getCategory());
+    }
+}
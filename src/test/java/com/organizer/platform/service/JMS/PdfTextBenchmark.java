@@ -0,0 +1,120 @@
+package com.organizer.platform.service.JMS;
+
+import com.organizer.platform.service.AI.AnthropicRequest;
+import com.organizer.platform.service.AI.PromptTemplate;
+import com.organizer.platform.util.TokenEstimator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the AI request of a PDF sent as a document with the request of its text layer, over a
+ * sample corpus: a one-page invoice, a 5-page statement, a 30-page report and a scanned letter.
+ * <p>
+ * The request sizes and input tokens are printed at setup. A document costs the tokens of the
+ * text of each page and of the page as an image, estimated here as a page rendered within the
+ * 1.15 MP image limit (about 1530 tokens); the text request only the tokens of the text. The
+ * benchmarks time the local work of each path: extracting the text and writing its request,
+ * against writing the request with the base64 encoded PDF.
+ * Run like AnthropicRequestBenchmark, and compare gc.alloc.rate.norm (bytes per operation).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PdfTextBenchmark {
+    // Tokens of a page image within the 1.15 MP limit: width * height / 750
+    private static final int PAGE_IMAGE_TOKENS = 1_150_000 / 750;
+
+    @Param({"invoice", "statement", "report", "scanned"})
+    private String document;
+
+    private PromptTemplate pdfTemplate;
+    private PromptTemplate textTemplate;
+    private PdfTextExtractor extractor;
+    private byte[] pdf;
+
+    @Setup
+    public void setUp() throws IOException {
+        pdfTemplate = new PromptTemplate("claude-3-5-sonnet-20241022", 8192, 0, "prompts/pdf-system.txt",
+                "pdfs-2024-09-25");
+        textTemplate = new PromptTemplate("claude-3-5-haiku-20241022", 4096, 0, "prompts/pdf-system.txt", null);
+        extractor = new PdfTextExtractor(true, 30, 100, 8000, new SimpleMeterRegistry());
+
+        int pages;
+        switch (document) {
+            case "invoice":
+                pages = 1;
+                pdf = PdfTextExtractorTest.textPdf(pages, 30);
+                break;
+            case "statement":
+                pages = 5;
+                pdf = PdfTextExtractorTest.textPdf(pages, 42);
+                break;
+            case "report":
+                pages = 30;
+                pdf = PdfTextExtractorTest.textPdf(pages, 42);
+                break;
+            default:
+                pages = 3;
+                pdf = PdfTextExtractorTest.scannedPdf(pages);
+        }
+
+        int pdfRequest = pdfRequest().length();
+        Optional<String> text = extractor.extract(pdf);
+        String allText = new PdfTextExtractor(true, Integer.MAX_VALUE, 0, Integer.MAX_VALUE,
+                new SimpleMeterRegistry()).extract(pdf).orElse("");
+        long pdfTokens = TokenEstimator.estimate(allText) + (long) PAGE_IMAGE_TOKENS * pages;
+        System.out.printf("%n%s: %d pages, PDF %d bytes; as a document: request %d bytes, ~%d input tokens; ",
+                document, pages, pdf.length, pdfRequest, pdfTokens);
+        if (text.isPresent()) {
+            System.out.printf("as text: request %d bytes, ~%d input tokens%n",
+                    textRequest(text.get()).length(), TokenEstimator.estimate(text.get()));
+        } else {
+            System.out.printf("no text layer, sent as a document%n");
+        }
+    }
+
+    @Benchmark
+    public int documentRequest() {
+        return pdfRequest().length();
+    }
+
+    @Benchmark
+    public int extractedTextRequest() {
+        Optional<String> text = extractor.extract(pdf);
+        return text.isPresent() ? textRequest(text.get()).length() : pdfRequest().length();
+    }
+
+    private AnthropicRequest pdfRequest() {
+        return AnthropicRequest.builder(pdfTemplate)
+                .media("document", "application/pdf", pdf)
+                .text("Analyze and organize this PDF content:")
+                .build();
+    }
+
+    private AnthropicRequest textRequest(String text) {
+        return AnthropicRequest.builder(textTemplate)
+                .text("Analyze and organize this PDF content, extracted from its text layer:\n\n<document>\n"
+                        + text + "\n</document>")
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PdfTextBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
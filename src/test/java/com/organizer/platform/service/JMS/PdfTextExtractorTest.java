@@ -0,0 +1,116 @@
+package com.organizer.platform.service.JMS;
+
+import com.organizer.platform.util.TokenEstimator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfTextExtractorTest {
+    private SimpleMeterRegistry meterRegistry;
+    private PdfTextExtractor extractor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        extractor = new PdfTextExtractor(true, 30, 100, 8000, meterRegistry);
+    }
+
+    @Test
+    void documentsWithATextLayerAreReadAsCompactText() throws IOException {
+        Optional<String> text = extractor.extract(textPdf(2, 40));
+
+        assertTrue(text.isPresent());
+        assertTrue(text.get().startsWith("Page 1 line 1 Invoice 1042 total 350.00 due"), text.get());
+        assertTrue(text.get().contains("Page 2 line 40"));
+        assertFalse(text.get().contains("  "));
+        assertEquals(1, meterRegistry.counter("media.pdf.extractions", "result", "text").count());
+    }
+
+    @Test
+    void scannedDocumentsAreLeftToThePdfPath() throws IOException {
+        assertEquals(Optional.empty(), extractor.extract(scannedPdf(3)));
+        assertEquals(Optional.empty(), extractor.extract(new byte[]{'%', 'P', 'D', 'F', '-', '1', '.', '4'}));
+
+        assertEquals(1, meterRegistry.counter("media.pdf.extractions", "result", "scanned").count());
+        assertEquals(1, meterRegistry.counter("media.pdf.extractions", "result", "failed").count());
+    }
+
+    @Test
+    void readsOnlyThePagesTheLimitsAllow() throws IOException {
+        PdfTextExtractor fewPages = new PdfTextExtractor(true, 3, 100, 8000, meterRegistry);
+        String text = fewPages.extract(textPdf(10, 40)).orElseThrow();
+        assertTrue(text.contains("Page 3 line 40"));
+        assertFalse(text.contains("Page 4 "));
+
+        PdfTextExtractor fewTokens = new PdfTextExtractor(true, 30, 100, 500, meterRegistry);
+        String truncated = fewTokens.extract(textPdf(10, 40)).orElseThrow();
+        assertTrue(TokenEstimator.estimate(truncated) <= 500);
+        assertFalse(truncated.contains("Page 3 "));
+    }
+
+    @Test
+    void compactsWhitespace() {
+        assertEquals("Total: 350.00\nDue 01/11", PdfTextExtractor.compact("  Total:   350.00 \r\n\n\t\nDue 01/11  \n"));
+    }
+
+    /**
+     * @return A PDF of text pages, as created by invoicing software
+     */
+    static byte[] textPdf(int pages, int linesPerPage) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (int page = 1; page <= pages; page++) {
+                PDPage pdPage = new PDPage(PDRectangle.A4);
+                document.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(18);
+                    content.newLineAtOffset(50, 800);
+                    for (int line = 1; line <= linesPerPage; line++) {
+                        content.showText("Page " + page + " line " + line + "   Invoice " + (1041 + line)
+                                + "   total " + (300 + line * 50) + ".00   due 01/11/2024");
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            return save(document);
+        }
+    }
+
+    /**
+     * @return A PDF of scanned pages: one JPEG per page and no text
+     */
+    static byte[] scannedPdf(int pages) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDImageXObject scan = JPEGFactory.createFromImage(document, MediaProcessorTest.pattern(1240, 1754), 0.75f);
+            for (int page = 1; page <= pages; page++) {
+                PDPage pdPage = new PDPage(PDRectangle.A4);
+                document.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.drawImage(scan, 0, 0, PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight());
+                }
+            }
+            return save(document);
+        }
+    }
+
+    private static byte[] save(PDDocument document) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        document.save(out);
+        return out.toByteArray();
+    }
+}
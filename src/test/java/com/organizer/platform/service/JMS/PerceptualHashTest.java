@@ -0,0 +1,61 @@
+package com.organizer.platform.service.JMS;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerceptualHashTest {
+
+    @Test
+    void recompressedAndResizedCopiesHashAlike() throws IOException {
+        BufferedImage screenshot = MediaProcessorTest.pattern(1080, 1920);
+        long hash = PerceptualHash.of(screenshot);
+
+        BufferedImage recompressed = ImageIO.read(new ByteArrayInputStream(MediaProcessorTest.encode(screenshot, "jpg")));
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.of(recompressed)) <= 2);
+
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.of(shrink(screenshot, 540, 960))) <= 2);
+    }
+
+    @Test
+    void differentImagesHashApart() {
+        BufferedImage image = MediaProcessorTest.pattern(800, 600);
+        BufferedImage other = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = other.createGraphics();
+        g2d.setPaint(new GradientPaint(0, 600, Color.BLACK, 800, 0, Color.CYAN));
+        g2d.fillRect(0, 0, 800, 600);
+        g2d.setColor(Color.YELLOW);
+        g2d.fillRect(100, 350, 300, 150);
+        g2d.dispose();
+
+        assertTrue(PerceptualHash.distance(PerceptualHash.of(image), PerceptualHash.of(other)) > 10);
+    }
+
+    @Test
+    void renditionsCarryTheHashOfTheImage() throws IOException {
+        MediaProcessor processor = new MediaProcessor(10_000_000, 0.85f, 524_288, new SimpleMeterRegistry());
+        BufferedImage photo = MediaProcessorTest.pattern(4000, 3000);
+
+        long original = processor.createRenditions(MediaProcessorTest.encode(photo, "png")).getPerceptualHash();
+        long resent = processor.createRenditions(MediaProcessorTest.encode(shrink(photo, 1600, 1200), "jpg"))
+                .getPerceptualHash();
+
+        assertTrue(PerceptualHash.distance(original, resent) <= 2, Long.toBinaryString(original ^ resent));
+    }
+
+    private static BufferedImage shrink(BufferedImage image, int width, int height) {
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = resized.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(image, 0, 0, width, height, null);
+        g2d.dispose();
+        return resized;
+    }
+}
@@ -0,0 +1,43 @@
+package com.organizer.platform.service.JMS;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.organizer.platform.service.AI.AiServiceException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessingFailureTest {
+
+    @Test
+    void classifiesAiStatusCodes() {
+        assertEquals(ProcessingFailure.RATE_LIMIT, ProcessingFailure.classify(new AiServiceException(429, "")));
+        assertEquals(ProcessingFailure.TRANSIENT_HTTP, ProcessingFailure.classify(new AiServiceException(529, "")));
+        assertEquals(ProcessingFailure.TRANSIENT_HTTP, ProcessingFailure.classify(new AiServiceException(408, "")));
+        assertEquals(ProcessingFailure.VALIDATION, ProcessingFailure.classify(new AiServiceException(400, "")));
+    }
+
+    @Test
+    void classifiesByFirstRecognizedCause() {
+        assertEquals(ProcessingFailure.PARSE_ERROR, ProcessingFailure.classify(
+                new RuntimeException("Error processing message from queue", new JsonParseException(null, "bad"))));
+        assertEquals(ProcessingFailure.TRANSIENT_HTTP, ProcessingFailure.classify(
+                new RuntimeException("Failed to process message content", new HttpTimeoutException("timeout"))));
+        assertEquals(ProcessingFailure.TRANSIENT_HTTP, ProcessingFailure.classify(
+                new RuntimeException(new IOException("reset"))));
+        assertEquals(ProcessingFailure.VALIDATION, ProcessingFailure.classify(
+                new IllegalArgumentException("FromNumber cannot be null or empty")));
+        assertEquals(ProcessingFailure.UNKNOWN, ProcessingFailure.classify(new IllegalStateException()));
+    }
+
+    @Test
+    void onlyPermanentFailuresSkipRetries() {
+        assertTrue(ProcessingFailure.TRANSIENT_HTTP.isRetryable());
+        assertTrue(ProcessingFailure.RATE_LIMIT.isRetryable());
+        assertTrue(ProcessingFailure.UNKNOWN.isRetryable());
+        assertFalse(ProcessingFailure.PARSE_ERROR.isRetryable());
+        assertFalse(ProcessingFailure.VALIDATION.isRetryable());
+    }
+}
@@ -0,0 +1,66 @@
+package com.organizer.platform.service.Scraper;
+
+import com.organizer.platform.model.ScraperDTO.TextBlock;
+import com.organizer.platform.model.ScraperDTO.WebsiteContent;
+import com.organizer.platform.util.TokenEstimator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the scraped content sent to the AI model for the saved pages in test/resources/pages:
+ * the former join of every visible text block against the ContentReducer output. The estimated
+ * input tokens of both are printed at setup; the benchmarks measure what the reduction costs.
+ * <p>
+ * Run like AnthropicRequestBenchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContentReducerBenchmark {
+
+    @Param({"news-article.html", "recipe-blog.html", "product-page.html"})
+    private String page;
+
+    private WebsiteContent content;
+    private ContentReducer reducer;
+
+    @Setup
+    public void setUp() throws IOException {
+        content = new WebContentScraperService().scrapeHtml(ContentReducerTest.page(page), "https://example.com");
+        reducer = new ContentReducer(2000, new SimpleMeterRegistry());
+        System.out.printf("%n%s: %d tokens joined, %d tokens reduced%n", page,
+                TokenEstimator.estimate(joinAll()), TokenEstimator.estimate(reducer.reduce(content)));
+    }
+
+    @Benchmark
+    public String joinAll() {
+        return content.getTextBlocks().stream()
+                .filter(TextBlock::isVisible)
+                .map(TextBlock::getText)
+                .filter(text -> text != null && !text.trim().isEmpty())
+                .collect(Collectors.joining(","));
+    }
+
+    @Benchmark
+    public String reduce() {
+        return reducer.reduce(content);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ContentReducerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,105 @@
+package com.organizer.platform.service.Scraper;
+
+import com.organizer.platform.model.ScraperDTO.TextBlock;
+import com.organizer.platform.model.ScraperDTO.WebsiteContent;
+import com.organizer.platform.util.TokenEstimator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentReducerTest {
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void keepsPagesWithinTheBudget() {
+        ContentReducer reducer = new ContentReducer(2000, meterRegistry);
+        WebsiteContent page = WebsiteContent.builder()
+                .title("Title")
+                .description("Description")
+                .textBlocks(List.of(
+                        block("a", "Home", "html > body > nav"),
+                        block("h1", "Headline", "html > body > main"),
+                        block("p", "Hidden", "html > body", false),
+                        block("a", "Home", "html > body > footer")))
+                .build();
+
+        assertEquals("Title,Description,Home,Headline", reducer.reduce(page));
+    }
+
+    @Test
+    void prefersHeadingsAndArticleTextOverBoilerplate() {
+        ContentReducer reducer = new ContentReducer(35, meterRegistry);
+        String paragraph = "Running text of the article with enough words to count as a full paragraph of content.";
+        WebsiteContent page = WebsiteContent.builder()
+                .title("Title")
+                .textBlocks(List.of(
+                        block("a", "Subscribe to our newsletter for more updates today", "html > body > header > nav"),
+                        block("h1", "Headline", "html > body > main > article > header"),
+                        block("p", paragraph, "html > body > main > article"),
+                        block("a", "Another related article you may want to read next", "html > body > aside > ul > li")))
+                .build();
+
+        assertEquals("Title,Headline," + paragraph, reducer.reduce(page));
+    }
+
+    @Test
+    void reducesSavedPagesToTheBudget() throws IOException {
+        ContentReducer reducer = new ContentReducer(2000, meterRegistry);
+        WebContentScraperService scraper = new WebContentScraperService();
+
+        String news = reducer.reduce(scraper.scrapeHtml(page("news-article.html"), "https://news.example"));
+        assertTrue(TokenEstimator.estimate(news) <= 2000);
+        assertTrue(news.startsWith("הממשלה אישרה את תקציב המדינה | חדשות היום,הממשלה אישרה הלילה"), news);
+        assertTrue(news.contains("הממשלה אישרה את תקציב המדינה לשנים הקרובות: מה ישתנה למשפחות"));
+        assertTrue(news.contains("התקציב כולל הקלות במס הכנסה"));
+        assertFalse(news.contains("כל הזכויות שמורות"));
+        assertFalse(news.contains("שתפו בפייסבוק"));
+
+        String recipe = reducer.reduce(scraper.scrapeHtml(page("recipe-blog.html"), "https://recipes.example"));
+        assertTrue(TokenEstimator.estimate(recipe) <= 2000);
+        assertTrue(recipe.contains("Classic Chocolate Chip Cookies"));
+        assertTrue(recipe.contains("Ingredients") && recipe.contains("Instructions"));
+        assertFalse(recipe.contains("Copyright"));
+
+        // Short pages keep all their text
+        String product = reducer.reduce(scraper.scrapeHtml(page("product-page.html"), "https://shop.example"));
+        assertTrue(product.contains("הוספה לסל") && product.contains("משלוח חינם"));
+
+        assertEquals(3, meterRegistry.get("scraper.content.tokens").tag("stage", "scraped").summary().count());
+        assertTrue(meterRegistry.get("scraper.content.tokens").tag("stage", "scraped").summary().max()
+                > 10 * meterRegistry.get("scraper.content.tokens").tag("stage", "reduced").summary().max());
+    }
+
+    static String page(String name) throws IOException {
+        try (InputStream in = ContentReducerTest.class.getResourceAsStream("/pages/" + name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static TextBlock block(String tag, String text, String parentTags) {
+        return block(tag, text, parentTags, true);
+    }
+
+    private static TextBlock block(String tag, String text, String parentTags, boolean visible) {
+        return TextBlock.builder()
+                .tag(tag)
+                .text(text)
+                .cssClass("")
+                .id("")
+                .parentTags(parentTags)
+                .isVisible(visible)
+                .build();
+    }
+}
@@ -0,0 +1,121 @@
+package com.organizer.platform.service.Storage;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalMediaStoreTest {
+
+    @TempDir
+    Path root;
+
+    private LocalMediaStore mediaStore;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mediaStore = new LocalMediaStore(root.toString(), "", "test-key");
+        mediaStore.initialize();
+    }
+
+    @Test
+    void streamedObjectIsReadBackThroughTheMapping() throws IOException {
+        byte[] data = new byte[3 * 1024 * 1024 + 17];
+        new Random(7).nextBytes(data);
+
+        long stored = mediaStore.put("documents/972500000000/report.pdf", "application/pdf",
+                new ByteArrayInputStream(data));
+
+        assertEquals(data.length, stored);
+        try (InputStream in = mediaStore.open("documents/972500000000/report.pdf")) {
+            assertArrayEquals(data, IOUtils.toByteArray(in));
+        }
+    }
+
+    @Test
+    void failedStreamedUploadLeavesThePreviousObject() throws IOException {
+        byte[] previous = "complete report".getBytes(StandardCharsets.UTF_8);
+        mediaStore.put("documents/972500000000/report.pdf", "application/pdf", previous);
+        InputStream failing = new SequenceInputStream(new ByteArrayInputStream(new byte[64 * 1024]), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        });
+
+        assertThrows(IOException.class,
+                () -> mediaStore.put("documents/972500000000/report.pdf", "application/pdf", failing));
+
+        try (InputStream in = mediaStore.open("documents/972500000000/report.pdf")) {
+            assertArrayEquals(previous, IOUtils.toByteArray(in));
+        }
+        try (Stream<Path> files = Files.list(root.resolve("documents/972500000000"))) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void openingAMissingObjectThrowsFileNotFound() {
+        assertThrows(FileNotFoundException.class, () -> mediaStore.open("images/972500000000/ai/missing.jpg"));
+    }
+
+    @Test
+    void copyToWritesTheWholeObject() throws IOException {
+        byte[] data = "image bytes".getBytes(StandardCharsets.UTF_8);
+        mediaStore.put("images/972500000000/a.jpg", "image/jpeg", data);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = mediaStore.copyTo("images/972500000000/a.jpg", out);
+
+        assertEquals(data.length, written);
+        assertArrayEquals(data, out.toByteArray());
+    }
+
+    @Test
+    void signedUrlVerifiesOnlyForItsOwnPath() {
+        String url = mediaStore.signedUrl("images/972500000000/קובץ.jpg", 15, TimeUnit.MINUTES);
+        UriComponents components = UriComponentsBuilder.fromUriString(url).build(true);
+
+        assertEquals(LocalMediaStore.SERVE_PATH, components.getPath());
+        String path = UriUtils.decode(components.getQueryParams().getFirst("path"), StandardCharsets.UTF_8);
+        long expires = Long.parseLong(components.getQueryParams().getFirst("expires"));
+        String signature = components.getQueryParams().getFirst("signature");
+
+        assertEquals("images/972500000000/קובץ.jpg", path);
+        assertTrue(mediaStore.verify(path, expires, signature));
+        assertFalse(mediaStore.verify("images/972500000000/other.jpg", expires, signature));
+        assertFalse(mediaStore.verify(path, expires - 3600, signature));
+    }
+
+    @Test
+    void pathsEscapingTheRootAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> mediaStore.put("../outside.txt", "text/plain", new byte[1]));
+    }
+
+    @Test
+    void deleteRemovesTheObject() throws IOException {
+        mediaStore.put("audios/972500000000/a.ogg", "audio/ogg", new byte[4]);
+
+        assertTrue(mediaStore.delete("audios/972500000000/a.ogg"));
+        assertFalse(mediaStore.delete("audios/972500000000/a.ogg"));
+    }
+}
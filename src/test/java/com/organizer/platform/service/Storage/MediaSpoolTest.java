@@ -0,0 +1,62 @@
+package com.organizer.platform.service.Storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MediaSpool mediaSpool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        mediaSpool = new MediaSpool(directory.toString(), 10, meterRegistry);
+        mediaSpool.initialize();
+    }
+
+    @Test
+    void spooledMediaIsServedFromDiskAndCounted() {
+        mediaSpool.put("images/972500000000/a.jpg", new byte[]{1, 2, 3});
+
+        assertArrayEquals(new byte[]{1, 2, 3}, mediaSpool.read("images/972500000000/a.jpg").orElseThrow());
+        assertTrue(mediaSpool.read("images/972500000000/b.jpg").isEmpty());
+
+        assertEquals(1.0, meterRegistry.counter("media.spool.requests", "result", "hit").count());
+        assertEquals(1.0, meterRegistry.counter("media.spool.requests", "result", "miss").count());
+        assertEquals(3.0, meterRegistry.counter("media.spool.bytes.saved").count());
+    }
+
+    @Test
+    void leastRecentlyUsedMediaIsEvictedWhenTheSpoolIsFull() {
+        mediaSpool.put("a", new byte[4]);
+        mediaSpool.put("b", new byte[4]);
+        mediaSpool.read("a"); // b is now the least recently used entry
+        mediaSpool.put("c", new byte[4]);
+
+        assertTrue(mediaSpool.read("a").isPresent());
+        assertTrue(mediaSpool.read("b").isEmpty());
+        assertTrue(mediaSpool.read("c").isPresent());
+        assertEquals(8, mediaSpool.size());
+    }
+
+    @Test
+    void uncommittedStagingIsDiscarded() throws IOException {
+        try (MediaSpool.Staged staged = mediaSpool.stage("a")) {
+            staged.getOutputStream().write(new byte[]{1});
+        }
+
+        assertTrue(mediaSpool.read("a").isEmpty());
+        assertEquals(0, mediaSpool.entryCount());
+    }
+}
@@ -0,0 +1,61 @@
+package com.organizer.platform.service.Storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SignedUrlCacheTest {
+
+    private MediaStore mediaStore;
+    private SimpleMeterRegistry meterRegistry;
+    private SignedUrlCache signedUrlCache;
+
+    @BeforeEach
+    void setUp() {
+        mediaStore = mock(MediaStore.class);
+        when(mediaStore.signedUrl(anyString(), eq(15L), eq(TimeUnit.MINUTES)))
+                .thenAnswer(invocation -> "https://signed/" + invocation.getArgument(0));
+        meterRegistry = new SimpleMeterRegistry();
+        signedUrlCache = new SignedUrlCache(mediaStore, 15, 5, 100, meterRegistry);
+    }
+
+    @Test
+    void repeatedViewsAreSignedOnce() {
+        for (int i = 0; i < 10; i++) {
+            assertEquals("https://signed/images/1/a.jpg", signedUrlCache.get("images/1/a.jpg"));
+        }
+
+        verify(mediaStore, times(1)).signedUrl("images/1/a.jpg", 15, TimeUnit.MINUTES);
+        assertEquals(1, meterRegistry.timer("media.signed.urls.signing.cpu").count());
+    }
+
+    @Test
+    void batchSignsOnlyTheMissingPaths() {
+        signedUrlCache.get("images/1/a.jpg");
+
+        Map<String, String> urls = signedUrlCache.getAll(List.of("images/1/a.jpg", "images/1/b.jpg"));
+
+        assertEquals(2, urls.size());
+        assertEquals("https://signed/images/1/b.jpg", urls.get("images/1/b.jpg"));
+        verify(mediaStore, times(1)).signedUrl("images/1/a.jpg", 15, TimeUnit.MINUTES);
+        verify(mediaStore, times(1)).signedUrl("images/1/b.jpg", 15, TimeUnit.MINUTES);
+    }
+
+    @Test
+    void invalidatedPathsAreSignedAgain() {
+        signedUrlCache.get("images/1/a.jpg");
+        signedUrlCache.invalidate("images/1/a.jpg");
+        signedUrlCache.get("images/1/a.jpg");
+
+        verify(mediaStore, times(2)).signedUrl("images/1/a.jpg", 15, TimeUnit.MINUTES);
+    }
+}
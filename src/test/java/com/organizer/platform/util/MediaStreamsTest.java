@@ -0,0 +1,100 @@
+package com.organizer.platform.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Memory benchmark for the streaming media transfer path.
+ * Copies synthetic 1/10/100 MB payloads and measures the heap allocated by the copying
+ * thread, which has to stay constant instead of growing with the payload size.
+ */
+class MediaStreamsTest {
+    private static final int MB = 1024 * 1024;
+
+    @Test
+    void allocationPerTransferIsIndependentOfPayloadSize() throws IOException {
+        // Warm up so class loading and JIT allocations do not count towards the first size
+        transfer(MB);
+
+        long oneMb = transfer(MB);
+        long tenMb = transfer(10 * MB);
+        long hundredMb = transfer(100 * MB);
+        System.out.printf("allocated per transfer: 1 MB -> %d B, 10 MB -> %d B, 100 MB -> %d B%n",
+                oneMb, tenMb, hundredMb);
+
+        // One transfer buffer plus a little bookkeeping, never a copy of the payload
+        assertTrue(hundredMb < 4L * MediaStreams.DEFAULT_BUFFER_SIZE, "100 MB transfer allocated " + hundredMb);
+        assertTrue(hundredMb - oneMb < MediaStreams.DEFAULT_BUFFER_SIZE, "allocation grew with payload size");
+    }
+
+    private static long transfer(long size) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        SyntheticMedia source = new SyntheticMedia(size);
+        CountingChannel target = new CountingChannel();
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        long copied = MediaStreams.copy(source, target);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(size, copied);
+        assertEquals(size, target.written);
+        return allocated;
+    }
+
+    /** Input stream producing a fixed number of bytes without allocating. */
+    private static final class SyntheticMedia extends InputStream {
+        private long remaining;
+
+        SyntheticMedia(long size) {
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() {
+            if (remaining == 0) return -1;
+            remaining--;
+            return 0x5A;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining == 0) return -1;
+            int n = (int) Math.min(len, remaining);
+            Arrays.fill(b, off, off + n, (byte) 0x5A);
+            remaining -= n;
+            return n;
+        }
+    }
+
+    /** Channel that only counts what is written to it, standing in for the storage upload. */
+    private static final class CountingChannel implements WritableByteChannel {
+        private long written;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            written += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
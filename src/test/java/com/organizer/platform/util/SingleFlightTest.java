@@ -0,0 +1,95 @@
+package com.organizer.platform.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+    private SimpleMeterRegistry meterRegistry;
+    private SingleFlight<String, String> singleFlight;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight<>(meterRegistry, "test");
+    }
+
+    @Test
+    void sharesRunningCallsPerKey() {
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.execute("a", () -> {
+            calls.incrementAndGet();
+            return upstream;
+        });
+        CompletableFuture<String> second = singleFlight.execute("a", () -> {
+            calls.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        CompletableFuture<String> other = singleFlight.execute("b", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("b");
+        });
+
+        assertEquals(2, calls.get());
+        assertEquals("b", other.join());
+        assertEquals(1, singleFlight.inFlight());
+        assertEquals(1, meterRegistry.get("test.in.flight").gauge().value());
+
+        upstream.complete("a");
+        assertEquals("a", first.join());
+        assertEquals("a", second.join());
+        assertEquals(0, singleFlight.inFlight());
+        assertEquals(1, meterRegistry.counter("test.coalesced").count());
+    }
+
+    @Test
+    void startsNewCallOnceTheRunningOneCompletes() {
+        AtomicInteger calls = new AtomicInteger();
+
+        singleFlight.execute("a", () -> CompletableFuture.completedFuture("" + calls.incrementAndGet())).join();
+        String second = singleFlight.execute("a",
+                () -> CompletableFuture.completedFuture("" + calls.incrementAndGet())).join();
+
+        assertEquals("2", second);
+    }
+
+    @Test
+    void sharesFailuresAndFreesTheKey() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.execute("a", () -> upstream);
+        CompletableFuture<String> second = singleFlight.execute("a", () -> upstream);
+
+        upstream.completeExceptionally(new IllegalStateException("down"));
+
+        assertTrue(assertThrows(CompletionException.class, first::join).getCause() instanceof IllegalStateException);
+        assertTrue(assertThrows(CompletionException.class, second::join).getCause() instanceof IllegalStateException);
+        assertEquals(0, singleFlight.inFlight());
+
+        CompletableFuture<String> thrown = singleFlight.execute("a", () -> {
+            throw new IllegalArgumentException("bad request");
+        });
+        assertTrue(assertThrows(CompletionException.class, thrown::join).getCause() instanceof IllegalArgumentException);
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void cancellingOneCallerDoesNotCancelTheSharedCall() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.execute("a", () -> upstream);
+        CompletableFuture<String> second = singleFlight.execute("a", () -> upstream);
+
+        first.cancel(true);
+        upstream.complete("a");
+
+        assertFalse(upstream.isCancelled());
+        assertEquals("a", second.join());
+    }
+}
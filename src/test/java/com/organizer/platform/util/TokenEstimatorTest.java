@@ -0,0 +1,36 @@
+package com.organizer.platform.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenEstimatorTest {
+
+    @Test
+    void estimatesByScript() {
+        assertEquals(0, TokenEstimator.estimate(null));
+        assertEquals(0, TokenEstimator.estimate("  \n "));
+        // "hello" = 2, "world" = 2, "!" = 1
+        assertEquals(5, TokenEstimator.estimate("hello world!"));
+        // Hebrew words cost about twice as much as Latin words of the same length
+        assertEquals(3 + 2, TokenEstimator.estimate("פגישה ביום"));
+        // "349" = 1, then each of ש, " and ח
+        assertEquals(1 + 3, TokenEstimator.estimate("349 ש\"ח"));
+    }
+
+    @Test
+    void truncatesAtWhitespaceWithinBudget() {
+        String text = "one two three four five six seven eight nine ten";
+        assertSame(text, TokenEstimator.truncate(text, 100));
+
+        String truncated = TokenEstimator.truncate(text, 5);
+        assertEquals("one two three four", truncated);
+        assertTrue(TokenEstimator.estimate(truncated) <= 5);
+    }
+
+    @Test
+    void cutsWordsLongerThanTheBudget() {
+        String truncated = TokenEstimator.truncate("a".repeat(100), 3);
+        assertEquals("a".repeat(12), truncated);
+    }
+}